@@ -48,6 +48,13 @@ public class CellBaseMain {
                         commandExecutor = new LoadCommandExecutor(cliOptionsParser.getLoadCommandOptions());
                     }
                     break;
+                case "migrate-chunk-ids":
+                    if (cliOptionsParser.getMigrateChunkIdsCommandOptions().commonOptions.help) {
+                        cliOptionsParser.printUsage();
+                    } else {
+                        commandExecutor = new MigrateChunkIdsCommandExecutor(cliOptionsParser.getMigrateChunkIdsCommandOptions());
+                    }
+                    break;
                 case "query":
                     if (cliOptionsParser.getQueryCommandOptions().commonOptions.help) {
                         cliOptionsParser.printUsage();
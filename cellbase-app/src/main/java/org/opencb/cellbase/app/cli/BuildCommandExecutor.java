@@ -7,6 +7,7 @@ import org.opencb.cellbase.app.serializers.json.JsonParser;
 import org.opencb.cellbase.app.transform.*;
 import org.opencb.cellbase.app.transform.utils.FileUtils;
 import org.opencb.cellbase.core.CellBaseConfiguration;
+import org.opencb.cellbase.core.common.PackedSequence;
 
 import java.io.File;
 import java.io.IOException;
@@ -170,7 +171,11 @@ public class BuildCommandExecutor extends CommandExecutor {
 
         Path fastaFile = getFastaReferenceGenome();
         CellBaseSerializer serializer = new JsonParser(output, "genome_sequence");
-        return new GenomeSequenceFastaParser(fastaFile, serializer);
+        boolean packedSequence = PackedSequence.ENCODING.equals(buildCommandOptions.sequenceEncoding);
+        if (!packedSequence && !"plain".equals(buildCommandOptions.sequenceEncoding)) {
+            throw new ParameterException("Unknown sequence encoding '" + buildCommandOptions.sequenceEncoding + "'");
+        }
+        return new GenomeSequenceFastaParser(fastaFile, packedSequence, serializer);
     }
 
 
@@ -19,6 +19,7 @@ public class CliOptionsParser {
     private DownloadCommandOptions downloadCommandOptions;
     private BuildCommandOptions buildCommandOptions;
     private LoadCommandOptions loadCommandOptions;
+    private MigrateChunkIdsCommandOptions migrateChunkIdsCommandOptions;
     private QueryCommandOptions queryCommandOptions;
     private VariantAnnotationCommandOptions variantAnnotationCommandOptions;
 
@@ -34,12 +35,14 @@ public class CliOptionsParser {
         downloadCommandOptions = new DownloadCommandOptions();
         buildCommandOptions = new BuildCommandOptions();
         loadCommandOptions = new LoadCommandOptions();
+        migrateChunkIdsCommandOptions = new MigrateChunkIdsCommandOptions();
         queryCommandOptions = new QueryCommandOptions();
         variantAnnotationCommandOptions = new VariantAnnotationCommandOptions();
 
         jcommander.addCommand("download", downloadCommandOptions);
         jcommander.addCommand("build", buildCommandOptions);
         jcommander.addCommand("load", loadCommandOptions);
+        jcommander.addCommand("migrate-chunk-ids", migrateChunkIdsCommandOptions);
         jcommander.addCommand("query", queryCommandOptions);
         jcommander.addCommand("variant-annotation", variantAnnotationCommandOptions);
 
@@ -155,6 +158,9 @@ public class CliOptionsParser {
         @Parameter(names = {"--common"}, description = "", required = false, arity = 1)
         public String common;
 
+        @Parameter(names = {"--sequence-encoding"}, description = "Encoding of the genome_sequence chunks: plain, or 2bit for 2 bits per base plus N and lowercase runs", required = false, arity = 1)
+        public String sequenceEncoding = "plain";
+
     }
 
 
@@ -198,6 +204,28 @@ public class CliOptionsParser {
     }
 
 
+    @Parameters(commandNames = {"migrate-chunk-ids"}, commandDescription = "Converts in place the string chunk ids of a loaded database into numeric chunk ids")
+    public class MigrateChunkIdsCommandOptions {
+
+        @ParametersDelegate
+        public CommonCommandOptions commonOptions = commonCommandOptions;
+
+
+        @Parameter(names = {"-d", "--data"}, description = "Comma separated collections to migrate [gene,variation,regulatory_region]", required = false, arity = 1)
+        public String collections = "gene,variation,regulatory_region";
+
+        @Parameter(names = {"--migrator"}, description = "", required = false, arity = 1)
+        public String migrator = "org.opencb.cellbase.mongodb.loader.MongoDBChunkIdMigrator";
+
+        @DynamicParameter(names = "-D", description = "Database connection parameters as in 'load', i.e. -Dhost=, -Dport=, -Ddatabase=, -Duser=, -Dpassword=", hidden = true)
+        public Map<String, String> migratorParams = new HashMap<>();
+
+        @Parameter(names = {"--benchmark-queries"}, description = "Number of chunk id queries timed before and after migrating each collection, 0 skips it [1000]", required = false, arity = 1)
+        public int benchmarkQueries = 1000;
+
+    }
+
+
     @Parameters(commandNames = {"query"}, commandDescription = "Description")
     public class QueryCommandOptions {
 
@@ -233,9 +261,24 @@ public class CliOptionsParser {
         @Parameter(names = {"--host-url"}, description = "", required = false, arity = 1)
         public String url;
 
+        @Parameter(names = {"--local"}, description = "Annotate querying the database directly instead of the web services at --host-url", required = false, arity = 0)
+        public boolean local;
+
+        @Parameter(names = {"--db-adaptor-factory"}, description = "DBAdaptorFactory implementation used by --local", required = false, arity = 1)
+        public String dbAdaptorFactory = "org.opencb.cellbase.mongodb.db.MongoDBAdaptorFactory";
+
+        @Parameter(names = {"--database"}, description = "Database name used by --local [cellbase]", required = false, arity = 1)
+        public String database = "cellbase";
+
+        @Parameter(names = {"--fill-precomputed-annotation"}, description = "Annotate the input file locally and store the annotations into the precomputed annotation store of the database, no output file is written", required = false, arity = 0)
+        public boolean fillPrecomputedAnnotation;
+
         @Parameter(names = {"--num-threads"}, description = "", required = false, arity = 1)
         public int threads = 2;
 
+        @Parameter(names = {"--reorder-buffer-size"}, description = "Maximum number of variant batches annotated and waiting to be written in input order [40]", required = false, arity = 1)
+        public int reorderBufferSize = 40;
+
     }
 
 
@@ -267,6 +310,9 @@ public class CliOptionsParser {
         @Parameter(names = {"--num-threads"}, description = "", required = false, arity = 1)
         public int threads = 2;
 
+        @Parameter(names = {"--reorder-buffer-size"}, description = "Maximum number of variant batches annotated and waiting to be written in input order [40]", required = false, arity = 1)
+        public int reorderBufferSize = 40;
+
     }
 
 
@@ -286,6 +332,10 @@ public class CliOptionsParser {
         return loadCommandOptions;
     }
 
+    public MigrateChunkIdsCommandOptions getMigrateChunkIdsCommandOptions() {
+        return migrateChunkIdsCommandOptions;
+    }
+
     public QueryCommandOptions getQueryCommandOptions() {
         return queryCommandOptions;
     }
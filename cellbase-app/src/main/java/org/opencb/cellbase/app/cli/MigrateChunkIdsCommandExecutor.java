@@ -0,0 +1,58 @@
+package org.opencb.cellbase.app.cli;
+
+import com.beust.jcommander.ParameterException;
+import org.opencb.cellbase.core.loader.ChunkIdMigrator;
+import org.opencb.cellbase.core.loader.LoaderException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+
+/**
+ * Migrates the chunk ids of an existing database to the numeric format. Servers must then be configured with
+ * CELLBASE.QUERY.CHUNK_ID_FORMAT = numeric and new data loaded with -DchunkIdFormat=numeric.
+ */
+public class MigrateChunkIdsCommandExecutor extends CommandExecutor {
+
+    private CliOptionsParser.MigrateChunkIdsCommandOptions migrateChunkIdsCommandOptions;
+
+    public MigrateChunkIdsCommandExecutor(CliOptionsParser.MigrateChunkIdsCommandOptions migrateChunkIdsCommandOptions) {
+        super(migrateChunkIdsCommandOptions.commonOptions.logLevel, migrateChunkIdsCommandOptions.commonOptions.verbose,
+                migrateChunkIdsCommandOptions.commonOptions.conf);
+
+        this.migrateChunkIdsCommandOptions = migrateChunkIdsCommandOptions;
+    }
+
+    public void execute() {
+        checkParameters();
+
+        ChunkIdMigrator chunkIdMigrator;
+        try {
+            chunkIdMigrator = (ChunkIdMigrator) Class.forName(migrateChunkIdsCommandOptions.migrator)
+                    .getConstructor(Map.class).newInstance(migrateChunkIdsCommandOptions.migratorParams);
+        } catch (ClassNotFoundException | NoSuchMethodException | InstantiationException | IllegalAccessException
+                | InvocationTargetException e) {
+            logger.error("Error creating chunk id migrator " + migrateChunkIdsCommandOptions.migrator + ": " + e);
+            return;
+        }
+
+        try {
+            chunkIdMigrator.init();
+            for (String collection : migrateChunkIdsCommandOptions.collections.split(",")) {
+                chunkIdMigrator.migrate(collection.trim(), migrateChunkIdsCommandOptions.benchmarkQueries);
+            }
+        } catch (LoaderException e) {
+            logger.error("Error migrating chunk ids: " + e.getMessage());
+        } finally {
+            chunkIdMigrator.disconnect();
+        }
+    }
+
+    private void checkParameters() {
+        if (migrateChunkIdsCommandOptions.collections == null || migrateChunkIdsCommandOptions.collections.trim().isEmpty()) {
+            throw new ParameterException("No collections to migrate");
+        }
+        if (migrateChunkIdsCommandOptions.benchmarkQueries < 0) {
+            throw new ParameterException("Benchmark queries number " + migrateChunkIdsCommandOptions.benchmarkQueries + " not valid");
+        }
+    }
+}
@@ -3,8 +3,13 @@ package org.opencb.cellbase.app.cli;
 import com.beust.jcommander.ParameterException;
 import org.opencb.cellbase.core.CellBaseConfiguration;
 import org.opencb.cellbase.core.client.CellBaseClient;
+import org.opencb.cellbase.core.common.core.CellbaseConfiguration;
+import org.opencb.cellbase.core.lib.DBAdaptorFactory;
+import org.opencb.cellbase.core.lib.api.variation.VariantAnnotationDBAdaptor;
+import org.opencb.cellbase.core.variant_annotation.PrecomputedAnnotationWriter;
 import org.opencb.cellbase.core.variant_annotation.VariantAnnotatorRunner;
 
+import java.lang.reflect.InvocationTargetException;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -33,16 +38,38 @@ public class QueryCommandExecutor extends CommandExecutor {
         checkParameters();
         if(queryCommandOptions.annotate) {
             VariantAnnotatorRunner variantAnnotatorRunner = null;
+            DBAdaptorFactory dbAdaptorFactory = null;
             try {
-                variantAnnotatorRunner = new VariantAnnotatorRunner(inputFile, outputFile,
-                        getCellBaseClient(), queryCommandOptions.threads);
+                if (queryCommandOptions.local || queryCommandOptions.fillPrecomputedAnnotation) {
+                    dbAdaptorFactory = getDBAdaptorFactory();
+                    VariantAnnotationDBAdaptor variantAnnotationDBAdaptor = dbAdaptorFactory.getVariantAnnotationDBAdaptor(
+                            queryCommandOptions.species, queryCommandOptions.assembly);
+                    variantAnnotatorRunner = new VariantAnnotatorRunner(inputFile, outputFile,
+                            variantAnnotationDBAdaptor, queryCommandOptions.threads);
+                    if (queryCommandOptions.fillPrecomputedAnnotation) {
+                        variantAnnotatorRunner.setVariantAnnotationWriter(
+                                new PrecomputedAnnotationWriter(variantAnnotationDBAdaptor));
+                    }
+                } else {
+                    variantAnnotatorRunner = new VariantAnnotatorRunner(inputFile, outputFile,
+                            getCellBaseClient(), queryCommandOptions.threads);
+                }
             } catch (URISyntaxException e) {
                 e.printStackTrace();
+            } catch (ClassNotFoundException | NoSuchMethodException | InvocationTargetException | InstantiationException
+                    | IllegalAccessException e) {
+                logger.error("Error creating DBAdaptorFactory '" + queryCommandOptions.dbAdaptorFactory + "': " + e);
+                return;
             }
+            variantAnnotatorRunner.setReorderBufferSize(queryCommandOptions.reorderBufferSize);
             try {
                 variantAnnotatorRunner.run();
             } catch (ExecutionException | InterruptedException e) {
                 logger.error("Error executing annotator: " + e);
+            } finally {
+                if (dbAdaptorFactory != null) {
+                    dbAdaptorFactory.close();
+                }
             }
         }
 
@@ -73,7 +100,10 @@ public class QueryCommandExecutor extends CommandExecutor {
             } else {
                 throw  new ParameterException("Please check command line sintax. Provide a valid input file name.");
             }
-            // output file
+            // output file, not needed when annotations are stored into the database
+            if (queryCommandOptions.fillPrecomputedAnnotation) {
+                return;
+            }
             if (queryCommandOptions.outputFile != null) {
                 outputFile = Paths.get(queryCommandOptions.outputFile);
                 Path outputDir = outputFile.getParent();
@@ -97,4 +127,26 @@ public class QueryCommandExecutor extends CommandExecutor {
         String path = "/cellbase/webservices/rest/";
         return new CellBaseClient(queryCommandOptions.url, 8080, path, configuration.getVersion(), queryCommandOptions.species);
     }
+
+    /**
+     * Creates the DBAdaptorFactory used by --local annotation. As with the loaders, the implementation is loaded by
+     * name and connects to the database of the CLI configuration.
+     */
+    private DBAdaptorFactory getDBAdaptorFactory() throws ClassNotFoundException, NoSuchMethodException,
+            IllegalAccessException, InvocationTargetException, InstantiationException {
+        CellBaseConfiguration.DatabaseProperties cellbaseDDBBProperties = configuration.getDatabase();
+        String species = queryCommandOptions.species;
+        CellbaseConfiguration cellbaseConfiguration = new CellbaseConfiguration();
+        cellbaseConfiguration.setVersion(configuration.getVersion());
+        cellbaseConfiguration.addSpeciesAlias(species, species);
+        cellbaseConfiguration.setPrecomputedAnnotation(queryCommandOptions.fillPrecomputedAnnotation);
+        String assembly = (queryCommandOptions.assembly != null) ? queryCommandOptions.assembly : "default";
+        cellbaseConfiguration.addSpeciesConnection(species, assembly, cellbaseDDBBProperties.getHost(),
+                queryCommandOptions.database, Integer.parseInt(cellbaseDDBBProperties.getPort()), "mongodb",
+                (cellbaseDDBBProperties.getUser() != null) ? cellbaseDDBBProperties.getUser() : "",
+                (cellbaseDDBBProperties.getPassword() != null) ? cellbaseDDBBProperties.getPassword() : "", 10, 10000);
+
+        return (DBAdaptorFactory) Class.forName(queryCommandOptions.dbAdaptorFactory)
+                .getConstructor(CellbaseConfiguration.class).newInstance(cellbaseConfiguration);
+    }
 }
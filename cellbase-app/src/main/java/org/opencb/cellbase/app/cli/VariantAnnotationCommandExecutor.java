@@ -37,6 +37,7 @@ public class VariantAnnotationCommandExecutor extends CommandExecutor {
         } catch (URISyntaxException e) {
             e.printStackTrace();
         }
+        variantAnnotatorRunner.setReorderBufferSize(variantAnnotationCommandOptions.reorderBufferSize);
         try {
             variantAnnotatorRunner.run();
         } catch (ExecutionException | InterruptedException e) {
@@ -3,6 +3,7 @@ package org.opencb.cellbase.app.transform;
 import org.opencb.biodata.models.core.GenomeSequenceChunk;
 import org.opencb.cellbase.app.serializers.CellBaseSerializer;
 import org.opencb.cellbase.app.transform.utils.FileUtils;
+import org.opencb.cellbase.core.common.core.PackedGenomeSequenceChunk;
 
 import java.io.*;
 import java.nio.file.Path;
@@ -10,12 +11,19 @@ import java.nio.file.Path;
 public class GenomeSequenceFastaParser extends CellBaseParser {
 
     private Path genomeReferenceFastaFile;
+    // Chunks are written as PackedGenomeSequenceChunk, 2 bits per base, instead of plain sequences
+    private boolean packedSequence;
 
     private static final int CHUNK_SIZE = 2000;
 
     public GenomeSequenceFastaParser(Path genomeReferenceFastaFile, CellBaseSerializer serializer) {
+        this(genomeReferenceFastaFile, false, serializer);
+    }
+
+    public GenomeSequenceFastaParser(Path genomeReferenceFastaFile, boolean packedSequence, CellBaseSerializer serializer) {
         super(serializer);
         this.genomeReferenceFastaFile = genomeReferenceFastaFile;
+        this.packedSequence = packedSequence;
     }
 
     @Override
@@ -75,7 +83,7 @@ public class GenomeSequenceFastaParser extends CellBaseParser {
         if (sequence.length() < CHUNK_SIZE) {//chromosome sequence length can be less than CHUNK_SIZE
             chunkSequence = sequence;
             genomeSequenceChunk = new GenomeSequenceChunk(chromosome, chromosome + "_" + 0 + "_" + chunkIdSuffix, start, sequence.length() - 1, sequenceType, sequenceAssembly, chunkSequence);
-            serializer.serialize(genomeSequenceChunk);
+            serialize(genomeSequenceChunk);
             start += CHUNK_SIZE - 1;
         } else {
             while (start < sequence.length()) {
@@ -87,7 +95,7 @@ public class GenomeSequenceFastaParser extends CellBaseParser {
                     // First chunk contains CHUNK_SIZE-1 nucleotides as index start at position 1 but must end at 1999
                     chunkSequence = sequence.substring(start - 1, CHUNK_SIZE - 1);
                     genomeSequenceChunk = new GenomeSequenceChunk(chromosome, chromosome + "_" + chunk + "_" + chunkIdSuffix, start, end, sequenceType, sequenceAssembly, chunkSequence);
-                    serializer.serialize(genomeSequenceChunk);
+                    serialize(genomeSequenceChunk);
                     start += CHUNK_SIZE - 1;
 
                 } else {
@@ -95,13 +103,13 @@ public class GenomeSequenceFastaParser extends CellBaseParser {
                     if ((start + CHUNK_SIZE) < sequence.length()) {
                         chunkSequence = sequence.substring(start - 1, start + CHUNK_SIZE - 1);
                         genomeSequenceChunk = new GenomeSequenceChunk(chromosome, chromosome + "_" + chunk + "_" + chunkIdSuffix, start, end, sequenceType, sequenceAssembly, chunkSequence);
-                        serializer.serialize(genomeSequenceChunk);
+                        serialize(genomeSequenceChunk);
                         start += CHUNK_SIZE;
                     } else {
                         // Last chunk of the chromosome
                         chunkSequence = sequence.substring(start - 1, sequence.length());
                         genomeSequenceChunk = new GenomeSequenceChunk(chromosome, chromosome + "_" + chunk + "_" + chunkIdSuffix, start, sequence.length(), sequenceType, sequenceAssembly, chunkSequence);
-                        serializer.serialize(genomeSequenceChunk);
+                        serialize(genomeSequenceChunk);
                         start = sequence.length();
                     }
                 }
@@ -110,4 +118,15 @@ public class GenomeSequenceFastaParser extends CellBaseParser {
             }
         }
     }
+
+    private void serialize(GenomeSequenceChunk genomeSequenceChunk) {
+        if (packedSequence) {
+            serializer.serialize(new PackedGenomeSequenceChunk(genomeSequenceChunk.getSequenceName(),
+                    genomeSequenceChunk.getChunkId(), genomeSequenceChunk.getStart(), genomeSequenceChunk.getEnd(),
+                    genomeSequenceChunk.getSequenceType(), genomeSequenceChunk.getAssembly(),
+                    genomeSequenceChunk.getSequence()));
+        } else {
+            serializer.serialize(genomeSequenceChunk);
+        }
+    }
 }
@@ -0,0 +1,99 @@
+package org.opencb.cellbase.core.common;
+
+/**
+ * Chunk ids of region collections in two formats: the string format "chromosome_chunkNumber_chunkSizek", e.g.
+ * "1_123_5k", and the numeric format, a 64-bit integer with the chromosome code in the 16 most significant bits, the
+ * chunk size in kb in the next 8 bits and the chunk number in the 40 least significant bits.
+ * Numbered chromosomes are coded by their number and X, Y and MT by fixed codes. Other sequences, e.g. scaffolds, are
+ * coded by a hash of their name and may collide, so numeric chunk ids must be queried together with the chromosome.
+ */
+public class ChunkId {
+
+    public static final String STRING_FORMAT = "string";
+    public static final String NUMERIC_FORMAT = "numeric";
+
+    private static final int MAX_NUMBERED_CHROMOSOME = 10000;
+    private static final int CHROMOSOME_X = 10001;
+    private static final int CHROMOSOME_Y = 10002;
+    private static final int CHROMOSOME_MT = 10003;
+    private static final int FIRST_HASHED_CHROMOSOME = 10004;
+    private static final long CHUNK_NUMBER_MASK = (1L << 40) - 1;
+
+    public static String getChunkId(String chromosome, int chunkNumber, int chunkSize) {
+        return chromosome + "_" + chunkNumber + "_" + chunkSize / 1000 + "k";
+    }
+
+    public static long getNumericChunkId(String chromosome, long chunkNumber, int chunkSize) {
+        int chunkSizeKb = chunkSize / 1000;
+        if (chunkSizeKb > 255) {
+            throw new IllegalArgumentException("Chunk size " + chunkSize + " too big for numeric chunk ids");
+        }
+        if (chunkNumber < 0 || chunkNumber > CHUNK_NUMBER_MASK) {
+            throw new IllegalArgumentException("Chunk number " + chunkNumber + " out of range for numeric chunk ids");
+        }
+        return ((long) getChromosomeCode(chromosome) << 48) | ((long) chunkSizeKb << 40) | chunkNumber;
+    }
+
+    /**
+     * Converts a chunk id in string format into the numeric format.
+     */
+    public static long getNumericChunkId(String chunkId) {
+        // Chromosome names may contain '_', chunk number and size are after the last two
+        int sizeSeparator = chunkId.lastIndexOf('_');
+        int numberSeparator = chunkId.lastIndexOf('_', sizeSeparator - 1);
+        if (numberSeparator <= 0 || !chunkId.endsWith("k")) {
+            throw new IllegalArgumentException("Chunk id '" + chunkId + "' is not in string format");
+        }
+        String chromosome = chunkId.substring(0, numberSeparator);
+        long chunkNumber = Long.parseLong(chunkId.substring(numberSeparator + 1, sizeSeparator));
+        int chunkSizeKb = Integer.parseInt(chunkId.substring(sizeSeparator + 1, chunkId.length() - 1));
+        return getNumericChunkId(chromosome, chunkNumber, chunkSizeKb * 1000);
+    }
+
+    public static int getChromosomeCode(String chromosome) {
+        String name = chromosome;
+        if (name.length() > 3 && name.substring(0, 3).equalsIgnoreCase("chr")) {
+            name = name.substring(3);
+        }
+        switch (name.toUpperCase()) {
+            case "X":
+                return CHROMOSOME_X;
+            case "Y":
+                return CHROMOSOME_Y;
+            case "M":
+            case "MT":
+                return CHROMOSOME_MT;
+            default:
+                break;
+        }
+        if (!name.isEmpty() && name.length() < 5 && isDigits(name)) {
+            int number = Integer.parseInt(name);
+            if (number > 0 && number < MAX_NUMBERED_CHROMOSOME) {
+                return number;
+            }
+        }
+        return FIRST_HASHED_CHROMOSOME + (chromosome.hashCode() & 0x7FFFFFFF) % (65536 - FIRST_HASHED_CHROMOSOME);
+    }
+
+    public static int getChromosomeCode(long numericChunkId) {
+        return (int) (numericChunkId >>> 48);
+    }
+
+    public static int getChunkSize(long numericChunkId) {
+        return (int) ((numericChunkId >>> 40) & 0xFF) * 1000;
+    }
+
+    public static long getChunkNumber(long numericChunkId) {
+        return numericChunkId & CHUNK_NUMBER_MASK;
+    }
+
+    private static boolean isDigits(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) < '0' || name.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -10,10 +10,25 @@ public class DNASequenceUtils {
 	public static Map<String, String> codonToAminoacid = new HashMap<String, String>();
 	public static Map<String, String> codonToAminoacidShort = new HashMap<String, String>();
 	
+	private static final char[] complementTable = new char[128];
+	
 	static {
 		complement.put("A", "T");complement.put("T", "A");complement.put("C", "G");complement.put("G", "C");
 	}
 	
+	static {
+		// IUPAC complements, any other character is left unchanged
+		for(char c=0; c<complementTable.length; c++) {
+			complementTable[c] = c;
+		}
+		String nts =     "ACGTRYKMBVDHSWN";
+		String compNts = "TGCAYRMKVBHDSWN";
+		for(int i=0; i<nts.length(); i++) {
+			complementTable[nts.charAt(i)] = compNts.charAt(i);
+			complementTable[Character.toLowerCase(nts.charAt(i))] = Character.toLowerCase(compNts.charAt(i));
+		}
+	}
+	
 	static {
 		codonToAminoacid.put("UUU", "Phe");codonToAminoacid.put("UUC", "Phe");codonToAminoacid.put("UUA", "Leu");codonToAminoacid.put("UUG", "Leu");
 		codonToAminoacid.put("UCU", "Ser");codonToAminoacid.put("UCC", "Ser");codonToAminoacid.put("UCA", "Ser");codonToAminoacid.put("UCG", "Ser");
@@ -75,12 +90,33 @@ public class DNASequenceUtils {
 		return aaSequence.toString();
 	}
 	
-	public static String reverseComplement(String dnaSequence) {
-		StringBuilder revComplSequence = new StringBuilder(dnaSequence.length());
-		for(int i=dnaSequence.length()-1; i>=0; i--) {
-			revComplSequence.append(complement.get(dnaSequence.charAt(i)));
+	/**
+	 * Complement of a nucleotide using IUPAC codes, case is kept and unknown characters are returned unchanged.
+	 */
+	public static char complement(char nt) {
+		return (nt < complementTable.length) ? complementTable[nt] : nt;
+	}
+	
+	/**
+	 * Complement of a sequence using IUPAC codes, in a single pass over the sequence.
+	 */
+	public static String complement(CharSequence dnaSequence) {
+		char[] complSequence = new char[dnaSequence.length()];
+		for(int i=0; i<complSequence.length; i++) {
+			complSequence[i] = complement(dnaSequence.charAt(i));
+		}
+		return new String(complSequence);
+	}
+	
+	/**
+	 * Reverse complement of a sequence using IUPAC codes, in a single pass over the sequence.
+	 */
+	public static String reverseComplement(CharSequence dnaSequence) {
+		char[] revComplSequence = new char[dnaSequence.length()];
+		for(int i=0, j=revComplSequence.length-1; j>=0; i++, j--) {
+			revComplSequence[i] = complement(dnaSequence.charAt(j));
 		}
-		return revComplSequence.toString();
+		return new String(revComplSequence);
 	}
 	
 }
@@ -0,0 +1,96 @@
+package org.opencb.cellbase.core.common;
+
+/**
+ * Standard genetic code with codons encoded as 6-bit integers (2 bits per nucleotide, A=0, C=1, G=2, T=3), so that
+ * amino acid, stop and synonymous lookups are array accesses instead of String-keyed map lookups.
+ * Codons containing any nucleotide other than A, C, G or T are encoded as INVALID_CODON.
+ */
+public class GeneticCode {
+
+    public static final int INVALID_CODON = -1;
+
+    private static final int[] ntCodes = new int[128];
+    private static final String[] aminoacids = new String[64];
+    private static final boolean[] stopCodons = new boolean[64];
+    private static final long[] synonymousCodons = new long[64];
+
+    static {
+        for (int i = 0; i < ntCodes.length; i++) {
+            ntCodes[i] = -1;
+        }
+        ntCodes['A'] = 0; ntCodes['C'] = 1; ntCodes['G'] = 2; ntCodes['T'] = 3;
+        ntCodes['a'] = 0; ntCodes['c'] = 1; ntCodes['g'] = 2; ntCodes['t'] = 3;
+
+        addAminoacid("ALA", "GCT", "GCC", "GCA", "GCG");
+        addAminoacid("ARG", "CGT", "CGC", "CGA", "CGG", "AGA", "AGG");
+        addAminoacid("ASN", "AAT", "AAC");
+        addAminoacid("ASP", "GAT", "GAC");
+        addAminoacid("CYS", "TGT", "TGC");
+        addAminoacid("GLN", "CAA", "CAG");
+        addAminoacid("GLU", "GAA", "GAG");
+        addAminoacid("GLY", "GGT", "GGC", "GGA", "GGG");
+        addAminoacid("HIS", "CAT", "CAC");
+        addAminoacid("ILE", "ATT", "ATC", "ATA");
+        addAminoacid("LEU", "TTA", "TTG", "CTT", "CTC", "CTA", "CTG");
+        addAminoacid("LYS", "AAA", "AAG");
+        addAminoacid("MET", "ATG");
+        addAminoacid("PHE", "TTT", "TTC");
+        addAminoacid("PRO", "CCT", "CCC", "CCA", "CCG");
+        addAminoacid("SER", "TCT", "TCC", "TCA", "TCG", "AGT", "AGC");
+        addAminoacid("THR", "ACT", "ACC", "ACA", "ACG");
+        addAminoacid("TRP", "TGG");
+        addAminoacid("TYR", "TAT", "TAC");
+        addAminoacid("VAL", "GTT", "GTC", "GTA", "GTG");
+        addAminoacid("STOP", "TAA", "TGA", "TAG");
+    }
+
+    private static void addAminoacid(String aminoacid, String... codons) {
+        long synonymous = 0;
+        for (String codon : codons) {
+            synonymous |= 1L << encodeCodon(codon.charAt(0), codon.charAt(1), codon.charAt(2));
+        }
+        for (String codon : codons) {
+            int code = encodeCodon(codon.charAt(0), codon.charAt(1), codon.charAt(2));
+            aminoacids[code] = aminoacid;
+            stopCodons[code] = aminoacid.equals("STOP");
+            synonymousCodons[code] = synonymous;
+        }
+    }
+
+    private static int encodeNt(char nt) {
+        return (nt < ntCodes.length) ? ntCodes[nt] : -1;
+    }
+
+    public static int encodeCodon(char nt1, char nt2, char nt3) {
+        // Any invalid nucleotide (-1) makes the whole code negative
+        int code = (encodeNt(nt1) << 4) | (encodeNt(nt2) << 2) | encodeNt(nt3);
+        return (code < 0) ? INVALID_CODON : code;
+    }
+
+    public static int encodeCodon(char[] codon) {
+        return encodeCodon(codon[0], codon[1], codon[2]);
+    }
+
+    /**
+     * Encodes the codon starting at the 0-based position of the sequence.
+     */
+    public static int encodeCodon(CharSequence sequence, int position) {
+        return encodeCodon(sequence.charAt(position), sequence.charAt(position + 1), sequence.charAt(position + 2));
+    }
+
+    /**
+     * @return three letter upper case amino acid name, "STOP" for stop codons or null for INVALID_CODON
+     */
+    public static String getAminoacid(int codon) {
+        return (codon == INVALID_CODON) ? null : aminoacids[codon];
+    }
+
+    public static boolean isStopCodon(int codon) {
+        return codon != INVALID_CODON && stopCodons[codon];
+    }
+
+    public static boolean isSynonymous(int codon1, int codon2) {
+        return codon1 != INVALID_CODON && codon2 != INVALID_CODON && (synonymousCodons[codon1] & (1L << codon2)) != 0;
+    }
+
+}
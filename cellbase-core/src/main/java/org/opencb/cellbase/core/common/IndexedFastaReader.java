@@ -0,0 +1,236 @@
+package org.opencb.cellbase.core.common;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads subsequences of a local FASTA file indexed with 'samtools faidx'. The file is memory-mapped, so reads are
+ * served from the page cache without copying the file into the heap. Plain FASTA files need their '.fai' index;
+ * bgzip-compressed files, e.g. 'genome.fa.gz', also need the '.gzi' index of their BGZF blocks. Instances are
+ * thread safe.
+ */
+public class IndexedFastaReader implements Closeable {
+
+    // Files are mapped in segments as a single mapping cannot exceed 2GB
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final int BGZF_HEADER_SIZE = 18;
+    private static final int BGZF_FOOTER_SIZE = 8;
+
+    private final Path fastaPath;
+    private final RandomAccessFile randomAccessFile;
+    private final List<MappedByteBuffer> segments;
+    private final Map<String, FaiEntry> faiEntries;
+    // Uncompressed and compressed offsets of the BGZF blocks, null for plain FASTA files
+    private long[] blockUncompressedOffsets;
+    private long[] blockCompressedOffsets;
+
+    private static class FaiEntry {
+        private final long length;
+        private final long offset;
+        private final int lineBases;
+        private final int lineWidth;
+
+        FaiEntry(long length, long offset, int lineBases, int lineWidth) {
+            this.length = length;
+            this.offset = offset;
+            this.lineBases = lineBases;
+            this.lineWidth = lineWidth;
+        }
+    }
+
+    public IndexedFastaReader(Path fastaPath) throws IOException {
+        this.fastaPath = fastaPath;
+        this.faiEntries = readFai(Paths.get(fastaPath + ".fai"));
+        Path gziPath = Paths.get(fastaPath + ".gzi");
+        if (Files.exists(gziPath)) {
+            readGzi(gziPath);
+        } else if (fastaPath.toString().endsWith(".gz")) {
+            throw new IOException("bgzip compressed FASTA file " + fastaPath + " has no .gzi index");
+        }
+
+        randomAccessFile = new RandomAccessFile(fastaPath.toFile(), "r");
+        FileChannel fileChannel = randomAccessFile.getChannel();
+        segments = new ArrayList<>();
+        for (long position = 0; position < fileChannel.size(); position += SEGMENT_SIZE) {
+            segments.add(fileChannel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(SEGMENT_SIZE, fileChannel.size() - position)));
+        }
+    }
+
+    private static Map<String, FaiEntry> readFai(Path faiPath) throws IOException {
+        Map<String, FaiEntry> faiEntries = new HashMap<>();
+        try (BufferedReader bufferedReader = Files.newBufferedReader(faiPath, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length < 5) {
+                    throw new IOException("Malformed line in " + faiPath + ": " + line);
+                }
+                faiEntries.put(fields[0], new FaiEntry(Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                        Integer.parseInt(fields[3]), Integer.parseInt(fields[4])));
+            }
+        }
+        return faiEntries;
+    }
+
+    /**
+     * The .gzi index is a little-endian count followed by the compressed and uncompressed offsets of every block but
+     * the first one.
+     */
+    private void readGzi(Path gziPath) throws IOException {
+        ByteBuffer gzi = ByteBuffer.wrap(Files.readAllBytes(gziPath)).order(ByteOrder.LITTLE_ENDIAN);
+        int numBlocks = (int) gzi.getLong();
+        blockCompressedOffsets = new long[numBlocks + 1];
+        blockUncompressedOffsets = new long[numBlocks + 1];
+        for (int i = 1; i <= numBlocks; i++) {
+            blockCompressedOffsets[i] = gzi.getLong();
+            blockUncompressedOffsets[i] = gzi.getLong();
+        }
+    }
+
+    public boolean contains(String sequenceName) {
+        return faiEntries.containsKey(sequenceName);
+    }
+
+    public long getLength(String sequenceName) {
+        FaiEntry faiEntry = faiEntries.get(sequenceName);
+        return (faiEntry != null) ? faiEntry.length : -1;
+    }
+
+    /**
+     * @return the bases from start to end, both 1-based and inclusive, truncated at the end of the sequence; null
+     * when the sequence is not in the file
+     */
+    public String query(String sequenceName, long start, long end) throws IOException {
+        FaiEntry faiEntry = faiEntries.get(sequenceName);
+        if (faiEntry == null) {
+            return null;
+        }
+        long from = Math.max(start, 1) - 1;
+        long to = Math.min(end, faiEntry.length);
+        if (from >= to) {
+            return "";
+        }
+
+        // Bytes of the file covering the bases, then line breaks are skipped
+        long firstByte = faiEntry.offset + from / faiEntry.lineBases * faiEntry.lineWidth + from % faiEntry.lineBases;
+        long lastByte = faiEntry.offset + (to - 1) / faiEntry.lineBases * faiEntry.lineWidth + (to - 1) % faiEntry.lineBases;
+        byte[] bytes = new byte[(int) (lastByte - firstByte + 1)];
+        if (blockUncompressedOffsets == null) {
+            read(firstByte, bytes, 0, bytes.length);
+        } else {
+            readBgzf(firstByte, bytes);
+        }
+
+        char[] bases = new char[(int) (to - from)];
+        int lineOffset = (int) (from % faiEntry.lineBases);
+        int b = 0;
+        for (int i = 0; i < bases.length; ) {
+            int lineBases = Math.min(faiEntry.lineBases - lineOffset, bases.length - i);
+            for (int j = 0; j < lineBases; j++) {
+                bases[i++] = (char) bytes[b++];
+            }
+            b += faiEntry.lineWidth - faiEntry.lineBases;
+            lineOffset = 0;
+        }
+        return new String(bases);
+    }
+
+    /**
+     * Inflates the BGZF blocks holding the uncompressed bytes from 'position' on.
+     */
+    private void readBgzf(long position, byte[] bytes) throws IOException {
+        int block = Arrays.binarySearch(blockUncompressedOffsets, position);
+        if (block < 0) {
+            block = -block - 2;
+        }
+        long compressedOffset = blockCompressedOffsets[block];
+        int skip = (int) (position - blockUncompressedOffsets[block]);
+        int copied = 0;
+        Inflater inflater = new Inflater(true);
+        try {
+            while (copied < bytes.length) {
+                byte[] header = new byte[BGZF_HEADER_SIZE];
+                read(compressedOffset, header, 0, header.length);
+                if ((header[0] & 0xFF) != 31 || (header[1] & 0xFF) != 139 || (header[3] & 4) == 0) {
+                    throw new IOException("Invalid BGZF block at offset " + compressedOffset + " of " + fastaPath);
+                }
+                int extraLength = (header[10] & 0xFF) | (header[11] & 0xFF) << 8;
+                int blockSize = getBlockSize(compressedOffset, extraLength);
+                byte[] compressed = new byte[blockSize - 12 - extraLength - BGZF_FOOTER_SIZE];
+                read(compressedOffset + 12 + extraLength, compressed, 0, compressed.length);
+                byte[] footer = new byte[BGZF_FOOTER_SIZE];
+                read(compressedOffset + blockSize - BGZF_FOOTER_SIZE, footer, 0, footer.length);
+                int uncompressedSize = ByteBuffer.wrap(footer, 4, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+                if (uncompressedSize == 0) {
+                    throw new EOFException("Unexpected end of " + fastaPath);
+                }
+
+                byte[] uncompressed = new byte[uncompressedSize];
+                inflater.reset();
+                inflater.setInput(compressed);
+                try {
+                    inflater.inflate(uncompressed);
+                } catch (DataFormatException e) {
+                    throw new IOException("Corrupted BGZF block at offset " + compressedOffset + " of " + fastaPath, e);
+                }
+                int length = Math.min(uncompressedSize - skip, bytes.length - copied);
+                System.arraycopy(uncompressed, skip, bytes, copied, length);
+                copied += length;
+                skip = 0;
+                compressedOffset += blockSize;
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * @return the total size of the block, read from the BSIZE field of its 'BC' extra subfield
+     */
+    private int getBlockSize(long blockOffset, int extraLength) throws IOException {
+        byte[] extra = new byte[extraLength];
+        read(blockOffset + 12, extra, 0, extra.length);
+        for (int i = 0; i + 4 <= extra.length; ) {
+            int subfieldLength = (extra[i + 2] & 0xFF) | (extra[i + 3] & 0xFF) << 8;
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && subfieldLength == 2) {
+                return ((extra[i + 4] & 0xFF) | (extra[i + 5] & 0xFF) << 8) + 1;
+            }
+            i += 4 + subfieldLength;
+        }
+        throw new IOException("BGZF block at offset " + blockOffset + " of " + fastaPath + " has no block size");
+    }
+
+    private void read(long position, byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            int segment = (int) (position / SEGMENT_SIZE);
+            if (segment >= segments.size()) {
+                throw new EOFException("Offset " + position + " beyond the end of " + fastaPath);
+            }
+            // Duplicates have their own position, so concurrent reads do not interfere
+            ByteBuffer buffer = segments.get(segment).duplicate();
+            buffer.position((int) (position % SEGMENT_SIZE));
+            int n = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        randomAccessFile.close();
+    }
+
+}
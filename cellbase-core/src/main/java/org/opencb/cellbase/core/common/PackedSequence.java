@@ -0,0 +1,127 @@
+package org.opencb.cellbase.core.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Nucleotide sequence packed in 2 bits per base, four bases per byte from the most significant bits, with A, C, G
+ * and T coded as 0, 1, 2 and 3. Other bases, e.g. N or IUPAC codes, are kept as runs of offset, length and base, and
+ * lowercase (soft-masked) bases as runs of offset and length, so that the sequence is restored exactly.
+ */
+public class PackedSequence {
+
+    public static final String ENCODING = "2bit";
+
+    private static final char[] BASES = {'A', 'C', 'G', 'T'};
+    private static final byte[] CODES = new byte[128];
+
+    static {
+        for (int i = 0; i < CODES.length; i++) {
+            CODES[i] = -1;
+        }
+        for (byte code = 0; code < BASES.length; code++) {
+            CODES[BASES[code]] = code;
+            CODES[Character.toLowerCase(BASES[code])] = code;
+        }
+    }
+
+    private final int length;
+    private final byte[] packed;
+    private final int[] baseRuns;
+    private final int[] maskRuns;
+
+    public PackedSequence(int length, byte[] packed, int[] baseRuns, int[] maskRuns) {
+        this.length = length;
+        this.packed = packed;
+        this.baseRuns = (baseRuns != null) ? baseRuns : new int[0];
+        this.maskRuns = (maskRuns != null) ? maskRuns : new int[0];
+    }
+
+    public static PackedSequence encode(CharSequence sequence) {
+        byte[] packed = new byte[(sequence.length() + 3) / 4];
+        List<Integer> baseRuns = new ArrayList<>();
+        List<Integer> maskRuns = new ArrayList<>();
+        for (int i = 0; i < sequence.length(); i++) {
+            char base = sequence.charAt(i);
+            int code = (base < CODES.length) ? CODES[base] : -1;
+            if (code >= 0) {
+                packed[i >> 2] |= code << (6 - 2 * (i & 3));
+            } else {
+                char upperCaseBase = Character.toUpperCase(base);
+                int last = baseRuns.size() - 3;
+                if (last >= 0 && baseRuns.get(last + 2) == upperCaseBase && baseRuns.get(last) + baseRuns.get(last + 1) == i) {
+                    baseRuns.set(last + 1, baseRuns.get(last + 1) + 1);
+                } else {
+                    baseRuns.add(i);
+                    baseRuns.add(1);
+                    baseRuns.add((int) upperCaseBase);
+                }
+            }
+            if (Character.isLowerCase(base)) {
+                int last = maskRuns.size() - 2;
+                if (last >= 0 && maskRuns.get(last) + maskRuns.get(last + 1) == i) {
+                    maskRuns.set(last + 1, maskRuns.get(last + 1) + 1);
+                } else {
+                    maskRuns.add(i);
+                    maskRuns.add(1);
+                }
+            }
+        }
+        return new PackedSequence(sequence.length(), packed, toArray(baseRuns), toArray(maskRuns));
+    }
+
+    /**
+     * Decodes the bases from 'from', inclusive, to 'to', exclusive, at the end of the StringBuilder.
+     */
+    public void appendTo(StringBuilder sb, int from, int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new IndexOutOfBoundsException("Bases " + from + "-" + to + " out of a sequence of length " + length);
+        }
+        int offset = sb.length() - from;
+        sb.ensureCapacity(sb.length() + to - from);
+        for (int i = from; i < to; i++) {
+            sb.append(BASES[(packed[i >> 2] >> (6 - 2 * (i & 3))) & 3]);
+        }
+        for (int r = 0; r < baseRuns.length; r += 3) {
+            for (int i = Math.max(baseRuns[r], from); i < Math.min(baseRuns[r] + baseRuns[r + 1], to); i++) {
+                sb.setCharAt(offset + i, (char) baseRuns[r + 2]);
+            }
+        }
+        for (int r = 0; r < maskRuns.length; r += 2) {
+            for (int i = Math.max(maskRuns[r], from); i < Math.min(maskRuns[r] + maskRuns[r + 1], to); i++) {
+                sb.setCharAt(offset + i, Character.toLowerCase(sb.charAt(offset + i)));
+            }
+        }
+    }
+
+    public String getSequence() {
+        StringBuilder sb = new StringBuilder(length);
+        appendTo(sb, 0, length);
+        return sb.toString();
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public byte[] getPacked() {
+        return packed;
+    }
+
+    public int[] getBaseRuns() {
+        return baseRuns;
+    }
+
+    public int[] getMaskRuns() {
+        return maskRuns;
+    }
+
+}
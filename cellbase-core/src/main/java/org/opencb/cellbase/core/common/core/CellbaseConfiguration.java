@@ -17,11 +17,31 @@ public class CellbaseConfiguration {
     private int coreChunkSize = 5000;
     private int variationChunkSize = 1000;
     private int genomeSequenceChunkSize = 2000;
+    private long genomeSequenceChunkCacheMaxMemory = 0;
+    private long sequenceStreamingMinLength = 1000000;
+    private int sequenceStreamingMaxConcurrent = 4;
 
     private int conservedRegionChunkSize = 2000;
+    private long geneIntervalIndexMaxMemory = 0;
+    private int annotationThreads = 4;
+    private long proteinSubstitutionScoreCacheMaxMemory = 0;
+    private boolean precomputedAnnotation = false;
+    private int queryThreads = 0;
+    private long queryTimeout = 0;
+    private boolean queryPartialResults = false;
+    private String queryCountPolicy = "exact";
+    private int queryCountCacheMaxEntries = 10000;
+    private long queryCountCacheTimeToLive = 3600000;
+    private int regionQueryBatchSize = 100;
+    private int idQueryBatchSize = 200;
+    private String chunkIdFormat = "string";
+    private long queryResultCacheMaxMemory = 0;
+    private long dataVersionCheckInterval = 60000;
+    private List<String> queryResultCacheEndpoints = new ArrayList<>();
     private Map<String, String> speciesAlias = new HashMap<>();
     private Map<String, Map<String,Species>> availableSpeciesInfo = new HashMap<>();
     private Map<String, Map<String,ConnectionParameters>> availableSpeciesConnection = new HashMap<>();
+    private Map<String, Map<String, String>> genomeSequenceFastaFiles = new HashMap<>();
 
     class ConnectionParameters {
         private String host;
@@ -73,8 +93,46 @@ public class CellbaseConfiguration {
 
     public void setGenomeSequenceChunkSize(int genomeSequenceChunkSize){ this.genomeSequenceChunkSize = genomeSequenceChunkSize; }
 
+    public void setGenomeSequenceChunkCacheMaxMemory(long genomeSequenceChunkCacheMaxMemory) { this.genomeSequenceChunkCacheMaxMemory = genomeSequenceChunkCacheMaxMemory; }
+
+    public void setSequenceStreamingMinLength(long sequenceStreamingMinLength) { this.sequenceStreamingMinLength = sequenceStreamingMinLength; }
+
+    public void setSequenceStreamingMaxConcurrent(int sequenceStreamingMaxConcurrent) { this.sequenceStreamingMaxConcurrent = sequenceStreamingMaxConcurrent; }
+
     public void setConservedRegionChunkSize(int conservedRegionChunkSize) { this.conservedRegionChunkSize = conservedRegionChunkSize; }
 
+    public void setGeneIntervalIndexMaxMemory(long geneIntervalIndexMaxMemory) { this.geneIntervalIndexMaxMemory = geneIntervalIndexMaxMemory; }
+
+    public void setAnnotationThreads(int annotationThreads) { this.annotationThreads = annotationThreads; }
+
+    public void setProteinSubstitutionScoreCacheMaxMemory(long proteinSubstitutionScoreCacheMaxMemory) { this.proteinSubstitutionScoreCacheMaxMemory = proteinSubstitutionScoreCacheMaxMemory; }
+
+    public void setPrecomputedAnnotation(boolean precomputedAnnotation) { this.precomputedAnnotation = precomputedAnnotation; }
+
+    public void setQueryThreads(int queryThreads) { this.queryThreads = queryThreads; }
+
+    public void setQueryTimeout(long queryTimeout) { this.queryTimeout = queryTimeout; }
+
+    public void setQueryPartialResults(boolean queryPartialResults) { this.queryPartialResults = queryPartialResults; }
+
+    public void setQueryCountPolicy(String queryCountPolicy) { this.queryCountPolicy = queryCountPolicy; }
+
+    public void setQueryCountCacheMaxEntries(int queryCountCacheMaxEntries) { this.queryCountCacheMaxEntries = queryCountCacheMaxEntries; }
+
+    public void setQueryCountCacheTimeToLive(long queryCountCacheTimeToLive) { this.queryCountCacheTimeToLive = queryCountCacheTimeToLive; }
+
+    public void setRegionQueryBatchSize(int regionQueryBatchSize) { this.regionQueryBatchSize = regionQueryBatchSize; }
+
+    public void setIdQueryBatchSize(int idQueryBatchSize) { this.idQueryBatchSize = idQueryBatchSize; }
+
+    public void setChunkIdFormat(String chunkIdFormat) { this.chunkIdFormat = chunkIdFormat; }
+
+    public void setQueryResultCacheMaxMemory(long queryResultCacheMaxMemory) { this.queryResultCacheMaxMemory = queryResultCacheMaxMemory; }
+
+    public void setDataVersionCheckInterval(long dataVersionCheckInterval) { this.dataVersionCheckInterval = dataVersionCheckInterval; }
+
+    public void setQueryResultCacheEndpoints(List<String> queryResultCacheEndpoints) { this.queryResultCacheEndpoints = queryResultCacheEndpoints; }
+
     public void addSpeciesInfo(String speciesId, String taxonomy) {
         addSpeciesInfo(speciesId, "default", taxonomy);
     }
@@ -100,6 +158,17 @@ public class CellbaseConfiguration {
                 maxPoolSize, timeout));
     }
 
+    public void addGenomeSequenceFasta(String speciesId, String fastaFile) {
+        addGenomeSequenceFasta(speciesId, "default", fastaFile);
+    }
+
+    public void addGenomeSequenceFasta(String speciesId, String assembly, String fastaFile) {
+        if(!genomeSequenceFastaFiles.containsKey(speciesId)) {
+            genomeSequenceFastaFiles.put(speciesId, new HashMap<String, String>());
+        }
+        genomeSequenceFastaFiles.get(speciesId).put(assembly, fastaFile);
+    }
+
     public void addSpeciesAlias(String al, String species){
         speciesAlias.put(al, species);
     }
@@ -112,10 +181,68 @@ public class CellbaseConfiguration {
 
     public int getGenomeSequenceChunkSize() { return genomeSequenceChunkSize; }
 
+    public long getGenomeSequenceChunkCacheMaxMemory() { return genomeSequenceChunkCacheMaxMemory; }
+
+    public long getSequenceStreamingMinLength() { return sequenceStreamingMinLength; }
+
+    public int getSequenceStreamingMaxConcurrent() { return sequenceStreamingMaxConcurrent; }
+
     public int getConservedRegionChunkSize() { return conservedRegionChunkSize; }
 
+    public long getGeneIntervalIndexMaxMemory() { return geneIntervalIndexMaxMemory; }
+
+    public int getAnnotationThreads() { return annotationThreads; }
+
+    public long getProteinSubstitutionScoreCacheMaxMemory() { return proteinSubstitutionScoreCacheMaxMemory; }
+
+    public boolean isPrecomputedAnnotation() { return precomputedAnnotation; }
+
+    public int getQueryThreads() { return queryThreads; }
+
+    public long getQueryTimeout() { return queryTimeout; }
+
+    public boolean isQueryPartialResults() { return queryPartialResults; }
+
+    public String getQueryCountPolicy() { return queryCountPolicy; }
+
+    public int getQueryCountCacheMaxEntries() { return queryCountCacheMaxEntries; }
+
+    public long getQueryCountCacheTimeToLive() { return queryCountCacheTimeToLive; }
+
+    public int getRegionQueryBatchSize() { return regionQueryBatchSize; }
+
+    public int getIdQueryBatchSize() { return idQueryBatchSize; }
+
+    public String getChunkIdFormat() { return chunkIdFormat; }
+
+    public long getQueryResultCacheMaxMemory() { return queryResultCacheMaxMemory; }
+
+    public long getDataVersionCheckInterval() { return dataVersionCheckInterval; }
+
+    public List<String> getQueryResultCacheEndpoints() { return queryResultCacheEndpoints; }
+
     public String getAlias(String species) { return this.speciesAlias.get(species); }
 
+    /**
+     * @return the local FASTA file genome sequence queries of the species and assembly are served from, null when they
+     * are served from the database
+     */
+    public String getGenomeSequenceFasta(String species, String assembly) {
+        Map<String, String> fastaFiles = this.genomeSequenceFastaFiles.get(species);
+        if(fastaFiles == null) {
+            return null;
+        }
+        if(assembly==null || assembly.trim().equals("")){
+            Map<String, ConnectionParameters> connections = this.availableSpeciesConnection.get(species);
+            if(connections != null && !connections.isEmpty()) {
+                // Same assembly as the default database connection
+                return fastaFiles.get(connections.keySet().iterator().next());
+            }
+            return fastaFiles.values().iterator().next();
+        }
+        return fastaFiles.get(assembly);
+    }
+
     public String getHost(String species, String assembly) {
         if(assembly==null || assembly.trim().equals("")){
             return this.availableSpeciesConnection.get(species).values().iterator().next().getHost();
@@ -0,0 +1,112 @@
+package org.opencb.cellbase.core.common.core;
+
+import com.google.common.io.BaseEncoding;
+import org.opencb.cellbase.core.common.PackedSequence;
+
+/**
+ * Genome sequence chunk with its sequence encoded as a PackedSequence instead of a String. The packed bases are
+ * written in base64 so that chunks can be loaded from JSON by any tool.
+ */
+public class PackedGenomeSequenceChunk {
+
+    private String sequenceName;
+    private String chunkId;
+    private int start;
+    private int end;
+    private String sequenceType;
+    private String assembly;
+    private String encoding = PackedSequence.ENCODING;
+    private int length;
+    private String packed;
+    private int[] baseRuns;
+    private int[] maskRuns;
+
+    public PackedGenomeSequenceChunk(String sequenceName, String chunkId, int start, int end, String sequenceType,
+                                     String assembly, String sequence) {
+        this.sequenceName = sequenceName;
+        this.chunkId = chunkId;
+        this.start = start;
+        this.end = end;
+        this.sequenceType = sequenceType;
+        this.assembly = assembly;
+        setSequence(sequence);
+    }
+
+    public void setSequence(String sequence) {
+        PackedSequence packedSequence = PackedSequence.encode(sequence);
+        this.length = packedSequence.getLength();
+        this.packed = BaseEncoding.base64().encode(packedSequence.getPacked());
+        this.baseRuns = packedSequence.getBaseRuns();
+        this.maskRuns = packedSequence.getMaskRuns();
+    }
+
+
+    public String getSequenceName() {
+        return sequenceName;
+    }
+
+    public void setSequenceName(String sequenceName) {
+        this.sequenceName = sequenceName;
+    }
+
+    public String getChunkId() {
+        return chunkId;
+    }
+
+    public void setChunkId(String chunkId) {
+        this.chunkId = chunkId;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public void setStart(int start) {
+        this.start = start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public void setEnd(int end) {
+        this.end = end;
+    }
+
+    public String getSequenceType() {
+        return sequenceType;
+    }
+
+    public void setSequenceType(String sequenceType) {
+        this.sequenceType = sequenceType;
+    }
+
+    public String getAssembly() {
+        return assembly;
+    }
+
+    public void setAssembly(String assembly) {
+        this.assembly = assembly;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public String getPacked() {
+        return packed;
+    }
+
+    public int[] getBaseRuns() {
+        return baseRuns;
+    }
+
+    public int[] getMaskRuns() {
+        return maskRuns;
+    }
+
+}
@@ -0,0 +1,18 @@
+package org.opencb.cellbase.core.lib.api;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.opencb.datastore.core.QueryOptions;
+import org.opencb.datastore.core.QueryResult;
+
+import java.util.List;
+
+/**
+ * Id queries, the non-blocking ones can be composed with callbacks instead of waiting for each query.
+ */
+public interface AsyncIdDBAdaptor {
+
+    public List<QueryResult> getAllByIdList(List<String> idList, QueryOptions options);
+
+    public ListenableFuture<List<QueryResult>> getAllByIdListAsync(List<String> idList, QueryOptions options);
+
+}
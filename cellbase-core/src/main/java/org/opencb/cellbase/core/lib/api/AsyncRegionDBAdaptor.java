@@ -0,0 +1,19 @@
+package org.opencb.cellbase.core.lib.api;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.opencb.biodata.models.feature.Region;
+import org.opencb.datastore.core.QueryOptions;
+import org.opencb.datastore.core.QueryResult;
+
+import java.util.List;
+
+/**
+ * Region queries, the non-blocking ones can be composed with callbacks instead of waiting for each query.
+ */
+public interface AsyncRegionDBAdaptor {
+
+    public List<QueryResult> getAllByRegionList(List<Region> regions, QueryOptions options);
+
+    public ListenableFuture<List<QueryResult>> getAllByRegionListAsync(List<Region> regions, QueryOptions options);
+
+}
@@ -1,13 +1,14 @@
 package org.opencb.cellbase.core.lib.api.core;
 
 import org.opencb.biodata.models.feature.Region;
+import org.opencb.cellbase.core.lib.api.AsyncRegionDBAdaptor;
 import org.opencb.datastore.core.QueryOptions;
 import org.opencb.datastore.core.QueryResult;
 
 import java.util.List;
 
 
-public interface ConservedRegionDBAdaptor {
+public interface ConservedRegionDBAdaptor extends AsyncRegionDBAdaptor {
 
     public QueryResult getAllByRegion(Region region, QueryOptions options);
 
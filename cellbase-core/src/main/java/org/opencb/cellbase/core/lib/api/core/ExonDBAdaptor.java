@@ -1,6 +1,8 @@
 package org.opencb.cellbase.core.lib.api.core;
 
 import org.opencb.biodata.models.core.Exon;
+import org.opencb.cellbase.core.lib.api.AsyncIdDBAdaptor;
+import org.opencb.cellbase.core.lib.api.AsyncRegionDBAdaptor;
 import org.opencb.cellbase.core.lib.api.FeatureDBAdaptor;
 import org.opencb.datastore.core.QueryOptions;
 import org.opencb.datastore.core.QueryResult;
@@ -8,7 +10,7 @@ import org.opencb.datastore.core.QueryResult;
 import java.util.List;
 
 
-public interface ExonDBAdaptor extends FeatureDBAdaptor {
+public interface ExonDBAdaptor extends FeatureDBAdaptor, AsyncRegionDBAdaptor, AsyncIdDBAdaptor {
 
 
     public QueryResult getAllById(String id, QueryOptions options);
@@ -1,5 +1,7 @@
 package org.opencb.cellbase.core.lib.api.core;
 
+import org.opencb.cellbase.core.lib.api.AsyncIdDBAdaptor;
+import org.opencb.cellbase.core.lib.api.AsyncRegionDBAdaptor;
 import org.opencb.cellbase.core.lib.api.FeatureDBAdaptor;
 import org.opencb.datastore.core.QueryOptions;
 import org.opencb.datastore.core.QueryResult;
@@ -7,7 +9,7 @@ import org.opencb.datastore.core.QueryResult;
 import java.util.List;
 
 
-public interface GeneDBAdaptor extends FeatureDBAdaptor {
+public interface GeneDBAdaptor extends FeatureDBAdaptor, AsyncRegionDBAdaptor, AsyncIdDBAdaptor {
 
 
 	public QueryResult getAllById(String id, QueryOptions options);
@@ -1,20 +1,34 @@
 package org.opencb.cellbase.core.lib.api.core;
 
 import org.opencb.biodata.models.feature.Region;
+import org.opencb.cellbase.core.lib.api.AsyncRegionDBAdaptor;
 import org.opencb.datastore.core.QueryOptions;
 import org.opencb.datastore.core.QueryResult;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 
 
-public interface GenomeSequenceDBAdaptor {
+public interface GenomeSequenceDBAdaptor extends AsyncRegionDBAdaptor {
 
 	
 	public QueryResult getByRegion(String chromosome, int start, int end, QueryOptions options);
 
+	/**
+	 * Sequences are returned in the strand given by the 'strand' option: 1, the default, for the forward strand or -1
+	 * for the reverse complement of the regions.
+	 */
 	public List<QueryResult> getAllByRegionList(List<Region> regions, QueryOptions options);
 
 	public String getRevComp(String sequence);
 
+	/**
+	 * Writes the bases of the region in the given strand as they are read, so that memory does not grow with the
+	 * size of the region. Unlike getAllByRegionList, regions beyond the end of the sequence are truncated.
+	 * @return the number of bases written, from the region start or 1 when the start is below 1
+	 */
+	public long writeRegion(Region region, int strand, Writer writer) throws IOException;
+
 	
 }
@@ -2,6 +2,8 @@ package org.opencb.cellbase.core.lib.api.regulatory;
 
 import org.opencb.biodata.models.feature.Region;
 import org.opencb.cellbase.core.common.Position;
+import org.opencb.cellbase.core.lib.api.AsyncIdDBAdaptor;
+import org.opencb.cellbase.core.lib.api.AsyncRegionDBAdaptor;
 import org.opencb.cellbase.core.lib.api.FeatureDBAdaptor;
 import org.opencb.datastore.core.QueryOptions;
 import org.opencb.datastore.core.QueryResult;
@@ -16,7 +18,7 @@ import java.util.List;
  * To change this template use File | Settings | File Templates.
  */
 
-public interface RegulatoryRegionDBAdaptor extends FeatureDBAdaptor {
+public interface RegulatoryRegionDBAdaptor extends FeatureDBAdaptor, AsyncRegionDBAdaptor, AsyncIdDBAdaptor {
 
     public QueryResult getAllById(String id, QueryOptions options);
 
@@ -3,6 +3,7 @@ package org.opencb.cellbase.core.lib.api.variation;
 import org.opencb.biodata.models.feature.Region;
 import org.opencb.biodata.models.variation.GenomicVariant;
 import org.opencb.cellbase.core.common.Position;
+import org.opencb.cellbase.core.lib.api.AsyncRegionDBAdaptor;
 import org.opencb.datastore.core.QueryOptions;
 import org.opencb.datastore.core.QueryResult;
 
@@ -11,7 +12,7 @@ import java.util.List;
 /**
  * Created by antonior on 11/18/14.
  */
-public interface ClinicalDBAdaptor {
+public interface ClinicalDBAdaptor extends AsyncRegionDBAdaptor {
 
 
     public QueryResult getAllByPosition(String chromosome, int position, QueryOptions options);
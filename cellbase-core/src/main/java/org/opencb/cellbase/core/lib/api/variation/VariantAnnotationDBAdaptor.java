@@ -1,5 +1,6 @@
 package org.opencb.cellbase.core.lib.api.variation;
 
+import org.opencb.biodata.models.variant.annotation.VariantAnnotation;
 import org.opencb.biodata.models.variation.GenomicVariant;
 import org.opencb.cellbase.core.lib.api.core.ConservedRegionDBAdaptor;
 import org.opencb.cellbase.core.lib.api.core.GeneDBAdaptor;
@@ -26,6 +27,8 @@ public interface VariantAnnotationDBAdaptor {
 
     public List<QueryResult> getAnnotationByVariantList(List<GenomicVariant> variantList, QueryOptions queryOptions);
 
+    public int insertPrecomputedAnnotations(List<VariantAnnotation> variantAnnotations);
+
     public VariationDBAdaptor getVariationDBAdaptor();
 
     public void setVariationDBAdaptor(VariationDBAdaptor variationDBAdaptor);
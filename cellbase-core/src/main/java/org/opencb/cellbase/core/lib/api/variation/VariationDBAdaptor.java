@@ -3,6 +3,8 @@ package org.opencb.cellbase.core.lib.api.variation;
 import org.opencb.biodata.models.feature.Region;
 import org.opencb.biodata.models.variation.GenomicVariant;
 import org.opencb.cellbase.core.common.Position;
+import org.opencb.cellbase.core.lib.api.AsyncIdDBAdaptor;
+import org.opencb.cellbase.core.lib.api.AsyncRegionDBAdaptor;
 import org.opencb.datastore.core.QueryOptions;
 import org.opencb.datastore.core.QueryResult;
 
@@ -10,7 +12,7 @@ import javax.management.Query;
 import java.util.List;
 
 
-public interface VariationDBAdaptor {
+public interface VariationDBAdaptor extends AsyncRegionDBAdaptor, AsyncIdDBAdaptor {
 
 	
     public QueryResult getById(String id, QueryOptions options);
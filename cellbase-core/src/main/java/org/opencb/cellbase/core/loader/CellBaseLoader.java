@@ -20,6 +20,7 @@ public abstract class CellBaseLoader implements Callable<Integer> {
     public static final String CELLBASE_DEFAULT_DATABASE_NAME = "cellbase";
     public static final String CELLBASE_USER = "user";
     public static final String CELLBASE_PASSWORD = "password";
+    public static final String CELLBASE_CHUNK_ID_FORMAT = "chunkIdFormat";
 
     protected final BlockingQueue<List<String>> queue;
     protected final Logger logger;
@@ -35,6 +36,14 @@ public abstract class CellBaseLoader implements Callable<Integer> {
 
     public abstract void init() throws LoaderException;
 
+    /**
+     * Called on one of the loaders once all of them have finished loading, e.g. to build summaries of the loaded
+     * data. Does nothing by default.
+     * @param loaders all the loaders of the load, this one included
+     */
+    public void postLoad(List<CellBaseLoader> loaders) throws LoaderException {
+    }
+
     public abstract void disconnect();
 
     @Override
@@ -0,0 +1,34 @@
+package org.opencb.cellbase.core.loader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/**
+ * Converts in place the string chunk ids of an already loaded database into numeric chunk ids, see
+ * {@link org.opencb.cellbase.core.common.ChunkId}. Connection parameters are the ones of CellBaseLoader.
+ */
+public abstract class ChunkIdMigrator {
+
+    protected final Logger logger;
+    protected Map<String, String> params;
+
+    public ChunkIdMigrator(Map<String, String> params) {
+        this.params = params;
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    public abstract void init() throws LoaderException;
+
+    /**
+     * Migrates the chunk ids of a collection, logging the size of its chunk id index and the mean time of
+     * numBenchmarkQueries chunk id queries before and after the migration.
+     *
+     * @return the number of migrated documents
+     */
+    public abstract long migrate(String collection, int numBenchmarkQueries) throws LoaderException;
+
+    public abstract void disconnect();
+
+}
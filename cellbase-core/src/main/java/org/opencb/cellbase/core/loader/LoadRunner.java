@@ -53,12 +53,17 @@ public class LoadRunner {
         try {
             List<CellBaseLoader> consumers = createConsumers();
             ExecutorService executorService = Executors.newFixedThreadPool(consumersNumber);
-            List<Future<Integer>> futures = startConsumers(executorService, consumers);
-            int inputRecords = readInputJsonFile();
-            int loadedRecords = getLoadedRecords(futures);
-            disconnectConsumers(consumers);
-            this.checkLoadedRecords(inputRecords, loadedRecords);
-            executorService.shutdown();
+            try {
+                List<Future<Integer>> futures = startConsumers(executorService, consumers);
+                int inputRecords = readInputJsonFile();
+                int loadedRecords = getLoadedRecords(futures);
+                consumers.get(0).postLoad(consumers);
+                this.checkLoadedRecords(inputRecords, loadedRecords);
+            } finally {
+                // Pool threads are not daemon ones, they would keep the JVM running after a failed load
+                disconnectConsumers(consumers);
+                executorService.shutdown();
+            }
         } catch (LoaderException e) {
             logger.error("Error executing Load: " + e.getMessage());
         }
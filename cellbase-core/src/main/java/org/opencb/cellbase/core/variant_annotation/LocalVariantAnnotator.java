@@ -0,0 +1,38 @@
+package org.opencb.cellbase.core.variant_annotation;
+
+import org.opencb.biodata.models.variant.annotation.VariantAnnotation;
+import org.opencb.biodata.models.variation.GenomicVariant;
+import org.opencb.cellbase.core.lib.api.variation.VariantAnnotationDBAdaptor;
+import org.opencb.datastore.core.QueryOptions;
+import org.opencb.datastore.core.QueryResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Annotates variants in-process by querying the database directly through a VariantAnnotationDBAdaptor, no web
+ * services are involved.
+ */
+public class LocalVariantAnnotator extends VariantAnnotator {
+
+    private VariantAnnotationDBAdaptor variantAnnotationDBAdaptor;
+
+    public LocalVariantAnnotator(BlockingQueue<SequencedBatch<GenomicVariant>> variantQueue,
+                                 BlockingQueue<SequencedBatch<VariantAnnotation>> variantAnnotationQueue,
+                                 VariantAnnotationDBAdaptor variantAnnotationDBAdaptor) {
+        super(variantQueue, variantAnnotationQueue);
+        this.variantAnnotationDBAdaptor = variantAnnotationDBAdaptor;
+    }
+
+    @Override
+    protected List<VariantAnnotation> annotate(List<GenomicVariant> batch) {
+        logger.info("Annotator queries the database for " + batch.size() + " new variants");
+        List<QueryResult> queryResults = variantAnnotationDBAdaptor.getAnnotationByVariantList(batch, new QueryOptions());
+        List<VariantAnnotation> variantAnnotationList = new ArrayList<>(batch.size());
+        for (QueryResult queryResult : queryResults) {
+            variantAnnotationList.add((VariantAnnotation) queryResult.getResult().get(0));
+        }
+        return variantAnnotationList;
+    }
+}
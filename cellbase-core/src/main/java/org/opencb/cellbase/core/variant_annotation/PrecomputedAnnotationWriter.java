@@ -0,0 +1,62 @@
+package org.opencb.cellbase.core.variant_annotation;
+
+import org.opencb.biodata.models.variant.annotation.VariantAnnotation;
+import org.opencb.cellbase.core.lib.api.variation.VariantAnnotationDBAdaptor;
+import org.opencb.commons.io.DataWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stores annotations into the precomputed annotation store of a VariantAnnotationDBAdaptor, annotations already
+ * stored are skipped.
+ */
+public class PrecomputedAnnotationWriter implements DataWriter<VariantAnnotation> {
+
+    private VariantAnnotationDBAdaptor variantAnnotationDBAdaptor;
+    private long insertedAnnotations;
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public PrecomputedAnnotationWriter(VariantAnnotationDBAdaptor variantAnnotationDBAdaptor) {
+        this.variantAnnotationDBAdaptor = variantAnnotationDBAdaptor;
+    }
+
+    @Override
+    public boolean open() {
+        return true;
+    }
+
+    @Override
+    public boolean close() {
+        return true;
+    }
+
+    @Override
+    public boolean pre() {
+        insertedAnnotations = 0;
+        return true;
+    }
+
+    @Override
+    public boolean post() {
+        logger.info(insertedAnnotations + " annotations inserted into the precomputed annotation store");
+        return true;
+    }
+
+    @Override
+    public boolean write(VariantAnnotation variantAnnotation) {
+        return write(Collections.singletonList(variantAnnotation));
+    }
+
+    @Override
+    public boolean write(List<VariantAnnotation> batch) {
+        insertedAnnotations += variantAnnotationDBAdaptor.insertPrecomputedAnnotations(batch);
+        return true;
+    }
+
+    public long getInsertedAnnotations() {
+        return insertedAnnotations;
+    }
+}
@@ -0,0 +1,30 @@
+package org.opencb.cellbase.core.variant_annotation;
+
+import java.util.List;
+
+/**
+ * Batch of records tagged with its position in the input file, so that batches annotated in parallel can be
+ * written back in input order.
+ */
+public class SequencedBatch<T> {
+
+    private final long sequenceNumber;
+    private final List<T> items;
+
+    public SequencedBatch(long sequenceNumber, List<T> items) {
+        this.sequenceNumber = sequenceNumber;
+        this.items = items;
+    }
+
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public int size() {
+        return items.size();
+    }
+}
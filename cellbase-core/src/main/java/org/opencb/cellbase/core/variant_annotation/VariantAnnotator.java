@@ -9,6 +9,7 @@ import org.opencb.datastore.core.QueryResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
@@ -19,13 +20,13 @@ import java.util.concurrent.Callable;
  */
 public class VariantAnnotator implements Callable<Integer> {
 
-    private Logger logger;
-    private BlockingQueue<List<GenomicVariant>> variantQueue;
-    private BlockingQueue<List<VariantAnnotation>> variantAnnotationQueue;
+    protected Logger logger;
+    private BlockingQueue<SequencedBatch<GenomicVariant>> variantQueue;
+    private BlockingQueue<SequencedBatch<VariantAnnotation>> variantAnnotationQueue;
     private CellBaseClient cellBaseClient;
 
-    public VariantAnnotator(BlockingQueue<List<GenomicVariant>> variantQueue,
-                            BlockingQueue<List<VariantAnnotation>> variantAnnotationQueue, CellBaseClient cellBaseClient) {
+    public VariantAnnotator(BlockingQueue<SequencedBatch<GenomicVariant>> variantQueue,
+                            BlockingQueue<SequencedBatch<VariantAnnotation>> variantAnnotationQueue, CellBaseClient cellBaseClient) {
 
         this.variantQueue = variantQueue;
         this.variantAnnotationQueue = variantAnnotationQueue;
@@ -33,6 +34,11 @@ public class VariantAnnotator implements Callable<Integer> {
         logger = LoggerFactory.getLogger(this.getClass());
     }
 
+    protected VariantAnnotator(BlockingQueue<SequencedBatch<GenomicVariant>> variantQueue,
+                               BlockingQueue<SequencedBatch<VariantAnnotation>> variantAnnotationQueue) {
+        this(variantQueue, variantAnnotationQueue, null);
+    }
+
     @Override
     public Integer call() {
         Integer annotatedObjects = 0;
@@ -40,29 +46,26 @@ public class VariantAnnotator implements Callable<Integer> {
         while (!finished) {
             try {
                 logger.info("Annotator waits for new variants");
-                List<GenomicVariant> batch = variantQueue.take();
+                SequencedBatch<GenomicVariant> batch = variantQueue.take();
                 logger.info("Annotator receives " + batch.size() + " new variants");
                 if (batch == VariantAnnotatorRunner.VARIANT_POISON_PILL) {
                     logger.info("Annotator finishes");
                     finished = true;
                 } else {
-                    logger.info("Annotator sends " + batch.size() + " new variants for annotation. Waiting for the result.");
-                    QueryResponse<QueryResult<VariantAnnotation>> response =
-                            cellBaseClient.getFullAnnotation(CellBaseClient.Category.genomic,
-//                                    CellBaseClient.SubCategory.variant, batch, new QueryOptions());
-                                    CellBaseClient.SubCategory.variant, batch, new QueryOptions("post",true));
-                    List<VariantAnnotation> variantAnnotationList = new ArrayList<>(batch.size());
-                    for (QueryResult<VariantAnnotation> queryResult : response.getResponse()) {
-                        variantAnnotationList.add(queryResult.getResult().get(0));
+                    List<VariantAnnotation> variantAnnotationList;
+                    try {
+                        variantAnnotationList = annotate(batch.getItems());
+                    } catch (Exception e) {
+                        // An empty batch is still queued so that the writer does not wait for it
+                        logger.error("Error annotating batch " + batch.getSequenceNumber() + ": " + e.getMessage());
+                        variantAnnotationList = new ArrayList<>(0);
                     }
                     logger.info("Annotator queues for writing "+batch.size()+" new variants and their annotation");
-                    variantAnnotationQueue.put(variantAnnotationList);
+                    variantAnnotationQueue.put(new SequencedBatch<>(batch.getSequenceNumber(), variantAnnotationList));
                     annotatedObjects += variantAnnotationList.size();
                 }
             } catch (InterruptedException e) {
                 logger.error("Annotator thread interrupted: " + e.getMessage());
-            } catch (Exception e) {
-                logger.error("Error annotating batch: " + e.getMessage());
             }
         }
         logger.debug("'annotation' finished. " + annotatedObjects + " records annotated");
@@ -75,4 +78,20 @@ public class VariantAnnotator implements Callable<Integer> {
         return annotatedObjects;
 
     }
+
+    /**
+     * Annotates a batch of variants through the CellBase web services
+     */
+    protected List<VariantAnnotation> annotate(List<GenomicVariant> batch) throws IOException {
+        logger.info("Annotator sends " + batch.size() + " new variants for annotation. Waiting for the result.");
+        QueryResponse<QueryResult<VariantAnnotation>> response =
+                cellBaseClient.getFullAnnotation(CellBaseClient.Category.genomic,
+//                        CellBaseClient.SubCategory.variant, batch, new QueryOptions());
+                        CellBaseClient.SubCategory.variant, batch, new QueryOptions("post",true));
+        List<VariantAnnotation> variantAnnotationList = new ArrayList<>(batch.size());
+        for (QueryResult<VariantAnnotation> queryResult : response.getResponse()) {
+            variantAnnotationList.add(queryResult.getResult().get(0));
+        }
+        return variantAnnotationList;
+    }
 }
@@ -7,12 +7,17 @@ import org.opencb.biodata.formats.variant.vcf4.io.VcfRawReader;
 import org.opencb.biodata.models.variant.annotation.VariantAnnotation;
 import org.opencb.biodata.models.variation.GenomicVariant;
 import org.opencb.cellbase.core.client.CellBaseClient;
+import org.opencb.cellbase.core.lib.api.variation.VariantAnnotationDBAdaptor;
+import org.opencb.commons.io.DataWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.*;
 
 /**
@@ -24,14 +29,25 @@ public class VariantAnnotatorRunner {
     private final Path outputFile;
     private static final int QUEUE_CAPACITY = 10;
     public static final int BATCH_SIZE = 1000;
+    public static final int DEFAULT_REORDER_BUFFER_SIZE = 4 * QUEUE_CAPACITY;
     private final Logger logger;
-    protected BlockingQueue<List<GenomicVariant>> variantQueue;
-    protected BlockingQueue<List<VariantAnnotation>> variantAnnotationQueue;
-    public static final List<GenomicVariant> VARIANT_POISON_PILL = new ArrayList<>();
-    public static final List<VariantAnnotation> ANNOTATION_POISON_PILL = new ArrayList<>();
+    protected BlockingQueue<SequencedBatch<GenomicVariant>> variantQueue;
+    protected BlockingQueue<SequencedBatch<VariantAnnotation>> variantAnnotationQueue;
+    public static final SequencedBatch<GenomicVariant> VARIANT_POISON_PILL =
+            new SequencedBatch<>(-1, new ArrayList<GenomicVariant>(0));
+    public static final SequencedBatch<VariantAnnotation> ANNOTATION_POISON_PILL =
+            new SequencedBatch<>(-1, new ArrayList<VariantAnnotation>(0));
     private final int threadsNumber;
     private int annotatorsNumber;
+    private int reorderBufferSize = DEFAULT_REORDER_BUFFER_SIZE;
+    private DataWriter<VariantAnnotation> variantAnnotationWriter;
+    /**
+     * One permit per batch read but not yet written. The reader blocks when reorderBufferSize batches are in flight,
+     * which bounds the number of batches the writer may have to hold until the next one in input order arrives.
+     */
+    private Semaphore batchesInFlight;
     CellBaseClient cellBaseClient;
+    VariantAnnotationDBAdaptor variantAnnotationDBAdaptor;
 
     public VariantAnnotatorRunner(Path inputFile, Path outputFile, CellBaseClient cellBaseClient, int threadsNumber) {
         logger = LoggerFactory.getLogger(this.getClass());
@@ -43,7 +59,17 @@ public class VariantAnnotatorRunner {
         this.threadsNumber = threadsNumber;
     }
 
+    /**
+     * Variants will be annotated in-process through the given adaptor instead of calling the web services
+     */
+    public VariantAnnotatorRunner(Path inputFile, Path outputFile, VariantAnnotationDBAdaptor variantAnnotationDBAdaptor,
+                                  int threadsNumber) {
+        this(inputFile, outputFile, (CellBaseClient) null, threadsNumber);
+        this.variantAnnotationDBAdaptor = variantAnnotationDBAdaptor;
+    }
+
     public void run() throws ExecutionException, InterruptedException {
+        batchesInFlight = new Semaphore(reorderBufferSize);
         VariantAnnotationWriterThread variantAnnotationWriterThread = new VariantAnnotationWriterThread(outputFile, variantAnnotationQueue);
         List<VariantAnnotator> variantAnnotatorList = createVariantAnnotators();
         ExecutorService annotatorExecutorService = Executors.newFixedThreadPool(annotatorsNumber);
@@ -64,7 +90,12 @@ public class VariantAnnotatorRunner {
 
         List<VariantAnnotator> variantAnnotatorList = new ArrayList<>();
         for (int i=0; i < annotatorsNumber; i++) {
-            variantAnnotatorList.add(new VariantAnnotator(variantQueue, variantAnnotationQueue, cellBaseClient));
+            if (variantAnnotationDBAdaptor != null) {
+                variantAnnotatorList.add(new LocalVariantAnnotator(variantQueue, variantAnnotationQueue,
+                        variantAnnotationDBAdaptor));
+            } else {
+                variantAnnotatorList.add(new VariantAnnotator(variantQueue, variantAnnotationQueue, cellBaseClient));
+            }
         }
         logger.debug(annotatorsNumber + " annotator threads created");
         return variantAnnotatorList;
@@ -86,10 +117,12 @@ public class VariantAnnotatorRunner {
             vcfReader.pre();
             List<VcfRecord> vcfBatch = vcfReader.read(BATCH_SIZE);
             List<GenomicVariant> variantBatch;
+            long sequenceNumber = 0;
             try {
                 while (!vcfBatch.isEmpty()) {
                     variantBatch = convertVcfRecordsToGenomicVariants(vcfBatch);
-                    variantQueue.put(variantBatch);
+                    batchesInFlight.acquire();
+                    variantQueue.put(new SequencedBatch<>(sequenceNumber++, variantBatch));
                     inputFileRecords += variantBatch.size();
                     logger.info(inputFileRecords + " variants queued for annotation");
                     vcfBatch = vcfReader.read(BATCH_SIZE);
@@ -150,6 +183,25 @@ public class VariantAnnotatorRunner {
         return new GenomicVariant(vcfRecord.getChromosome(), ensemblPos, ref, alt);
     }
 
+    /**
+     * @param reorderBufferSize maximum number of batches read and not yet written, at least 1
+     */
+    public void setReorderBufferSize(int reorderBufferSize) {
+        this.reorderBufferSize = Math.max(1, reorderBufferSize);
+    }
+
+    public int getReorderBufferSize() {
+        return reorderBufferSize;
+    }
+
+    /**
+     * @param variantAnnotationWriter writer used instead of the VEP format writer of outputFile, e.g. a
+     *                                PrecomputedAnnotationWriter
+     */
+    public void setVariantAnnotationWriter(DataWriter<VariantAnnotation> variantAnnotationWriter) {
+        this.variantAnnotationWriter = variantAnnotationWriter;
+    }
+
     private int getAnnotatedRecords(List<Future<Integer>> futures) throws InterruptedException, ExecutionException {
         int writtenRecords = 0;
         for (Future<Integer> future : futures) {
@@ -172,19 +224,20 @@ public class VariantAnnotatorRunner {
     }
 
     private class VariantAnnotationWriterThread implements Callable<Integer>{
-        private final BlockingQueue<List<VariantAnnotation>> queue;
+        private final BlockingQueue<SequencedBatch<VariantAnnotation>> queue;
         private Path outputFile;
-        private VepFormatWriter vepWriter;
+        private DataWriter<VariantAnnotation> vepWriter;
 
-        public VariantAnnotationWriterThread(Path outputFile, BlockingQueue<List<VariantAnnotation>> queue) {
+        public VariantAnnotationWriterThread(Path outputFile, BlockingQueue<SequencedBatch<VariantAnnotation>> queue) {
             this.outputFile = outputFile;
             this.queue = queue;
         }
 
         private void pre() {
-            this.vepWriter = new VepFormatWriter(outputFile.toString());
+            this.vepWriter = (variantAnnotationWriter != null)
+                    ? variantAnnotationWriter : new VepFormatWriter(outputFile.toString());
             if(!this.vepWriter.open()) {
-                logger.error("Error opening output file: "+outputFile.toString());
+                logger.error("Error opening output: " + ((outputFile != null) ? outputFile.toString() : vepWriter));
             }
             this.vepWriter.pre();
         }
@@ -194,16 +247,22 @@ public class VariantAnnotatorRunner {
             this.vepWriter.close();
         }
 
+        /**
+         * Batches are written in input order, batches annotated ahead of the next one to write wait in
+         * pendingBatches
+         */
         @Override
         public Integer call() {
             this.pre();
             Integer writtenObjects = 0;
             Integer finishedAnnotators = 0;
             boolean finished = false;
+            long nextSequenceNumber = 0;
+            Map<Long, SequencedBatch<VariantAnnotation>> pendingBatches = new HashMap<>(reorderBufferSize * 2);
             while (!finished) {
                 try {
                     logger.info("Writer waits for new variants/annotations");
-                    List<VariantAnnotation> batch = queue.take();
+                    SequencedBatch<VariantAnnotation> batch = queue.take();
                     logger.info("Writer receives " + batch.size() + " variants/annotations");
                     if (batch == VariantAnnotatorRunner.ANNOTATION_POISON_PILL) {
                         finishedAnnotators++;
@@ -212,21 +271,40 @@ public class VariantAnnotatorRunner {
                             finished = true;
                         }
                     } else {
-                        logger.info("Writer calls vepWriter for " + batch.size() + " variants/annotations");
-                        vepWriter.write(batch);
-                        writtenObjects += batch.size();
-                        logger.info("Annotation written for " + writtenObjects + " variants");
+                        pendingBatches.put(batch.getSequenceNumber(), batch);
+                        while (pendingBatches.containsKey(nextSequenceNumber)) {
+                            writtenObjects += write(pendingBatches.remove(nextSequenceNumber++));
+                        }
                     }
                 } catch (InterruptedException e) {
                     logger.error("Writer thread interrupted: " + e.getMessage());
-                } catch (Exception e) {
-                    logger.error("Error Loading batch: " + e.getMessage());
+                }
+            }
+            if (!pendingBatches.isEmpty()) {
+                logger.warn(pendingBatches.size() + " annotated batches could not be written in order, batch "
+                        + nextSequenceNumber + " is missing");
+                for (SequencedBatch<VariantAnnotation> batch : new TreeMap<>(pendingBatches).values()) {
+                    writtenObjects += write(batch);
                 }
             }
             logger.debug("'writing' finished. " + writtenObjects + " records written");
             this.post();
             return writtenObjects;
         }
+
+        private int write(SequencedBatch<VariantAnnotation> batch) {
+            try {
+                logger.info("Writer calls vepWriter for " + batch.size() + " variants/annotations");
+                vepWriter.write(batch.getItems());
+                logger.info("Annotation written for batch " + batch.getSequenceNumber());
+                return batch.size();
+            } catch (Exception e) {
+                logger.error("Error Loading batch: " + e.getMessage());
+                return 0;
+            } finally {
+                batchesInFlight.release();
+            }
+        }
     }
 
 }
@@ -0,0 +1,35 @@
+package org.opencb.cellbase.core.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChunkIdTest {
+
+    @Test
+    public void numericChunkIds() {
+        long chunkId = ChunkId.getNumericChunkId("13", 123456, 5000);
+        assertEquals(13, ChunkId.getChromosomeCode(chunkId));
+        assertEquals(5000, ChunkId.getChunkSize(chunkId));
+        assertEquals(123456, ChunkId.getChunkNumber(chunkId));
+        assertEquals(chunkId, ChunkId.getNumericChunkId(ChunkId.getChunkId("13", 123456, 5000)));
+        assertEquals(chunkId, ChunkId.getNumericChunkId("chr13", 123456, 5000));
+        assertNotEquals(chunkId, ChunkId.getNumericChunkId("13", 123456, 2000));
+    }
+
+    @Test
+    public void chromosomeCodes() {
+        assertEquals(ChunkId.getChromosomeCode("MT"), ChunkId.getChromosomeCode("chrM"));
+        assertNotEquals(ChunkId.getChromosomeCode("X"), ChunkId.getChromosomeCode("Y"));
+        int scaffoldCode = ChunkId.getChromosomeCode("HSCHR6_MHC_COX");
+        assertTrue(scaffoldCode > ChunkId.getChromosomeCode("MT") && scaffoldCode < 65536);
+        // Chromosome names with '_' are parsed from string chunk ids
+        assertEquals(scaffoldCode, ChunkId.getChromosomeCode(ChunkId.getNumericChunkId("HSCHR6_MHC_COX_12_2k")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notStringChunkId() {
+        ChunkId.getNumericChunkId("1_123");
+    }
+
+}
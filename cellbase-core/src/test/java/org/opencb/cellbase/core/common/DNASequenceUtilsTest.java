@@ -0,0 +1,81 @@
+package org.opencb.cellbase.core.common;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DNASequenceUtilsTest {
+
+    @Test
+    public void reverseComplement() {
+        assertEquals("", DNASequenceUtils.reverseComplement(""));
+        assertEquals("ACGT", DNASequenceUtils.reverseComplement("ACGT"));
+        assertEquals("NNCAT", DNASequenceUtils.reverseComplement("ATGNN"));
+        assertEquals("acgTTY", DNASequenceUtils.reverseComplement("RAAcgt"));
+        assertEquals("BDHVKMSW-", DNASequenceUtils.reverseComplement("-WSKMBDHV"));
+        assertEquals("TGCA", DNASequenceUtils.reverseComplement(new StringBuilder("TGCA")));
+    }
+
+    @Test
+    public void complement() {
+        assertEquals("TGCAN", DNASequenceUtils.complement("ACGTN"));
+        assertEquals("tgcaYR", DNASequenceUtils.complement("acgtRY"));
+    }
+
+    /**
+     * The eight chained String.replace calls previously used to complement sequences, reversed first
+     */
+    private static String chainedReplaceReverseComplement(String sequence) {
+        sequence = new StringBuilder(sequence).reverse().toString();
+        sequence = sequence.replace("A", "1");
+        sequence = sequence.replace("T", "2");
+        sequence = sequence.replace("C", "3");
+        sequence = sequence.replace("G", "4");
+        sequence = sequence.replace("1", "T");
+        sequence = sequence.replace("2", "A");
+        sequence = sequence.replace("3", "G");
+        sequence = sequence.replace("4", "C");
+        return sequence;
+    }
+
+    /**
+     * Rough comparison of the lookup table reverse complement against chained String.replace calls for 100bp to 10Mb
+     * sequences, not run by default
+     */
+    @Ignore
+    @Test
+    public void benchmarkReverseComplement() {
+        Random random = new Random(42);
+        int[] lengths = {100, 10000, 1000000, 10000000};
+        for (int length : lengths) {
+            char[] bases = new char[length];
+            for (int i = 0; i < length; i++) {
+                bases[i] = "ACGT".charAt(random.nextInt(4));
+            }
+            String sequence = new String(bases);
+            int iterations = Math.max(20000000 / length, 5);
+            assertEquals(chainedReplaceReverseComplement(sequence), DNASequenceUtils.reverseComplement(sequence));
+
+            // The first round is a warm up
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    chainedReplaceReverseComplement(sequence);
+                }
+                long replaceTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    DNASequenceUtils.reverseComplement(sequence);
+                }
+                long tableTime = System.nanoTime() - start;
+                System.out.println(length + "bp: String.replace " + replaceTime / 1000 / iterations
+                        + " us/sequence, table " + tableTime / 1000 / iterations + " us/sequence");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+package org.opencb.cellbase.core.common;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GeneticCodeTest {
+
+    private static final String NTS = "ACGT";
+
+    @Test
+    public void aminoacids() {
+        assertEquals("MET", GeneticCode.getAminoacid(GeneticCode.encodeCodon('A', 'T', 'G')));
+        assertEquals("TRP", GeneticCode.getAminoacid(GeneticCode.encodeCodon("TGG", 0)));
+        assertEquals("LEU", GeneticCode.getAminoacid(GeneticCode.encodeCodon("xxCTG", 2)));
+        assertEquals("STOP", GeneticCode.getAminoacid(GeneticCode.encodeCodon('T', 'A', 'G')));
+        assertEquals("SER", GeneticCode.getAminoacid(GeneticCode.encodeCodon('a', 'g', 'c')));
+    }
+
+    @Test
+    public void allCodonsAreCoded() {
+        for (char nt1 : NTS.toCharArray()) {
+            for (char nt2 : NTS.toCharArray()) {
+                for (char nt3 : NTS.toCharArray()) {
+                    int codon = GeneticCode.encodeCodon(nt1, nt2, nt3);
+                    assertTrue(codon >= 0 && codon < 64);
+                    assertNotNull(GeneticCode.getAminoacid(codon));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void invalidCodons() {
+        assertEquals(GeneticCode.INVALID_CODON, GeneticCode.encodeCodon('A', 'N', 'G'));
+        assertEquals(GeneticCode.INVALID_CODON, GeneticCode.encodeCodon('-', 'A', 'A'));
+        assertEquals(GeneticCode.INVALID_CODON, GeneticCode.encodeCodon('A', 'A', '\u00C1'));
+        assertNull(GeneticCode.getAminoacid(GeneticCode.INVALID_CODON));
+        assertFalse(GeneticCode.isStopCodon(GeneticCode.INVALID_CODON));
+        assertFalse(GeneticCode.isSynonymous(GeneticCode.INVALID_CODON, GeneticCode.INVALID_CODON));
+    }
+
+    @Test
+    public void stopCodons() {
+        assertTrue(GeneticCode.isStopCodon(GeneticCode.encodeCodon("TAA", 0)));
+        assertTrue(GeneticCode.isStopCodon(GeneticCode.encodeCodon("TGA", 0)));
+        assertTrue(GeneticCode.isStopCodon(GeneticCode.encodeCodon("TAG", 0)));
+        assertFalse(GeneticCode.isStopCodon(GeneticCode.encodeCodon("TGG", 0)));
+    }
+
+    @Test
+    public void synonymousCodons() {
+        assertTrue(GeneticCode.isSynonymous(GeneticCode.encodeCodon("CGT", 0), GeneticCode.encodeCodon("AGG", 0)));
+        assertTrue(GeneticCode.isSynonymous(GeneticCode.encodeCodon("TAA", 0), GeneticCode.encodeCodon("TGA", 0)));
+        assertTrue(GeneticCode.isSynonymous(GeneticCode.encodeCodon("ATG", 0), GeneticCode.encodeCodon("ATG", 0)));
+        assertFalse(GeneticCode.isSynonymous(GeneticCode.encodeCodon("ATG", 0), GeneticCode.encodeCodon("ATA", 0)));
+    }
+
+    @Test
+    public void complement() {
+        assertEquals('T', DNASequenceUtils.complement('A'));
+        assertEquals('g', DNASequenceUtils.complement('c'));
+        assertEquals('Y', DNASequenceUtils.complement('R'));
+        assertEquals('N', DNASequenceUtils.complement('N'));
+        assertEquals('-', DNASequenceUtils.complement('-'));
+    }
+
+    /**
+     * Rough comparison against the String-keyed maps previously used by the annotation engine, not run by default
+     */
+    @Ignore
+    @Test
+    public void benchmarkSynonymousLookup() {
+        Map<String, String> codonToAminoacid = new HashMap<>();
+        Map<String, Map<String, Boolean>> isSynonymousCodon = new HashMap<>();
+        String[] codons = new String[64];
+        for (int i = 0; i < 64; i++) {
+            codons[i] = "" + NTS.charAt(i >> 4) + NTS.charAt((i >> 2) & 3) + NTS.charAt(i & 3);
+            codonToAminoacid.put(codons[i], GeneticCode.getAminoacid(i));
+        }
+        for (String codon1 : codons) {
+            isSynonymousCodon.put(codon1, new HashMap<String, Boolean>());
+            for (String codon2 : codons) {
+                isSynonymousCodon.get(codon1).put(codon2, codonToAminoacid.get(codon1).equals(codonToAminoacid.get(codon2)));
+            }
+        }
+
+        int iterations = 10000000;
+        char[] codonArray = new char[3];
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            int synonymous = 0;
+            for (int i = 0; i < iterations; i++) {
+                codons[i & 63].getChars(0, 3, codonArray, 0);
+                codonArray[i % 3] = NTS.charAt(i & 3);
+                if (isSynonymousCodon.get(codons[i & 63]).get(String.valueOf(codonArray))) {
+                    synonymous++;
+                }
+            }
+            long mapTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int synonymous2 = 0;
+            for (int i = 0; i < iterations; i++) {
+                codons[i & 63].getChars(0, 3, codonArray, 0);
+                codonArray[i % 3] = NTS.charAt(i & 3);
+                if (GeneticCode.isSynonymous(GeneticCode.encodeCodon(codons[i & 63], 0), GeneticCode.encodeCodon(codonArray))) {
+                    synonymous2++;
+                }
+            }
+            long tableTime = System.nanoTime() - start;
+
+            assertEquals(synonymous, synonymous2);
+            System.out.println("Maps: " + mapTime / iterations + " ns/lookup, tables: " + tableTime / iterations + " ns/lookup");
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package org.opencb.cellbase.core.common;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.*;
+
+public class IndexedFastaReaderTest {
+
+    private static final String SEQUENCE_1 = "ACGTACGTACNNNNNNNNNNacgtacgtacGGGGGCCCCCTTTTTAAAAA";
+    private static final String SEQUENCE_2 = "TTTTTGGGGGCCCCCAA";
+    // 12 bases per line
+    private static final String FASTA = ">1 chromosome\nACGTACGTACNN\nNNNNNNNNacgt\nacgtacGGGGGC\nCCCCTTTTTAAA\nAA\n"
+            + ">2 chromosome\nTTTTTGGGGGCC\nCCCAA\n";
+    private static final String FAI = "1\t50\t14\t12\t13\n2\t17\t83\t12\t13\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void plainFasta() throws IOException {
+        Path fastaPath = temporaryFolder.getRoot().toPath().resolve("genome.fa");
+        Files.write(fastaPath, FASTA.getBytes(StandardCharsets.US_ASCII));
+        Files.write(Paths.get(fastaPath + ".fai"), FAI.getBytes(StandardCharsets.US_ASCII));
+        assertQueries(fastaPath);
+    }
+
+    @Test
+    public void bgzipFasta() throws IOException {
+        Path fastaPath = temporaryFolder.getRoot().toPath().resolve("genome.fa.gz");
+        writeBgzf(fastaPath, FASTA.getBytes(StandardCharsets.US_ASCII), 20);
+        Files.write(Paths.get(fastaPath + ".fai"), FAI.getBytes(StandardCharsets.US_ASCII));
+        assertQueries(fastaPath);
+    }
+
+    private void assertQueries(Path fastaPath) throws IOException {
+        try (IndexedFastaReader indexedFastaReader = new IndexedFastaReader(fastaPath)) {
+            assertEquals(SEQUENCE_1, indexedFastaReader.query("1", 1, 50));
+            assertEquals(SEQUENCE_1.substring(9, 31), indexedFastaReader.query("1", 10, 31));
+            assertEquals("G", indexedFastaReader.query("1", 31, 31));
+            // Truncated at the end of the sequence
+            assertEquals(SEQUENCE_2.substring(12), indexedFastaReader.query("2", 13, 100));
+            assertEquals(SEQUENCE_2, indexedFastaReader.query("2", 1, 17));
+            assertEquals("", indexedFastaReader.query("2", 18, 20));
+            assertNull(indexedFastaReader.query("3", 1, 10));
+            assertEquals(17, indexedFastaReader.getLength("2"));
+        }
+    }
+
+    /**
+     * Writes the data in BGZF blocks of blockSize uncompressed bytes and their .gzi index.
+     */
+    private static void writeBgzf(Path path, byte[] data, int blockSize) throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        List<long[]> blocks = new ArrayList<>();
+        for (int offset = 0; offset <= data.length; offset += blockSize) {
+            int length = Math.min(blockSize, data.length - offset);
+            if (offset > 0) {
+                blocks.add(new long[]{file.size(), offset});
+            }
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            deflater.setInput(data, offset, length);
+            deflater.finish();
+            byte[] compressed = new byte[length + 64];
+            int compressedLength = deflater.deflate(compressed);
+            deflater.end();
+            CRC32 crc32 = new CRC32();
+            crc32.update(data, offset, length);
+
+            ByteBuffer block = ByteBuffer.allocate(18 + compressedLength + 8).order(ByteOrder.LITTLE_ENDIAN);
+            block.put(new byte[]{31, (byte) 139, 8, 4, 0, 0, 0, 0, 0, (byte) 255, 6, 0, 'B', 'C', 2, 0});
+            block.putShort((short) (block.capacity() - 1));
+            block.put(compressed, 0, compressedLength);
+            block.putInt((int) crc32.getValue());
+            block.putInt(length);
+            file.write(block.array());
+        }
+        Files.write(path, file.toByteArray());
+
+        ByteBuffer gzi = ByteBuffer.allocate(8 + 16 * blocks.size()).order(ByteOrder.LITTLE_ENDIAN);
+        gzi.putLong(blocks.size());
+        for (long[] block : blocks) {
+            gzi.putLong(block[0]);
+            gzi.putLong(block[1]);
+        }
+        Files.write(Paths.get(path + ".gzi"), gzi.array());
+    }
+
+}
@@ -0,0 +1,42 @@
+package org.opencb.cellbase.core.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PackedSequenceTest {
+
+    @Test
+    public void encodeAndDecode() {
+        String sequence = "ACGTNNNNacgtnnRYacgTA";
+        PackedSequence packedSequence = PackedSequence.encode(sequence);
+        assertEquals(sequence.length(), packedSequence.getLength());
+        assertEquals(6, packedSequence.getPacked().length);
+        assertEquals(sequence, packedSequence.getSequence());
+        // NNNN, nn, R and Y
+        assertEquals(4 * 3, packedSequence.getBaseRuns().length);
+        // acgtnn and acg
+        assertEquals(2 * 2, packedSequence.getMaskRuns().length);
+    }
+
+    @Test
+    public void appendTo() {
+        String sequence = "ACGTNNNNacgtnnRYacgTA";
+        PackedSequence packedSequence = PackedSequence.encode(sequence);
+        StringBuilder sb = new StringBuilder(">");
+        packedSequence.appendTo(sb, 3, 18);
+        packedSequence.appendTo(sb, 20, 21);
+        assertEquals(">" + sequence.substring(3, 18) + sequence.substring(20, 21), sb.toString());
+
+        // Runs are restored from the encoded arrays
+        PackedSequence decoded = new PackedSequence(packedSequence.getLength(), packedSequence.getPacked(),
+                packedSequence.getBaseRuns(), packedSequence.getMaskRuns());
+        assertEquals(sequence, decoded.getSequence());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void appendOutOfBounds() {
+        PackedSequence.encode("ACGT").appendTo(new StringBuilder(), 2, 5);
+    }
+
+}
@@ -1,5 +1,6 @@
 package org.opencb.cellbase.mongodb.db;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.mongodb.*;
 import org.opencb.biodata.models.feature.Region;
 import org.opencb.biodata.models.variant.annotation.Clinvar;
@@ -84,6 +85,11 @@ public class ClinicalMongoDBAdaptor extends MongoDBAdaptor implements ClinicalDB
         return executeQueryList2(ids, queries, options);
     }
 
+    @Override
+    public ListenableFuture<List<QueryResult>> getAllByRegionListAsync(List<Region> regions, QueryOptions options) {
+        return submitRegionQuery(this, regions, options);
+    }
+
     @Override
     public QueryResult getAllByGenomicVariant(GenomicVariant variant, QueryOptions options) {
         return getAllByGenomicVariantList(Arrays.asList(variant), options).get(0);
@@ -1,5 +1,6 @@
 package org.opencb.cellbase.mongodb.db;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.mongodb.*;
 import org.opencb.biodata.models.feature.Region;
 import org.opencb.biodata.models.variant.annotation.Score;
@@ -154,6 +155,11 @@ public class ConservedRegionMongoDBAdaptor extends MongoDBAdaptor implements Con
         return queryResults;
     }
 
+    @Override
+    public ListenableFuture<List<QueryResult>> getAllByRegionListAsync(List<Region> regions, QueryOptions options) {
+        return submitRegionQuery(this, regions, options);
+    }
+
     // TODO: this is an exact copy of getAllByRegionList in which Score objects are returned rather than ConservedRegionFeature
     // TODO: objects. Fix all calls to the method above and replace by this one.
     @Override
@@ -189,7 +195,7 @@ public class ConservedRegionMongoDBAdaptor extends MongoDBAdaptor implements Con
             logger.info(builder.get().toString());
 
         }
-        List<QueryResult> queryResults = executeQueryList2(ids, queries, options);
+        List<QueryResult> queryResults = executeRegionQueryList(regions, queries, options, mongoDBCollection2, "start", "end");
 //        List<QueryResult> queryResults = executeQueryList(ids, queries, options);
 
 
@@ -1,5 +1,6 @@
 package org.opencb.cellbase.mongodb.db;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DB;
 import com.mongodb.DBCursor;
@@ -137,6 +138,11 @@ public class ExonMongoDBAdaptor extends MongoDBAdaptor implements ExonDBAdaptor
         return null;
     }
 
+    @Override
+    public ListenableFuture<List<QueryResult>> getAllByRegionListAsync(List<Region> regions, QueryOptions options) {
+        return submitRegionQuery(this, regions, options);
+    }
+
 
     @Override
     public QueryResult getAllById(String id, QueryOptions options) {
@@ -148,6 +154,11 @@ public class ExonMongoDBAdaptor extends MongoDBAdaptor implements ExonDBAdaptor
         return null;
     }
 
+    @Override
+    public ListenableFuture<List<QueryResult>> getAllByIdListAsync(List<String> idList, QueryOptions options) {
+        return submitIdQuery(this, idList, options);
+    }
+
     public List<Exon> getAllByEnsemblIdList(List<String> ensemblIdList) {
         return null;  //To change body of implemented methods use File | Settings | File Templates.
     }
@@ -0,0 +1,114 @@
+package org.opencb.cellbase.mongodb.db;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.opencb.biodata.models.feature.Region;
+import org.opencb.cellbase.core.common.DNASequenceUtils;
+import org.opencb.cellbase.core.common.GenomeSequenceFeature;
+import org.opencb.cellbase.core.common.IndexedFastaReader;
+import org.opencb.cellbase.core.lib.api.core.GenomeSequenceDBAdaptor;
+import org.opencb.datastore.core.QueryOptions;
+import org.opencb.datastore.core.QueryResult;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Genome sequence adaptor reading a local, memory-mapped FASTA file instead of the 'genome_sequence' collection, so
+ * that no network round trip is done per query. Results have the same shape as GenomeSequenceMongoDBAdaptor ones.
+ */
+public class FastaGenomeSequenceDBAdaptor implements GenomeSequenceDBAdaptor {
+
+    private static final int WRITE_WINDOW_SIZE = 1 << 20;
+
+    private final IndexedFastaReader indexedFastaReader;
+    private final String assembly;
+
+    public FastaGenomeSequenceDBAdaptor(IndexedFastaReader indexedFastaReader, String assembly) {
+        this.indexedFastaReader = indexedFastaReader;
+        this.assembly = assembly;
+    }
+
+    @Override
+    public QueryResult getByRegion(String chromosome, int start, int end, QueryOptions options) {
+        return getAllByRegionList(Arrays.asList(new Region(chromosome, start, end)), options).get(0);
+    }
+
+    @Override
+    public List<QueryResult> getAllByRegionList(List<Region> regions, QueryOptions options) {
+        int strand = GenomeSequenceMongoDBAdaptor.getStrand(options);
+        List<QueryResult> queryResults = new ArrayList<>(regions.size());
+        for (Region region : regions) {
+            // positions below 1 are not allowed
+            int start = Math.max(region.getStart(), 1);
+            int end = Math.max(region.getEnd(), 1);
+
+            long dbTimeStart = System.currentTimeMillis();
+            String sequence;
+            try {
+                sequence = indexedFastaReader.query(region.getChromosome(), start, end);
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading the sequence of " + region + ": " + e.getMessage(), e);
+            }
+            // As with the 'genome_sequence' collection, regions not fully in the sequence have an empty sequence
+            if (sequence == null || sequence.length() != end - start + 1) {
+                sequence = "";
+            }
+            if (strand == -1) {
+                sequence = DNASequenceUtils.reverseComplement(sequence);
+            }
+
+            QueryResult queryResult = new QueryResult();
+            queryResult.setId(region.toString());
+            queryResult.setDbTime((int) (System.currentTimeMillis() - dbTimeStart));
+            queryResult.setNumResults(1);
+            queryResult.setNumTotalResults(1);
+            queryResult.setResult(Arrays.asList(new GenomeSequenceFeature(region.getChromosome(), start, end, strand,
+                    null, assembly, sequence)));
+            queryResults.add(queryResult);
+        }
+        return queryResults;
+    }
+
+    /**
+     * Reads from the page cache are fast enough to be run in the calling thread, the returned future is completed.
+     */
+    @Override
+    public ListenableFuture<List<QueryResult>> getAllByRegionListAsync(List<Region> regions, QueryOptions options) {
+        try {
+            return Futures.immediateFuture(getAllByRegionList(regions, options));
+        } catch (RuntimeException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    @Override
+    public String getRevComp(String sequence) {
+        return DNASequenceUtils.reverseComplement(sequence);
+    }
+
+    /**
+     * The region is read in windows of WRITE_WINDOW_SIZE bases, from the last one for the reverse strand.
+     */
+    @Override
+    public long writeRegion(Region region, int strand, Writer writer) throws IOException {
+        long start = Math.max(region.getStart(), 1);
+        long end = Math.min(Math.max(region.getEnd(), 1), indexedFastaReader.getLength(region.getChromosome()));
+        if (end < start) {
+            return 0;
+        }
+        long numWindows = (end - start) / WRITE_WINDOW_SIZE + 1;
+        for (long w = 0; w < numWindows; w++) {
+            long window = (strand == -1) ? numWindows - 1 - w : w;
+            long windowStart = start + window * WRITE_WINDOW_SIZE;
+            String sequence = indexedFastaReader.query(region.getChromosome(), windowStart,
+                    Math.min(windowStart + WRITE_WINDOW_SIZE - 1, end));
+            writer.write((strand == -1) ? DNASequenceUtils.reverseComplement(sequence) : sequence);
+        }
+        return end - start + 1;
+    }
+
+}
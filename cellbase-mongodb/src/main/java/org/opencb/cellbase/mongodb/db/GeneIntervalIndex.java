@@ -0,0 +1,162 @@
+package org.opencb.cellbase.mongodb.db;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import org.opencb.cellbase.mongodb.model.AnnotationGene;
+import org.opencb.cellbase.mongodb.serializer.converters.AnnotationGeneConverter;
+import org.opencb.datastore.core.QueryOptions;
+import org.opencb.datastore.mongodb.MongoDBCollection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * In-memory, per-chromosome interval index of the genes used by the consequence type engine, decoded once at load time.
+ * Genes of each chromosome are kept sorted by start together with a running maximum of their ends, an overlap query
+ * is a binary search on the starts followed by a backwards scan that stops as soon as no previous gene can reach
+ * the query start.
+ */
+public class GeneIntervalIndex {
+
+    private Map<String, ChromosomeIndex> chromosomeIndexes;
+    private int numGenes;
+    private long estimatedSize;
+
+    private static Logger logger = LoggerFactory.getLogger(GeneIntervalIndex.class);
+
+    private static class ChromosomeIndex {
+        private int[] starts;
+        private int[] ends;
+        private int[] maxEnds;
+        private AnnotationGene[] genes;
+    }
+
+    private GeneIntervalIndex() {
+        chromosomeIndexes = new HashMap<>();
+    }
+
+    /**
+     * Loads all the documents of the gene collection into a new index.
+     * @param geneCollection gene collection
+     * @param options projection of the gene documents, must include chromosome, start and end
+     * @param converter converter of the projected documents
+     * @param maxMemory maximum estimated size in bytes of the index
+     * @return the index or null if the gene collection does not fit into maxMemory
+     */
+    public static GeneIntervalIndex load(MongoDBCollection geneCollection, QueryOptions options,
+                                         AnnotationGeneConverter converter, long maxMemory) {
+        long start = System.currentTimeMillis();
+        GeneIntervalIndex geneIntervalIndex = new GeneIntervalIndex();
+        Map<String, List<AnnotationGene>> genesByChromosome = new HashMap<>();
+
+        DBCursor cursor = geneCollection.nativeQuery().find(new BasicDBObject(), options);
+        try {
+            while (cursor.hasNext()) {
+                DBObject geneInfo = cursor.next();
+                geneIntervalIndex.estimatedSize += estimateSize(geneInfo);
+                if (geneIntervalIndex.estimatedSize > maxMemory) {
+                    logger.warn("Gene interval index exceeds the memory limit of {} bytes, genes will be queried from the database",
+                            maxMemory);
+                    return null;
+                }
+                AnnotationGene gene = converter.convertToDataModel(geneInfo);
+                String chromosome = gene.getChromosome();
+                if (!genesByChromosome.containsKey(chromosome)) {
+                    genesByChromosome.put(chromosome, new ArrayList<AnnotationGene>());
+                }
+                genesByChromosome.get(chromosome).add(gene);
+                geneIntervalIndex.numGenes++;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        for (Map.Entry<String, List<AnnotationGene>> entry : genesByChromosome.entrySet()) {
+            geneIntervalIndex.chromosomeIndexes.put(entry.getKey(), createChromosomeIndex(entry.getValue()));
+        }
+        logger.info("Gene interval index loaded: {} genes, {} bytes estimated, {} ms", geneIntervalIndex.numGenes,
+                geneIntervalIndex.estimatedSize, System.currentTimeMillis() - start);
+        return geneIntervalIndex;
+    }
+
+    private static ChromosomeIndex createChromosomeIndex(List<AnnotationGene> genes) {
+        Collections.sort(genes, new Comparator<AnnotationGene>() {
+            @Override
+            public int compare(AnnotationGene gene1, AnnotationGene gene2) {
+                return Integer.compare(gene1.getStart(), gene2.getStart());
+            }
+        });
+
+        ChromosomeIndex chromosomeIndex = new ChromosomeIndex();
+        chromosomeIndex.starts = new int[genes.size()];
+        chromosomeIndex.ends = new int[genes.size()];
+        chromosomeIndex.maxEnds = new int[genes.size()];
+        chromosomeIndex.genes = genes.toArray(new AnnotationGene[genes.size()]);
+        int maxEnd = Integer.MIN_VALUE;
+        for (int i = 0; i < genes.size(); i++) {
+            chromosomeIndex.starts[i] = genes.get(i).getStart();
+            chromosomeIndex.ends[i] = genes.get(i).getEnd();
+            maxEnd = Math.max(maxEnd, chromosomeIndex.ends[i]);
+            chromosomeIndex.maxEnds[i] = maxEnd;
+        }
+        return chromosomeIndex;
+    }
+
+    /**
+     * Returns the genes overlapping the region, sorted by start. Returned genes are shared between requests.
+     */
+    public List<AnnotationGene> getAllByRegion(String chromosome, int start, int end) {
+        ChromosomeIndex chromosomeIndex = chromosomeIndexes.get(chromosome);
+        if (chromosomeIndex == null) {
+            return new ArrayList<>(0);
+        }
+
+        // Last gene starting before or at the end of the region
+        int low = 0;
+        int high = chromosomeIndex.starts.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (chromosomeIndex.starts[middle] <= end) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        LinkedList<AnnotationGene> genes = new LinkedList<>();
+        for (int i = high; i >= 0 && chromosomeIndex.maxEnds[i] >= start; i--) {
+            if (chromosomeIndex.ends[i] >= start) {
+                genes.addFirst(chromosomeIndex.genes[i]);
+            }
+        }
+        return genes;
+    }
+
+    /**
+     * Rough estimation of the heap used by a decoded BSON value, an upper bound of the size of the decoded gene.
+     */
+    private static long estimateSize(Object value) {
+        if (value instanceof String) {
+            return 40 + 2 * ((String) value).length();
+        } else if (value instanceof DBObject) {
+            long size = 64;
+            for (String key : ((DBObject) value).keySet()) {
+                size += 32 + estimateSize(((DBObject) value).get(key));
+            }
+            return size;
+        } else {
+            return 16;
+        }
+    }
+
+    public int getNumGenes() {
+        return numGenes;
+    }
+
+    public long getEstimatedSize() {
+        return estimatedSize;
+    }
+
+}
@@ -1,5 +1,6 @@
 package org.opencb.cellbase.mongodb.db;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.mongodb.*;
 import org.opencb.biodata.models.feature.Region;
 import org.opencb.cellbase.core.common.Position;
@@ -32,6 +33,7 @@ public class GeneMongoDBAdaptor extends MongoDBAdaptor implements GeneDBAdaptor
 //        mongoDBCollection = db.getCollection("gene");
         super(species, assembly, mongoDataStore);
         mongoDBCollection2 = mongoDataStore.getCollection("gene");
+        collectionName = "gene";
 
         logger.info("GeneMongoDBAdaptor: in 'constructor'");
         this.geneChunkSize = geneChunkSize;
@@ -96,17 +98,12 @@ public class GeneMongoDBAdaptor extends MongoDBAdaptor implements GeneDBAdaptor
 
     @Override
     public List<org.opencb.datastore.core.QueryResult> getAllByIdList(List<String> idList, QueryOptions options) {
-        //		QueryBuilder builder = QueryBuilder.start("transcripts.xrefs.id").in(idList);
-
-        List<DBObject> queries = new ArrayList<>(idList.size());
-        for (String id : idList) {
-            QueryBuilder builder = QueryBuilder.start("transcripts.xrefs.id").is(id);
-            queries.add(builder.get());
-        }
+        return executeIdQueryList(idList, "transcripts.xrefs.id", options, mongoDBCollection2);
+    }
 
-//        options = addExcludeReturnFields("transcripts", options);
-//        return executeQueryList(idList, queries, options);
-        return executeQueryList2(idList, queries, null);
+    @Override
+    public ListenableFuture<List<QueryResult>> getAllByIdListAsync(List<String> idList, QueryOptions options) {
+        return submitIdQuery(this, idList, options);
     }
 
     @Override
@@ -186,13 +183,12 @@ public class GeneMongoDBAdaptor extends MongoDBAdaptor implements GeneDBAdaptor
             biotypeIds.addAll(biotypes);
         }
 
-        List<String> ids = new ArrayList<>(regions.size());
         for (Region region : regions) {
 
             QueryBuilder builder = null;
             // If regions is 1 position then query can be optimize using chunks
             if (region.getStart() == region.getEnd()) {
-                builder = QueryBuilder.start("chunkIds").is(getChunkIdPrefix(region.getChromosome(), region.getStart(), geneChunkSize)).and("end")
+                builder = startChunkIdQuery(region.getChromosome(), region.getStart(), region.getStart(), geneChunkSize).and("end")
                         .greaterThanEquals(region.getStart()).and("start").lessThanEquals(region.getEnd());
             } else {
                 builder = QueryBuilder.start("chromosome").is(region.getChromosome()).and("end")
@@ -203,12 +199,16 @@ public class GeneMongoDBAdaptor extends MongoDBAdaptor implements GeneDBAdaptor
                 builder = builder.and("biotype").in(biotypeIds);
             }
             queries.add(builder.get());
-            ids.add(region.toString());
         }
-        return executeQueryList2(ids, queries, options);
+        return executeRegionQueryList(regions, queries, options, mongoDBCollection2, "start", "end");
 //        return executeQueryList(ids, queries, options);
     }
 
+    @Override
+    public ListenableFuture<List<QueryResult>> getAllByRegionListAsync(List<Region> regions, QueryOptions options) {
+        return submitRegionQuery(this, regions, options);
+    }
+
 
     @Override
     public QueryResult getAllIntervalFrequencies(Region region, QueryOptions queryOptions) {
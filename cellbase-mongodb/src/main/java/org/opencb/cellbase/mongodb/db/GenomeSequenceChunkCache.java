@@ -0,0 +1,146 @@
+package org.opencb.cellbase.mongodb.db;
+
+import com.google.common.io.BaseEncoding;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.opencb.cellbase.core.common.PackedSequence;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of 'genome_sequence' chunks keyed by chunkId, bounded by the estimated size in bytes of the cached
+ * chunks. Packed chunks are cached with their bases already decoded from base64 so that hits do not decode them
+ * again. Cached chunks are shared by all requests and must not be modified.
+ */
+public class GenomeSequenceChunkCache {
+
+    private final long maxMemory;
+    private long size;
+    private final LinkedHashMap<String, CachedChunk> chunks;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static class CachedChunk {
+        private final DBObject chunk;
+        private final long size;
+
+        private CachedChunk(DBObject chunk, long size) {
+            this.chunk = chunk;
+            this.size = size;
+        }
+    }
+
+    /**
+     * @param maxMemory maximum estimated size in bytes of the cached chunks
+     */
+    public GenomeSequenceChunkCache(long maxMemory) {
+        this.maxMemory = maxMemory;
+        this.chunks = new LinkedHashMap<>(1000, 0.75f, true);
+    }
+
+    /**
+     * @return the cached chunks of the given ids, ids not cached are not in the map
+     */
+    public Map<String, DBObject> getAll(Collection<String> chunkIds) {
+        Map<String, DBObject> cachedChunks = new HashMap<>(chunkIds.size() * 2);
+        synchronized (this) {
+            for (String chunkId : chunkIds) {
+                CachedChunk cachedChunk = chunks.get(chunkId);
+                if (cachedChunk != null) {
+                    cachedChunks.put(chunkId, cachedChunk.chunk);
+                }
+            }
+        }
+        hits.addAndGet(cachedChunks.size());
+        misses.addAndGet(chunkIds.size() - cachedChunks.size());
+        return cachedChunks;
+    }
+
+    /**
+     * Adds the chunk evicting the least recently used ones until the cache fits into its memory limit.
+     * @return the chunk as it is cached, to be used instead of the given one
+     */
+    public DBObject put(String chunkId, DBObject chunk) {
+        DBObject cachedChunk = chunk;
+        if (chunk.get("packed") instanceof String) {
+            cachedChunk = new BasicDBObject(chunk.toMap());
+            cachedChunk.put("packed", BaseEncoding.base64().decode((String) chunk.get("packed")));
+        }
+        long chunkSize = getEstimatedSize(chunkId, cachedChunk);
+        if (chunkSize > maxMemory) {
+            return cachedChunk;
+        }
+
+        synchronized (this) {
+            CachedChunk previousChunk = chunks.remove(chunkId);
+            if (previousChunk != null) {
+                size -= previousChunk.size;
+            }
+            Iterator<CachedChunk> iterator = chunks.values().iterator();
+            while (size + chunkSize > maxMemory && iterator.hasNext()) {
+                size -= iterator.next().size;
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+            chunks.put(chunkId, new CachedChunk(cachedChunk, chunkSize));
+            size += chunkSize;
+        }
+        return cachedChunk;
+    }
+
+    /**
+     * Chunks hold either a plain 'sequence' string, 2 bytes per base, or PackedSequence fields.
+     */
+    static long getEstimatedSize(String chunkId, DBObject chunk) {
+        long chunkSize = 256 + 2 * chunkId.length();
+        if (PackedSequence.ENCODING.equals(chunk.get("encoding"))) {
+            Object packed = chunk.get("packed");
+            chunkSize += (packed instanceof byte[]) ? ((byte[]) packed).length : 2 * packed.toString().length();
+            chunkSize += 16 * (getListSize(chunk.get("baseRuns")) + getListSize(chunk.get("maskRuns")));
+        } else if (chunk.get("sequence") != null) {
+            chunkSize += 2 * chunk.get("sequence").toString().length();
+        }
+        return chunkSize;
+    }
+
+    private static int getListSize(Object list) {
+        return (list instanceof List) ? ((List) list).size() : 0;
+    }
+
+    public synchronized void clear() {
+        chunks.clear();
+        size = 0;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public double getHitRate() {
+        long requests = hits.get() + misses.get();
+        return (requests > 0) ? (double) hits.get() / requests : 0;
+    }
+
+    public synchronized int getNumChunks() {
+        return chunks.size();
+    }
+
+    public synchronized long getEstimatedSize() {
+        return size;
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+}
@@ -1,21 +1,39 @@
 package org.opencb.cellbase.mongodb.db;
 
+import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.mongodb.*;
+import org.bson.types.Binary;
 import org.opencb.biodata.models.feature.Region;
+import org.opencb.cellbase.core.common.DNASequenceUtils;
 import org.opencb.cellbase.core.common.GenomeSequenceFeature;
+import org.opencb.cellbase.core.common.PackedSequence;
 import org.opencb.cellbase.core.lib.api.core.GenomeSequenceDBAdaptor;
 import org.opencb.cellbase.mongodb.MongoDBCollectionConfiguration;
 import org.opencb.datastore.core.QueryOptions;
 import org.opencb.datastore.core.QueryResult;
 import org.opencb.datastore.mongodb.MongoDataStore;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
 
 public class GenomeSequenceMongoDBAdaptor extends MongoDBAdaptor implements GenomeSequenceDBAdaptor {
 
     private int chunkSize = MongoDBCollectionConfiguration.GENOME_SEQUENCE_CHUNK_SIZE;
+    // Shared by the adaptors of the same species and assembly, null queries the chunks of every request
+    private GenomeSequenceChunkCache chunkCache;
+
+    // Cached chunks must be whole documents, and the strand is applied once the chunks are joined
+    private static final List<String> CHUNK_QUERY_EXCLUDED_OPTIONS = Arrays.asList("strand", "include", "exclude",
+            "limit", "skip");
+
+    private static final Comparator<DBObject> CHUNK_START_COMPARATOR = new Comparator<DBObject>() {
+        @Override
+        public int compare(DBObject chunk1, DBObject chunk2) {
+            return Integer.compare(((Number) chunk1.get("start")).intValue(), ((Number) chunk2.get("start")).intValue());
+        }
+    };
 
     public GenomeSequenceMongoDBAdaptor(DB db) {
         super(db);
@@ -43,20 +61,19 @@ public class GenomeSequenceMongoDBAdaptor extends MongoDBAdaptor implements Geno
         return (position / this.chunkSize);
     }
 
-    private int getOffset(int position) {
-        return (position % this.chunkSize);
+    public static String getComplementarySequence(String sequence) {
+        return DNASequenceUtils.complement(sequence);
     }
 
-    public static String getComplementarySequence(String sequence) {
-        sequence = sequence.replace("A", "1");
-        sequence = sequence.replace("T", "2");
-        sequence = sequence.replace("C", "3");
-        sequence = sequence.replace("G", "4");
-        sequence = sequence.replace("1", "T");
-        sequence = sequence.replace("2", "A");
-        sequence = sequence.replace("3", "G");
-        sequence = sequence.replace("4", "C");
-        return sequence;
+    /**
+     * @return the 'strand' option, given as a number or a string such as "-1", 1 when missing
+     */
+    static int getStrand(QueryOptions options) {
+        Object strand = (options != null) ? options.get("strand") : null;
+        if (strand == null || strand.toString().trim().isEmpty()) {
+            return 1;
+        }
+        return ("-1".equals(strand.toString().trim()) || "-".equals(strand.toString().trim())) ? -1 : 1;
     }
 
 
@@ -72,13 +89,10 @@ public class GenomeSequenceMongoDBAdaptor extends MongoDBAdaptor implements Geno
         String chunkIdSuffix = this.chunkSize / 1000 + "k";
         /****/
 
-        List<DBObject> queries = new ArrayList<>();
-        List<String> ids = new ArrayList<>(regions.size());
+        List<List<String>> regionChunkIds = new ArrayList<>(regions.size());
         List<String> chunkIds;
-        List<Integer> integerChunkIds;
         for (Region region : regions) {
             chunkIds = new ArrayList<>();
-            integerChunkIds = new ArrayList<>();
             // positions below 1 are not allowed
             if (region.getStart() < 1) {
                 region.setStart(1);
@@ -91,61 +105,248 @@ public class GenomeSequenceMongoDBAdaptor extends MongoDBAdaptor implements Geno
             int regionChunkStart = getChunk(region.getStart());
             int regionChunkEnd = getChunk(region.getEnd());
             for (int chunkId = regionChunkStart; chunkId <= regionChunkEnd; chunkId++) {
-                String chunkIdStr = region.getChromosome() + "_" + chunkId + "_" + chunkIdSuffix;
-                chunkIds.add(chunkIdStr);
-                integerChunkIds.add(chunkId);
+                chunkIds.add(region.getChromosome() + "_" + chunkId + "_" + chunkIdSuffix);
             }
-            QueryBuilder builder = QueryBuilder.start("sequenceName").is(region.getChromosome()).and("chunkId").in(chunkIds);
-//            QueryBuilder builder = QueryBuilder.start("chromosome").is(region.getSequenceName()).and("chunkId").in(integerChunkIds);
             /****/
-//            QueryBuilder builder = QueryBuilder.start("chromosome").is(region.getSequenceName()).and("chunkId")
-//                    .greaterThanEquals(getChunk(region.getStart())).lessThanEquals(getChunk(region.getEnd()));
+            regionChunkIds.add(chunkIds);
+        }
+
+        int strand = getStrand(options);
+        if (chunkCache != null) {
+            return getAllByRegionListFromCache(regions, regionChunkIds, strand, options);
+        }
+
+        List<DBObject> queries = new ArrayList<>();
+        List<String> ids = new ArrayList<>(regions.size());
+        for (int i = 0; i < regions.size(); i++) {
+            QueryBuilder builder = QueryBuilder.start("sequenceName").is(regions.get(i).getChromosome())
+                    .and("chunkId").in(regionChunkIds.get(i));
             queries.add(builder.get());
-            ids.add(region.toString());
+            ids.add(regions.get(i).toString());
 
             logger.info(builder.get().toString());
         }
 
         List<QueryResult> queryResults = executeQueryList2(ids, queries, options);
 
-
         for (int i = 0; i < regions.size(); i++) {
-            Region region = regions.get(i);
             QueryResult queryResult = queryResults.get(i);
+            queryResult.setResult(Arrays.asList(getGenomeSequenceFeature(regions.get(i),
+                    new ArrayList<>((List<DBObject>) queryResult.getResult()), strand)));
+        }
 
-            List list = queryResult.getResult();
-            StringBuilder sb = new StringBuilder();
-            for (int j = 0; j < list.size(); j++) {
-                BasicDBObject chunk = (BasicDBObject) list.get(j);
-                sb.append(chunk.get("sequence"));
-            }
-
-            int startStr = getOffset(region.getStart());
-            int endStr = getOffset(region.getStart()) + (region.getEnd() - region.getStart()) + 1;
+        return queryResults;
+    }
 
-            String subStr = "";
+    @Override
+    public ListenableFuture<List<QueryResult>> getAllByRegionListAsync(List<Region> regions, QueryOptions options) {
+        return submitRegionQuery(this, regions, options);
+    }
 
-            if (getChunk(region.getStart()) > 0) {
-                if (sb.toString().length() > 0 && sb.toString().length() >= endStr) {
-                    subStr = sb.toString().substring(startStr, endStr);
+    /**
+     * Chunks of all regions are taken from the chunk cache, those not cached are fetched with a single query and
+     * cached. The query keeps the request options, e.g. 'timeout' or 'partialResults', but not those that would
+     * cache partial chunks or do not apply to chunks.
+     */
+    private List<QueryResult> getAllByRegionListFromCache(List<Region> regions, List<List<String>> regionChunkIds,
+                                                          int strand, QueryOptions options) {
+        long dbTimeStart = System.currentTimeMillis();
+        Set<String> allChunkIds = new LinkedHashSet<>();
+        for (List<String> chunkIds : regionChunkIds) {
+            allChunkIds.addAll(chunkIds);
+        }
+        Map<String, DBObject> chunks = chunkCache.getAll(allChunkIds);
+
+        String errorMsg = null;
+        if (chunks.size() < allChunkIds.size()) {
+            List<String> missingChunkIds = new ArrayList<>(allChunkIds.size() - chunks.size());
+            for (String chunkId : allChunkIds) {
+                if (!chunks.containsKey(chunkId)) {
+                    missingChunkIds.add(chunkId);
                 }
-            } else {
-                if (sb.toString().length() > 0 && sb.toString().length() + 1 >= endStr) {
-                    subStr = sb.toString().substring(startStr - 1, endStr - 1);
+            }
+            QueryOptions chunkOptions = new QueryOptions();
+            if (options != null) {
+                chunkOptions.putAll(options);
+            }
+            for (String option : CHUNK_QUERY_EXCLUDED_OPTIONS) {
+                chunkOptions.remove(option);
+            }
+            QueryResult queryResult = executeQuery(missingChunkIds.size() + " chunks",
+                    new BasicDBObject("chunkId", new BasicDBObject("$in", missingChunkIds)), chunkOptions);
+            errorMsg = queryResult.getErrorMsg();
+            for (Object result : (List) queryResult.getResult()) {
+                DBObject chunk = (DBObject) result;
+                String chunkId = (String) chunk.get("chunkId");
+                chunks.put(chunkId, chunkCache.put(chunkId, chunk));
+            }
+        }
+        int dbTime = (int) (System.currentTimeMillis() - dbTimeStart);
+
+        List<QueryResult> queryResults = new ArrayList<>(regions.size());
+        for (int i = 0; i < regions.size(); i++) {
+            List<DBObject> regionChunks = new ArrayList<>(regionChunkIds.get(i).size());
+            for (String chunkId : regionChunkIds.get(i)) {
+                if (chunks.get(chunkId) != null) {
+                    regionChunks.add(chunks.get(chunkId));
                 }
             }
-            GenomeSequenceFeature genomeSequenceFeature = new GenomeSequenceFeature(region.getChromosome(), region.getStart(), region.getEnd(), 1, ((BasicDBObject)list.get(0)).getString("sequenceType"), ((BasicDBObject)list.get(0)).getString("assembly"), subStr);
-//            GenomeSequenceChunk genomeSequenceChunk = new GenomeSequenceChunk(region.getSequenceName(), region.getStart(), region.getEnd(), subStr);
+            QueryResult queryResult = new QueryResult();
+            queryResult.setId(regions.get(i).toString());
+            queryResult.setDbTime(dbTime);
+            queryResult.setErrorMsg(errorMsg);
+            queryResult.setNumResults(1);
+            queryResult.setNumTotalResults(1);
+            queryResult.setResult(Arrays.asList(getGenomeSequenceFeature(regions.get(i), regionChunks, strand)));
+            queryResults.add(queryResult);
+        }
+        return queryResults;
+    }
+
+    private GenomeSequenceFeature getGenomeSequenceFeature(Region region, List<DBObject> chunks, int strand) {
+        Collections.sort(chunks, CHUNK_START_COMPARATOR);
+        // Chunks are decoded straight into the region sequence, a region not fully covered has an empty sequence
+        StringBuilder sb = new StringBuilder(region.getEnd() - region.getStart() + 1);
+        for (DBObject chunk : chunks) {
+            appendChunkSequence(sb, chunk, region.getStart(), region.getEnd());
+        }
+        String subStr = "";
+        if (sb.length() == region.getEnd() - region.getStart() + 1) {
+            subStr = (strand == -1) ? DNASequenceUtils.reverseComplement(sb) : sb.toString();
+        }
+
+        String sequenceType = chunks.isEmpty() ? null : (String) chunks.get(0).get("sequenceType");
+        String assembly = chunks.isEmpty() ? null : (String) chunks.get(0).get("assembly");
+        return new GenomeSequenceFeature(region.getChromosome(), region.getStart(), region.getEnd(), strand, sequenceType,
+                assembly, subStr);
+    }
+
+    public void setChunkCache(GenomeSequenceChunkCache chunkCache) {
+        this.chunkCache = chunkCache;
+    }
+
+    /**
+     * Appends the bases of the chunk between start and end, both 1-based and inclusive. Chunks are either plain, with
+     * a 'sequence' string, or encoded as a PackedSequence by the genome sequence parser, so databases built with
+     * either encoding are read.
+     */
+    static void appendChunkSequence(StringBuilder sb, DBObject chunk, int start, int end) {
+        int chunkStart = ((Number) chunk.get("start")).intValue();
+        if (PackedSequence.ENCODING.equals(chunk.get("encoding"))) {
+            PackedSequence packedSequence = getPackedSequence(chunk);
+            int from = Math.max(start, chunkStart) - chunkStart;
+            int to = Math.min(end, chunkStart + packedSequence.getLength() - 1) - chunkStart + 1;
+            if (from < to) {
+                packedSequence.appendTo(sb, from, to);
+            }
+        } else {
+            String sequence = (String) chunk.get("sequence");
+            int from = Math.max(start, chunkStart) - chunkStart;
+            int to = Math.min(end, chunkStart + sequence.length() - 1) - chunkStart + 1;
+            if (from < to) {
+                sb.append(sequence, from, to);
+            }
+        }
+    }
 
-            queryResult.setResult(Arrays.asList(genomeSequenceFeature));
+    private static PackedSequence getPackedSequence(DBObject chunk) {
+        Object packed = chunk.get("packed");
+        byte[] packedBytes;
+        if (packed instanceof byte[]) {
+            packedBytes = (byte[]) packed;
+        } else if (packed instanceof Binary) {
+            packedBytes = ((Binary) packed).getData();
+        } else {
+            packedBytes = BaseEncoding.base64().decode(packed.toString());
         }
+        return new PackedSequence(((Number) chunk.get("length")).intValue(), packedBytes,
+                toIntArray((List) chunk.get("baseRuns")), toIntArray((List) chunk.get("maskRuns")));
+    }
 
-        return queryResults;
+    private static int[] toIntArray(List list) {
+        if (list == null) {
+            return null;
+        }
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = ((Number) list.get(i)).intValue();
+        }
+        return array;
     }
 
     @Override
     public String getRevComp(String sequence) {
-        return null;  //To change body of implemented methods use File | Settings | File Templates.
+        return DNASequenceUtils.reverseComplement(sequence);
+    }
+
+    /**
+     * Chunks are read in batches of idQueryBatchSize chunkIds, from the last one for the reverse strand, and written
+     * one by one. The chunk cache is not used so that large regions do not evict the hot chunks. Only chunks beyond
+     * the end of the chromosome may be missing, a missing chunk followed by existing ones fails the stream instead of
+     * writing a shorter, shifted sequence.
+     */
+    @Override
+    public long writeRegion(Region region, int strand, Writer writer) throws IOException {
+        int start = Math.max(region.getStart(), 1);
+        int end = Math.max(region.getEnd(), 1);
+        String chunkIdSuffix = this.chunkSize / 1000 + "k";
+        int firstChunk = getChunk(start);
+        int lastChunk = getChunk(end);
+        int batchSize = Math.max(idQueryBatchSize, 1);
+        int numBatches = (lastChunk - firstChunk) / batchSize + 1;
+
+        StringBuilder sb = new StringBuilder(chunkSize);
+        long numBases = 0;
+        // Chunks may only be missing at the end of the chromosome: going forwards no chunk can follow a missing one,
+        // going backwards no chunk can be missing after a written one
+        String missingChunkId = null;
+        String writtenChunkId = null;
+        for (int b = 0; b < numBatches; b++) {
+            int batch = (strand == -1) ? numBatches - 1 - b : b;
+            int batchFirstChunk = firstChunk + batch * batchSize;
+            int batchLastChunk = Math.min(batchFirstChunk + batchSize - 1, lastChunk);
+            List<String> chunkIds = new ArrayList<>(batchLastChunk - batchFirstChunk + 1);
+            for (int chunkId = batchFirstChunk; chunkId <= batchLastChunk; chunkId++) {
+                chunkIds.add(region.getChromosome() + "_" + chunkId + "_" + chunkIdSuffix);
+            }
+
+            Map<String, DBObject> chunks = new HashMap<>(chunkIds.size() * 2);
+            DBCursor cursor = mongoDBCollection2.nativeQuery().find(new BasicDBObject("chunkId",
+                    new BasicDBObject("$in", chunkIds)), new QueryOptions());
+            try {
+                while (cursor.hasNext()) {
+                    DBObject chunk = cursor.next();
+                    chunks.put(chunk.get("chunkId").toString(), chunk);
+                }
+            } finally {
+                cursor.close();
+            }
+            if (strand == -1) {
+                Collections.reverse(chunkIds);
+            }
+
+            for (String chunkId : chunkIds) {
+                DBObject chunk = chunks.get(chunkId);
+                if (chunk == null) {
+                    if (strand == -1 && writtenChunkId != null) {
+                        throw new IOException("Missing 'genome_sequence' chunk " + chunkId + " before " + writtenChunkId
+                                + " in " + region);
+                    }
+                    missingChunkId = chunkId;
+                    continue;
+                }
+                if (strand != -1 && missingChunkId != null) {
+                    throw new IOException("Missing 'genome_sequence' chunk " + missingChunkId + " before " + chunkId
+                            + " in " + region);
+                }
+                sb.setLength(0);
+                appendChunkSequence(sb, chunk, start, end);
+                writer.write((strand == -1) ? DNASequenceUtils.reverseComplement(sb) : sb.toString());
+                numBases += sb.length();
+                writtenChunkId = chunkId;
+            }
+        }
+        return numBases;
     }
 
 
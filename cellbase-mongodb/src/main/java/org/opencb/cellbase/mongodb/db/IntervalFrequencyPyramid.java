@@ -0,0 +1,88 @@
+package org.opencb.cellbase.mongodb.db;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+import java.util.*;
+
+/**
+ * Feature counts of a collection per chromosome in bins of BIN_SIZES bases, built at load time so that interval
+ * frequencies of zoomed out views are summed from a few documents instead of aggregating the whole collection.
+ * Features are counted in the bin of their start. Each document of the 'interval_frequency' collection keeps the
+ * counts of BLOCK_SIZE consecutive bins of a feature type, chromosome and bin size; blocks without features are not
+ * stored.
+ */
+public class IntervalFrequencyPyramid {
+
+    public static final String COLLECTION = "interval_frequency";
+    public static final int[] BIN_SIZES = {1000, 10000, 100000, 1000000};
+    public static final int BLOCK_SIZE = 1000;
+
+    private final String featureType;
+    // Counts in bins of BIN_SIZES[0], coarser bins are summed from them
+    private final Map<String, int[]> chromosomeCounts;
+
+    public IntervalFrequencyPyramid(String featureType) {
+        this.featureType = featureType;
+        this.chromosomeCounts = new LinkedHashMap<>();
+    }
+
+    public void add(String chromosome, int start) {
+        int bin = Math.max(start, 0) / BIN_SIZES[0];
+        int[] counts = chromosomeCounts.get(chromosome);
+        if (counts == null || counts.length <= bin) {
+            counts = (counts == null) ? new int[Math.max(bin + 1, 1024)] : Arrays.copyOf(counts, Math.max(bin + 1, counts.length * 2));
+            chromosomeCounts.put(chromosome, counts);
+        }
+        counts[bin]++;
+    }
+
+    public List<DBObject> getDocuments() {
+        List<DBObject> documents = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry : chromosomeCounts.entrySet()) {
+            int[] finestCounts = entry.getValue();
+            for (int binSize : BIN_SIZES) {
+                int factor = binSize / BIN_SIZES[0];
+                int[] counts = new int[finestCounts.length / factor + 1];
+                for (int i = 0; i < finestCounts.length; i++) {
+                    counts[i / factor] += finestCounts[i];
+                }
+                for (int block = 0; block * BLOCK_SIZE < counts.length; block++) {
+                    BasicDBList blockCounts = new BasicDBList();
+                    boolean empty = true;
+                    for (int i = block * BLOCK_SIZE; i < Math.min((block + 1) * BLOCK_SIZE, counts.length); i++) {
+                        blockCounts.add(counts[i]);
+                        empty &= counts[i] == 0;
+                    }
+                    if (!empty) {
+                        documents.add(new BasicDBObject("_id", featureType + "_" + entry.getKey() + "_" + binSize + "_" + block)
+                                .append("featureType", featureType).append("chromosome", entry.getKey())
+                                .append("binSize", binSize).append("block", block).append("counts", blockCounts));
+                    }
+                }
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * @return the biggest bin size whose bins exactly tile intervals of the given size or, when none does, the biggest
+     * one at least ten times finer than the interval, so that bins assigned to the interval of their start shift at
+     * most a tenth of it; -1 when the interval is too fine for the pyramid
+     */
+    public static int getBinSize(int interval) {
+        for (int i = BIN_SIZES.length - 1; i >= 0; i--) {
+            if (interval >= BIN_SIZES[i] && interval % BIN_SIZES[i] == 0) {
+                return BIN_SIZES[i];
+            }
+        }
+        for (int i = BIN_SIZES.length - 1; i >= 0; i--) {
+            if (interval >= 10 * BIN_SIZES[i]) {
+                return BIN_SIZES[i];
+            }
+        }
+        return -1;
+    }
+
+}
@@ -1,9 +1,14 @@
 package org.opencb.cellbase.mongodb.db;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.mongodb.*;
 import org.opencb.biodata.models.feature.Region;
+import org.opencb.cellbase.core.common.ChunkId;
 import org.opencb.cellbase.core.common.IntervalFeatureFrequency;
+import org.opencb.cellbase.core.lib.api.AsyncIdDBAdaptor;
+import org.opencb.cellbase.core.lib.api.AsyncRegionDBAdaptor;
 import org.opencb.datastore.core.QueryOptions;
 import org.opencb.datastore.core.QueryResult;
 import org.opencb.datastore.mongodb.MongoDBCollection;
@@ -13,6 +18,7 @@ import org.slf4j.LoggerFactory;
 
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class MongoDBAdaptor {
 
@@ -27,7 +33,43 @@ public class MongoDBAdaptor {
     @Deprecated
     protected DBCollection mongoDBCollection;
 
-    protected static Map<String, Number> cachedQuerySizes = new HashMap<String, Number>();
+    /**
+     * How numTotalResults is calculated when a limit is set and the returned page is full: 'exact' counts the query,
+     * 'cached' reuses a recent count of the same query, 'estimated' counts at most ESTIMATED_COUNT_FACTOR times the
+     * requested results and 'skip' does not count. Estimated and skipped totals are flagged in the warning message.
+     */
+    public static final String COUNT_EXACT = "exact";
+    public static final String COUNT_CACHED = "cached";
+    public static final String COUNT_ESTIMATED = "estimated";
+    public static final String COUNT_SKIP = "skip";
+    public static final String ESTIMATED_TOTAL_RESULTS = "numTotalResults is estimated";
+    public static final String UNKNOWN_TOTAL_RESULTS = "numTotalResults not counted";
+    protected static final int ESTIMATED_COUNT_FACTOR = 10;
+
+    protected static QueryCountCache queryCountCache = new QueryCountCache(10000, 3600000);
+    // Results of queries with the 'cache' option are kept here when it is set
+    protected static QueryResultCache queryResultCache;
+    // Names of the collections queried with the 'cache' option, which MongoDBCollection does not expose
+    private static final Map<MongoDBCollection, String> collectionNames = new WeakHashMap<>();
+    protected String countPolicy = COUNT_EXACT;
+    protected int regionQueryBatchSize = 100;
+    protected int idQueryBatchSize = 200;
+    protected String chunkIdFormat = ChunkId.STRING_FORMAT;
+    // Name of mongoDBCollection2, used for its ProjectionProfiles and IntervalFrequencyPyramid, none when null
+    protected String collectionName;
+
+    // Multi-query execution, queries are run sequentially when no executor is set
+    protected ExecutorService queryExecutorService;
+    // Queries already running in the query executor do not submit more tasks to it, so that they cannot wait for
+    // each other when all its threads are busy
+    private static final ThreadLocal<Boolean> runningInQueryExecutor = new ThreadLocal<Boolean>() {
+        @Override
+        protected Boolean initialValue() {
+            return false;
+        }
+    };
+    protected long queryTimeout = 0;
+    protected boolean partialResults = false;
 
     protected static ResourceBundle resourceBundle;
     protected static Properties applicationProperties;
@@ -118,43 +160,602 @@ public class MongoDBAdaptor {
 
     protected List<QueryResult> executeQueryList2(List<? extends Object> ids, List<DBObject> queries, QueryOptions options,
                                                   MongoDBCollection mongoDBCollection2) {
+        options = applyProjectionProfile(options, mongoDBCollection2);
+        if (queryExecutorService != null && queries.size() > 1 && !runningInQueryExecutor.get()) {
+            return executeQueryList2Parallel(ids, queries, options, mongoDBCollection2);
+        }
+
         List<QueryResult> queryResults = new ArrayList<>(ids.size());
-//        logger.info("executeQueryList2");
-//        System.out.println("executeQueryList2");
-        long dbTimeStart, dbTimeEnd;
+        for (int i = 0; i < queries.size(); i++) {
+            queryResults.add(executeSingleQuery2(ids.get(i), queries.get(i), options, mongoDBCollection2));
+        }
+        return queryResults;
+    }
+
+    /**
+     * Queries are submitted to the shared executor and their results collected in the same order as the queries.
+     * The timeout applies to each query from the moment all of them have been submitted. When 'partialResults' is
+     * set, failed or timed out queries return an empty result with an error message; otherwise the remaining queries
+     * are cancelled and the first failure is thrown.
+     */
+    private List<QueryResult> executeQueryList2Parallel(final List<? extends Object> ids, List<DBObject> queries,
+                                                        final QueryOptions options,
+                                                        final MongoDBCollection mongoDBCollection2) {
+        long timeout = (options != null) ? options.getInt("timeout", (int) queryTimeout) : queryTimeout;
+        boolean partial = (options != null) ? options.getBoolean("partialResults", partialResults) : partialResults;
 
+        List<Future<QueryResult>> futures = new ArrayList<>(queries.size());
         for (int i = 0; i < queries.size(); i++) {
-            DBObject query = queries.get(i);
-            QueryResult queryResult = new org.opencb.datastore.core.QueryResult();
+            final Object id = ids.get(i);
+            final DBObject query = queries.get(i);
+            futures.add(queryExecutorService.submit(new Callable<QueryResult>() {
+                @Override
+                public QueryResult call() throws Exception {
+                    // Tasks run by the caller when the executor queue is full must restore its state
+                    boolean wasRunningInQueryExecutor = runningInQueryExecutor.get();
+                    runningInQueryExecutor.set(true);
+                    try {
+                        return executeSingleQuery2(id, query, options, mongoDBCollection2);
+                    } finally {
+                        runningInQueryExecutor.set(wasRunningInQueryExecutor);
+                    }
+                }
+            }));
+        }
 
-            // Execute query and calculate time
-            dbTimeStart = System.currentTimeMillis();
-            DBCursor cursor = mongoDBCollection2.nativeQuery().find(query, options);
-            List<DBObject> dbObjectList = new LinkedList<>();
-            while (cursor.hasNext()) {
-                dbObjectList.add(cursor.next());
+        List<QueryResult> queryResults = new ArrayList<>(ids.size());
+        long deadline = System.currentTimeMillis() + timeout;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                if (timeout > 0) {
+                    queryResults.add(futures.get(i).get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS));
+                } else {
+                    queryResults.add(futures.get(i).get());
+                }
+            } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                String errorMsg = (e instanceof TimeoutException)
+                        ? "Query timed out after " + timeout + " ms"
+                        : "Query failed: " + ((e.getCause() != null) ? e.getCause().getMessage() : e.getMessage());
+                if (!partial || e instanceof InterruptedException) {
+                    for (Future<QueryResult> future : futures) {
+                        future.cancel(true);
+                    }
+                    if (e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new RuntimeException("Query '" + ids.get(i) + "': " + errorMsg, e);
+                }
+                futures.get(i).cancel(true);
+                logger.warn("Query '{}': {}", ids.get(i), errorMsg);
+                QueryResult queryResult = new QueryResult();
+                queryResult.setId(ids.get(i).toString());
+                queryResult.setErrorMsg(errorMsg);
+                queryResult.setResult(new LinkedList<DBObject>());
+                queryResults.add(queryResult);
             }
-            dbTimeEnd = System.currentTimeMillis();
-            // setting queryResult fields
-            queryResult.setId(ids.get(i).toString());
-            queryResult.setDbTime(Long.valueOf(dbTimeEnd - dbTimeStart).intValue());
-            queryResult.setNumResults(dbObjectList.size());
-            // Limit is set in queryOptions, count number of total results
-            if(options != null && options.getInt("limit", 0) > 0) {
-                queryResult.setNumTotalResults(mongoDBCollection2.count(query).first());
+        }
+        return queryResults;
+    }
+
+    private QueryResult executeSingleQuery2(Object id, DBObject query, QueryOptions options, MongoDBCollection mongoDBCollection2) {
+        if (queryResultCache == null || mongoDataStore == null || options == null || !options.getBoolean("cache", false)) {
+            return runSingleQuery2(id, query, options, mongoDBCollection2);
+        }
+        String database = species + "_" + assembly;
+        queryResultCache.checkDataVersion(database, mongoDataStore);
+        String key = QueryResultCache.getKey(database, getClass().getSimpleName(), getCollectionName(mongoDBCollection2),
+                query, options);
+        QueryResult queryResult = queryResultCache.get(key);
+        if (queryResult == null) {
+            queryResult = runSingleQuery2(id, query, options, mongoDBCollection2);
+            queryResultCache.put(key, queryResult);
+        } else {
+            queryResult.setId(id.toString());
+            queryResult.setDbTime(0);
+        }
+        return queryResult;
+    }
+
+    /**
+     * The name is read once from a cursor of the collection, cursors do not run their query until iterated.
+     */
+    static String getCollectionName(MongoDBCollection mongoDBCollection2) {
+        synchronized (collectionNames) {
+            String name = collectionNames.get(mongoDBCollection2);
+            if (name == null) {
+                DBCursor cursor = mongoDBCollection2.nativeQuery().find(new BasicDBObject(), new QueryOptions());
+                try {
+                    name = cursor.getCollection().getName();
+                } finally {
+                    cursor.close();
+                }
+                collectionNames.put(mongoDBCollection2, name);
+            }
+            return name;
+        }
+    }
+
+    private QueryResult runSingleQuery2(Object id, DBObject query, QueryOptions options, MongoDBCollection mongoDBCollection2) {
+        QueryResult queryResult = new org.opencb.datastore.core.QueryResult();
+
+        // Execute query and calculate time
+        long dbTimeStart = System.currentTimeMillis();
+        DBCursor cursor = mongoDBCollection2.nativeQuery().find(query, options);
+        List<DBObject> dbObjectList = new LinkedList<>();
+        while (cursor.hasNext()) {
+            dbObjectList.add(cursor.next());
+        }
+        long dbTimeEnd = System.currentTimeMillis();
+        // setting queryResult fields
+        queryResult.setId(id.toString());
+        queryResult.setDbTime(Long.valueOf(dbTimeEnd - dbTimeStart).intValue());
+        queryResult.setNumResults(dbObjectList.size());
+        // Limit is set in queryOptions, count number of total results
+        int limit = (options != null) ? options.getInt("limit", 0) : 0;
+        if(limit > 0) {
+            int skip = Math.max(options.getInt("skip", 0), 0);
+            if(dbObjectList.size() < limit && (dbObjectList.size() > 0 || skip == 0)) {
+                // Last page, all results have been seen
+                queryResult.setNumTotalResults(skip + dbObjectList.size());
             } else {
-                queryResult.setNumTotalResults(dbObjectList.size());
+                countTotalResults(queryResult, query, options.getString("countPolicy", countPolicy), skip + limit,
+                        mongoDBCollection2);
             }
-            queryResult.setResult(dbObjectList);
+        } else {
+            queryResult.setNumTotalResults(dbObjectList.size());
+        }
+        queryResult.setResult(dbObjectList);
+        return queryResult;
+    }
 
-            queryResults.add(queryResult);
+    private void countTotalResults(QueryResult queryResult, DBObject query, String countPolicy, int numRequestedResults,
+                                   MongoDBCollection mongoDBCollection2) {
+        switch (countPolicy) {
+            case COUNT_SKIP:
+                queryResult.setNumTotalResults(-1);
+                queryResult.setWarningMsg(UNKNOWN_TOTAL_RESULTS);
+                break;
+            case COUNT_ESTIMATED:
+                // Counting stops at the bound, below it the count is exact
+                int maxCount = ESTIMATED_COUNT_FACTOR * numRequestedResults;
+                int count = mongoDBCollection2.nativeQuery().find(query, new QueryOptions()).limit(maxCount).size();
+                queryResult.setNumTotalResults(count);
+                if(count >= maxCount) {
+                    queryResult.setWarningMsg(ESTIMATED_TOTAL_RESULTS);
+                }
+                break;
+            case COUNT_CACHED:
+                long cachedCount = queryCountCache.get(mongoDBCollection2, query);
+                if(cachedCount < 0) {
+                    cachedCount = mongoDBCollection2.count(query).first();
+                    queryCountCache.put(mongoDBCollection2, query, cachedCount);
+                }
+                queryResult.setNumTotalResults(cachedCount);
+                break;
+            default:
+                queryResult.setNumTotalResults(mongoDBCollection2.count(query).first());
+                break;
         }
+    }
 
+    /**
+     * Runs the queries of a list of regions as $or queries of up to regionQueryBatchSize regions each, so that a single
+     * round trip is done per batch, and splits the returned documents back by the overlap of their startField-endField
+     * interval with each region. Each query must select only documents overlapping its region. Limit and skip apply to
+     * each region, so limited queries are run separately.
+     */
+    protected List<QueryResult> executeRegionQueryList(List<Region> regions, List<DBObject> queries, QueryOptions options,
+                                                       MongoDBCollection mongoDBCollection2, String startField, String endField) {
+        List<String> ids = new ArrayList<>(regions.size());
+        for (Region region : regions) {
+            ids.add(region.toString());
+        }
+        if (regionQueryBatchSize <= 1 || regions.size() <= 1
+                || (options != null && (options.getInt("limit", 0) > 0 || options.getInt("skip", 0) > 0))) {
+            return executeQueryList2(ids, queries, options, mongoDBCollection2);
+        }
+
+        // Coordinates are needed to split the results, they are removed afterwards when they were not requested
+        options = applyProjectionProfile(options, mongoDBCollection2);
+        QueryOptions batchOptions = new QueryOptions();
+        List<String> addedFields = new ArrayList<>();
+        if (options != null) {
+            batchOptions.putAll(options);
+            Set<String> coordinateFields = new LinkedHashSet<>(Arrays.asList("chromosome", startField, endField));
+            List<Object> include = options.getList("include", null);
+            if (include != null && !include.isEmpty()) {
+                List<Object> batchInclude = new ArrayList<>(include);
+                for (String field : coordinateFields) {
+                    if (!batchInclude.contains(field)) {
+                        batchInclude.add(field);
+                        addedFields.add(field);
+                    }
+                }
+                batchOptions.put("include", batchInclude);
+            }
+            List<Object> exclude = options.getList("exclude", null);
+            if (exclude != null && !exclude.isEmpty()) {
+                List<Object> batchExclude = new ArrayList<>(exclude);
+                for (String field : coordinateFields) {
+                    if (batchExclude.remove(field)) {
+                        addedFields.add(field);
+                    }
+                }
+                batchOptions.put("exclude", batchExclude);
+            }
+        }
+
+        List<String> batchIds = new ArrayList<>();
+        List<DBObject> batchQueries = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i += regionQueryBatchSize) {
+            int to = Math.min(i + regionQueryBatchSize, queries.size());
+            BasicDBList regionQueries = new BasicDBList();
+            regionQueries.addAll(queries.subList(i, to));
+            batchQueries.add(new BasicDBObject("$or", regionQueries));
+            batchIds.add(ids.get(i) + ".." + ids.get(to - 1));
+        }
+        List<QueryResult> batchResults = executeQueryList2(batchIds, batchQueries, batchOptions, mongoDBCollection2);
+
+        List<QueryResult> queryResults = new ArrayList<>(regions.size());
+        for (int b = 0; b < batchResults.size(); b++) {
+            QueryResult batchResult = batchResults.get(b);
+            int from = b * regionQueryBatchSize;
+            List<List<DBObject>> regionResults = splitByRegion(regions.subList(from, Math.min(from + regionQueryBatchSize,
+                    regions.size())), (List<DBObject>) batchResult.getResult(), startField, endField);
+            for (DBObject dbObject : (List<DBObject>) batchResult.getResult()) {
+                for (String field : addedFields) {
+                    dbObject.removeField(field);
+                }
+            }
+            for (int i = 0; i < regionResults.size(); i++) {
+                QueryResult queryResult = new QueryResult();
+                queryResult.setId(ids.get(from + i));
+                queryResult.setDbTime(batchResult.getDbTime());
+                queryResult.setNumResults(regionResults.get(i).size());
+                queryResult.setNumTotalResults(regionResults.get(i).size());
+                queryResult.setErrorMsg(batchResult.getErrorMsg());
+                queryResult.setWarningMsg(batchResult.getWarningMsg());
+                queryResult.setResult(regionResults.get(i));
+                queryResults.add(queryResult);
+            }
+        }
         return queryResults;
     }
 
+    /**
+     * Assigns each document to every region overlapping its startField-endField interval, documents without
+     * coordinates are dropped.
+     */
+    static List<List<DBObject>> splitByRegion(List<Region> regions, List<DBObject> dbObjects, String startField, String endField) {
+        List<List<DBObject>> regionResults = new ArrayList<>(regions.size());
+        for (int i = 0; i < regions.size(); i++) {
+            regionResults.add(new ArrayList<DBObject>());
+        }
+        if (dbObjects == null) {
+            return regionResults;
+        }
+        for (DBObject dbObject : dbObjects) {
+            Object chromosome = dbObject.get("chromosome");
+            Object start = dbObject.get(startField);
+            Object end = dbObject.get(endField);
+            if (chromosome == null || !(start instanceof Number) || !(end instanceof Number)) {
+                continue;
+            }
+            for (int i = 0; i < regions.size(); i++) {
+                Region region = regions.get(i);
+                if (region.getChromosome().equals(chromosome.toString()) && ((Number) start).intValue() <= region.getEnd()
+                        && ((Number) end).intValue() >= region.getStart()) {
+                    regionResults.get(i).add(dbObject);
+                }
+            }
+        }
+        return regionResults;
+    }
+
+    /**
+     * Looks the ids up in idField with $in queries of up to idQueryBatchSize ids each, run like any other query list,
+     * and regroups the returned documents into one result per id in the order of the ids. idField may be a path through
+     * arrays, e.g. 'transcripts.xrefs.id'. Limit and skip apply to each id, so limited queries are run separately.
+     */
+    protected List<QueryResult> executeIdQueryList(List<String> ids, String idField, QueryOptions options,
+                                                   MongoDBCollection mongoDBCollection2) {
+        if (idQueryBatchSize <= 1 || ids.size() <= 1
+                || (options != null && (options.getInt("limit", 0) > 0 || options.getInt("skip", 0) > 0))) {
+            List<DBObject> queries = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                queries.add(QueryBuilder.start(idField).is(id).get());
+            }
+            return executeQueryList2(ids, queries, options, mongoDBCollection2);
+        }
+
+        // The id field is needed to regroup the results, it is removed afterwards when it was not requested
+        options = applyProjectionProfile(options, mongoDBCollection2);
+        QueryOptions batchOptions = new QueryOptions();
+        List<String> removedFields = new ArrayList<>();
+        if (options != null) {
+            batchOptions.putAll(options);
+            List<Object> include = options.getList("include", null);
+            if (include != null && !include.isEmpty()) {
+                String notIncludedPath = getNotIncludedPath(idField, include);
+                if (notIncludedPath != null) {
+                    List<Object> batchInclude = new ArrayList<>(include);
+                    batchInclude.add(idField);
+                    batchOptions.put("include", batchInclude);
+                    removedFields.add(notIncludedPath);
+                }
+            }
+            List<Object> exclude = options.getList("exclude", null);
+            if (exclude != null && !exclude.isEmpty()) {
+                List<Object> batchExclude = new ArrayList<>(exclude.size());
+                for (Object field : exclude) {
+                    if (idField.equals(field) || idField.startsWith(field + ".")) {
+                        removedFields.add(field.toString());
+                    } else {
+                        batchExclude.add(field);
+                    }
+                }
+                batchOptions.put("exclude", batchExclude);
+            }
+        }
+
+        List<String> batchIds = new ArrayList<>();
+        List<DBObject> batchQueries = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += idQueryBatchSize) {
+            int to = Math.min(i + idQueryBatchSize, ids.size());
+            batchQueries.add(QueryBuilder.start(idField).in(new ArrayList<>(new LinkedHashSet<>(ids.subList(i, to)))).get());
+            batchIds.add(ids.get(i) + ".." + ids.get(to - 1));
+        }
+        List<QueryResult> batchResults = executeQueryList2(batchIds, batchQueries, batchOptions, mongoDBCollection2);
+
+        List<QueryResult> queryResults = new ArrayList<>(ids.size());
+        for (int b = 0; b < batchResults.size(); b++) {
+            QueryResult batchResult = batchResults.get(b);
+            int from = b * idQueryBatchSize;
+            List<List<DBObject>> idResults = splitById(ids.subList(from, Math.min(from + idQueryBatchSize, ids.size())),
+                    (List<DBObject>) batchResult.getResult(), idField);
+            if (batchResult.getResult() != null) {
+                for (DBObject dbObject : (List<DBObject>) batchResult.getResult()) {
+                    for (String field : removedFields) {
+                        removeField(dbObject, field.split("\\."), 0);
+                    }
+                }
+            }
+            for (int i = 0; i < idResults.size(); i++) {
+                QueryResult queryResult = new QueryResult();
+                queryResult.setId(ids.get(from + i));
+                queryResult.setDbTime(batchResult.getDbTime());
+                queryResult.setNumResults(idResults.get(i).size());
+                queryResult.setNumTotalResults(idResults.get(i).size());
+                queryResult.setErrorMsg(batchResult.getErrorMsg());
+                queryResult.setWarningMsg(batchResult.getWarningMsg());
+                queryResult.setResult(idResults.get(i));
+                queryResults.add(queryResult);
+            }
+        }
+        return queryResults;
+    }
+
+    /**
+     * Assigns each document to every id found in its idField, repeated ids get the same documents.
+     */
+    static List<List<DBObject>> splitById(List<String> ids, List<DBObject> dbObjects, String idField) {
+        List<List<DBObject>> idResults = new ArrayList<>(ids.size());
+        Map<String, List<Integer>> idPositions = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            idResults.add(new ArrayList<DBObject>());
+            if (!idPositions.containsKey(ids.get(i))) {
+                idPositions.put(ids.get(i), new ArrayList<Integer>());
+            }
+            idPositions.get(ids.get(i)).add(i);
+        }
+        if (dbObjects == null) {
+            return idResults;
+        }
+        String[] path = idField.split("\\.");
+        for (DBObject dbObject : dbObjects) {
+            Set<String> values = new HashSet<>();
+            getFieldValues(dbObject, path, 0, values);
+            for (String value : values) {
+                List<Integer> positions = idPositions.get(value);
+                if (positions != null) {
+                    for (int position : positions) {
+                        idResults.get(position).add(dbObject);
+                    }
+                }
+            }
+        }
+        return idResults;
+    }
+
+    private static void getFieldValues(Object value, String[] path, int depth, Set<String> values) {
+        if (value instanceof List) {
+            for (Object element : (List) value) {
+                getFieldValues(element, path, depth, values);
+            }
+        } else if (depth == path.length) {
+            if (value != null) {
+                values.add(value.toString());
+            }
+        } else if (value instanceof DBObject) {
+            getFieldValues(((DBObject) value).get(path[depth]), path, depth + 1, values);
+        }
+    }
+
+    private static void removeField(Object value, String[] path, int depth) {
+        if (value instanceof List) {
+            for (Object element : (List) value) {
+                removeField(element, path, depth);
+            }
+        } else if (value instanceof DBObject) {
+            if (depth == path.length - 1) {
+                ((DBObject) value).removeField(path[depth]);
+            } else {
+                removeField(((DBObject) value).get(path[depth]), path, depth + 1);
+            }
+        }
+    }
+
+    /**
+     * @return the shortest prefix of the field path not returned with the included fields, null when the field is
+     * returned
+     */
+    static String getNotIncludedPath(String field, List<Object> include) {
+        String[] path = field.split("\\.");
+        String prefix = null;
+        for (String name : path) {
+            prefix = (prefix == null) ? name : prefix + "." + name;
+            boolean partiallyIncluded = false;
+            for (Object includedField : include) {
+                if (prefix.equals(includedField)) {
+                    return null;
+                }
+                partiallyIncluded |= includedField.toString().startsWith(prefix + ".");
+            }
+            if (!partiallyIncluded) {
+                return prefix;
+            }
+        }
+        return null;
+    }
+
+    public void setIdQueryBatchSize(int idQueryBatchSize) {
+        this.idQueryBatchSize = idQueryBatchSize;
+    }
+
+    public void setRegionQueryBatchSize(int regionQueryBatchSize) {
+        this.regionQueryBatchSize = regionQueryBatchSize;
+    }
+
+    public void setCountPolicy(String countPolicy) {
+        this.countPolicy = countPolicy;
+    }
+
+    public static void setQueryCountCache(QueryCountCache queryCountCache) {
+        MongoDBAdaptor.queryCountCache = queryCountCache;
+    }
+
+    public static void setQueryResultCache(QueryResultCache queryResultCache) {
+        MongoDBAdaptor.queryResultCache = queryResultCache;
+    }
+
+    /**
+     * Runs the blocking region query of an adaptor implementing AsyncRegionDBAdaptor through submitQuery.
+     */
+    protected ListenableFuture<List<QueryResult>> submitRegionQuery(final AsyncRegionDBAdaptor dbAdaptor,
+                                                                    final List<Region> regions, final QueryOptions options) {
+        return submitQuery(new Callable<List<QueryResult>>() {
+            @Override
+            public List<QueryResult> call() throws Exception {
+                return dbAdaptor.getAllByRegionList(regions, options);
+            }
+        });
+    }
+
+    /**
+     * Runs the blocking id query of an adaptor implementing AsyncIdDBAdaptor through submitQuery.
+     */
+    protected ListenableFuture<List<QueryResult>> submitIdQuery(final AsyncIdDBAdaptor dbAdaptor,
+                                                                final List<String> idList, final QueryOptions options) {
+        return submitQuery(new Callable<List<QueryResult>>() {
+            @Override
+            public List<QueryResult> call() throws Exception {
+                return dbAdaptor.getAllByIdList(idList, options);
+            }
+        });
+    }
+
+    /**
+     * The synchronous driver does not provide asynchronous queries, so the blocking ones are run in the query executor.
+     * When no executor is set the query runs in the calling thread and the returned future is already completed.
+     */
+    protected <T> ListenableFuture<T> submitQuery(final Callable<T> query) {
+        if (queryExecutorService == null) {
+            return MoreExecutors.newDirectExecutorService().submit(query);
+        }
+        return MoreExecutors.listeningDecorator(queryExecutorService).submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                boolean wasRunningInQueryExecutor = runningInQueryExecutor.get();
+                runningInQueryExecutor.set(true);
+                try {
+                    return query.call();
+                } finally {
+                    runningInQueryExecutor.set(wasRunningInQueryExecutor);
+                }
+            }
+        });
+    }
+
+    public void setQueryExecutorService(ExecutorService queryExecutorService) {
+        this.queryExecutorService = queryExecutorService;
+    }
+
+    public void setQueryTimeout(long queryTimeout) {
+        this.queryTimeout = queryTimeout;
+    }
+
+    public void setPartialResults(boolean partialResults) {
+        this.partialResults = partialResults;
+    }
+
     protected String getChunkIdPrefix(String chromosome, int position, int chunkSize) {
-        return chromosome + "_" +  position/chunkSize + "_" + chunkSize/1000 + "k";
+        return ChunkId.getChunkId(chromosome, position / chunkSize, chunkSize);
+    }
+
+    /**
+     * Starts a query of the documents whose 'chunkIds' contain any chunk overlapping start-end, in the chunk id format
+     * of the database. Numeric chunk ids of different scaffolds may collide, so they are queried with the chromosome.
+     */
+    protected QueryBuilder startChunkIdQuery(String chromosome, int start, int end, int chunkSize) {
+        BasicDBList chunkIds = new BasicDBList();
+        for (int chunkNumber = start / chunkSize; chunkNumber <= end / chunkSize; chunkNumber++) {
+            if (ChunkId.NUMERIC_FORMAT.equals(chunkIdFormat)) {
+                chunkIds.add(ChunkId.getNumericChunkId(chromosome, chunkNumber, chunkSize));
+            } else {
+                chunkIds.add(ChunkId.getChunkId(chromosome, chunkNumber, chunkSize));
+            }
+        }
+        QueryBuilder builder = (chunkIds.size() == 1)
+                ? QueryBuilder.start("chunkIds").is(chunkIds.get(0))
+                : QueryBuilder.start("chunkIds").in(chunkIds);
+        if (ChunkId.NUMERIC_FORMAT.equals(chunkIdFormat)) {
+            builder = builder.and("chromosome").is(chromosome);
+        }
+        return builder;
+    }
+
+    /**
+     * Translates the 'profile' query option of queries to the main collection into the 'include' fields of the profile
+     * for collectionName, added to the explicitly included ones. The given options are not modified.
+     */
+    protected QueryOptions applyProjectionProfile(QueryOptions options, MongoDBCollection mongoDBCollection2) {
+        if (options == null || collectionName == null || mongoDBCollection2 != this.mongoDBCollection2
+                || options.getString("profile", null) == null) {
+            return options;
+        }
+        String profileInclude = ProjectionProfiles.getInclude(collectionName, options.getString("profile"));
+        QueryOptions profileOptions = new QueryOptions();
+        profileOptions.putAll(options);
+        profileOptions.remove("profile");
+        if (profileInclude != null) {
+            List<Object> include = options.getList("include", null);
+            if (include != null && !include.isEmpty()) {
+                List<Object> mergedInclude = new ArrayList<>(include);
+                for (String field : profileInclude.split(",")) {
+                    if (!mergedInclude.contains(field)) {
+                        mergedInclude.add(field);
+                    }
+                }
+                profileOptions.put("include", mergedInclude);
+            } else {
+                profileOptions.put("include", profileInclude);
+            }
+        }
+        return profileOptions;
+    }
+
+    public void setChunkIdFormat(String chunkIdFormat) {
+        this.chunkIdFormat = chunkIdFormat;
     }
 
     @Deprecated
@@ -423,53 +1024,108 @@ public class MongoDBAdaptor {
         return queryResult;
     }
 
+    /**
+     * Counts the features starting in each interval of 'interval' bases overlapping the region, with the natural
+     * logarithm of the count in 'features_count'. Intervals at the edges of the region are counted whole, as their
+     * returned start and end say. Counts are summed from the IntervalFrequencyPyramid when it was built for the
+     * chromosome and one of its bin sizes is fine enough for the interval, otherwise they are aggregated from the
+     * collection.
+     */
     public QueryResult getAllIntervalFrequencies(Region region, QueryOptions options) {
-        //  MONGO QUERY TO IMPLEMENT
-        //    db.variation.aggregate({$match: {$and: [{chromosome: "1"}, {start: {$gt: 251391, $lt: 2701391}}]}}, {$group: {_id: {$subtract: [{$divide: ["$start", 40000]}, {$divide: [{$mod: ["$start", 40000]}, 40000]}]}, totalCount: {$sum: 1}}})
-        //        {
-        //            $match: {
-        //                $and: [{
-        //                    chromosome: "1"
-        //                }, {
-        //                    start: {
-        //                        $gt: 251391,
-        //                                $lt: 2701391
-        //                    }
-        //                }
-        //                ]
-        //            }
-        //        }, {
-        //            $group: {
-        //                _id: {
-        //                    $subtract: [{
-        //                        $divide: ["$start", 40000]
-        //                    }, {
-        //                        $divide: [{
-        //                            $mod: ["$start", 40000]
-        //                        },
-        //                        40000
-        //                        ]
-        //                    }
-        //                    ]
-        //                },
-        //                totalCount: {
-        //                    $sum: 1
-        //                }
-        //            }
-        //        }
-
+        long dbTimeStart = System.currentTimeMillis();
         int interval = options.getInt("interval");
 
-        BasicDBObject start = new BasicDBObject("$gt", region.getStart());
-        start.append("$lt", region.getEnd());
+        int firstChunkId = getChunkId(region.getStart(), interval);
+        int lastChunkId = getChunkId(region.getEnd(), interval);
+        int start = firstChunkId * interval;
+        int end = (lastChunkId + 1) * interval - 1;
+        Map<Long, Integer> intervalCounts = getPyramidIntervalCounts(region.getChromosome(), start, end, interval);
+        if (intervalCounts == null) {
+            intervalCounts = getAggregatedIntervalCounts(region.getChromosome(), start, end, interval);
+        }
+
+        BasicDBList resultList = new BasicDBList();
+        for (int chunkId = firstChunkId; chunkId <= lastChunkId; chunkId++) {
+            Integer count = intervalCounts.get((long) chunkId);
+            DBObject intervalObj = new BasicDBObject();
+            intervalObj.put("_id", chunkId);
+            intervalObj.put("start", getChunkStart(chunkId, interval));
+            intervalObj.put("end", getChunkEnd(chunkId, interval));
+            intervalObj.put("chromosome", region.getChromosome());
+            intervalObj.put("features_count", (count != null && count > 0) ? Math.log(count) : 0);
+            resultList.add(intervalObj);
+        }
+
+        QueryResult queryResult = new QueryResult();
+        queryResult.setResult(resultList);
+        queryResult.setId(region.toString());
+        queryResult.setResultType("frequencies");
+        queryResult.setDbTime((int) (System.currentTimeMillis() - dbTimeStart));
+        return queryResult;
+    }
+
+    /**
+     * @return the number of features per interval id summed from the pyramid bins between start and end, or null when
+     * the pyramid has no blocks there, e.g. it was not built for this collection, or its bins are too coarse for the
+     * interval. Blocks without features are not stored, so empty stretches are aggregated, which finds nothing quickly
+     */
+    private Map<Long, Integer> getPyramidIntervalCounts(String chromosome, int start, int end, int interval) {
+        int binSize = IntervalFrequencyPyramid.getBinSize(interval);
+        if (binSize < 0 || collectionName == null || mongoDataStore == null) {
+            return null;
+        }
+        MongoDBCollection pyramidCollection = mongoDataStore.getCollection(IntervalFrequencyPyramid.COLLECTION);
+
+        int firstBin = Math.max(start, 0) / binSize;
+        int lastBin = Math.max(end, 0) / binSize;
+        DBObject query = QueryBuilder.start("featureType").is(collectionName)
+                .and("chromosome").is(chromosome)
+                .and("binSize").is(binSize)
+                .and("block").greaterThanEquals(firstBin / IntervalFrequencyPyramid.BLOCK_SIZE)
+                .lessThanEquals(lastBin / IntervalFrequencyPyramid.BLOCK_SIZE).get();
+
+        Map<Long, Integer> intervalCounts = new HashMap<>();
+        boolean found = false;
+        DBCursor cursor = pyramidCollection.nativeQuery().find(query, new QueryOptions());
+        try {
+            while (cursor.hasNext()) {
+                found = true;
+                DBObject block = cursor.next();
+                int blockFirstBin = ((Number) block.get("block")).intValue() * IntervalFrequencyPyramid.BLOCK_SIZE;
+                List counts = (List) block.get("counts");
+                for (int i = Math.max(firstBin - blockFirstBin, 0); i < counts.size() && blockFirstBin + i <= lastBin; i++) {
+                    int count = ((Number) counts.get(i)).intValue();
+                    if (count > 0) {
+                        // Bins not tiling the interval exactly are assigned to the interval of their start
+                        long intervalId = (long) (blockFirstBin + i) * binSize / interval;
+                        Integer intervalCount = intervalCounts.get(intervalId);
+                        intervalCounts.put(intervalId, (intervalCount == null) ? count : intervalCount + count);
+                    }
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        if (!found) {
+            return null;
+        }
+        logger.debug("getAllIntervalFrequencies: {}:{}-{} served from {} bp pyramid bins", chromosome, start, end, binSize);
+        return intervalCounts;
+    }
+
+    /**
+     * @return the number of features starting between start and end per interval id
+     */
+    private Map<Long, Integer> getAggregatedIntervalCounts(String chromosome, int start, int end, int interval) {
+        BasicDBObject startQuery = new BasicDBObject("$gte", start);
+        startQuery.append("$lte", end);
 
         BasicDBList andArr = new BasicDBList();
-        andArr.add(new BasicDBObject("chromosome", region.getChromosome()));
-        andArr.add(new BasicDBObject("start", start));
+        andArr.add(new BasicDBObject("chromosome", chromosome));
+        andArr.add(new BasicDBObject("start", startQuery));
 
         BasicDBObject match = new BasicDBObject("$match", new BasicDBObject("$and", andArr));
 
-
         BasicDBList divide1 = new BasicDBList();
         divide1.add("$start");
         divide1.add(interval);
@@ -482,7 +1138,6 @@ public class MongoDBAdaptor {
         subtractList.add(new BasicDBObject("$divide", divide1));
         subtractList.add(new BasicDBObject("$divide", divide2));
 
-
         BasicDBObject substract = new BasicDBObject("$subtract", subtractList);
 
         DBObject totalCount = new BasicDBObject("$sum", 1);
@@ -493,101 +1148,20 @@ public class MongoDBAdaptor {
 
         BasicDBObject sort = new BasicDBObject("$sort", new BasicDBObject("_id", 1));
 
-        logger.info("getAllIntervalFrequencies - (>·_·)>");
-        System.out.println(options.toString());
-
-        System.out.println(match.toString());
-        System.out.println(group.toString());
-        System.out.println(sort.toString());
-
-        AggregationOutput output = mongoDBCollection.aggregate(match, group, sort);
-
-        System.out.println(output.getCommand());
+        // Adaptors built on the MongoDataStore have no legacy DBCollection
+        DBCollection dbCollection = (mongoDBCollection != null) ? mongoDBCollection
+                : mongoDataStore.getDb().getCollection(collectionName);
+        logger.debug("getAllIntervalFrequencies: aggregating {}, {}, {}", match, group, sort);
+        AggregationOutput output = dbCollection.aggregate(match, group, sort);
 
-        Map<Long, DBObject> ids = new HashMap<>();
+        Map<Long, Integer> intervalCounts = new HashMap<>();
         for (DBObject intervalObj : output.results()) {
-            Long _id = Math.round((Double) intervalObj.get("_id"));//is double
-
-            DBObject intervalVisited = ids.get(_id);
-            if (intervalVisited == null) {
-                intervalObj.put("_id", _id);
-                intervalObj.put("start", getChunkStart(_id.intValue(), interval));
-                intervalObj.put("end", getChunkEnd(_id.intValue(), interval));
-                intervalObj.put("chromosome", region.getChromosome());
-                intervalObj.put("features_count", Math.log((int) intervalObj.get("features_count")));
-                ids.put(_id, intervalObj);
-            } else {
-                Double sum = (Double) intervalVisited.get("features_count") + Math.log((int) intervalObj.get("features_count"));
-                intervalVisited.put("features_count", sum.intValue());
-            }
+            Long _id = Math.round(((Number) intervalObj.get("_id")).doubleValue());
+            int count = ((Number) intervalObj.get("features_count")).intValue();
+            Integer intervalCount = intervalCounts.get(_id);
+            intervalCounts.put(_id, (intervalCount == null) ? count : intervalCount + count);
         }
-
-        /****/
-        BasicDBList resultList = new BasicDBList();
-        int firstChunkId = getChunkId(region.getStart(), interval);
-        int lastChunkId = getChunkId(region.getEnd(), interval);
-        DBObject intervalObj;
-        for (int chunkId = firstChunkId; chunkId <= lastChunkId; chunkId++) {
-            intervalObj = ids.get((long) chunkId);
-            if (intervalObj == null) {
-                intervalObj = new BasicDBObject();
-                intervalObj.put("_id", chunkId);
-                intervalObj.put("start", getChunkStart(chunkId, interval));
-                intervalObj.put("end", getChunkEnd(chunkId, interval));
-                intervalObj.put("chromosome", region.getChromosome());
-                intervalObj.put("features_count", 0);
-            }
-            resultList.add(intervalObj);
-        }
-        /****/
-
-        QueryResult queryResult = new QueryResult();
-        queryResult.setResult(resultList);
-        queryResult.setId(region.toString());
-        queryResult.setResultType("frequencies");
-
-        return queryResult;
-
-
-        /***************************/
-        //        QueryBuilder builder = QueryBuilder.start("chromosome").is(region.getSequenceName()).and("end")
-        //                .greaterThan(region.getStart()).and("start").lessThan(region.getEnd());
-        //
-        //        int numIntervals = (region.getEnd() - region.getStart()) / interval + 1;
-        //        int[] intervalCount = new int[numIntervals];
-        //
-        //        List<Variation> variationList = executeQuery(builder.get(), Arrays.asList("id,chromosome,end,strand,type,reference,alternate,alleleString,species,assembly,source,version,transcriptVariations,xrefs,featureId,featureAlias,variantFreq,validationStatus"));
-        //
-        //        System.out.println("Variation index");
-        //        System.out.println("numIntervals: " + numIntervals);
-        //        for (Variation variation : variationList) {
-        //            System.out.print("gsnp start:" + variation.getStart() + " ");
-        //            if (variation.getStart() >= region.getStart() && variation.getStart() <= region.getEnd()) {
-        //                int intervalIndex = (variation.getStart() - region.getStart()) / interval; // truncate
-        //                System.out.print(intervalIndex + " ");
-        //                intervalCount[intervalIndex]++;
-        //            }
-        //        }
-        //        System.out.println("Variation index");
-        //
-        //        int intervalStart = region.getStart();
-        //        int intervalEnd = intervalStart + interval - 1;
-        //        BasicDBList intervalList = new BasicDBList();
-        //        for (int i = 0; i < numIntervals; i++) {
-        //            BasicDBObject intervalObj = new BasicDBObject();
-        //            intervalObj.put("start", intervalStart);
-        //            intervalObj.put("end", intervalEnd);
-        //            intervalObj.put("interval", i);
-        //            intervalObj.put("value", intervalCount[i]);
-        //            intervalList.add(intervalObj);
-        //            intervalStart = intervalEnd + 1;
-        //            intervalEnd = intervalStart + interval - 1;
-        //        }
-        //
-        //        System.out.println(region.getSequenceName());
-        //        System.out.println(region.getStart());
-        //        System.out.println(region.getEnd());
-        //        return intervalList.toString();
+        return intervalCounts;
     }
 
 
@@ -4,6 +4,7 @@ import com.mongodb.DB;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientOptions;
 import com.mongodb.ServerAddress;
+import org.opencb.cellbase.core.common.IndexedFastaReader;
 import org.opencb.cellbase.core.common.core.CellbaseConfiguration;
 import org.opencb.cellbase.core.lib.DBAdaptorFactory;
 import org.opencb.cellbase.core.lib.api.*;
@@ -24,14 +25,28 @@ import org.opencb.datastore.mongodb.MongoDataStoreManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.UnknownHostException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class MongoDBAdaptorFactory extends DBAdaptorFactory {
 
     @Deprecated
     private static Map<String, DB> mongoDBFactory;
-    private static Map<String, MongoDataStore> mongoDatastoreFactory;
+    private static ConcurrentMap<String, MongoDataStore> mongoDatastoreFactory;
+    // Adaptors are immutable once created, they are shared by all requests and keyed by species, assembly and type
+    private static ConcurrentMap<String, Object> dbAdaptorCache;
+    // Gene indexes may be null, both maps are guarded by the class lock
+    private static Map<String, GeneIntervalIndex> geneIntervalIndexFactory;
+    private static Map<String, ProteinSubstitutionScoreCache> proteinSubstitutionScoreCacheFactory;
+    private static Map<String, GenomeSequenceChunkCache> genomeSequenceChunkCacheFactory;
+    private static ExecutorService annotationExecutorService;
+    private static ExecutorService queryExecutorService;
+    private static QueryCountCache queryCountCache;
+    private static QueryResultCache queryResultCache;
+    private static Map<String, IndexedFastaReader> indexedFastaReaderFactory;
 
 
     // private static Config applicationProperties;
@@ -46,9 +61,14 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
     static {
         // mongoDBFactory = new HashMap<String, HibernateDBAdaptor>(20);
 //        speciesAlias = new HashMap<>();
-        mongoDBFactory = new HashMap<>(10);
+        mongoDBFactory = Collections.synchronizedMap(new HashMap<String, DB>(10));
 
-        mongoDatastoreFactory = new HashMap<>(10);
+        mongoDatastoreFactory = new ConcurrentHashMap<>(10);
+        dbAdaptorCache = new ConcurrentHashMap<>(100);
+        geneIntervalIndexFactory = new HashMap<>(10);
+        proteinSubstitutionScoreCacheFactory = new HashMap<>(10);
+        genomeSequenceChunkCacheFactory = new HashMap<>(10);
+        indexedFastaReaderFactory = new HashMap<>(10);
 
         // reading application.properties file
 //        resourceBundle = ResourceBundle.getBundle("mongodb");
@@ -88,6 +108,77 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
     public MongoDBAdaptorFactory(CellbaseConfiguration config){
         super();
         this.config = config;
+        MongoDBAdaptor.setQueryCountCache(getQueryCountCache());
+        MongoDBAdaptor.setQueryResultCache(getQueryResultCache());
+    }
+
+    private MongoDataStore getMongoDataStore(String speciesAssemblyPrefix, String speciesId, String assembly) {
+        MongoDataStore mongoDataStore = mongoDatastoreFactory.get(speciesAssemblyPrefix);
+        if(mongoDataStore == null) {
+            synchronized (MongoDBAdaptorFactory.class) {
+                mongoDataStore = mongoDatastoreFactory.get(speciesAssemblyPrefix);
+                if(mongoDataStore == null) {
+                    mongoDataStore = createCellBaseMongoDatastore(speciesId, assembly);
+                    mongoDatastoreFactory.put(speciesAssemblyPrefix, mongoDataStore);
+                }
+            }
+        }
+        return mongoDataStore;
+    }
+
+    private <T> T getCachedAdaptor(String speciesAssemblyPrefix, Class<T> dbAdaptorClass) {
+        return dbAdaptorClass.cast(dbAdaptorCache.get(speciesAssemblyPrefix + ":" + dbAdaptorClass.getSimpleName()));
+    }
+
+    /**
+     * @return the given adaptor or, if another thread cached one first, the cached adaptor
+     */
+    private <T> T cacheAdaptor(String speciesAssemblyPrefix, Class<T> dbAdaptorClass, T dbAdaptor) {
+        Object cachedDBAdaptor = dbAdaptorCache.putIfAbsent(speciesAssemblyPrefix + ":" + dbAdaptorClass.getSimpleName(), dbAdaptor);
+        return (cachedDBAdaptor != null) ? dbAdaptorClass.cast(cachedDBAdaptor) : dbAdaptor;
+    }
+
+    /**
+     * Drops the cached adaptors, gene index, protein score cache and genome sequence chunks of a species and assembly so that they are created
+     * again with the current data, e.g. after loading new data. Its FASTA file is closed and mapped again on next use, so a file replaced at
+     * the same path is read. Database connections are kept.
+     */
+    public void refresh(String species, String assembly) {
+        String speciesAssemblyPrefix = getSpeciesAssemblyPrefix(species, assembly);
+        Iterator<String> iterator = dbAdaptorCache.keySet().iterator();
+        while (iterator.hasNext()) {
+            if(iterator.next().startsWith(speciesAssemblyPrefix + ":")) {
+                iterator.remove();
+            }
+        }
+        synchronized (MongoDBAdaptorFactory.class) {
+            geneIntervalIndexFactory.remove(speciesAssemblyPrefix);
+            proteinSubstitutionScoreCacheFactory.remove(speciesAssemblyPrefix);
+            genomeSequenceChunkCacheFactory.remove(speciesAssemblyPrefix);
+            closeIndexedFastaReader(config.getGenomeSequenceFasta(config.getAlias(species), assembly));
+        }
+    }
+
+    /**
+     * Drops all cached adaptors, gene indexes, protein score caches, genome sequence chunks, query counts and query
+     * results, and closes all FASTA files.
+     */
+    public void refresh() {
+        dbAdaptorCache.clear();
+        synchronized (MongoDBAdaptorFactory.class) {
+            geneIntervalIndexFactory.clear();
+            proteinSubstitutionScoreCacheFactory.clear();
+            genomeSequenceChunkCacheFactory.clear();
+            for (String fastaFile : new ArrayList<>(indexedFastaReaderFactory.keySet())) {
+                closeIndexedFastaReader(fastaFile);
+            }
+            if(queryCountCache != null) {
+                queryCountCache.clear();
+            }
+            if(queryResultCache != null) {
+                queryResultCache.clear();
+            }
+        }
     }
 
     private MongoDataStore createCellBaseMongoDatastore(String species, String assembly) {
@@ -198,8 +289,12 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
         }
     }
 
+    /**
+     * Drops all cached data and closes the FASTA files, see refresh().
+     */
     @Override
     public void close() {
+        refresh();
         for (DB sessionFactory : mongoDBFactory.values()) {
             if (sessionFactory != null) {
                 sessionFactory.cleanCursors(true);
@@ -216,12 +311,60 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
     @Override
     public GenomeSequenceDBAdaptor getGenomeSequenceDBAdaptor(String species, String assembly) {
         String speciesAssemblyPrefix = getSpeciesAssemblyPrefix(species, assembly);
-        String speciesId = config.getAlias(species);
-        if(!mongoDatastoreFactory.containsKey(speciesAssemblyPrefix)) {
-            MongoDataStore mongoDataStore = createCellBaseMongoDatastore(speciesId, assembly);
-            mongoDatastoreFactory.put(speciesAssemblyPrefix, mongoDataStore);
+        GenomeSequenceDBAdaptor genomeSequenceDBAdaptor = getCachedAdaptor(speciesAssemblyPrefix, GenomeSequenceDBAdaptor.class);
+        if(genomeSequenceDBAdaptor == null) {
+            String speciesId = config.getAlias(species);
+            IndexedFastaReader indexedFastaReader = getIndexedFastaReader(config.getGenomeSequenceFasta(speciesId, assembly));
+            if(indexedFastaReader != null) {
+                genomeSequenceDBAdaptor = cacheAdaptor(speciesAssemblyPrefix, GenomeSequenceDBAdaptor.class,
+                        new FastaGenomeSequenceDBAdaptor(indexedFastaReader, assembly));
+            } else {
+                MongoDataStore mongoDataStore = getMongoDataStore(speciesAssemblyPrefix, speciesId, assembly);
+                GenomeSequenceMongoDBAdaptor genomeSequenceMongoDBAdaptor =
+                        configureQueryExecution(new GenomeSequenceMongoDBAdaptor(speciesId, assembly, mongoDataStore));
+                genomeSequenceMongoDBAdaptor.setChunkCache(getGenomeSequenceChunkCache(speciesAssemblyPrefix));
+                genomeSequenceDBAdaptor = cacheAdaptor(speciesAssemblyPrefix, GenomeSequenceDBAdaptor.class,
+                        genomeSequenceMongoDBAdaptor);
+            }
+        }
+        return genomeSequenceDBAdaptor;
+    }
+
+    /**
+     * FASTA files are mapped once and kept open until refresh() or close().
+     * @return the reader of the file, null when no file is configured or it cannot be read so that the database is
+     * queried instead
+     */
+    private static synchronized IndexedFastaReader getIndexedFastaReader(String fastaFile) {
+        if(fastaFile == null) {
+            return null;
+        }
+        IndexedFastaReader indexedFastaReader = indexedFastaReaderFactory.get(fastaFile);
+        if(indexedFastaReader == null) {
+            try {
+                indexedFastaReader = new IndexedFastaReader(Paths.get(fastaFile));
+                indexedFastaReaderFactory.put(fastaFile, indexedFastaReader);
+            } catch (IOException e) {
+                LoggerFactory.getLogger(MongoDBAdaptorFactory.class).error("Error opening FASTA file " + fastaFile
+                        + ", genome sequence is read from the database: " + e.getMessage());
+            }
+        }
+        return indexedFastaReader;
+    }
+
+    /**
+     * Closes the file and forgets its reader. Its mappings stay valid until they are garbage collected, so requests
+     * still using it finish, but the file must not be truncated in place meanwhile.
+     */
+    private static synchronized void closeIndexedFastaReader(String fastaFile) {
+        IndexedFastaReader indexedFastaReader = (fastaFile != null) ? indexedFastaReaderFactory.remove(fastaFile) : null;
+        if(indexedFastaReader != null) {
+            try {
+                indexedFastaReader.close();
+            } catch (IOException e) {
+                LoggerFactory.getLogger(MongoDBAdaptorFactory.class).warn("Error closing FASTA file " + fastaFile + ": " + e.getMessage());
+            }
         }
-        return new GenomeSequenceMongoDBAdaptor(speciesId, assembly, mongoDatastoreFactory.get(speciesAssemblyPrefix));
     }
 
 
@@ -233,12 +376,14 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
     @Override
     public ChromosomeDBAdaptor getChromosomeDBAdaptor(String species, String assembly) {
         String speciesAssemblyPrefix = getSpeciesAssemblyPrefix(species, assembly);
-        String speciesId = config.getAlias(species);
-        if(!mongoDatastoreFactory.containsKey(speciesAssemblyPrefix)) {
-            MongoDataStore mongoDataStore = createCellBaseMongoDatastore(speciesId, assembly);
-            mongoDatastoreFactory.put(speciesAssemblyPrefix, mongoDataStore);
+        ChromosomeDBAdaptor chromosomeDBAdaptor = getCachedAdaptor(speciesAssemblyPrefix, ChromosomeDBAdaptor.class);
+        if(chromosomeDBAdaptor == null) {
+            String speciesId = config.getAlias(species);
+            MongoDataStore mongoDataStore = getMongoDataStore(speciesAssemblyPrefix, speciesId, assembly);
+            chromosomeDBAdaptor = cacheAdaptor(speciesAssemblyPrefix, ChromosomeDBAdaptor.class,
+                    configureQueryExecution(new ChromosomeMongoDBAdaptor(speciesId, assembly, mongoDataStore)));
         }
-        return new ChromosomeMongoDBAdaptor(speciesId, assembly, mongoDatastoreFactory.get(speciesAssemblyPrefix));
+        return chromosomeDBAdaptor;
     }
 
 
@@ -250,12 +395,14 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
     @Override
     public ConservedRegionDBAdaptor getConservedRegionDBAdaptor(String species, String assembly) {
         String speciesAssemblyPrefix = getSpeciesAssemblyPrefix(species, assembly);
-        String speciesId = config.getAlias(species);
-        if(!mongoDatastoreFactory.containsKey(speciesAssemblyPrefix)) {
-            MongoDataStore mongoDataStore = createCellBaseMongoDatastore(speciesId, assembly);
-            mongoDatastoreFactory.put(speciesAssemblyPrefix, mongoDataStore);
+        ConservedRegionDBAdaptor conservedRegionDBAdaptor = getCachedAdaptor(speciesAssemblyPrefix, ConservedRegionDBAdaptor.class);
+        if(conservedRegionDBAdaptor == null) {
+            String speciesId = config.getAlias(species);
+            MongoDataStore mongoDataStore = getMongoDataStore(speciesAssemblyPrefix, speciesId, assembly);
+            conservedRegionDBAdaptor = cacheAdaptor(speciesAssemblyPrefix, ConservedRegionDBAdaptor.class,
+                    configureQueryExecution(new ConservedRegionMongoDBAdaptor(speciesId, assembly, mongoDataStore)));
         }
-        return new ConservedRegionMongoDBAdaptor(speciesId, assembly, mongoDatastoreFactory.get(speciesAssemblyPrefix));
+        return conservedRegionDBAdaptor;
     }
 
 
@@ -267,12 +414,14 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
     @Override
     public ExonDBAdaptor getExonDBAdaptor(String species, String assembly) {
         String speciesAssemblyPrefix = getSpeciesAssemblyPrefix(species, assembly);
-        String speciesId = config.getAlias(species);
-        if(!mongoDatastoreFactory.containsKey(speciesAssemblyPrefix)) {
-            MongoDataStore mongoDataStore = createCellBaseMongoDatastore(speciesId, assembly);
-            mongoDatastoreFactory.put(speciesAssemblyPrefix, mongoDataStore);
+        ExonDBAdaptor exonDBAdaptor = getCachedAdaptor(speciesAssemblyPrefix, ExonDBAdaptor.class);
+        if(exonDBAdaptor == null) {
+            String speciesId = config.getAlias(species);
+            MongoDataStore mongoDataStore = getMongoDataStore(speciesAssemblyPrefix, speciesId, assembly);
+            exonDBAdaptor = cacheAdaptor(speciesAssemblyPrefix, ExonDBAdaptor.class,
+                    configureQueryExecution(new ExonMongoDBAdaptor(speciesId, assembly, mongoDataStore)));
         }
-        return new ExonMongoDBAdaptor(speciesId, assembly, mongoDatastoreFactory.get(speciesAssemblyPrefix));
+        return exonDBAdaptor;
     }
 
 
@@ -284,12 +433,14 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
     @Override
     public TranscriptDBAdaptor getTranscriptDBAdaptor(String species, String assembly) {
         String speciesAssemblyPrefix = getSpeciesAssemblyPrefix(species, assembly);
-        String speciesId = config.getAlias(species);
-        if(!mongoDatastoreFactory.containsKey(speciesAssemblyPrefix)) {
-            MongoDataStore mongoDataStore = createCellBaseMongoDatastore(speciesId, assembly);
-            mongoDatastoreFactory.put(speciesAssemblyPrefix, mongoDataStore);
+        TranscriptDBAdaptor transcriptDBAdaptor = getCachedAdaptor(speciesAssemblyPrefix, TranscriptDBAdaptor.class);
+        if(transcriptDBAdaptor == null) {
+            String speciesId = config.getAlias(species);
+            MongoDataStore mongoDataStore = getMongoDataStore(speciesAssemblyPrefix, speciesId, assembly);
+            transcriptDBAdaptor = cacheAdaptor(speciesAssemblyPrefix, TranscriptDBAdaptor.class,
+                    configureQueryExecution(new TranscriptMongoDBAdaptor(speciesId, assembly, mongoDataStore)));
         }
-        return new TranscriptMongoDBAdaptor(speciesId, assembly, mongoDatastoreFactory.get(speciesAssemblyPrefix));
+        return transcriptDBAdaptor;
     }
 
 
@@ -301,13 +452,14 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
     @Override
     public GeneDBAdaptor getGeneDBAdaptor(String species, String assembly) {
         String speciesAssemblyPrefix = getSpeciesAssemblyPrefix(species, assembly);
-        String speciesId = config.getAlias(species);
-        if(!mongoDatastoreFactory.containsKey(speciesAssemblyPrefix)) {
-            MongoDataStore mongoDataStore = createCellBaseMongoDatastore(speciesId, assembly);
-            mongoDatastoreFactory.put(speciesAssemblyPrefix, mongoDataStore);
+        GeneDBAdaptor geneDBAdaptor = getCachedAdaptor(speciesAssemblyPrefix, GeneDBAdaptor.class);
+        if(geneDBAdaptor == null) {
+            String speciesId = config.getAlias(species);
+            MongoDataStore mongoDataStore = getMongoDataStore(speciesAssemblyPrefix, speciesId, assembly);
+            geneDBAdaptor = cacheAdaptor(speciesAssemblyPrefix, GeneDBAdaptor.class,
+                    configureQueryExecution(new GeneMongoDBAdaptor(speciesId, assembly, config.getCoreChunkSize(), mongoDataStore)));
         }
-        return new GeneMongoDBAdaptor(speciesId, assembly, config.getCoreChunkSize(),
-                mongoDatastoreFactory.get(speciesAssemblyPrefix));
+        return geneDBAdaptor;
     }
 
 
@@ -319,12 +471,14 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
     @Override
     public XRefsDBAdaptor getXRefDBAdaptor(String species, String assembly) {
         String speciesAssemblyPrefix = getSpeciesAssemblyPrefix(species, assembly);
-        String speciesId = config.getAlias(species);
-        if(!mongoDatastoreFactory.containsKey(speciesAssemblyPrefix)) {
-            MongoDataStore mongoDataStore = createCellBaseMongoDatastore(speciesId, assembly);
-            mongoDatastoreFactory.put(speciesAssemblyPrefix, mongoDataStore);
+        XRefsDBAdaptor xRefsDBAdaptor = getCachedAdaptor(speciesAssemblyPrefix, XRefsDBAdaptor.class);
+        if(xRefsDBAdaptor == null) {
+            String speciesId = config.getAlias(species);
+            MongoDataStore mongoDataStore = getMongoDataStore(speciesAssemblyPrefix, speciesId, assembly);
+            xRefsDBAdaptor = cacheAdaptor(speciesAssemblyPrefix, XRefsDBAdaptor.class,
+                    configureQueryExecution(new XRefsMongoDBAdaptor(speciesId, assembly, mongoDataStore)));
         }
-        return new XRefsMongoDBAdaptor(speciesId, assembly, mongoDatastoreFactory.get(speciesAssemblyPrefix));
+        return xRefsDBAdaptor;
     }
 
 
@@ -336,12 +490,14 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
     @Override
     public VariationDBAdaptor getVariationDBAdaptor(String species, String assembly) {
         String speciesAssemblyPrefix = getSpeciesAssemblyPrefix(species, assembly);
-        String speciesId = config.getAlias(species);
-        if(!mongoDatastoreFactory.containsKey(speciesAssemblyPrefix)) {
-            MongoDataStore mongoDataStore = createCellBaseMongoDatastore(speciesId, assembly);
-            mongoDatastoreFactory.put(speciesAssemblyPrefix, mongoDataStore);
+        VariationDBAdaptor variationDBAdaptor = getCachedAdaptor(speciesAssemblyPrefix, VariationDBAdaptor.class);
+        if(variationDBAdaptor == null) {
+            String speciesId = config.getAlias(species);
+            MongoDataStore mongoDataStore = getMongoDataStore(speciesAssemblyPrefix, speciesId, assembly);
+            variationDBAdaptor = cacheAdaptor(speciesAssemblyPrefix, VariationDBAdaptor.class,
+                    configureQueryExecution(new VariationMongoDBAdaptor(speciesId, assembly, mongoDataStore)));
         }
-        return new VariationMongoDBAdaptor(speciesId, assembly, mongoDatastoreFactory.get(speciesAssemblyPrefix));
+        return variationDBAdaptor;
     }
 
 
@@ -353,14 +509,22 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
     @Override
     public VariantAnnotationDBAdaptor getVariantAnnotationDBAdaptor(String species, String assembly) {
         String speciesAssemblyPrefix = getSpeciesAssemblyPrefix(species, assembly);
-        String speciesId = config.getAlias(species);
-        if(!mongoDatastoreFactory.containsKey(speciesAssemblyPrefix)) {
-            MongoDataStore mongoDataStore = createCellBaseMongoDatastore(speciesId, assembly);
-            mongoDatastoreFactory.put(speciesAssemblyPrefix, mongoDataStore);
+        VariantAnnotationDBAdaptor cachedDBAdaptor = getCachedAdaptor(speciesAssemblyPrefix, VariantAnnotationDBAdaptor.class);
+        if(cachedDBAdaptor != null) {
+            return cachedDBAdaptor;
         }
 
-        VariantAnnotationDBAdaptor variantAnnotationDBAdaptor = new VariantAnnotationMongoDBAdaptor(speciesId, assembly,
-                mongoDatastoreFactory.get(speciesAssemblyPrefix));
+        String speciesId = config.getAlias(species);
+        MongoDataStore mongoDataStore = getMongoDataStore(speciesAssemblyPrefix, speciesId, assembly);
+        VariantAnnotationMongoDBAdaptor variantAnnotationDBAdaptor = configureQueryExecution(new VariantAnnotationMongoDBAdaptor(speciesId, assembly,
+                mongoDataStore));
+        variantAnnotationDBAdaptor.setGeneIntervalIndex(getGeneIntervalIndex(speciesAssemblyPrefix));
+        variantAnnotationDBAdaptor.setExecutorService(getAnnotationExecutorService());
+        variantAnnotationDBAdaptor.setProteinSubstitutionScoreCache(getProteinSubstitutionScoreCache(speciesAssemblyPrefix));
+        if(config.isPrecomputedAnnotation()) {
+            variantAnnotationDBAdaptor.setPrecomputedAnnotationCollection(
+                    mongoDataStore.getCollection("variant_annotation"));
+        }
         variantAnnotationDBAdaptor.setGeneDBAdaptor(getGeneDBAdaptor(species, assembly));
         variantAnnotationDBAdaptor.setRegulatoryRegionDBAdaptor(getRegulatoryRegionDBAdaptor(species, assembly));
         variantAnnotationDBAdaptor.setVariationDBAdaptor(getVariationDBAdaptor(species, assembly));
@@ -368,10 +532,138 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
         variantAnnotationDBAdaptor.setProteinFunctionPredictorDBAdaptor(getProteinFunctionPredictorDBAdaptor(species, assembly));
         variantAnnotationDBAdaptor.setConservedRegionDBAdaptor(getConservedRegionDBAdaptor(species, assembly));
 
-        return variantAnnotationDBAdaptor;
+        return cacheAdaptor(speciesAssemblyPrefix, VariantAnnotationDBAdaptor.class, variantAnnotationDBAdaptor);
     }
 
 
+    /**
+     * Gene interval indexes are loaded only once per species and assembly, a null index is also kept when the
+     * gene collection does not fit into the configured memory so that it is not loaded again.
+     */
+    private static synchronized GeneIntervalIndex getGeneIntervalIndex(String speciesAssemblyPrefix) {
+        if(config.getGeneIntervalIndexMaxMemory() <= 0) {
+            return null;
+        }
+        if(!geneIntervalIndexFactory.containsKey(speciesAssemblyPrefix)) {
+            geneIntervalIndexFactory.put(speciesAssemblyPrefix, GeneIntervalIndex.load(
+                    mongoDatastoreFactory.get(speciesAssemblyPrefix).getCollection("gene"),
+                    VariantAnnotationMongoDBAdaptor.getGeneQueryOptions(),
+                    VariantAnnotationMongoDBAdaptor.getAnnotationGeneConverter(), config.getGeneIntervalIndexMaxMemory()));
+        }
+        return geneIntervalIndexFactory.get(speciesAssemblyPrefix);
+    }
+
+    private static synchronized GenomeSequenceChunkCache getGenomeSequenceChunkCache(String speciesAssemblyPrefix) {
+        if(config.getGenomeSequenceChunkCacheMaxMemory() <= 0) {
+            return null;
+        }
+        if(!genomeSequenceChunkCacheFactory.containsKey(speciesAssemblyPrefix)) {
+            genomeSequenceChunkCacheFactory.put(speciesAssemblyPrefix,
+                    new GenomeSequenceChunkCache(config.getGenomeSequenceChunkCacheMaxMemory()));
+        }
+        return genomeSequenceChunkCacheFactory.get(speciesAssemblyPrefix);
+    }
+
+    /**
+     * @return a copy of the genome sequence chunk caches keyed by species and assembly, to report their metrics
+     */
+    public static synchronized Map<String, GenomeSequenceChunkCache> getGenomeSequenceChunkCaches() {
+        return new HashMap<>(genomeSequenceChunkCacheFactory);
+    }
+
+    private static synchronized ProteinSubstitutionScoreCache getProteinSubstitutionScoreCache(String speciesAssemblyPrefix) {
+        if(config.getProteinSubstitutionScoreCacheMaxMemory() <= 0) {
+            return null;
+        }
+        if(!proteinSubstitutionScoreCacheFactory.containsKey(speciesAssemblyPrefix)) {
+            proteinSubstitutionScoreCacheFactory.put(speciesAssemblyPrefix,
+                    new ProteinSubstitutionScoreCache(config.getProteinSubstitutionScoreCacheMaxMemory()));
+        }
+        return proteinSubstitutionScoreCacheFactory.get(speciesAssemblyPrefix);
+    }
+
+    /**
+     * A single bounded pool is shared by all annotation requests, when its queue is full the submitting thread runs
+     * the query itself.
+     */
+    private static synchronized ExecutorService getAnnotationExecutorService() {
+        if(config.getAnnotationThreads() <= 0) {
+            return null;
+        }
+        if(annotationExecutorService == null) {
+            int numThreads = config.getAnnotationThreads();
+            annotationExecutorService = new ThreadPoolExecutor(numThreads, numThreads, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(numThreads * 16), new ThreadFactory() {
+                        private int threadCounter = 0;
+                        @Override
+                        public synchronized Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "annotation-" + threadCounter++);
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    }, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        return annotationExecutorService;
+    }
+
+    private <T extends MongoDBAdaptor> T configureQueryExecution(T mongoDBAdaptor) {
+        mongoDBAdaptor.setQueryExecutorService(getQueryExecutorService());
+        mongoDBAdaptor.setQueryTimeout(config.getQueryTimeout());
+        mongoDBAdaptor.setPartialResults(config.isQueryPartialResults());
+        mongoDBAdaptor.setCountPolicy(config.getQueryCountPolicy());
+        mongoDBAdaptor.setRegionQueryBatchSize(config.getRegionQueryBatchSize());
+        mongoDBAdaptor.setIdQueryBatchSize(config.getIdQueryBatchSize());
+        mongoDBAdaptor.setChunkIdFormat(config.getChunkIdFormat());
+        return mongoDBAdaptor;
+    }
+
+    /**
+     * Multi-region and multi-id queries of all adaptors share a single bounded pool, when its queue is full the
+     * submitting thread runs the query itself.
+     */
+    private static synchronized ExecutorService getQueryExecutorService() {
+        if(config.getQueryThreads() <= 0) {
+            return null;
+        }
+        if(queryExecutorService == null) {
+            int numThreads = config.getQueryThreads();
+            queryExecutorService = new ThreadPoolExecutor(numThreads, numThreads, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(numThreads * 16), new ThreadFactory() {
+                        private int threadCounter = 0;
+                        @Override
+                        public synchronized Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "query-" + threadCounter++);
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    }, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        return queryExecutorService;
+    }
+
+    /**
+     * @return the query count cache shared by all species, created once with the first configuration
+     */
+    public static synchronized QueryCountCache getQueryCountCache() {
+        if(queryCountCache == null) {
+            queryCountCache = new QueryCountCache(config.getQueryCountCacheMaxEntries(), config.getQueryCountCacheTimeToLive());
+        }
+        return queryCountCache;
+    }
+
+    /**
+     * @return the query result cache shared by all species, or null when CELLBASE.QUERY.RESULT_CACHE.MAX_MEMORY is 0
+     */
+    public static synchronized QueryResultCache getQueryResultCache() {
+        if(config == null || config.getQueryResultCacheMaxMemory() <= 0) {
+            return null;
+        }
+        if(queryResultCache == null) {
+            queryResultCache = new QueryResultCache(config.getQueryResultCacheMaxMemory(), config.getDataVersionCheckInterval());
+        }
+        return queryResultCache;
+    }
+
     @Override
     public ClinicalDBAdaptor getClinicalDBAdaptor(String species) {
         return getClinicalDBAdaptor(species, null);
@@ -380,13 +672,14 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
     @Override
     public ClinicalDBAdaptor getClinicalDBAdaptor(String species, String assembly) {
         String speciesAssemblyPrefix = getSpeciesAssemblyPrefix(species, assembly);
-        String speciesId = config.getAlias(species);
-        if(!mongoDatastoreFactory.containsKey(speciesAssemblyPrefix)) {
-            MongoDataStore mongoDataStore = createCellBaseMongoDatastore(speciesId, assembly);
-            mongoDatastoreFactory.put(speciesAssemblyPrefix, mongoDataStore);
+        ClinicalDBAdaptor clinicalDBAdaptor = getCachedAdaptor(speciesAssemblyPrefix, ClinicalDBAdaptor.class);
+        if(clinicalDBAdaptor == null) {
+            String speciesId = config.getAlias(species);
+            MongoDataStore mongoDataStore = getMongoDataStore(speciesAssemblyPrefix, speciesId, assembly);
+            clinicalDBAdaptor = cacheAdaptor(speciesAssemblyPrefix, ClinicalDBAdaptor.class,
+                    configureQueryExecution(new ClinicalMongoDBAdaptor(speciesId, assembly, mongoDataStore)));
         }
-        return new ClinicalMongoDBAdaptor(speciesId, assembly,
-                mongoDatastoreFactory.get(speciesAssemblyPrefix));
+        return clinicalDBAdaptor;
     }
 
 
@@ -398,12 +691,14 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
     @Override
     public ProteinDBAdaptor getProteinDBAdaptor(String species, String assembly) {
         String speciesAssemblyPrefix = getSpeciesAssemblyPrefix(species, assembly);
-        String speciesId = config.getAlias(species);
-        if(!mongoDatastoreFactory.containsKey(speciesAssemblyPrefix)) {
-            MongoDataStore mongoDataStore = createCellBaseMongoDatastore(speciesId, assembly);
-            mongoDatastoreFactory.put(speciesAssemblyPrefix, mongoDataStore);
+        ProteinDBAdaptor proteinDBAdaptor = getCachedAdaptor(speciesAssemblyPrefix, ProteinDBAdaptor.class);
+        if(proteinDBAdaptor == null) {
+            String speciesId = config.getAlias(species);
+            MongoDataStore mongoDataStore = getMongoDataStore(speciesAssemblyPrefix, speciesId, assembly);
+            proteinDBAdaptor = cacheAdaptor(speciesAssemblyPrefix, ProteinDBAdaptor.class,
+                    configureQueryExecution(new ProteinMongoDBAdaptor(speciesId, assembly, mongoDataStore)));
         }
-        return new ProteinMongoDBAdaptor(speciesId, assembly, mongoDatastoreFactory.get(speciesAssemblyPrefix));
+        return proteinDBAdaptor;
     }
 
 
@@ -415,13 +710,14 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
     @Override
     public ProteinFunctionPredictorDBAdaptor getProteinFunctionPredictorDBAdaptor(String species, String assembly) {
         String speciesAssemblyPrefix = getSpeciesAssemblyPrefix(species, assembly);
-        String speciesId = config.getAlias(species);
-        if(!mongoDatastoreFactory.containsKey(speciesAssemblyPrefix)) {
-            MongoDataStore mongoDataStore = createCellBaseMongoDatastore(speciesId, assembly);
-            mongoDatastoreFactory.put(speciesAssemblyPrefix, mongoDataStore);
+        ProteinFunctionPredictorDBAdaptor proteinFunctionPredictorDBAdaptor = getCachedAdaptor(speciesAssemblyPrefix, ProteinFunctionPredictorDBAdaptor.class);
+        if(proteinFunctionPredictorDBAdaptor == null) {
+            String speciesId = config.getAlias(species);
+            MongoDataStore mongoDataStore = getMongoDataStore(speciesAssemblyPrefix, speciesId, assembly);
+            proteinFunctionPredictorDBAdaptor = cacheAdaptor(speciesAssemblyPrefix, ProteinFunctionPredictorDBAdaptor.class,
+                    configureQueryExecution(new ProteinFunctionPredictorMongoDBAdaptor(speciesId, assembly, mongoDataStore)));
         }
-        return new ProteinFunctionPredictorMongoDBAdaptor(speciesId, assembly,
-                mongoDatastoreFactory.get(speciesAssemblyPrefix));
+        return proteinFunctionPredictorDBAdaptor;
     }
 
 
@@ -433,13 +729,14 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
     @Override
     public ProteinProteinInteractionDBAdaptor getProteinProteinInteractionDBAdaptor(String species, String assembly) {
         String speciesAssemblyPrefix = getSpeciesAssemblyPrefix(species, assembly);
-        String speciesId = config.getAlias(species);
-        if(!mongoDatastoreFactory.containsKey(speciesAssemblyPrefix)) {
-            MongoDataStore mongoDataStore = createCellBaseMongoDatastore(speciesId, assembly);
-            mongoDatastoreFactory.put(speciesAssemblyPrefix, mongoDataStore);
+        ProteinProteinInteractionDBAdaptor proteinProteinInteractionDBAdaptor = getCachedAdaptor(speciesAssemblyPrefix, ProteinProteinInteractionDBAdaptor.class);
+        if(proteinProteinInteractionDBAdaptor == null) {
+            String speciesId = config.getAlias(species);
+            MongoDataStore mongoDataStore = getMongoDataStore(speciesAssemblyPrefix, speciesId, assembly);
+            proteinProteinInteractionDBAdaptor = cacheAdaptor(speciesAssemblyPrefix, ProteinProteinInteractionDBAdaptor.class,
+                    configureQueryExecution(new ProteinProteinInteractionMongoDBAdaptor(speciesId, assembly, mongoDataStore)));
         }
-        return new ProteinProteinInteractionMongoDBAdaptor(speciesId, assembly,
-                mongoDatastoreFactory.get(speciesAssemblyPrefix));
+        return proteinProteinInteractionDBAdaptor;
     }
 
 
@@ -451,12 +748,14 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
     @Override
     public RegulatoryRegionDBAdaptor getRegulatoryRegionDBAdaptor(String species, String assembly) {
         String speciesAssemblyPrefix = getSpeciesAssemblyPrefix(species, assembly);
-        String speciesId = config.getAlias(species);
-        if(!mongoDatastoreFactory.containsKey(speciesAssemblyPrefix)) {
-            MongoDataStore mongoDataStore = createCellBaseMongoDatastore(speciesId, assembly);
-            mongoDatastoreFactory.put(speciesAssemblyPrefix, mongoDataStore);
+        RegulatoryRegionDBAdaptor regulatoryRegionDBAdaptor = getCachedAdaptor(speciesAssemblyPrefix, RegulatoryRegionDBAdaptor.class);
+        if(regulatoryRegionDBAdaptor == null) {
+            String speciesId = config.getAlias(species);
+            MongoDataStore mongoDataStore = getMongoDataStore(speciesAssemblyPrefix, speciesId, assembly);
+            regulatoryRegionDBAdaptor = cacheAdaptor(speciesAssemblyPrefix, RegulatoryRegionDBAdaptor.class,
+                    configureQueryExecution(new RegulatoryRegionMongoDBAdaptor(speciesId, assembly, mongoDataStore)));
         }
-        return new RegulatoryRegionMongoDBAdaptor(speciesId, assembly, mongoDatastoreFactory.get(speciesAssemblyPrefix));
+        return regulatoryRegionDBAdaptor;
     }
 
 
@@ -468,12 +767,14 @@ public class MongoDBAdaptorFactory extends DBAdaptorFactory {
     @Override
     public TfbsDBAdaptor getTfbsDBAdaptor(String species, String assembly) {
         String speciesAssemblyPrefix = getSpeciesAssemblyPrefix(species, assembly);
-        String speciesId = config.getAlias(species);
-        if(!mongoDatastoreFactory.containsKey(speciesAssemblyPrefix)) {
-            MongoDataStore mongoDataStore = createCellBaseMongoDatastore(speciesId, assembly);
-            mongoDatastoreFactory.put(speciesAssemblyPrefix, mongoDataStore);
+        TfbsDBAdaptor tfbsDBAdaptor = getCachedAdaptor(speciesAssemblyPrefix, TfbsDBAdaptor.class);
+        if(tfbsDBAdaptor == null) {
+            String speciesId = config.getAlias(species);
+            MongoDataStore mongoDataStore = getMongoDataStore(speciesAssemblyPrefix, speciesId, assembly);
+            tfbsDBAdaptor = cacheAdaptor(speciesAssemblyPrefix, TfbsDBAdaptor.class,
+                    configureQueryExecution(new TfbsMongoDBAdaptor(speciesId, assembly, mongoDataStore)));
         }
-        return new TfbsMongoDBAdaptor(speciesId, assembly, mongoDatastoreFactory.get(speciesAssemblyPrefix));
+        return tfbsDBAdaptor;
     }
 
 
@@ -0,0 +1,69 @@
+package org.opencb.cellbase.mongodb.db;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Named projections of the heavy collections, selected with the 'profile' query option instead of hand-built
+ * 'include' lists: 'coordinates' returns only identifiers and positions, 'summary' the fields shown in listings,
+ * 'annotation' the fields read by the variant annotation and 'full' the whole documents. Profiles not defined for a
+ * collection return the whole documents.
+ */
+public class ProjectionProfiles {
+
+    public static final String COORDINATES = "coordinates";
+    public static final String SUMMARY = "summary";
+    public static final String ANNOTATION = "annotation";
+    public static final String FULL = "full";
+
+    private static final Map<String, Map<String, String>> profiles = new HashMap<>();
+
+    static {
+        addProfile("gene", COORDINATES, "id,name,chromosome,start,end,strand");
+        addProfile("gene", SUMMARY, "id,name,biotype,status,chromosome,start,end,strand,source,description,"
+                + "transcripts.id,transcripts.name,transcripts.biotype,transcripts.status,transcripts.chromosome,"
+                + "transcripts.start,transcripts.end,transcripts.strand");
+        addProfile("gene", ANNOTATION, "name,id,chromosome,start,end,transcripts.id,transcripts.start,transcripts.end,"
+                + "transcripts.strand,transcripts.cdsLength,transcripts.annotationFlags,transcripts.biotype,"
+                + "transcripts.genomicCodingStart,transcripts.genomicCodingEnd,transcripts.cdnaCodingStart,"
+                + "transcripts.cdnaCodingEnd,transcripts.exons.start,transcripts.exons.end,transcripts.exons.phase,"
+                + "transcripts.splicedSequence,mirna.matures,mirna.sequence,mirna.matures.cdnaStart,mirna.matures.cdnaEnd");
+
+        addProfile("variation", COORDINATES, "id,chromosome,start,end,strand,reference,alternate");
+        addProfile("variation", SUMMARY, "id,chromosome,start,end,strand,reference,alternate,alleleString,type,"
+                + "displayConsequenceType,consequenceTypes,minorAllele,minorAlleleFreq,validationStatus");
+        addProfile("variation", ANNOTATION, "id,chromosome,start,end,reference,alternate,alleleString,"
+                + "populationFrequencies");
+
+        addProfile("regulatory_region", COORDINATES, "id,chromosome,start,end,strand");
+        addProfile("regulatory_region", SUMMARY, "id,name,chromosome,start,end,strand,featureType,featureClass,"
+                + "cellTypes");
+        addProfile("regulatory_region", ANNOTATION, "id,name,chromosome,start,end,featureType,featureClass,cellTypes");
+    }
+
+    private static void addProfile(String collection, String profile, String include) {
+        if (!profiles.containsKey(collection)) {
+            profiles.put(collection, new HashMap<String, String>());
+        }
+        profiles.get(collection).put(profile, include);
+    }
+
+    public static boolean isProfile(String profile) {
+        return COORDINATES.equals(profile) || SUMMARY.equals(profile) || ANNOTATION.equals(profile)
+                || FULL.equals(profile);
+    }
+
+    /**
+     * @return the comma separated fields of the profile for the collection, or null when the whole documents are
+     * returned
+     */
+    public static String getInclude(String collection, String profile) {
+        if (!isProfile(profile)) {
+            throw new IllegalArgumentException("Unknown projection profile '" + profile + "', valid profiles are "
+                    + COORDINATES + ", " + SUMMARY + ", " + ANNOTATION + " and " + FULL);
+        }
+        Map<String, String> collectionProfiles = profiles.get(collection);
+        return (collectionProfiles != null) ? collectionProfiles.get(profile) : null;
+    }
+
+}
@@ -74,13 +74,47 @@ public class ProteinFunctionPredictorMongoDBAdaptor  extends MongoDBAdaptor impl
         }
 
 
+        if (mongoDBCollection2 == null) {
+            for (String id : transcriptIdList) {
+                QueryBuilder builder = QueryBuilder.start("transcriptId").is(id);
+                queries.add(builder.get());
+            }
+
+//        options = addExcludeReturnFields("transcripts", options);
+            return executeQueryList(transcriptIdList, queries, options);
+        }
+
+        // All transcripts are fetched with a single query and then split by transcriptId
+        long dbTimeStart = System.currentTimeMillis();
+        Map<String, List<DBObject>> predictionsByTranscript = new HashMap<>(transcriptIdList.size());
         for (String id : transcriptIdList) {
-            QueryBuilder builder = QueryBuilder.start("transcriptId").is(id);
-            queries.add(builder.get());
+            predictionsByTranscript.put(id, new ArrayList<DBObject>(1));
         }
+        DBCursor cursor = mongoDBCollection2.nativeQuery().find(QueryBuilder.start("transcriptId").in(transcriptIdList).get(), options);
+        try {
+            while (cursor.hasNext()) {
+                DBObject prediction = cursor.next();
+                List<DBObject> predictions = predictionsByTranscript.get(prediction.get("transcriptId"));
+                if (predictions != null) {
+                    predictions.add(prediction);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        int dbTime = Long.valueOf(System.currentTimeMillis() - dbTimeStart).intValue();
 
-//        options = addExcludeReturnFields("transcripts", options);
-        return executeQueryList(transcriptIdList, queries, options);
+        List<QueryResult> queryResults = new ArrayList<>(transcriptIdList.size());
+        for (String id : transcriptIdList) {
+            QueryResult queryResult = new QueryResult();
+            queryResult.setId(id);
+            queryResult.setDbTime(dbTime);
+            queryResult.setNumResults(predictionsByTranscript.get(id).size());
+            queryResult.setNumTotalResults(predictionsByTranscript.get(id).size());
+            queryResult.setResult(predictionsByTranscript.get(id));
+            queryResults.add(queryResult);
+        }
+        return queryResults;
     }
 
     public QueryResult getByAaChange(String transcriptId, Integer aaPosition, String newAa, QueryOptions queryOptions) {
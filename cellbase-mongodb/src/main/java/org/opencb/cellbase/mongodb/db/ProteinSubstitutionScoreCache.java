@@ -0,0 +1,202 @@
+package org.opencb.cellbase.mongodb.db;
+
+import com.mongodb.DBObject;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of the SIFT and PolyPhen substitution matrices of transcripts, bounded by the estimated size of the
+ * cached matrices. Transcripts without predictions are cached too, as empty matrices, so that they are not queried
+ * again.
+ */
+public class ProteinSubstitutionScoreCache {
+
+    private static final String AMINOACIDS = "ARNDCQEGHILKMFPSTWYV";
+    private static final Map<String, Integer> aminoacidIndexes = new HashMap<>(40);
+
+    private final long maxMemory;
+    private long size;
+    private final LinkedHashMap<String, TranscriptScores> transcriptScores;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    static {
+        String[] threeLetterNames = {"ALA", "ARG", "ASN", "ASP", "CYS", "GLN", "GLU", "GLY", "HIS", "ILE", "LEU", "LYS",
+                "MET", "PHE", "PRO", "SER", "THR", "TRP", "TYR", "VAL"};
+        for (int i = 0; i < AMINOACIDS.length(); i++) {
+            aminoacidIndexes.put(AMINOACIDS.substring(i, i + 1), i);
+            aminoacidIndexes.put(threeLetterNames[i], i);
+        }
+    }
+
+    /**
+     * SIFT and PolyPhen scores and effects of every amino acid substitution of a transcript, stored by position and
+     * amino acid in flat arrays. Missing scores are NaN and missing effects -1.
+     */
+    public static class TranscriptScores {
+        private float[] siftScores;
+        private byte[] siftEffects;
+        private float[] polyphenScores;
+        private byte[] polyphenEffects;
+
+        private TranscriptScores(int numPositions) {
+            siftScores = new float[numPositions * AMINOACIDS.length()];
+            siftEffects = new byte[siftScores.length];
+            polyphenScores = new float[siftScores.length];
+            polyphenEffects = new byte[siftScores.length];
+            for (int i = 0; i < siftScores.length; i++) {
+                siftScores[i] = Float.NaN;
+                siftEffects[i] = -1;
+                polyphenScores[i] = Float.NaN;
+                polyphenEffects[i] = -1;
+            }
+        }
+
+        /**
+         * Builds the matrix from a protein_functional_prediction document: aaPositions.{position}.{aa}.{ss,se,ps,pe}
+         */
+        public static TranscriptScores parse(DBObject proteinFunctionPrediction) {
+            Map aaPositions = (proteinFunctionPrediction != null) ? (Map) proteinFunctionPrediction.get("aaPositions") : null;
+            if (aaPositions == null) {
+                return new TranscriptScores(0);
+            }
+            int maxPosition = 0;
+            for (Object position : aaPositions.keySet()) {
+                maxPosition = Math.max(maxPosition, Integer.parseInt(position.toString()));
+            }
+
+            TranscriptScores scores = new TranscriptScores(maxPosition + 1);
+            for (Object positionEntryObject : aaPositions.entrySet()) {
+                Map.Entry positionEntry = (Map.Entry) positionEntryObject;
+                int position = Integer.parseInt(positionEntry.getKey().toString());
+                for (Object aaEntryObject : ((Map) positionEntry.getValue()).entrySet()) {
+                    Map.Entry aaEntry = (Map.Entry) aaEntryObject;
+                    Integer aminoacidIndex = aminoacidIndexes.get(aaEntry.getKey().toString());
+                    if (aminoacidIndex == null) {
+                        continue;
+                    }
+                    Map prediction = (Map) aaEntry.getValue();
+                    int index = position * AMINOACIDS.length() + aminoacidIndex;
+                    if (prediction.get("ss") != null) {
+                        scores.siftScores[index] = ((Number) prediction.get("ss")).floatValue();
+                        scores.siftEffects[index] = getEffect(prediction.get("se"));
+                    }
+                    if (prediction.get("ps") != null) {
+                        scores.polyphenScores[index] = ((Number) prediction.get("ps")).floatValue();
+                        scores.polyphenEffects[index] = getEffect(prediction.get("pe"));
+                    }
+                }
+            }
+            return scores;
+        }
+
+        private static byte getEffect(Object effect) {
+            return (effect != null) ? ((Number) effect).byteValue() : -1;
+        }
+
+        private int getIndex(int aaPosition, String aminoacid) {
+            Integer aminoacidIndex = aminoacidIndexes.get(aminoacid);
+            int index = aaPosition * AMINOACIDS.length() + ((aminoacidIndex != null) ? aminoacidIndex : 0);
+            return (aminoacidIndex != null && aaPosition >= 0 && index < siftScores.length) ? index : -1;
+        }
+
+        /**
+         * @param aaPosition 1-based position in the protein
+         * @param aminoacid one letter or upper case three letter amino acid name
+         * @return SIFT score or NaN if not available
+         */
+        public float getSiftScore(int aaPosition, String aminoacid) {
+            int index = getIndex(aaPosition, aminoacid);
+            return (index >= 0) ? siftScores[index] : Float.NaN;
+        }
+
+        public int getSiftEffect(int aaPosition, String aminoacid) {
+            int index = getIndex(aaPosition, aminoacid);
+            return (index >= 0) ? siftEffects[index] : -1;
+        }
+
+        public float getPolyphenScore(int aaPosition, String aminoacid) {
+            int index = getIndex(aaPosition, aminoacid);
+            return (index >= 0) ? polyphenScores[index] : Float.NaN;
+        }
+
+        public int getPolyphenEffect(int aaPosition, String aminoacid) {
+            int index = getIndex(aaPosition, aminoacid);
+            return (index >= 0) ? polyphenEffects[index] : -1;
+        }
+
+        long getEstimatedSize() {
+            return 128 + 10L * siftScores.length;
+        }
+    }
+
+    /**
+     * @param maxMemory maximum estimated size in bytes of the cached matrices
+     */
+    public ProteinSubstitutionScoreCache(long maxMemory) {
+        this.maxMemory = maxMemory;
+        this.transcriptScores = new LinkedHashMap<>(1000, 0.75f, true);
+    }
+
+    /**
+     * @return the cached matrix or null if the transcript is not cached
+     */
+    public synchronized TranscriptScores get(String transcriptId) {
+        TranscriptScores scores = transcriptScores.get(transcriptId);
+        if (scores != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return scores;
+    }
+
+    /**
+     * Adds the matrix evicting the least recently used ones until the cache fits into its memory limit. Matrices
+     * bigger than the whole cache are not kept.
+     */
+    public synchronized void put(String transcriptId, TranscriptScores scores) {
+        TranscriptScores previousScores = transcriptScores.remove(transcriptId);
+        if (previousScores != null) {
+            size -= previousScores.getEstimatedSize() + 2 * transcriptId.length();
+        }
+        long scoresSize = scores.getEstimatedSize() + 2 * transcriptId.length();
+        if (scoresSize > maxMemory) {
+            return;
+        }
+        Iterator<Map.Entry<String, TranscriptScores>> iterator = transcriptScores.entrySet().iterator();
+        while (size + scoresSize > maxMemory && iterator.hasNext()) {
+            Map.Entry<String, TranscriptScores> eldest = iterator.next();
+            size -= eldest.getValue().getEstimatedSize() + 2 * eldest.getKey().length();
+            iterator.remove();
+        }
+        transcriptScores.put(transcriptId, scores);
+        size += scoresSize;
+    }
+
+    public synchronized void clear() {
+        transcriptScores.clear();
+        size = 0;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized int getNumTranscripts() {
+        return transcriptScores.size();
+    }
+
+    public synchronized long getEstimatedSize() {
+        return size;
+    }
+
+}
@@ -0,0 +1,107 @@
+package org.opencb.cellbase.mongodb.db;
+
+import com.mongodb.DBObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of the total number of results of queries, bounded by number of entries. Counts expire after a time to
+ * live so that reloaded collections are eventually counted again. Queries are keyed by their collection and their
+ * JSON representation.
+ */
+public class QueryCountCache {
+
+    private final int maxEntries;
+    private final long timeToLive;
+    private final LinkedHashMap<CountKey, CountEntry> counts;
+
+    private static class CountKey {
+        private final Object collection;
+        private final String query;
+
+        private CountKey(Object collection, DBObject query) {
+            this.collection = collection;
+            this.query = query.toString();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CountKey)) {
+                return false;
+            }
+            CountKey countKey = (CountKey) o;
+            return collection == countKey.collection && query.equals(countKey.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(collection) + query.hashCode();
+        }
+    }
+
+    private static class CountEntry {
+        private final long count;
+        private final long expirationTime;
+
+        private CountEntry(long count, long expirationTime) {
+            this.count = count;
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    /**
+     * @param maxEntries maximum number of cached counts
+     * @param timeToLive time in milliseconds a count is kept
+     */
+    public QueryCountCache(final int maxEntries, long timeToLive) {
+        this.maxEntries = maxEntries;
+        this.timeToLive = timeToLive;
+        this.counts = new LinkedHashMap<CountKey, CountEntry>(Math.min(maxEntries, 1000), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CountKey, CountEntry> eldest) {
+                return size() > QueryCountCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the cached count or -1 if the query is not cached or its count has expired
+     */
+    public synchronized long get(Object collection, DBObject query) {
+        CountKey countKey = new CountKey(collection, query);
+        CountEntry countEntry = counts.get(countKey);
+        if (countEntry == null) {
+            return -1;
+        }
+        if (countEntry.expirationTime < System.currentTimeMillis()) {
+            counts.remove(countKey);
+            return -1;
+        }
+        return countEntry.count;
+    }
+
+    public synchronized void put(Object collection, DBObject query, long count) {
+        counts.put(new CountKey(collection, query), new CountEntry(count, System.currentTimeMillis() + timeToLive));
+    }
+
+    public synchronized void clear() {
+        counts.clear();
+    }
+
+    public synchronized int size() {
+        return counts.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+}
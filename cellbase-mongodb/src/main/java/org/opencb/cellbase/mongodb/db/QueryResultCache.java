@@ -0,0 +1,204 @@
+package org.opencb.cellbase.mongodb.db;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.bson.BasicBSONEncoder;
+import org.opencb.datastore.core.QueryResult;
+import org.opencb.datastore.mongodb.MongoDataStore;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of query results bounded by the estimated size in bytes of the cached documents, estimated from their
+ * BSON size. Keys start with the database, adaptor and collection name they were read from. CellBase data does not change between loads, so the
+ * results of a database are only dropped when the number of documents of its 'data_version' collection, to which
+ * loaders add one document per load, changes. Results are copied in and out, callers may modify them.
+ */
+public class QueryResultCache {
+
+    public static final String DATA_VERSION_COLLECTION = "data_version";
+
+    private final long maxMemory;
+    private final long dataVersionCheckInterval;
+    private long size;
+    private final LinkedHashMap<String, CachedResult> results;
+    private final Map<String, DataVersion> dataVersions;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static class CachedResult {
+        private final QueryResult queryResult;
+        private final long size;
+
+        private CachedResult(QueryResult queryResult, long size) {
+            this.queryResult = queryResult;
+            this.size = size;
+        }
+    }
+
+    private static class DataVersion {
+        private final long version;
+        private final long checkTime;
+
+        private DataVersion(long version, long checkTime) {
+            this.version = version;
+            this.checkTime = checkTime;
+        }
+    }
+
+    /**
+     * @param maxMemory maximum estimated size in bytes of the cached results
+     * @param dataVersionCheckInterval minimum time in milliseconds between two reads of the data version of a database
+     */
+    public QueryResultCache(long maxMemory, long dataVersionCheckInterval) {
+        this.maxMemory = maxMemory;
+        this.dataVersionCheckInterval = dataVersionCheckInterval;
+        this.results = new LinkedHashMap<>(1000, 0.75f, true);
+        this.dataVersions = new HashMap<>();
+    }
+
+    public static String getKey(String database, String adaptor, String collection, DBObject query, Map<String, Object> options) {
+        // Options are sorted so that equal options give the same key, 'cache' itself does not change results
+        Map<String, Object> sortedOptions = new TreeMap<>();
+        if (options != null) {
+            sortedOptions.putAll(options);
+            sortedOptions.remove("cache");
+        }
+        return database + "|" + adaptor + "|" + collection + "|" + query + "|" + sortedOptions;
+    }
+
+    /**
+     * Reads the data version of the database if it has not been read for dataVersionCheckInterval, and drops all its
+     * cached results when it has changed.
+     */
+    public void checkDataVersion(String database, MongoDataStore mongoDataStore) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            DataVersion dataVersion = dataVersions.get(database);
+            if (dataVersion != null && now - dataVersion.checkTime < dataVersionCheckInterval) {
+                return;
+            }
+        }
+        long version = mongoDataStore.getCollection(DATA_VERSION_COLLECTION).count(new BasicDBObject()).first();
+        synchronized (this) {
+            DataVersion dataVersion = dataVersions.get(database);
+            if (dataVersion != null && dataVersion.version != version) {
+                invalidate(database);
+            }
+            dataVersions.put(database, new DataVersion(version, now));
+        }
+    }
+
+    /**
+     * @return a copy of the cached result or null if the key is not cached
+     */
+    public QueryResult get(String key) {
+        CachedResult cachedResult;
+        synchronized (this) {
+            cachedResult = results.get(key);
+        }
+        if (cachedResult == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return copy(cachedResult.queryResult);
+    }
+
+    /**
+     * Adds a copy of the result evicting the least recently used ones until the cache fits into its memory limit.
+     * Results bigger than the whole cache are not kept.
+     */
+    public void put(String key, QueryResult queryResult) {
+        QueryResult cachedQueryResult = copy(queryResult);
+        long resultSize = 2 * key.length() + 64;
+        BasicBSONEncoder bsonEncoder = new BasicBSONEncoder();
+        for (Object result : (List) cachedQueryResult.getResult()) {
+            resultSize += (result instanceof DBObject) ? bsonEncoder.encode((DBObject) result).length : 64;
+        }
+        if (resultSize > maxMemory) {
+            return;
+        }
+
+        synchronized (this) {
+            CachedResult previousResult = results.remove(key);
+            if (previousResult != null) {
+                size -= previousResult.size;
+            }
+            Iterator<CachedResult> iterator = results.values().iterator();
+            while (size + resultSize > maxMemory && iterator.hasNext()) {
+                size -= iterator.next().size;
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+            results.put(key, new CachedResult(cachedQueryResult, resultSize));
+            size += resultSize;
+        }
+    }
+
+    public synchronized void invalidate(String database) {
+        Iterator<Map.Entry<String, CachedResult>> iterator = results.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, CachedResult> entry = iterator.next();
+            if (entry.getKey().startsWith(database + "|")) {
+                size -= entry.getValue().size;
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        results.clear();
+        size = 0;
+    }
+
+    private static QueryResult copy(QueryResult queryResult) {
+        QueryResult copy = new QueryResult();
+        copy.setId(queryResult.getId());
+        copy.setDbTime(queryResult.getDbTime());
+        copy.setNumResults(queryResult.getNumResults());
+        copy.setNumTotalResults(queryResult.getNumTotalResults());
+        copy.setWarningMsg(queryResult.getWarningMsg());
+        copy.setErrorMsg(queryResult.getErrorMsg());
+        List<Object> copiedResults = new ArrayList<>();
+        if (queryResult.getResult() != null) {
+            for (Object result : (List) queryResult.getResult()) {
+                copiedResults.add((result instanceof BasicDBObject) ? ((BasicDBObject) result).copy() : result);
+            }
+        }
+        copy.setResult(copiedResults);
+        return copy;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public double getHitRate() {
+        long requests = hits.get() + misses.get();
+        return (requests > 0) ? (double) hits.get() / requests : 0;
+    }
+
+    public synchronized int getNumResults() {
+        return results.size();
+    }
+
+    public synchronized long getEstimatedSize() {
+        return size;
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+}
@@ -1,5 +1,6 @@
 package org.opencb.cellbase.mongodb.db;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DB;
 import com.mongodb.DBObject;
@@ -72,19 +73,38 @@ public class TranscriptMongoDBAdaptor extends MongoDBAdaptor implements Transcri
 
     @Override
     public List<QueryResult> getAllByIdList(List<String> idList, QueryOptions options) {
-//        db.core.aggregate({$match: {"transcripts.id": "ENST00000343281"}}, {$unwind: "$transcripts"}, {$match: {"transcripts.id": "ENST00000343281"}})
-
-        List<DBObject[]> commandsList = new ArrayList<>(idList.size());
-        for (String id : idList) {
-            DBObject[] commands = new DBObject[3];
-            DBObject match = new BasicDBObject("$match", new BasicDBObject("transcripts.id", id));
-            DBObject unwind = new BasicDBObject("$unwind", "$transcripts");
-            commands[0] = match;
-            commands[1] = unwind;
-            commands[2] = match;
-            commandsList.add(commands);
+        // Genes of the transcripts are fetched whole and unwound as the former
+        // $match: {"transcripts.id": id}, $unwind: "$transcripts", $match: {"transcripts.id": id} aggregation did
+        QueryOptions geneOptions = new QueryOptions();
+        if (options != null) {
+            geneOptions.putAll(options);
         }
-        return executeAggregationList(idList, commandsList, options);
+        geneOptions.remove("include");
+        geneOptions.remove("exclude");
+        geneOptions.remove("profile");
+
+        List<QueryResult> queryResults = executeIdQueryList(idList, "transcripts.id", geneOptions, mongoDBCollection2);
+        for (int i = 0; i < queryResults.size(); i++) {
+            List<DBObject> transcriptList = new ArrayList<>();
+            for (DBObject gene : (List<DBObject>) queryResults.get(i).getResult()) {
+                for (Object transcript : (List) gene.get("transcripts")) {
+                    if (idList.get(i).equals(((DBObject) transcript).get("id"))) {
+                        BasicDBObject unwoundGene = new BasicDBObject(gene.toMap());
+                        unwoundGene.put("transcripts", transcript);
+                        transcriptList.add(unwoundGene);
+                    }
+                }
+            }
+            queryResults.get(i).setResult(transcriptList);
+            queryResults.get(i).setNumResults(transcriptList.size());
+            queryResults.get(i).setNumTotalResults(transcriptList.size());
+        }
+        return queryResults;
+    }
+
+    @Override
+    public ListenableFuture<List<QueryResult>> getAllByIdListAsync(List<String> idList, QueryOptions options) {
+        return submitIdQuery(this, idList, options);
     }
 
     @Override
@@ -178,6 +198,11 @@ public class TranscriptMongoDBAdaptor extends MongoDBAdaptor implements Transcri
         return null;
     }
 
+    @Override
+    public ListenableFuture<List<QueryResult>> getAllByRegionListAsync(List<Region> regions, QueryOptions options) {
+        return submitRegionQuery(this, regions, options);
+    }
+
 
     @Override
     public QueryResult getAllByEnsemblExonId(String ensemblExonId,
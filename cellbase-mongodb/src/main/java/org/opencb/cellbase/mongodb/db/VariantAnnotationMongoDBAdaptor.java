@@ -8,6 +8,8 @@ import org.opencb.biodata.models.variant.annotation.Score;
 import org.opencb.biodata.models.variant.annotation.VariantAnnotation;
 import org.opencb.biodata.models.variation.GenomicVariant;
 import org.opencb.biodata.models.variation.PopulationFrequency;
+import org.opencb.cellbase.core.common.DNASequenceUtils;
+import org.opencb.cellbase.core.common.GeneticCode;
 import org.opencb.cellbase.core.lib.api.core.ConservedRegionDBAdaptor;
 import org.opencb.cellbase.core.lib.api.core.GeneDBAdaptor;
 import org.opencb.cellbase.core.lib.api.core.ProteinFunctionPredictorDBAdaptor;
@@ -16,8 +18,12 @@ import org.opencb.cellbase.core.lib.api.variation.ClinicalDBAdaptor;
 import org.opencb.cellbase.core.lib.api.variation.VariantAnnotationDBAdaptor;
 import org.opencb.cellbase.core.lib.api.variation.VariationDBAdaptor;
 import org.opencb.cellbase.mongodb.MongoDBCollectionConfiguration;
+import org.opencb.cellbase.mongodb.model.AnnotationGene;
+import org.opencb.cellbase.mongodb.serializer.converters.AnnotationGeneConverter;
+import org.opencb.cellbase.mongodb.serializer.converters.VariantAnnotationConverter;
 import org.opencb.datastore.core.QueryOptions;
 import org.opencb.datastore.core.QueryResult;
+import org.opencb.datastore.mongodb.MongoDBCollection;
 import org.opencb.datastore.mongodb.MongoDataStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +31,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 //import java.util.logging.Logger;
 
 /**
@@ -35,15 +45,15 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
 
 //    private DBCollection mongoVariationPhenotypeDBCollection;
     private int bigVariantSizeThreshold = 50;
+    private int geneFlankSize = 5000;
+    private int maxMergedRegionSize = 1000000;
     private int geneChunkSize = MongoDBCollectionConfiguration.GENE_CHUNK_SIZE;
     private int regulatoryRegionChunkSize = MongoDBCollectionConfiguration.REGULATORY_REGION_CHUNK_SIZE;
-    private static Map<String, Map<String,Boolean>> isSynonymousCodon = new HashMap<>();
-    private static Map<String, List<String>> aToCodon = new HashMap<>(20);
-    private static Map<String, String> codonToA = new HashMap<>();
     private static Map<String, Integer> biotypes = new HashMap<>(30);
-    private static Map<Character, Character> complementaryNt = new HashMap<>();
     private static Map<Integer, String> siftDescriptions = new HashMap<>();
     private static Map<Integer, String> polyphenDescriptions = new HashMap<>();
+    private static AnnotationGeneConverter annotationGeneConverter = new AnnotationGeneConverter(biotypes, 45);  // 45: non_coding
+    private static VariantAnnotationConverter variantAnnotationConverter = new VariantAnnotationConverter();
 
     private GeneDBAdaptor geneDBAdaptor;
     private RegulatoryRegionDBAdaptor regulatoryRegionDBAdaptor;
@@ -51,78 +61,13 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
     private ClinicalDBAdaptor clinicalDBAdaptor;
     private ProteinFunctionPredictorDBAdaptor proteinFunctionPredictorDBAdaptor;
     private ConservedRegionDBAdaptor conservedRegionDBAdaptor;
+    private GeneIntervalIndex geneIntervalIndex;
+    private ExecutorService executorService;
+    private ProteinSubstitutionScoreCache proteinSubstitutionScoreCache;
+    private MongoDBCollection precomputedAnnotationCollection;
 
     static {
 
-        ///////////////////////////////////////////////////////////////////////
-        /////   GENETIC CODE   ////////////////////////////////////////////////
-        ///////////////////////////////////////////////////////////////////////
-        aToCodon.put("ALA",new ArrayList<String>());
-        aToCodon.get("ALA").add("GCT"); aToCodon.get("ALA").add("GCC"); aToCodon.get("ALA").add("GCA"); aToCodon.get("ALA").add("GCG");
-        aToCodon.put("ARG",new ArrayList<String>());
-        aToCodon.get("ARG").add("CGT"); aToCodon.get("ARG").add("CGC"); aToCodon.get("ARG").add("CGA"); aToCodon.get("ARG").add("CGG");
-        aToCodon.get("ARG").add("AGA"); aToCodon.get("ARG").add("AGG");
-        aToCodon.put("ASN", new ArrayList<String>());
-        aToCodon.get("ASN").add("AAT"); aToCodon.get("ASN").add("AAC");
-        aToCodon.put("ASP", new ArrayList<String>());
-        aToCodon.get("ASP").add("GAT"); aToCodon.get("ASP").add("GAC");
-        aToCodon.put("CYS", new ArrayList<String>());
-        aToCodon.get("CYS").add("TGT"); aToCodon.get("CYS").add("TGC");
-        aToCodon.put("GLN", new ArrayList<String>());
-        aToCodon.get("GLN").add("CAA"); aToCodon.get("GLN").add("CAG");
-        aToCodon.put("GLU", new ArrayList<String>());
-        aToCodon.get("GLU").add("GAA"); aToCodon.get("GLU").add("GAG");
-        aToCodon.put("GLY",new ArrayList<String>());
-        aToCodon.get("GLY").add("GGT"); aToCodon.get("GLY").add("GGC"); aToCodon.get("GLY").add("GGA"); aToCodon.get("GLY").add("GGG");
-        aToCodon.put("HIS",new ArrayList<String>());
-        aToCodon.get("HIS").add("CAT"); aToCodon.get("HIS").add("CAC");
-        aToCodon.put("ILE",new ArrayList<String>());
-        aToCodon.get("ILE").add("ATT"); aToCodon.get("ILE").add("ATC"); aToCodon.get("ILE").add("ATA");
-        aToCodon.put("LEU",new ArrayList<String>());
-        aToCodon.get("LEU").add("TTA"); aToCodon.get("LEU").add("TTG"); aToCodon.get("LEU").add("CTT"); aToCodon.get("LEU").add("CTC");
-        aToCodon.get("LEU").add("CTA"); aToCodon.get("LEU").add("CTG");
-        aToCodon.put("LYS", new ArrayList<String>());
-        aToCodon.get("LYS").add("AAA"); aToCodon.get("LYS").add("AAG");
-        aToCodon.put("MET", new ArrayList<String>());
-        aToCodon.get("MET").add("ATG");
-        aToCodon.put("PHE",new ArrayList<String>());
-        aToCodon.get("PHE").add("TTT"); aToCodon.get("PHE").add("TTC");
-        aToCodon.put("PRO",new ArrayList<String>());
-        aToCodon.get("PRO").add("CCT"); aToCodon.get("PRO").add("CCC"); aToCodon.get("PRO").add("CCA"); aToCodon.get("PRO").add("CCG");
-        aToCodon.put("SER",new ArrayList<String>());
-        aToCodon.get("SER").add("TCT"); aToCodon.get("SER").add("TCC"); aToCodon.get("SER").add("TCA"); aToCodon.get("SER").add("TCG");
-        aToCodon.get("SER").add("AGT"); aToCodon.get("SER").add("AGC");
-        aToCodon.put("THR",new ArrayList<String>());
-        aToCodon.get("THR").add("ACT"); aToCodon.get("THR").add("ACC"); aToCodon.get("THR").add("ACA"); aToCodon.get("THR").add("ACG");
-        aToCodon.put("TRP",new ArrayList<String>());
-        aToCodon.get("TRP").add("TGG");
-        aToCodon.put("TYR",new ArrayList<String>());
-        aToCodon.get("TYR").add("TAT"); aToCodon.get("TYR").add("TAC");
-        aToCodon.put("VAL",new ArrayList<String>());
-        aToCodon.get("VAL").add("GTT"); aToCodon.get("VAL").add("GTC"); aToCodon.get("VAL").add("GTA"); aToCodon.get("VAL").add("GTG");
-        aToCodon.put("STOP",new ArrayList<String>());
-        aToCodon.get("STOP").add("TAA"); aToCodon.get("STOP").add("TGA"); aToCodon.get("STOP").add("TAG");
-
-        for(String aa : aToCodon.keySet()) {
-            for(String codon : aToCodon.get(aa)) {
-                isSynonymousCodon.put(codon, new HashMap<String, Boolean>());
-                codonToA.put(codon, aa);
-            }
-        }
-        for(String codon1 : isSynonymousCodon.keySet()) {
-            Map<String,Boolean> codonEntry = isSynonymousCodon.get(codon1);
-            for(String codon2 : isSynonymousCodon.keySet()) {
-                codonEntry.put(codon2,false);
-            }
-        }
-        for(String aa : aToCodon.keySet()) {
-            for(String codon1 : aToCodon.get(aa)) {
-                for(String codon2 : aToCodon.get(aa)) {
-                    isSynonymousCodon.get(codon1).put(codon2,true);
-                }
-            }
-        }
-
 	    biotypes.put("3prime_overlapping_ncrna",0);
         biotypes.put("IG_C_gene",1);
         biotypes.put("IG_C_pseudogene",2);
@@ -177,11 +122,6 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
         biotypes.put("LRG_gene",51);
 
 
-        complementaryNt.put('A','T');
-        complementaryNt.put('C','G');
-        complementaryNt.put('G','C');
-        complementaryNt.put('T','A');
-
         polyphenDescriptions.put(0,"probably damaging");
         polyphenDescriptions.put(1,"possibly damaging");
         polyphenDescriptions.put(2,"benign");
@@ -248,6 +188,51 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
         this.geneDBAdaptor = geneDBAdaptor;
     }
 
+    public GeneIntervalIndex getGeneIntervalIndex() {
+        return geneIntervalIndex;
+    }
+
+    /**
+     * Genes are read from this index instead of the gene collection when it is not null.
+     */
+    public void setGeneIntervalIndex(GeneIntervalIndex geneIntervalIndex) {
+        this.geneIntervalIndex = geneIntervalIndex;
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Variation, clinical, consequence type and conservation queries of getAnnotationByVariantList run concurrently
+     * on this executor, or one after another when it is null.
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    public ProteinSubstitutionScoreCache getProteinSubstitutionScoreCache() {
+        return proteinSubstitutionScoreCache;
+    }
+
+    /**
+     * SIFT/PolyPhen matrices are queried for every annotation batch when it is null.
+     */
+    public void setProteinSubstitutionScoreCache(ProteinSubstitutionScoreCache proteinSubstitutionScoreCache) {
+        this.proteinSubstitutionScoreCache = proteinSubstitutionScoreCache;
+    }
+
+    public MongoDBCollection getPrecomputedAnnotationCollection() {
+        return precomputedAnnotationCollection;
+    }
+
+    /**
+     * @param precomputedAnnotationCollection collection looked up before computing annotations, null to always compute them
+     */
+    public void setPrecomputedAnnotationCollection(MongoDBCollection precomputedAnnotationCollection) {
+        this.precomputedAnnotationCollection = precomputedAnnotationCollection;
+    }
+
     public RegulatoryRegionDBAdaptor getRegulatoryRegionDBAdaptor() {
         return regulatoryRegionDBAdaptor;
     }
@@ -264,30 +249,11 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
 
     }
 
-    private Boolean isStopCodon(String codon) {
-        if(codon.equals("TAA") || codon.equals("TGA") || codon.equals("TAG")) {
-            return true;
-        }
-        return false;
-    }
-
-    private Boolean gainsStopCodon(String sequence) {
-        int i = 0;
-        Boolean stop = false;
-        do {
-            String codon = sequence.substring(i, i + 3);
-            stop = (codon.equals("TAA") || codon.equals("TGA") || codon.equals("TAG"));
-            i++;
-        } while((i<sequence.length()) && !stop);
-
-        return stop;
-    }
-
     private void solvePositiveCodingEffect(Boolean splicing, String transcriptSequence, Integer transcriptEnd,
                                            Integer genomicCodingEnd, Integer cdnaCodingStart, Integer cdnaCodingEnd,
-                                           Integer cdnaVariantStart, Integer cdnaVariantEnd, BasicDBList transcriptFlags,
+                                           Integer cdnaVariantStart, Integer cdnaVariantEnd, List<String> transcriptFlags,
                                            String variantRef, String variantAlt, HashSet<String> SoNames,
-                                           ConsequenceType consequenceTypeTemplate) {
+                                           ConsequenceType consequenceTypeTemplate, List<ProteinSubstitutionScoreLookup> scoreLookups) {
 
         Boolean codingAnnotationAdded = false;  // This will indicate wether it is needed to add the "coding_sequence_variant" annotation or not
 
@@ -358,14 +324,17 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                         } else if (cdnaVariantStart>(cdnaCodingStart+2) || cdnaCodingStart>0) {  // cdnaCodingStart<1 if cds_start_NF and phase!=0
                             Integer variantPhaseShift = (cdnaVariantStart - cdnaCodingStart) % 3;
                             int modifiedCodonStart = cdnaVariantStart - variantPhaseShift;
-                            String referenceCodon = transcriptSequence.substring(modifiedCodonStart - 1, modifiedCodonStart + 2);  // -1 and +2 because of base 0 String indexing
-                            char[] modifiedCodonArray = referenceCodon.toCharArray();
-                            modifiedCodonArray[variantPhaseShift] = variantAlt.toCharArray()[0];
+                            char[] referenceCodonArray = new char[3];
+                            transcriptSequence.getChars(modifiedCodonStart - 1, modifiedCodonStart + 2, referenceCodonArray, 0);  // -1 and +2 because of base 0 String indexing
+                            char[] modifiedCodonArray = referenceCodonArray.clone();
+                            modifiedCodonArray[variantPhaseShift] = variantAlt.charAt(0);
+                            int referenceCodon = GeneticCode.encodeCodon(referenceCodonArray);
+                            int modifiedCodon = GeneticCode.encodeCodon(modifiedCodonArray);
                             codingAnnotationAdded = true;
-                            String referenceA = codonToA.get(referenceCodon);
-                            String alternativeA = codonToA.get(String.valueOf(modifiedCodonArray));
-                            if (isSynonymousCodon.get(referenceCodon).get(String.valueOf(modifiedCodonArray))) {
-                                if (isStopCodon(referenceCodon)) {
+                            String referenceA = GeneticCode.getAminoacid(referenceCodon);
+                            String alternativeA = GeneticCode.getAminoacid(modifiedCodon);
+                            if (GeneticCode.isSynonymous(referenceCodon, modifiedCodon)) {
+                                if (GeneticCode.isStopCodon(referenceCodon)) {
                                     SoNames.add("stop_retained_variant");
                                 } else {  // coding end may be not correctly annotated (incomplete_terminal_codon_variant), but if the length of the cds%3=0, annotation should be synonymous variant
                                     SoNames.add("synonymous_variant");
@@ -373,38 +342,29 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                             } else {
                                 if (cdnaVariantStart<(cdnaCodingStart+3)) {
                                     SoNames.add("initiator_codon_variant");  // Gary - initiator codon SO terms not compatible with the terms below
-                                    if(isStopCodon(String.valueOf(modifiedCodonArray))) {
+                                    if(GeneticCode.isStopCodon(modifiedCodon)) {
                                         SoNames.add("stop_gained");  // Gary - initiator codon SO terms not compatible with the terms below
                                     }
-                                } else if (isStopCodon(String.valueOf(referenceCodon))) {
+                                } else if (GeneticCode.isStopCodon(referenceCodon)) {
                                     SoNames.add("stop_lost");
                                 } else {
-                                    SoNames.add(isStopCodon(String.valueOf(modifiedCodonArray)) ? "stop_gained" : "missense_variant");
+                                    SoNames.add(GeneticCode.isStopCodon(modifiedCodon) ? "stop_gained" : "missense_variant");
                                 }
                                 if (cdnaVariantEnd < (cdnaCodingEnd - 2)) {  // Variant does not affect the last codon (probably stop codon). If the 3prime end is incompletely annotated and execution reaches this line, finalNtPhase can only be 2
-                                    QueryResult proteinSubstitutionScoresQueryResult = proteinFunctionPredictorDBAdaptor.getByAaChange(consequenceTypeTemplate.getEnsemblTranscriptId(),
-                                            consequenceTypeTemplate.getAaPosition(), alternativeA, new QueryOptions());
-                                    if (proteinSubstitutionScoresQueryResult.getNumResults() == 1) {
-                                        BasicDBObject proteinSubstitutionScores = (BasicDBObject) proteinSubstitutionScoresQueryResult.getResult();
-                                        if (proteinSubstitutionScores.get("ss") != null) {
-                                            consequenceTypeTemplate.addProteinSubstitutionScore(new Score(Double.parseDouble("" + proteinSubstitutionScores.get("ss")),
-                                                    "Sift", siftDescriptions.get(proteinSubstitutionScores.get("se"))));
-                                        }
-                                        if (proteinSubstitutionScores.get("ps") != null) {
-                                            consequenceTypeTemplate.addProteinSubstitutionScore(new Score(Double.parseDouble("" + proteinSubstitutionScores.get("ps")),
-                                                    "Polyphen", polyphenDescriptions.get(proteinSubstitutionScores.get("pe"))));
-                                        }
+                                    if (consequenceTypeTemplate.getAaPosition() != null) {
+                                        // Scores are filled in once the whole batch has been solved, see resolveProteinSubstitutionScores
+                                        List<Score> proteinSubstitutionScores = new ArrayList<>(2);
+                                        consequenceTypeTemplate.setProteinSubstitutionScores(proteinSubstitutionScores);
+                                        scoreLookups.add(new ProteinSubstitutionScoreLookup(consequenceTypeTemplate.getEnsemblTranscriptId(),
+                                                consequenceTypeTemplate.getAaPosition(), alternativeA, proteinSubstitutionScores));
                                     }
                                 }
                             }
                             // Set consequenceTypeTemplate.aChange
                             consequenceTypeTemplate.setAaChange(referenceA + "/" + alternativeA);
                             // Set consequenceTypeTemplate.codon leaving only the nt that changes in uppercase. Careful with upper/lower case letters
-                            char[] referenceCodonArray = referenceCodon.toLowerCase().toCharArray();
-                            referenceCodonArray[variantPhaseShift] = Character.toUpperCase(referenceCodonArray[variantPhaseShift]);
-                            modifiedCodonArray = String.valueOf(modifiedCodonArray).toLowerCase().toCharArray();
-                            modifiedCodonArray[variantPhaseShift] = Character.toUpperCase(modifiedCodonArray[variantPhaseShift]);
-                            consequenceTypeTemplate.setCodon(String.valueOf(referenceCodonArray) + "/" + String.valueOf(modifiedCodonArray));
+                            consequenceTypeTemplate.setCodon(formatCodon(referenceCodonArray, variantPhaseShift) + "/"
+                                    + formatCodon(modifiedCodonArray, variantPhaseShift));
                         }
                     }
                 }
@@ -420,47 +380,67 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                                                   Set<String> SoNames) {
         Integer variantPhaseShift = (cdnaVariantStart - cdnaCodingStart) % 3; // Sum 1 to cdnaVariantStart because of the peculiarities of insertion coordinates: cdnaVariantStart coincides with the vcf position, the actual substituted nt is the one on the right
         int modifiedCodonStart = cdnaVariantStart - variantPhaseShift;
-        String referenceCodon = transcriptSequence.substring(modifiedCodonStart - 1, modifiedCodonStart + 2);  // -1 and +2 because of base 0 String indexing
-        char[] modifiedCodonArray = referenceCodon.toCharArray();
-        char[] referenceCodonArray = referenceCodon.toCharArray();
+        int referenceCodon = GeneticCode.encodeCodon(transcriptSequence, modifiedCodonStart - 1);  // -1 because of base 0 String indexing
+        char[] modifiedCodonArray = new char[3];
+        transcriptSequence.getChars(modifiedCodonStart - 1, modifiedCodonStart + 2, modifiedCodonArray, 0);
         int i=cdnaVariantEnd;  // Position (0 based index) in transcriptSequence of the first nt after the deletion
         int codonPosition;
         for(codonPosition=variantPhaseShift; codonPosition<3; codonPosition++) { // BE CAREFUL: this method is assumed to be called after checking that cdnaVariantStart and cdnaVariantEnd are within coding sequence (both of them within an exon).
             modifiedCodonArray[codonPosition] = transcriptSequence.charAt(i);  // Paste reference nts after deletion in the corresponding codon position
             i++;
         }
-        decideStopCodonModificationAnnotation(SoNames, referenceCodon, modifiedCodonArray);
+        decideStopCodonModificationAnnotation(SoNames, referenceCodon, GeneticCode.encodeCodon(modifiedCodonArray));
     }
 
-    private void decideStopCodonModificationAnnotation(Set<String> SoNames, String referenceCodon,
-                                                       char[] modifiedCodonArray) {
-        if (isSynonymousCodon.get(referenceCodon).get(String.valueOf(modifiedCodonArray))) {
-            if (isStopCodon(referenceCodon)) {
+    private void decideStopCodonModificationAnnotation(Set<String> SoNames, int referenceCodon, int modifiedCodon) {
+        if (GeneticCode.isSynonymous(referenceCodon, modifiedCodon)) {
+            if (GeneticCode.isStopCodon(referenceCodon)) {
                 SoNames.add("stop_retained_variant");
             }
         } else {
-            if (isStopCodon(String.valueOf(referenceCodon))) {
+            if (GeneticCode.isStopCodon(referenceCodon)) {
                 SoNames.add("stop_lost");
-            } else if (isStopCodon(String.valueOf(modifiedCodonArray))) {
+            } else if (GeneticCode.isStopCodon(modifiedCodon)) {
                 SoNames.add("stop_gained");
             }
         }
     }
 
+    /**
+     * Codon in lower case except for the changed nucleotide, e.g. aGt
+     */
+    private String formatCodon(char[] codonArray, int changedPosition) {
+        char[] formattedCodon = new char[3];
+        for (int i = 0; i < 3; i++) {
+            formattedCodon[i] = (i == changedPosition) ? Character.toUpperCase(codonArray[i]) : Character.toLowerCase(codonArray[i]);
+        }
+        return String.valueOf(formattedCodon);
+    }
+
+    /**
+     * Fills codonArray with the reverse complement of the three nucleotides of sequence ending at the 0-based position,
+     * i.e. codonArray[k] is the complement of sequence[position - k]
+     */
+    private void fillReverseComplementCodon(String sequence, int position, char[] codonArray) {
+        codonArray[0] = DNASequenceUtils.complement(sequence.charAt(position));
+        codonArray[1] = DNASequenceUtils.complement(sequence.charAt(position - 1));
+        codonArray[2] = DNASequenceUtils.complement(sequence.charAt(position - 2));
+    }
+
     private void solveStopCodonPositiveInsertion(String transcriptSequence, Integer cdnaCodingStart,
                                             Integer cdnaVariantStart, String variantAlt, Set<String> SoNames) {
         Integer variantPhaseShift = (cdnaVariantStart + 1 - cdnaCodingStart) % 3; // Sum 1 to cdnaVariantStart because of the peculiarities of insertion coordinates: cdnaVariantStart coincides with the vcf position, the actual substituted nt is the one on the right
         int modifiedCodonStart = cdnaVariantStart + 1 - variantPhaseShift;
-        String referenceCodon = transcriptSequence.substring(modifiedCodonStart - 1, modifiedCodonStart + 2);  // -1 and +2 because of base 0 String indexing
-        char[] modifiedCodonArray = referenceCodon.toCharArray();
-        char[] referenceCodonArray = referenceCodon.toCharArray();
+        int referenceCodon = GeneticCode.encodeCodon(transcriptSequence, modifiedCodonStart - 1);  // -1 because of base 0 String indexing
+        char[] modifiedCodonArray = new char[3];
+        transcriptSequence.getChars(modifiedCodonStart - 1, modifiedCodonStart + 2, modifiedCodonArray, 0);
         int i=0;
         int transcriptSequencePosition = cdnaVariantStart;  // indexing over transcriptSequence is 0 based, transcriptSequencePosition points to cdnaVariantEnd actually
         int modifiedCodonPosition;
         int modifiedCodonPositionStart = variantPhaseShift;
         do {
             for (modifiedCodonPosition = modifiedCodonPositionStart; (modifiedCodonPosition < 3 && i < variantAlt.length()); modifiedCodonPosition++) {  // Paste alternative nt in the corresponding codon position
-                modifiedCodonArray[modifiedCodonPosition] = variantAlt.toCharArray()[i];
+                modifiedCodonArray[modifiedCodonPosition] = variantAlt.charAt(i);
                 i++;
             }
             for (; modifiedCodonPosition < 3; modifiedCodonPosition++) {  // Concatenate reference codon nts after alternative nts
@@ -469,16 +449,17 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
 //                modifiedCodonArray[modifiedCodonPosition] = referenceCodonArray[variantPhaseShift];
 //                variantPhaseShift++;
             }
-            decideStopCodonModificationAnnotation(SoNames, referenceCodon, modifiedCodonArray);
+            decideStopCodonModificationAnnotation(SoNames, referenceCodon, GeneticCode.encodeCodon(modifiedCodonArray));
             modifiedCodonPositionStart = 0;  // Reset the position where the next modified codon must be started to be filled
         } while(i<variantAlt.length());  // All posible new codons generated by the inserted sequence must be checked
     }
 
     private void solveNegativeCodingEffect(Boolean splicing, String transcriptSequence, Integer transcriptStart,
                                            Integer genomicCodingStart, Integer cdnaCodingStart, Integer cdnaCodingEnd,
-                                           Integer cdnaVariantStart, Integer cdnaVariantEnd, BasicDBList transcriptFlags,
+                                           Integer cdnaVariantStart, Integer cdnaVariantEnd, List<String> transcriptFlags,
                                            String variantRef, String variantAlt,
-                                           HashSet<String> SoNames, ConsequenceType consequenceTypeTemplate) {
+                                           HashSet<String> SoNames, ConsequenceType consequenceTypeTemplate,
+                                           List<ProteinSubstitutionScoreLookup> scoreLookups) {
 
         Boolean codingAnnotationAdded = false;
 
@@ -552,20 +533,18 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                         } else if (cdnaVariantStart>(cdnaCodingStart+2) || cdnaCodingStart>0) {  // cdnaCodingStart<1 if cds_start_NF and phase!=0
                             Integer variantPhaseShift = (cdnaVariantStart - cdnaCodingStart) % 3;
                             int modifiedCodonStart = cdnaVariantStart - variantPhaseShift;
-                            String reverseCodon = new StringBuilder(transcriptSequence.substring(transcriptSequence.length() - modifiedCodonStart - 2,
-                                    transcriptSequence.length() - modifiedCodonStart + 1)).reverse().toString(); // Rigth limit of the substring sums +1 because substring does not include that position
-                            char[] referenceCodon = reverseCodon.toCharArray();
-                            referenceCodon[0] = complementaryNt.get(referenceCodon[0]);
-                            referenceCodon[1] = complementaryNt.get(referenceCodon[1]);
-                            referenceCodon[2] = complementaryNt.get(referenceCodon[2]);
-                            char[] modifiedCodonArray = referenceCodon.clone();
-                            modifiedCodonArray[variantPhaseShift] = complementaryNt.get(variantAlt.toCharArray()[0]);
+                            char[] referenceCodonArray = new char[3];
+                            fillReverseComplementCodon(transcriptSequence, transcriptSequence.length() - modifiedCodonStart, referenceCodonArray);
+                            char[] modifiedCodonArray = referenceCodonArray.clone();
+                            modifiedCodonArray[variantPhaseShift] = DNASequenceUtils.complement(variantAlt.charAt(0));
+                            int referenceCodon = GeneticCode.encodeCodon(referenceCodonArray);
+                            int modifiedCodon = GeneticCode.encodeCodon(modifiedCodonArray);
                             codingAnnotationAdded = true;
-                            String referenceA = codonToA.get(String.valueOf(referenceCodon));
-                            String alternativeA = codonToA.get(String.valueOf(modifiedCodonArray));
+                            String referenceA = GeneticCode.getAminoacid(referenceCodon);
+                            String alternativeA = GeneticCode.getAminoacid(modifiedCodon);
 
-                            if (isSynonymousCodon.get(String.valueOf(referenceCodon)).get(String.valueOf(modifiedCodonArray))) {
-                                if (isStopCodon(String.valueOf(referenceCodon))) {
+                            if (GeneticCode.isSynonymous(referenceCodon, modifiedCodon)) {
+                                if (GeneticCode.isStopCodon(referenceCodon)) {
                                     SoNames.add("stop_retained_variant");
                                 } else {  // coding end may be not correctly annotated (incomplete_terminal_codon_variant), but if the length of the cds%3=0, annotation should be synonymous variant
                                     SoNames.add("synonymous_variant");
@@ -573,38 +552,29 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                             } else {
                                 if (cdnaVariantStart<(cdnaCodingStart+3)) {
                                     SoNames.add("initiator_codon_variant");  // Gary - initiator codon SO terms not compatible with the terms below
-                                    if(isStopCodon(String.valueOf(modifiedCodonArray))) {
+                                    if(GeneticCode.isStopCodon(modifiedCodon)) {
                                         SoNames.add("stop_gained");  // Gary - initiator codon SO terms not compatible with the terms below
                                     }
-                                } else if (isStopCodon(String.valueOf(referenceCodon))) {
+                                } else if (GeneticCode.isStopCodon(referenceCodon)) {
                                     SoNames.add("stop_lost");
                                 } else {
-                                    SoNames.add(isStopCodon(String.valueOf(modifiedCodonArray)) ? "stop_gained" : "missense_variant");
+                                    SoNames.add(GeneticCode.isStopCodon(modifiedCodon) ? "stop_gained" : "missense_variant");
                                 }
                                 if (cdnaVariantEnd < (cdnaCodingEnd - 2)) {  // Variant does not affect the last codon (probably stop codon). If the 3prime end is incompletely annotated and execution reaches this line, finalNtPhase can only be 2
-                                    QueryResult proteinSubstitutionScoresQueryResult = proteinFunctionPredictorDBAdaptor.getByAaChange(consequenceTypeTemplate.getEnsemblTranscriptId(),
-                                            consequenceTypeTemplate.getAaPosition(), alternativeA, new QueryOptions());
-                                    if (proteinSubstitutionScoresQueryResult.getNumResults() == 1) {
-                                        BasicDBObject proteinSubstitutionScores = (BasicDBObject) proteinSubstitutionScoresQueryResult.getResult();
-                                        if (proteinSubstitutionScores.get("ss") != null) {
-                                            consequenceTypeTemplate.addProteinSubstitutionScore(new Score(Double.parseDouble("" + proteinSubstitutionScores.get("ss")),
-                                                    "Sift", siftDescriptions.get(proteinSubstitutionScores.get("se"))));
-                                        }
-                                        if (proteinSubstitutionScores.get("ps") != null) {
-                                            consequenceTypeTemplate.addProteinSubstitutionScore(new Score(Double.parseDouble("" + proteinSubstitutionScores.get("ps")),
-                                                    "Polyphen", polyphenDescriptions.get(proteinSubstitutionScores.get("pe"))));
-                                        }
+                                    if (consequenceTypeTemplate.getAaPosition() != null) {
+                                        // Scores are filled in once the whole batch has been solved, see resolveProteinSubstitutionScores
+                                        List<Score> proteinSubstitutionScores = new ArrayList<>(2);
+                                        consequenceTypeTemplate.setProteinSubstitutionScores(proteinSubstitutionScores);
+                                        scoreLookups.add(new ProteinSubstitutionScoreLookup(consequenceTypeTemplate.getEnsemblTranscriptId(),
+                                                consequenceTypeTemplate.getAaPosition(), alternativeA, proteinSubstitutionScores));
                                     }
                                 }
                             }
                             // Set consequenceTypeTemplate.aChange
                             consequenceTypeTemplate.setAaChange(referenceA + "/" + alternativeA);
                             // Fill consequenceTypeTemplate.codon leaving only the nt that changes in uppercase. Careful with upper/lower case letters
-                            char[] referenceCodonArray = String.valueOf(referenceCodon).toLowerCase().toCharArray();
-                            referenceCodonArray[variantPhaseShift] = Character.toUpperCase(referenceCodonArray[variantPhaseShift]);
-                            modifiedCodonArray = String.valueOf(modifiedCodonArray).toLowerCase().toCharArray();
-                            modifiedCodonArray[variantPhaseShift] = Character.toUpperCase(modifiedCodonArray[variantPhaseShift]);
-                            consequenceTypeTemplate.setCodon(String.valueOf(referenceCodonArray) + "/" + String.valueOf(modifiedCodonArray));
+                            consequenceTypeTemplate.setCodon(formatCodon(referenceCodonArray, variantPhaseShift) + "/"
+                                    + formatCodon(modifiedCodonArray, variantPhaseShift));
                         }
                     }
                 }
@@ -620,55 +590,42 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                                                 Set<String> SoNames) {
         Integer variantPhaseShift = (cdnaVariantStart - cdnaCodingStart) % 3; // Sum 1 to cdnaVariantStart because of the peculiarities of insertion coordinates: cdnaVariantStart coincides with the vcf position, the actual substituted nt is the one on the right
         int modifiedCodonStart = cdnaVariantStart - variantPhaseShift;
-        String reverseCodon = new StringBuilder(transcriptSequence.substring(transcriptSequence.length() - modifiedCodonStart - 2,
-                transcriptSequence.length() - modifiedCodonStart + 1)).reverse().toString(); // Rigth limit of the substring sums +1 because substring does not include that position
-        String reverseTranscriptSequence = new StringBuilder(transcriptSequence.substring(transcriptSequence.length() - cdnaVariantEnd - 3,
-                transcriptSequence.length() - cdnaVariantEnd)).reverse().toString(); // Rigth limit of the substring -2 because substring does not include that position
-        char[] referenceCodonArray = reverseCodon.toCharArray();
-        referenceCodonArray[0] = complementaryNt.get(referenceCodonArray[0]);
-        referenceCodonArray[1] = complementaryNt.get(referenceCodonArray[1]);
-        referenceCodonArray[2] = complementaryNt.get(referenceCodonArray[2]);
-        char[] modifiedCodonArray = referenceCodonArray.clone();
+        char[] modifiedCodonArray = new char[3];
+        fillReverseComplementCodon(transcriptSequence, transcriptSequence.length() - modifiedCodonStart, modifiedCodonArray);
+        int referenceCodon = GeneticCode.encodeCodon(modifiedCodonArray);
 
-        int i=0;
+        int i=transcriptSequence.length() - cdnaVariantEnd - 1;  // transcriptSequence is read backwards from the first nt after the deletion
         int codonPosition;
         for(codonPosition=variantPhaseShift; codonPosition<3; codonPosition++) { // BE CAREFUL: this method is assumed to be called after checking that cdnaVariantStart and cdnaVariantEnd are within coding sequence (both of them within an exon).
-            modifiedCodonArray[codonPosition] = complementaryNt.get(reverseTranscriptSequence.charAt(i));  // Paste reference nts after deletion in the corresponding codon position
-            i++;
+            modifiedCodonArray[codonPosition] = DNASequenceUtils.complement(transcriptSequence.charAt(i));  // Paste reference nts after deletion in the corresponding codon position
+            i--;
         }
-        decideStopCodonModificationAnnotation(SoNames, String.valueOf(referenceCodonArray), modifiedCodonArray);
+        decideStopCodonModificationAnnotation(SoNames, referenceCodon, GeneticCode.encodeCodon(modifiedCodonArray));
     }
 
     private void solveStopCodonNegativeInsertion(String transcriptSequence, Integer cdnaCodingStart,
                                                  Integer cdnaVariantEnd, String variantAlt, Set<String> SoNames) {
         Integer variantPhaseShift = (cdnaVariantEnd - cdnaCodingStart) % 3;
         int modifiedCodonStart = cdnaVariantEnd - variantPhaseShift;
-        String reverseCodon = new StringBuilder(transcriptSequence.substring(transcriptSequence.length() - modifiedCodonStart - 2,
-                transcriptSequence.length() - modifiedCodonStart + 1)).reverse().toString(); // Rigth limit of the substring sums +1 because substring does not include that position
-        String reverseTranscriptSequence = new StringBuilder(transcriptSequence.substring(transcriptSequence.length() - cdnaVariantEnd - 3,
-                transcriptSequence.length() - cdnaVariantEnd)).reverse().toString(); // Rigth limit of the substring -2 because substring does not include that position
-        char[] referenceCodonArray = reverseCodon.toCharArray();
-        referenceCodonArray[0] = complementaryNt.get(referenceCodonArray[0]);
-        referenceCodonArray[1] = complementaryNt.get(referenceCodonArray[1]);
-        referenceCodonArray[2] = complementaryNt.get(referenceCodonArray[2]);
-        char[] modifiedCodonArray = referenceCodonArray.clone();
-        char[] altArray = (new StringBuilder(variantAlt).reverse().toString()).toCharArray();
+        char[] modifiedCodonArray = new char[3];
+        fillReverseComplementCodon(transcriptSequence, transcriptSequence.length() - modifiedCodonStart, modifiedCodonArray);
+        int referenceCodon = GeneticCode.encodeCodon(modifiedCodonArray);
         int i=0;
-        int reverseTranscriptSequencePosition = 0;
+        int reverseTranscriptSequencePosition = transcriptSequence.length() - cdnaVariantEnd - 1;  // transcriptSequence is read backwards
         int modifiedCodonPosition;
         int modifiedCodonPositionStart=variantPhaseShift;
         do {
             for(modifiedCodonPosition=modifiedCodonPositionStart; (modifiedCodonPosition<3 && i<variantAlt.length()); modifiedCodonPosition++) {  // Paste alternative nt in the corresponding codon position
-                modifiedCodonArray[modifiedCodonPosition] = complementaryNt.get(altArray[i]);
+                modifiedCodonArray[modifiedCodonPosition] = DNASequenceUtils.complement(variantAlt.charAt(variantAlt.length() - 1 - i));
                 i++;
             }
             for(;modifiedCodonPosition<3;modifiedCodonPosition++) {  // Concatenate reference codon nts after alternative nts
-                modifiedCodonArray[modifiedCodonPosition] = reverseTranscriptSequence.charAt(reverseTranscriptSequencePosition);
-                reverseTranscriptSequencePosition++;
+                modifiedCodonArray[modifiedCodonPosition] = transcriptSequence.charAt(reverseTranscriptSequencePosition);
+                reverseTranscriptSequencePosition--;
 //                modifiedCodonArray[modifiedCodonPosition] = referenceCodonArray[variantPhaseShift];
 //                variantPhaseShift++;
             }
-            decideStopCodonModificationAnnotation(SoNames, String.valueOf(referenceCodonArray), modifiedCodonArray);
+            decideStopCodonModificationAnnotation(SoNames, referenceCodon, GeneticCode.encodeCodon(modifiedCodonArray));
             modifiedCodonPositionStart = 0;  // Reset the position where the next modified codon must be started to be filled
         } while(i<variantAlt.length());  // All posible new codons generated by the inserted sequence must be checked
 
@@ -678,9 +635,10 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                                                      Integer genomicCodingEnd, Integer variantStart, Integer variantEnd,
                                                      Integer cdnaCodingStart, Integer cdnaCodingEnd, Integer cdnaVariantStart,
                                                      Integer cdnaVariantEnd, Integer cdsLength,
-                                                     BasicDBList transcriptFlags, int firstCdsPhase, String variantRef,
+                                                     List<String> transcriptFlags, int firstCdsPhase, String variantRef,
                                                      String variantAlt, HashSet<String> SoNames,
-                                                     ConsequenceType consequenceTypeTemplate) {
+                                                     ConsequenceType consequenceTypeTemplate,
+                                                     List<ProteinSubstitutionScoreLookup> scoreLookups) {
         if(variantStart<genomicCodingStart) {
 //        if(variantStart<genomicCodingStart || (variantRef.equals("-") && variantStart.equals(genomicCodingStart))) {
 //            variantEnd -= variantRef.equals("-")?1:0;  // Insertion coordinates are peculiar: the actual inserted nts are assumed to be pasted on the left of variantStart, be careful with left edges
@@ -716,7 +674,7 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                 if(variantEnd <= genomicCodingEnd) {  // Variant end also within coding region
                     solvePositiveCodingEffect(splicing, transcriptSequence, transcriptEnd, genomicCodingEnd,
                             cdnaCodingStart, cdnaCodingEnd, cdnaVariantStart, cdnaVariantEnd, transcriptFlags,
-                            variantRef, variantAlt, SoNames, consequenceTypeTemplate);
+                            variantRef, variantAlt, SoNames, consequenceTypeTemplate, scoreLookups);
                 } else {
                     if(transcriptEnd>genomicCodingEnd || (transcriptFlags!=null && transcriptFlags.contains("cds_end_NF"))) {// Check transcript has 3 UTR)
                         SoNames.add("3_prime_UTR_variant");
@@ -738,9 +696,10 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                                                      Integer genomicCodingEnd, Integer variantStart, Integer variantEnd,
                                                      Integer cdnaCodingStart, Integer cdnaCodingEnd, Integer cdnaVariantStart,
                                                      Integer cdnaVariantEnd,  Integer cdsLength,
-                                                     BasicDBList transcriptFlags, int firstCdsPhase, String variantRef,
+                                                     List<String> transcriptFlags, int firstCdsPhase, String variantRef,
                                                      String variantAlt, HashSet<String> SoNames,
-                                                     ConsequenceType consequenceTypeTemplate) {
+                                                     ConsequenceType consequenceTypeTemplate,
+                                                     List<ProteinSubstitutionScoreLookup> scoreLookups) {
         if(variantEnd > genomicCodingEnd) {
             if(transcriptEnd>genomicCodingEnd || (transcriptFlags!=null && transcriptFlags.contains("cds_start_NF"))) {// Check transcript has 3 UTR
                 SoNames.add("5_prime_UTR_variant");
@@ -773,7 +732,7 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                 if(variantStart >= genomicCodingStart) {  // Variant start also within coding region
                     solveNegativeCodingEffect(splicing, transcriptSequence, transcriptStart, genomicCodingStart,
                             cdnaCodingStart, cdnaCodingEnd, cdnaVariantStart, cdnaVariantEnd, transcriptFlags,
-                            variantRef, variantAlt, SoNames, consequenceTypeTemplate);
+                            variantRef, variantAlt, SoNames, consequenceTypeTemplate, scoreLookups);
                 } else {
                     if(transcriptStart<genomicCodingStart || (transcriptFlags!=null && transcriptFlags.contains("cds_end_NF"))) {// Check transcript has 3 UTR)
                         SoNames.add("3_prime_UTR_variant");
@@ -929,21 +888,126 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
 //        }
     }
 
+    static QueryOptions getGeneQueryOptions() {
+        QueryOptions geneQueryOptions = new QueryOptions();
+        geneQueryOptions.add("include", ProjectionProfiles.getInclude("gene", ProjectionProfiles.ANNOTATION));
+        return geneQueryOptions;
+    }
+
+    /**
+     * Converter of the gene documents projected with getGeneQueryOptions into the records used by the engine.
+     */
+    static AnnotationGeneConverter getAnnotationGeneConverter() {
+        return annotationGeneConverter;
+    }
+
+    private List<AnnotationGene> convertGenes(List geneInfoList) {
+        List<AnnotationGene> genes = new ArrayList<>(geneInfoList.size());
+        for (Object geneInfo : geneInfoList) {
+            genes.add(annotationGeneConverter.convertToDataModel((DBObject) geneInfo));
+        }
+        return genes;
+    }
+
+    /**
+     * Returns the spliced exon sequences of the transcript in genomic forward strand orientation, i.e. for negative
+     * strand transcripts the last exon goes first. The 'splicedSequence' precomputed at load time is used when
+     * available, otherwise exon sequences are concatenated, fetching them from the gene collection if they were not
+     * projected.
+     */
+    private String getTranscriptSequence(AnnotationGene.Transcript transcript, boolean positiveStrand) {
+        if(transcript.getSplicedSequence() != null) {
+            return transcript.getSplicedSequence();
+        }
+        String[] exonSequences = transcript.getExonSequences();
+        if(exonSequences == null) {
+            exonSequences = getExonSequences(transcript.getId());
+        }
+        StringBuilder transcriptSequence = new StringBuilder();
+        for(int i = 0; i < exonSequences.length; i++) {
+            transcriptSequence.append(exonSequences[positiveStrand ? i : exonSequences.length - 1 - i]);
+        }
+        return transcriptSequence.toString();
+    }
+
+    private String[] getExonSequences(String transcriptId) {
+        QueryOptions queryOptions = new QueryOptions("include", "transcripts.id,transcripts.exons.sequence");
+        DBCursor cursor = mongoDataStore.getCollection("gene").nativeQuery()
+                .find(new BasicDBObject("transcripts.id", transcriptId), queryOptions);
+        try {
+            while(cursor.hasNext()) {
+                for(Object transcriptInfo : (BasicDBList) cursor.next().get("transcripts")) {
+                    if(transcriptId.equals(((BasicDBObject) transcriptInfo).get("id"))) {
+                        BasicDBList exonInfoList = (BasicDBList) ((BasicDBObject) transcriptInfo).get("exons");
+                        String[] exonSequences = new String[exonInfoList.size()];
+                        for(int i = 0; i < exonSequences.length; i++) {
+                            exonSequences[i] = (String) ((BasicDBObject) exonInfoList.get(i)).get("sequence");
+                        }
+                        return exonSequences;
+                    }
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return new String[0];
+    }
+
+    private int getVariantStart(GenomicVariant variant) {
+        // Insertion coordinates are peculiar: inserted nts are pasted on the left of variant.getPosition()
+        return variant.getReference().equals("-") ? variant.getPosition() - 1 : variant.getPosition();
+    }
+
+    private int getVariantEnd(GenomicVariant variant) {
+        return variant.getPosition() + variant.getReference().length() - 1;  //TODO: Check deletion input format to ensure that variantEnd is correctly calculated
+    }
+
     @Override
     public QueryResult getAllConsequenceTypesByVariant(GenomicVariant variant, QueryOptions options) {
+        int variantStart = getVariantStart(variant);
+        int variantEnd = getVariantEnd(variant);
+
+        long dbTimeStart = System.currentTimeMillis();
+        List<AnnotationGene> genes;
+        if(geneIntervalIndex != null) {
+            genes = geneIntervalIndex.getAllByRegion(variant.getChromosome(), variantStart - geneFlankSize,
+                    variantEnd + geneFlankSize);
+        } else {
+            genes = convertGenes((List) geneDBAdaptor.getAllByRegion(new Region(variant.getChromosome(),
+                    variantStart - geneFlankSize, variantEnd + geneFlankSize), getGeneQueryOptions()).getResult());
+        }
+        QueryResult regulatoryQueryResult = regulatoryRegionDBAdaptor.getAllByRegion(new Region(variant.getChromosome(),
+                variantStart, variantEnd), options);
+        long dbTimeEnd = System.currentTimeMillis();
+
+        List<ProteinSubstitutionScoreLookup> scoreLookups = new ArrayList<>();
+        QueryResult queryResult = getAllConsequenceTypesByVariant(variant, genes,
+                (List) regulatoryQueryResult.getResult(), options, Long.valueOf(dbTimeEnd - dbTimeStart).intValue(),
+                scoreLookups);
+        resolveProteinSubstitutionScores(scoreLookups);
+        return queryResult;
+    }
 
-        Logger logger = LoggerFactory.getLogger(this.getClass());
+    /**
+     * Solves the consequence types of a variant over an already fetched set of genes and regulatory features.
+     * @param variant variant to annotate
+     * @param genes genes overlapping the variant +/- geneFlankSize
+     * @param regulatoryInfoList regulatory region documents overlapping the variant
+     * @param options query options, 'so' terms are used for filtering
+     * @param dbTime time spent fetching the genes and regulatory features
+     * @param scoreLookups SIFT/PolyPhen scores of missense consequence types are added here to be resolved later
+     * @return QueryResult with the list of ConsequenceType
+     */
+    private QueryResult getAllConsequenceTypesByVariant(GenomicVariant variant, List<AnnotationGene> genes,
+                                                        List regulatoryInfoList, QueryOptions options, int dbTime,
+                                                        List<ProteinSubstitutionScoreLookup> scoreLookups) {
 
         HashSet<String> SoNames = new HashSet<>();
         List<ConsequenceType> consequenceTypeList = new ArrayList<>();
         QueryResult queryResult = new QueryResult();
         QueryBuilder builderGene = null;
         QueryBuilder builderRegulatory = null;
-        BasicDBList transcriptInfoList = null;
-        BasicDBList exonInfoList;
-        BasicDBObject miRnaInfo;
-        BasicDBObject transcriptInfo, exonInfo;
-        BasicDBObject geneInfo;
+        AnnotationGene.MiRna miRna;
         BasicDBObject regulatoryInfo;
         Integer geneStart, geneEnd, transcriptStart, transcriptEnd, exonStart, exonEnd, genomicCodingStart, genomicCodingEnd;
         Integer cdnaCodingStart, cdnaCodingEnd, cdnaExonStart, cdnaExonEnd, cdnaVariantStart, cdnaVariantEnd, prevSpliceSite;
@@ -957,74 +1021,27 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
         String geneName;
         String ensemblGeneId;
         int transcriptBiotype;
-        long dbTimeStart, dbTimeEnd;
         Boolean splicing, coding, exonsRemain, variantAhead, exonVariant, TFBSFound;
         int exonCounter,i;
         ConsequenceType consequenceTypeTemplate = new ConsequenceType();
 
-        variantEnd = variant.getPosition() + variant.getReference().length() - 1;  //TODO: Check deletion input format to ensure that variantEnd is correctly calculated
+        variantEnd = getVariantEnd(variant);
         Boolean isInsertion = variant.getReference().equals("-");
-        if(isInsertion) {
-            variantStart = variant.getPosition()-1;
-        } else {
-            variantStart = variant.getPosition();
-        }
-
+        variantStart = getVariantStart(variant);
 
-//        builderGene = QueryBuilder.start("chromosome").is(variant.getChromosome()).and("end")
-//                    .greaterThanEquals(variant.getPosition() - 5000).and("start").lessThanEquals(variantEnd + 5000); // variantEnd is used rather than variant.getPosition() to account for deletions which end falls within the 5kb left area of the gene
+        for(AnnotationGene gene : genes) {
+            consequenceTypeTemplate.setGeneName(gene.getName());
+            consequenceTypeTemplate.setEnsemblGeneId(gene.getId());
 
-        // Get all regulatory regions surrounding the variant
-//        String chunkId = getChunkIdPrefix(variant.getChromosome(), variant.getPosition(), regulatoryRegionChunkSize);
-//        BasicDBList chunksId = new BasicDBList();
-//        chunksId.add(chunkId);
-//        builderRegulatory = QueryBuilder.start("chunkIds").in(chunksId).and("start").lessThanEquals(variantEnd).and("end")
-//                .greaterThanEquals(variant.getPosition()); // variantEnd is used rather than variant.getPosition() to account for deletions which end falls within the 5kb left area of the gene
 
-        // Execute query and calculate time
-//        mongoDBCollection = db.getCollection("gene");
-        dbTimeStart = System.currentTimeMillis();
-//        QueryResult geneQueryResult = executeQuery(variant.toString(), builderGene.get(), options);
-        QueryOptions geneQueryOptions = new QueryOptions();
-        geneQueryOptions.add("include", "name,id,transcripts.id,transcripts.start,transcripts.end,transcripts.strand,transcripts.cdsLength,transcripts.annotationFlags,transcripts.biotype,transcripts.genomicCodingStart,transcripts.genomicCodingEnd,transcripts.cdnaCodingStart,transcripts.cdnaCodingEnd,transcripts.exons.start,transcripts.exons.end,transcripts.exons.sequence,transcripts.exons.phase,mirna.matures,mirna.sequence,mirna.matures.cdnaStart,mirna.matures.cdnaEnd");
-        QueryResult geneQueryResult = geneDBAdaptor.getAllByRegion(new Region(variant.getChromosome(), variantStart-5000,
-                variantEnd+5000), geneQueryOptions);
-//        mongoDBCollection = db.getCollection("regulatory_region");
-//        QueryResult regulatoryQueryResult = executeQuery(variant.toString(), builderRegulatory.get(), options);
-        QueryResult regulatoryQueryResult = regulatoryRegionDBAdaptor.getAllByRegion(new Region(variant.getChromosome(), variantStart,
-                variantEnd), options);
-
-        dbTimeEnd = System.currentTimeMillis();
-        LinkedList geneInfoList = (LinkedList) geneQueryResult.getResult();
-//        BasicDBList geneInfoList = (BasicDBList) geneQueryResult.getResult();
-
-
-
-
-        for(Object geneInfoObject: geneInfoList) {
-            geneInfo = (BasicDBObject) geneInfoObject;
-            consequenceTypeTemplate.setGeneName((String) geneInfo.get("name"));
-            consequenceTypeTemplate.setEnsemblGeneId((String) geneInfo.get("id"));
-
-
-            transcriptInfoList = (BasicDBList) geneInfo.get("transcripts");
-            for(Object transcriptInfoObject: transcriptInfoList) {
-                transcriptInfo = (BasicDBObject) transcriptInfoObject;
-                ensemblTranscriptId = (String) transcriptInfo.get("id");
-                transcriptStart = (Integer) transcriptInfo.get("start");
-                transcriptEnd = (Integer) transcriptInfo.get("end");
-                transcriptStrand = (String) transcriptInfo.get("strand");
-                cdsLength = (Integer) transcriptInfo.get("cdsLength");
-                BasicDBList transcriptFlags = (BasicDBList) transcriptInfo.get("annotationFlags");
-
-                try {
-                    transcriptBiotype = biotypes.get((String) transcriptInfo.get("biotype"));
-                } catch (NullPointerException e) {
-//                    logger.info("WARNING: biotype not found within the list of hardcoded biotypes - "+transcriptInfo.get("biotype"));
-//                    logger.info("WARNING: transcript: "+ensemblTranscriptId);
-//                    logger.info("WARNING: setting transcript biotype to non_coding ");
-                    transcriptBiotype = 45;
-                }
+            for(AnnotationGene.Transcript transcript : gene.getTranscripts()) {
+                ensemblTranscriptId = transcript.getId();
+                transcriptStart = transcript.getStart();
+                transcriptEnd = transcript.getEnd();
+                transcriptStrand = transcript.getStrand();
+                cdsLength = transcript.getCdsLength();
+                List<String> transcriptFlags = transcript.getAnnotationFlags();
+                transcriptBiotype = transcript.getBiotypeCode();  // Biotypes not in the hardcoded list are decoded as non_coding
                 SoNames.clear();
                 consequenceTypeTemplate.setEnsemblTranscriptId(ensemblTranscriptId);
                 consequenceTypeTemplate.setcDnaPosition(null);
@@ -1032,10 +1049,10 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                 consequenceTypeTemplate.setAaPosition(null);
                 consequenceTypeTemplate.setAaChange(null);
                 consequenceTypeTemplate.setCodon(null);
-                consequenceTypeTemplate.setStrand((String) geneInfo.get("strand"));
-                consequenceTypeTemplate.setBiotype((String) transcriptInfo.get("biotype"));
+                consequenceTypeTemplate.setStrand(gene.getStrand());
+                consequenceTypeTemplate.setBiotype(transcript.getBiotype());
                 consequenceTypeTemplate.setProteinSubstitutionScores(null);
-                miRnaInfo = null;
+                miRna = null;
 
                 if(transcriptStrand.equals("+")) {
                     if(variantStart<=transcriptStart && variantEnd>=transcriptEnd) {  // Deletion - whole transcript removed
@@ -1072,9 +1089,9 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                                 case 36:
                                 case 50:    // translated_unprocessed_pseudogene
                                 case 51:    // LRG_gene
-                                    solveCodingPositiveTranscript(isInsertion, variant, SoNames, transcriptInfo, transcriptStart,
+                                    solveCodingPositiveTranscript(isInsertion, variant, SoNames, transcript, transcriptStart,
                                             transcriptEnd, variantStart, variantEnd, cdsLength, transcriptFlags,
-                                            consequenceTypeTemplate);
+                                            consequenceTypeTemplate, scoreLookups);
                                     consequenceTypeList.add(new ConsequenceType(consequenceTypeTemplate.getGeneName(),
                                             consequenceTypeTemplate.getEnsemblGeneId(),
                                             consequenceTypeTemplate.getEnsemblTranscriptId(),
@@ -1097,7 +1114,7 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                                 case 43:
                                 case 44:
                                 case 49:
-                                    solveNonCodingPositiveTranscript(isInsertion, variant, SoNames, transcriptInfo,
+                                    solveNonCodingPositiveTranscript(isInsertion, variant, SoNames, transcript,
                                             transcriptStart, transcriptEnd, null, variantStart, variantEnd,
                                             consequenceTypeTemplate);
                                     consequenceTypeList.add(new ConsequenceType(consequenceTypeTemplate.getGeneName(),
@@ -1111,7 +1128,7 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                                      * Non-coding biotypes
                                      */
                                 case 18:  // miRNA
-                                    miRnaInfo = (BasicDBObject) geneInfo.get("mirna");
+                                    miRna = gene.getMiRna();
                                 case 2:   //
                                 case 5:   //
                                 case 7:   // IG_V_pseudogene
@@ -1139,8 +1156,8 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                                 case 46:
                                 case 47:
                                 case 48:
-                                    solveNonCodingPositiveTranscript(isInsertion, variant, SoNames, transcriptInfo,
-                                            transcriptStart, transcriptEnd, miRnaInfo, variantStart, variantEnd,
+                                    solveNonCodingPositiveTranscript(isInsertion, variant, SoNames, transcript,
+                                            transcriptStart, transcriptEnd, miRna, variantStart, variantEnd,
                                             consequenceTypeTemplate);
                                     consequenceTypeList.add(new ConsequenceType(consequenceTypeTemplate.getGeneName(),
                                             consequenceTypeTemplate.getEnsemblGeneId(),
@@ -1197,9 +1214,9 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                                 case 36:
                                 case 50:    // translated_unprocessed_pseudogene
                                 case 51:    // LRG_gene
-                                    solveCodingNegativeTranscript(isInsertion, variant, SoNames, transcriptInfo, transcriptStart,
+                                    solveCodingNegativeTranscript(isInsertion, variant, SoNames, transcript, transcriptStart,
                                             transcriptEnd, variantStart, variantEnd, cdsLength, transcriptFlags,
-                                            consequenceTypeTemplate);
+                                            consequenceTypeTemplate, scoreLookups);
                                     consequenceTypeList.add(new ConsequenceType(consequenceTypeTemplate.getGeneName(),
                                             consequenceTypeTemplate.getEnsemblGeneId(),
                                             consequenceTypeTemplate.getEnsemblTranscriptId(),
@@ -1222,7 +1239,7 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                                 case 43:
                                 case 44:
                                 case 49:
-                                    solveNonCodingNegativeTranscript(isInsertion, variant, SoNames, transcriptInfo,
+                                    solveNonCodingNegativeTranscript(isInsertion, variant, SoNames, transcript,
                                             transcriptStart, transcriptEnd, null, variantStart, variantEnd, consequenceTypeTemplate);
                                     consequenceTypeList.add(new ConsequenceType(consequenceTypeTemplate.getGeneName(),
                                             consequenceTypeTemplate.getEnsemblGeneId(),
@@ -1235,7 +1252,7 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                                      * Non-coding biotypes
                                      */
                                 case 18:  // miRNA
-                                    miRnaInfo = (BasicDBObject) geneInfo.get("mirna");
+                                    miRna = gene.getMiRna();
                                 case 2:   //
                                 case 5:   //
                                 case 7:   // IG_V_pseudogene
@@ -1263,8 +1280,8 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                                 case 46:
                                 case 47:
                                 case 48:
-                                    solveNonCodingNegativeTranscript(isInsertion, variant, SoNames, transcriptInfo,
-                                            transcriptStart, transcriptEnd, miRnaInfo, variantStart, variantEnd, consequenceTypeTemplate);
+                                    solveNonCodingNegativeTranscript(isInsertion, variant, SoNames, transcript,
+                                            transcriptStart, transcriptEnd, miRna, variantStart, variantEnd, consequenceTypeTemplate);
                                     consequenceTypeList.add(new ConsequenceType(consequenceTypeTemplate.getGeneName(),
                                             consequenceTypeTemplate.getEnsemblGeneId(),
                                             consequenceTypeTemplate.getEnsemblTranscriptId(),
@@ -1293,8 +1310,6 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
             consequenceTypeList.add(new ConsequenceType("intergenic_variant"));
         }
 
-        LinkedList regulatoryInfoList = (LinkedList) regulatoryQueryResult.getResult();
-//        BasicDBList regulatoryInfoList = (BasicDBList) regulatoryQueryResult.getResult();
         if(!regulatoryInfoList.isEmpty()) {
             consequenceTypeList.add(new ConsequenceType("regulatory_region_variant"));
             i = 0;
@@ -1319,7 +1334,7 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
         consequenceTypeList = filterConsequenceTypesBySoTerms(consequenceTypeList, options.getAsStringList("so"));
         // setting queryResult fields
         queryResult.setId(variant.toString());
-        queryResult.setDbTime(Long.valueOf(dbTimeEnd - dbTimeStart).intValue());
+        queryResult.setDbTime(dbTime);
         queryResult.setNumResults(consequenceTypeList.size());
         queryResult.setResult(consequenceTypeList);
 
@@ -1371,18 +1386,17 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
     }
 
     private void solveCodingPositiveTranscript(Boolean isInsertion, GenomicVariant variant, HashSet<String> SoNames,
-                                               BasicDBObject transcriptInfo, Integer transcriptStart,
+                                               AnnotationGene.Transcript transcript, Integer transcriptStart,
                                                Integer transcriptEnd, Integer variantStart, Integer variantEnd,
-                                               Integer cdsLength, BasicDBList transcriptFlags,
-                                               ConsequenceType consequenceTypeTemplate) {
+                                               Integer cdsLength, List<String> transcriptFlags,
+                                               ConsequenceType consequenceTypeTemplate,
+                                               List<ProteinSubstitutionScoreLookup> scoreLookups) {
         Integer genomicCodingStart;
         Integer genomicCodingEnd;
         Integer cdnaCodingStart;
         Integer cdnaCodingEnd;
-        BasicDBList exonInfoList;
-        BasicDBObject exonInfo;
-        Integer exonStart;
-        Integer exonEnd;
+        int exonStart;
+        int exonEnd;
         String transcriptSequence;
         Boolean variantAhead;
         Integer cdnaExonEnd;
@@ -1394,15 +1408,12 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
         Integer prevSpliceSite;
         Boolean[] junctionSolution = {false, false};
 
-        genomicCodingStart = (Integer) transcriptInfo.get("genomicCodingStart");
-        genomicCodingEnd = (Integer) transcriptInfo.get("genomicCodingEnd");
-        cdnaCodingStart = (Integer) transcriptInfo.get("cdnaCodingStart");
-        cdnaCodingEnd = (Integer) transcriptInfo.get("cdnaCodingEnd");
-        exonInfoList = (BasicDBList) transcriptInfo.get("exons");
-        exonInfo = (BasicDBObject) exonInfoList.get(0);
-        exonStart = (Integer) exonInfo.get("start");
-        exonEnd = (Integer) exonInfo.get("end");
-        transcriptSequence = (String) exonInfo.get("sequence");
+        genomicCodingStart = transcript.getGenomicCodingStart();
+        genomicCodingEnd = transcript.getGenomicCodingEnd();
+        cdnaCodingStart = transcript.getCdnaCodingStart();
+        cdnaCodingEnd = transcript.getCdnaCodingEnd();
+        exonStart = transcript.getExonStart(0);
+        exonEnd = transcript.getExonEnd(0);
         variantAhead = true; // we need a first iteration within the while to ensure junction is solved in case needed
         cdnaExonEnd = (exonEnd - exonStart + 1);
         cdnaVariantStart = null;
@@ -1412,7 +1423,7 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
         splicing = false;
 
         if(firstCdsPhase==-1 && genomicCodingStart<=exonEnd) {
-            firstCdsPhase = (int) exonInfo.get("phase");
+            firstCdsPhase = transcript.getExonPhase(0);
         }
         if(variantStart >= exonStart) {
             if(variantStart <= exonEnd) {  // Variant start within the exon
@@ -1432,15 +1443,13 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
         }
 
         exonCounter = 1;
-        while(exonCounter<exonInfoList.size() && variantAhead) {  // This is not a do-while since we cannot call solveJunction  until
-//        while(exonCounter<exonInfoList.size() && !splicing && variantAhead) {  // This is not a do-while since we cannot call solveJunction  until
-            exonInfo = (BasicDBObject) exonInfoList.get(exonCounter);          // next exon has been loaded
-            exonStart = (Integer) exonInfo.get("start");
+        while(exonCounter<transcript.getNumExons() && variantAhead) {  // This is not a do-while since we cannot call solveJunction  until
+//        while(exonCounter<transcript.getNumExons() && !splicing && variantAhead) {  // This is not a do-while since we cannot call solveJunction  until
+            exonStart = transcript.getExonStart(exonCounter);          // next exon has been loaded
             prevSpliceSite = exonEnd+1;
-            exonEnd = (Integer) exonInfo.get("end");
-            transcriptSequence = transcriptSequence + ((String) exonInfo.get("sequence"));
+            exonEnd = transcript.getExonEnd(exonCounter);
             if(firstCdsPhase==-1 && genomicCodingStart<=exonEnd) {  // Set firsCdsPhase only when the first coding exon is reached
-                firstCdsPhase = (int) exonInfo.get("phase");
+                firstCdsPhase = transcript.getExonPhase(exonCounter);
             }
             solveJunction(isInsertion, prevSpliceSite, exonStart-1, variantStart, variantEnd, SoNames,
                     "splice_donor_variant", "splice_acceptor_variant", junctionSolution);
@@ -1478,26 +1487,26 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                     cdnaVariantEnd = cdnaVariantStart + 1;
                 }
             }
+            transcriptSequence = getTranscriptSequence(transcript, true);
             solveCodingPositiveTranscriptEffect(splicing, transcriptSequence, transcriptStart, transcriptEnd, genomicCodingStart, genomicCodingEnd,
                     variantStart, variantEnd, cdnaCodingStart, cdnaCodingEnd, cdnaVariantStart, cdnaVariantEnd,  // Be careful, originalVariantStart is used here!
                     cdsLength, transcriptFlags, firstCdsPhase, variant.getReference(), variant.getAlternative(), SoNames,
-                    consequenceTypeTemplate);
+                    consequenceTypeTemplate, scoreLookups);
         }
     }
 
     private void solveCodingNegativeTranscript(Boolean isInsertion, GenomicVariant variant, HashSet<String> SoNames,
-                                               BasicDBObject transcriptInfo, Integer transcriptStart,
+                                               AnnotationGene.Transcript transcript, Integer transcriptStart,
                                                Integer transcriptEnd, Integer variantStart, Integer variantEnd,
-                                               Integer cdsLength, BasicDBList transcriptFlags,
-                                               ConsequenceType consequenceTypeTemplate) {
+                                               Integer cdsLength, List<String> transcriptFlags,
+                                               ConsequenceType consequenceTypeTemplate,
+                                               List<ProteinSubstitutionScoreLookup> scoreLookups) {
         Integer genomicCodingStart;
         Integer genomicCodingEnd;
         Integer cdnaCodingStart;
         Integer cdnaCodingEnd;
-        BasicDBList exonInfoList;
-        BasicDBObject exonInfo;
-        Integer exonStart;
-        Integer exonEnd;
+        int exonStart;
+        int exonEnd;
         String transcriptSequence;
         Boolean variantAhead;
         Integer cdnaExonEnd;
@@ -1509,15 +1518,12 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
         Integer prevSpliceSite;
         Boolean[] junctionSolution = {false, false};
 
-        genomicCodingStart = (Integer) transcriptInfo.get("genomicCodingStart");
-        genomicCodingEnd = (Integer) transcriptInfo.get("genomicCodingEnd");
-        cdnaCodingStart = (Integer) transcriptInfo.get("cdnaCodingStart");
-        cdnaCodingEnd = (Integer) transcriptInfo.get("cdnaCodingEnd");
-        exonInfoList = (BasicDBList) transcriptInfo.get("exons");
-        exonInfo = (BasicDBObject) exonInfoList.get(0);
-        exonStart = (Integer) exonInfo.get("start");
-        exonEnd = (Integer) exonInfo.get("end");
-        transcriptSequence = (String) exonInfo.get("sequence");
+        genomicCodingStart = transcript.getGenomicCodingStart();
+        genomicCodingEnd = transcript.getGenomicCodingEnd();
+        cdnaCodingStart = transcript.getCdnaCodingStart();
+        cdnaCodingEnd = transcript.getCdnaCodingEnd();
+        exonStart = transcript.getExonStart(0);
+        exonEnd = transcript.getExonEnd(0);
         variantAhead = true; // we need a first iteration within the while to ensure junction is solved in case needed
         cdnaExonEnd = (exonEnd-exonStart+1);  // cdnaExonEnd poinst to the same base than exonStart
         cdnaVariantStart = null;  // cdnaVariantStart points to the same base than variantEnd
@@ -1527,7 +1533,7 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
         splicing = false;
 
         if(firstCdsPhase==-1 && genomicCodingEnd>=exonStart) {
-            firstCdsPhase = (int) exonInfo.get("phase");
+            firstCdsPhase = transcript.getExonPhase(0);
         }
         if(variantEnd <= exonEnd) {
             if(variantEnd >= exonStart) {  // Variant end within the exon
@@ -1547,15 +1553,13 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
         }
 
         exonCounter = 1;
-        while(exonCounter<exonInfoList.size() && variantAhead) {  // This is not a do-while since we cannot call solveJunction  until
-//        while(exonCounter<exonInfoList.size() && !splicing && variantAhead) {  // This is not a do-while since we cannot call solveJunction  until
-            exonInfo = (BasicDBObject) exonInfoList.get(exonCounter);          // next exon has been loaded
-            prevSpliceSite = exonStart-1;
-            exonStart = (Integer) exonInfo.get("start");
-            exonEnd = (Integer) exonInfo.get("end");
-            transcriptSequence = ((String) exonInfo.get("sequence"))+transcriptSequence;
+        while(exonCounter<transcript.getNumExons() && variantAhead) {  // This is not a do-while since we cannot call solveJunction  until
+//        while(exonCounter<transcript.getNumExons() && !splicing && variantAhead) {  // This is not a do-while since we cannot call solveJunction  until
+            prevSpliceSite = exonStart-1;          // next exon has been loaded
+            exonStart = transcript.getExonStart(exonCounter);
+            exonEnd = transcript.getExonEnd(exonCounter);
             if(firstCdsPhase==-1 && genomicCodingEnd>=exonStart) {  // Set firsCdsPhase only when the first coding exon is reached
-                firstCdsPhase = (int) exonInfo.get("phase");
+                firstCdsPhase = transcript.getExonPhase(exonCounter);
             }
             solveJunction(isInsertion, exonEnd+1, prevSpliceSite, variantStart, variantEnd, SoNames,
                     "splice_acceptor_variant", "splice_donor_variant", junctionSolution);
@@ -1593,23 +1597,21 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
                     cdnaVariantEnd = cdnaVariantStart + 1;
                 }
             }
+            transcriptSequence = getTranscriptSequence(transcript, false);
             solveCodingNegativeTranscriptEffect(splicing, transcriptSequence, transcriptStart, transcriptEnd, genomicCodingStart, genomicCodingEnd,
                     variantStart, variantEnd, cdnaCodingStart, cdnaCodingEnd, cdnaVariantStart, cdnaVariantEnd,
                     cdsLength, transcriptFlags, firstCdsPhase, variant.getReference(), variant.getAlternative(), SoNames,
-                    consequenceTypeTemplate);
+                    consequenceTypeTemplate, scoreLookups);
         }
     }
 
     private void solveNonCodingPositiveTranscript(Boolean isInsertion, GenomicVariant variant, HashSet<String> SoNames,
-                                                     BasicDBObject transcriptInfo, Integer transcriptStart,
-                                                     Integer transcriptEnd, BasicDBObject miRnaInfo,
+                                                     AnnotationGene.Transcript transcript, Integer transcriptStart,
+                                                     Integer transcriptEnd, AnnotationGene.MiRna miRna,
                                                      Integer variantStart, Integer variantEnd,
                                                      ConsequenceType consequenceTypeTemplate) {
-        BasicDBList exonInfoList;
-        BasicDBObject exonInfo;
-        Integer exonStart;
-        Integer exonEnd;
-        String transcriptSequence;
+        int exonStart;
+        int exonEnd;
         Boolean variantAhead;
         Integer cdnaExonEnd;
         Integer cdnaVariantStart;
@@ -1619,11 +1621,8 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
         Integer prevSpliceSite;
         Boolean[] junctionSolution = {false, false};
 
-        exonInfoList = (BasicDBList) transcriptInfo.get("exons");
-        exonInfo = (BasicDBObject) exonInfoList.get(0);
-        exonStart = (Integer) exonInfo.get("start");
-        exonEnd = (Integer) exonInfo.get("end");
-        transcriptSequence = (String) exonInfo.get("sequence");
+        exonStart = transcript.getExonStart(0);
+        exonEnd = transcript.getExonEnd(0);
         variantAhead = true; // we need a first iteration within the while to ensure junction is solved in case needed
         cdnaExonEnd = (exonEnd - exonStart + 1);
         cdnaVariantStart = null;
@@ -1651,13 +1650,11 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
 
 
         exonCounter = 1;
-        while(exonCounter<exonInfoList.size() && variantAhead) {  // This is not a do-while since we cannot call solveJunction  until
-//        while(exonCounter<exonInfoList.size() && !splicing && variantAhead) {  // This is not a do-while since we cannot call solveJunction  until
-            exonInfo = (BasicDBObject) exonInfoList.get(exonCounter);          // next exon has been loaded
-            exonStart = (Integer) exonInfo.get("start");
+        while(exonCounter<transcript.getNumExons() && variantAhead) {  // This is not a do-while since we cannot call solveJunction  until
+//        while(exonCounter<transcript.getNumExons() && !splicing && variantAhead) {  // This is not a do-while since we cannot call solveJunction  until
+            exonStart = transcript.getExonStart(exonCounter);          // next exon has been loaded
             prevSpliceSite = exonEnd+1;
-            exonEnd = (Integer) exonInfo.get("end");
-            transcriptSequence = transcriptSequence + ((String) exonInfo.get("sequence"));
+            exonEnd = transcript.getExonEnd(exonCounter);
             solveJunction(isInsertion, prevSpliceSite, exonStart-1, variantStart, variantEnd, SoNames,
                     "splice_donor_variant", "splice_acceptor_variant", junctionSolution);
             splicing = (splicing || junctionSolution[0]);
@@ -1685,20 +1682,19 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
             exonCounter++;
         }
 
-        if (miRnaInfo != null) {  // miRNA with miRBase data
-            BasicDBList matureMiRnaInfo = (BasicDBList) miRnaInfo.get("matures");
+        if (miRna != null) {  // miRNA with miRBase data
             if(cdnaVariantStart==null) {  // Probably deletion starting before the miRNA location
                 cdnaVariantStart=1;       // Truncate to the first transcript position to avoid null exception
             }
             if(cdnaVariantEnd==null) {    // Probably deletion ending after the miRNA location
-                cdnaVariantEnd=((String) miRnaInfo.get("sequence")).length();  // Truncate to the last transcript position to avoid null exception
+                cdnaVariantEnd=miRna.getSequenceLength();  // Truncate to the last transcript position to avoid null exception
             }
             int i = 0;
-            while(i<matureMiRnaInfo.size()  && !regionsOverlap((Integer) ((BasicDBObject) matureMiRnaInfo.get(i)).get("cdnaStart"),
-                    (Integer) ((BasicDBObject) matureMiRnaInfo.get(i)).get("cdnaEnd"), cdnaVariantStart, cdnaVariantEnd)) {
+            while(i<miRna.getNumMatures()  && !regionsOverlap(miRna.getMatureCdnaStart(i), miRna.getMatureCdnaEnd(i),
+                    cdnaVariantStart, cdnaVariantEnd)) {
                 i++;
             }
-            if(i<matureMiRnaInfo.size()) {  // Variant overlaps at least one mature miRNA
+            if(i<miRna.getNumMatures()) {  // Variant overlaps at least one mature miRNA
                 SoNames.add("mature_miRNA_variant");
             } else {
                 if (!junctionSolution[1]) {  // Exon variant
@@ -1715,15 +1711,12 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
     }
 
     private void solveNonCodingNegativeTranscript(Boolean isInsertion, GenomicVariant variant, HashSet<String> SoNames,
-                                                     BasicDBObject transcriptInfo, Integer transcriptStart,
-                                                     Integer transcriptEnd, BasicDBObject miRnaInfo,
+                                                     AnnotationGene.Transcript transcript, Integer transcriptStart,
+                                                     Integer transcriptEnd, AnnotationGene.MiRna miRna,
                                                      Integer variantStart, Integer variantEnd,
                                                      ConsequenceType consequenceTypeTemplate) {
-        BasicDBList exonInfoList;
-        BasicDBObject exonInfo;
-        Integer exonStart;
-        Integer exonEnd;
-        String transcriptSequence;
+        int exonStart;
+        int exonEnd;
         Boolean variantAhead;
         Integer cdnaExonEnd;
         Integer cdnaVariantStart;
@@ -1733,11 +1726,8 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
         Integer prevSpliceSite;
         Boolean[] junctionSolution = {false, false};
 
-        exonInfoList = (BasicDBList) transcriptInfo.get("exons");
-        exonInfo = (BasicDBObject) exonInfoList.get(0);
-        exonStart = (Integer) exonInfo.get("start");
-        exonEnd = (Integer) exonInfo.get("end");
-        transcriptSequence = (String) exonInfo.get("sequence");
+        exonStart = transcript.getExonStart(0);
+        exonEnd = transcript.getExonEnd(0);
         variantAhead = true; // we need a first iteration within the while to ensure junction is solved in case needed
         cdnaExonEnd = (exonEnd-exonStart+1);  // cdnaExonEnd poinst to the same base than exonStart
         cdnaVariantStart = null;  // cdnaVariantStart points to the same base than variantEnd
@@ -1765,13 +1755,11 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
         }
 
         exonCounter = 1;
-        while(exonCounter<exonInfoList.size() && variantAhead) {  // This is not a do-while since we cannot call solveJunction  until
-//        while(exonCounter<exonInfoList.size() && !splicing && variantAhead) {  // This is not a do-while since we cannot call solveJunction  until
-            exonInfo = (BasicDBObject) exonInfoList.get(exonCounter);          // next exon has been loaded
-            prevSpliceSite = exonStart-1;
-            exonStart = (Integer) exonInfo.get("start");
-            exonEnd = (Integer) exonInfo.get("end");
-            transcriptSequence = ((String) exonInfo.get("sequence"))+transcriptSequence;
+        while(exonCounter<transcript.getNumExons() && variantAhead) {  // This is not a do-while since we cannot call solveJunction  until
+//        while(exonCounter<transcript.getNumExons() && !splicing && variantAhead) {  // This is not a do-while since we cannot call solveJunction  until
+            prevSpliceSite = exonStart-1;          // next exon has been loaded
+            exonStart = transcript.getExonStart(exonCounter);
+            exonEnd = transcript.getExonEnd(exonCounter);
             solveJunction(isInsertion, exonEnd+1, prevSpliceSite, variantStart, variantEnd, SoNames,
                     "splice_acceptor_variant", "splice_donor_variant", junctionSolution);
             splicing = (splicing || junctionSolution[0]);
@@ -1799,14 +1787,13 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
             exonCounter++;
         }
 
-        if (miRnaInfo != null) {  // miRNA with miRBase data
-            BasicDBList matureMiRnaInfo = (BasicDBList) miRnaInfo.get("matures");
+        if (miRna != null) {  // miRNA with miRBase data
             int i = 0;
-            while(i<matureMiRnaInfo.size()  && !regionsOverlap((Integer) ((BasicDBObject) matureMiRnaInfo.get(i)).get("cdnaStart"),
-                    (Integer) ((BasicDBObject) matureMiRnaInfo.get(i)).get("cdnaEnd"), cdnaVariantStart, cdnaVariantEnd)) {
+            while(i<miRna.getNumMatures()  && !regionsOverlap(miRna.getMatureCdnaStart(i), miRna.getMatureCdnaEnd(i),
+                    cdnaVariantStart, cdnaVariantEnd)) {
                 i++;
             }
-            if(i<matureMiRnaInfo.size()) {  // Variant overlaps at least one mature miRNA
+            if(i<miRna.getNumMatures()) {  // Variant overlaps at least one mature miRNA
                 SoNames.add("mature_miRNA_variant");
             } else {
                 if (!junctionSolution[1]) {  // Exon variant
@@ -1823,20 +1810,191 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
     }
 
     @Override
-    public List<QueryResult> getAllConsequenceTypesByVariantList(List<GenomicVariant> variants, QueryOptions options) {
+    public List<QueryResult> getAllConsequenceTypesByVariantList(final List<GenomicVariant> variants, QueryOptions options) {
 
         List<QueryResult> queryResults = new ArrayList<>(variants.size());
+        if(variants.size() == 1) {
+            queryResults.add(getAllConsequenceTypesByVariant(variants.get(0), options));
+            return queryResults;
+        }
 
-//        try {
-            for (GenomicVariant genomicVariant : variants) {
-                queryResults.add(getAllConsequenceTypesByVariant(genomicVariant, options));
+        // Variants are sorted so that overlapping windows (variant +/- geneFlankSize) can be merged into a few
+        // region queries per chromosome. Genes and regulatory regions are fetched once per merged window and then
+        // split back per variant in memory
+        Integer[] sortedIndexes = new Integer[variants.size()];
+        for (int i = 0; i < sortedIndexes.length; i++) {
+            sortedIndexes[i] = i;
+        }
+        Arrays.sort(sortedIndexes, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                GenomicVariant variant1 = variants.get(i1);
+                GenomicVariant variant2 = variants.get(i2);
+                int c = variant1.getChromosome().compareTo(variant2.getChromosome());
+                return (c != 0) ? c : Integer.compare(getVariantStart(variant1), getVariantStart(variant2));
             }
-//        } catch (IOException e) {
-//            e.printStackTrace();
-//        }
+        });
+
+        List<Region> mergedRegions = new ArrayList<>();
+        int[] mergedRegionIndexes = new int[variants.size()];
+        for (Integer index : sortedIndexes) {
+            GenomicVariant variant = variants.get(index);
+            int variantStart = getVariantStart(variant);
+            int variantEnd = getVariantEnd(variant);
+            mergedRegionIndexes[index] = addToMergedRegions(mergedRegions, variant.getChromosome(),
+                    Math.max(1, variantStart - geneFlankSize), variantEnd + geneFlankSize);
+        }
+
+        long dbTimeStart = System.currentTimeMillis();
+        List<List<AnnotationGene>> mergedRegionGenes = null;
+        if(geneIntervalIndex == null) {
+            // Each merged region is decoded once, then filtered per variant
+            mergedRegionGenes = new ArrayList<>(mergedRegions.size());
+            for(QueryResult geneQueryResult : geneDBAdaptor.getAllByRegionList(mergedRegions, getGeneQueryOptions())) {
+                mergedRegionGenes.add(convertGenes((List) geneQueryResult.getResult()));
+            }
+        }
+        List<QueryResult> regulatoryQueryResults = regulatoryRegionDBAdaptor.getAllByRegionList(mergedRegions, options);
+        long dbTimeEnd = System.currentTimeMillis();
+        logger.debug("{} variants merged into {} region queries", variants.size(), mergedRegions.size());
+
+        int dbTime = Long.valueOf(dbTimeEnd - dbTimeStart).intValue();
+        List<ProteinSubstitutionScoreLookup> scoreLookups = new ArrayList<>();
+        for (int i = 0; i < variants.size(); i++) {
+            GenomicVariant variant = variants.get(i);
+            int variantStart = getVariantStart(variant);
+            int variantEnd = getVariantEnd(variant);
+            List<AnnotationGene> genes;
+            if(geneIntervalIndex != null) {
+                genes = geneIntervalIndex.getAllByRegion(variant.getChromosome(), variantStart - geneFlankSize,
+                        variantEnd + geneFlankSize);
+            } else {
+                genes = getOverlappingGenes(mergedRegionGenes.get(mergedRegionIndexes[i]), variantStart - geneFlankSize,
+                        variantEnd + geneFlankSize);
+            }
+            List regulatoryInfoList = getOverlappingDocuments((List) regulatoryQueryResults.get(mergedRegionIndexes[i]).getResult(),
+                    variantStart, variantEnd);
+            queryResults.add(getAllConsequenceTypesByVariant(variant, genes, regulatoryInfoList, options, dbTime,
+                    scoreLookups));
+        }
+        resolveProteinSubstitutionScores(scoreLookups);
 
         return queryResults;
+    }
+
+    /**
+     * SIFT/PolyPhen scores pending for a missense consequence type, they are added to 'scores' once resolved.
+     */
+    private static class ProteinSubstitutionScoreLookup {
+        private String transcriptId;
+        private int aaPosition;
+        private String aminoacid;
+        private List<Score> scores;
+
+        ProteinSubstitutionScoreLookup(String transcriptId, int aaPosition, String aminoacid, List<Score> scores) {
+            this.transcriptId = transcriptId;
+            this.aaPosition = aaPosition;
+            this.aminoacid = aminoacid;
+            this.scores = scores;
+        }
+    }
+
+    /**
+     * Fills in the SIFT/PolyPhen scores of the lookups. Substitution matrices of the transcripts not found in
+     * proteinSubstitutionScoreCache are fetched with a single query.
+     */
+    private void resolveProteinSubstitutionScores(List<ProteinSubstitutionScoreLookup> scoreLookups) {
+        if(scoreLookups.isEmpty()) {
+            return;
+        }
+
+        Map<String, ProteinSubstitutionScoreCache.TranscriptScores> transcriptScores = new HashMap<>();
+        List<String> missingTranscriptIds = new ArrayList<>();
+        for(ProteinSubstitutionScoreLookup scoreLookup : scoreLookups) {
+            if(!transcriptScores.containsKey(scoreLookup.transcriptId)) {
+                ProteinSubstitutionScoreCache.TranscriptScores scores = (proteinSubstitutionScoreCache != null)
+                        ? proteinSubstitutionScoreCache.get(scoreLookup.transcriptId) : null;
+                if(scores == null) {
+                    missingTranscriptIds.add(scoreLookup.transcriptId);
+                }
+                transcriptScores.put(scoreLookup.transcriptId, scores);
+            }
+        }
+
+        if(!missingTranscriptIds.isEmpty()) {
+            List<QueryResult> queryResults = proteinFunctionPredictorDBAdaptor.getAllByEnsemblTranscriptIdList(
+                    missingTranscriptIds, new QueryOptions());
+            for(int i = 0; i < missingTranscriptIds.size(); i++) {
+                List result = queryResults.get(i).getResult();
+                ProteinSubstitutionScoreCache.TranscriptScores scores = ProteinSubstitutionScoreCache.TranscriptScores
+                        .parse((result != null && !result.isEmpty()) ? (DBObject) result.get(0) : null);
+                transcriptScores.put(missingTranscriptIds.get(i), scores);
+                if(proteinSubstitutionScoreCache != null) {
+                    proteinSubstitutionScoreCache.put(missingTranscriptIds.get(i), scores);
+                }
+            }
+        }
+
+        for(ProteinSubstitutionScoreLookup scoreLookup : scoreLookups) {
+            ProteinSubstitutionScoreCache.TranscriptScores scores = transcriptScores.get(scoreLookup.transcriptId);
+            float siftScore = scores.getSiftScore(scoreLookup.aaPosition, scoreLookup.aminoacid);
+            if(!Float.isNaN(siftScore)) {
+                // Scores are kept as floats, Float.toString avoids widening artifacts such as 0.05000000074505806
+                scoreLookup.scores.add(new Score(Double.valueOf(Float.toString(siftScore)), "Sift",
+                        siftDescriptions.get(scores.getSiftEffect(scoreLookup.aaPosition, scoreLookup.aminoacid))));
+            }
+            float polyphenScore = scores.getPolyphenScore(scoreLookup.aaPosition, scoreLookup.aminoacid);
+            if(!Float.isNaN(polyphenScore)) {
+                scoreLookup.scores.add(new Score(Double.valueOf(Float.toString(polyphenScore)), "Polyphen",
+                        polyphenDescriptions.get(scores.getPolyphenEffect(scoreLookup.aaPosition, scoreLookup.aminoacid))));
+            }
+        }
+        if(proteinSubstitutionScoreCache != null) {
+            logger.debug("Protein substitution score cache: {} hits, {} misses, {} transcripts, {} bytes",
+                    proteinSubstitutionScoreCache.getHits(), proteinSubstitutionScoreCache.getMisses(),
+                    proteinSubstitutionScoreCache.getNumTranscripts(), proteinSubstitutionScoreCache.getEstimatedSize());
+        }
+    }
+
+    /**
+     * Adds a region to a list of regions sorted by chromosome and start, merging it with the last region of the list
+     * when they are close enough.
+     * @return index of the region in the list the new region was added or merged to
+     */
+    private int addToMergedRegions(List<Region> regions, String chromosome, int start, int end) {
+        if(!regions.isEmpty()) {
+            Region lastRegion = regions.get(regions.size() - 1);
+            if(lastRegion.getChromosome().equals(chromosome) && start <= lastRegion.getEnd() + 1
+                    && Math.max(end, lastRegion.getEnd()) - lastRegion.getStart() < maxMergedRegionSize) {
+                regions.set(regions.size() - 1, new Region(chromosome, lastRegion.getStart(), Math.max(end, lastRegion.getEnd())));
+                return regions.size() - 1;
+            }
+        }
+        regions.add(new Region(chromosome, start, end));
+        return regions.size() - 1;
+    }
 
+    private List<AnnotationGene> getOverlappingGenes(List<AnnotationGene> genes, int start, int end) {
+        List<AnnotationGene> overlappingGenes = new ArrayList<>();
+        for (AnnotationGene gene : genes) {
+            if(gene.getStart() <= end && gene.getEnd() >= start) {
+                overlappingGenes.add(gene);
+            }
+        }
+        return overlappingGenes;
+    }
+
+    private List getOverlappingDocuments(List documents, int start, int end) {
+        List overlappingDocuments = new ArrayList<>();
+        for (Object document : documents) {
+            Integer documentStart = (Integer) ((DBObject) document).get("start");
+            Integer documentEnd = (Integer) ((DBObject) document).get("end");
+            // Documents without coordinates (e.g. excluded by the projection) cannot be filtered and are kept
+            if(documentStart == null || documentEnd == null || (documentStart <= end && documentEnd >= start)) {
+                overlappingDocuments.add(document);
+            }
+        }
+        return overlappingDocuments;
     }
 
 
@@ -1899,13 +2057,152 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
         return queryResults;
     }
 
+    /**
+     * Annotations found in the precomputed annotation collection are returned as they are, only the rest of the
+     * variants are annotated.
+     */
     public List<QueryResult> getAnnotationByVariantList(List<GenomicVariant> variantList, QueryOptions queryOptions) {
+        if(precomputedAnnotationCollection == null) {
+            return computeAnnotationByVariantList(variantList, queryOptions);
+        }
 
+        long dbTimeStart = System.currentTimeMillis();
+        Map<String, VariantAnnotation> precomputedAnnotations = getPrecomputedAnnotations(variantList);
+        int dbTime = Long.valueOf(System.currentTimeMillis() - dbTimeStart).intValue();
+        logger.debug("{} of {} variants found in the precomputed annotation collection, {} ms",
+                precomputedAnnotations.size(), variantList.size(), dbTime);
+
+        List<GenomicVariant> missingVariants = new ArrayList<>(variantList.size() - precomputedAnnotations.size());
+        for(GenomicVariant variant : variantList) {
+            if(!precomputedAnnotations.containsKey(getPrecomputedAnnotationId(variant))) {
+                missingVariants.add(variant);
+            }
+        }
+        List<QueryResult> computedQueryResults = missingVariants.isEmpty()
+                ? new ArrayList<QueryResult>(0) : computeAnnotationByVariantList(missingVariants, queryOptions);
 
-        List<QueryResult> variationQueryResultList = variationDBAdaptor.getAllByVariantList(variantList, queryOptions);
-        List<QueryResult> clinicalQueryResultList = clinicalDBAdaptor.getAllByGenomicVariantList(variantList, queryOptions);
-        List<QueryResult> variationConsequenceTypeList = getAllConsequenceTypesByVariantList(variantList, queryOptions);
-        List<QueryResult> conservedRegionQueryResultList = conservedRegionDBAdaptor.getAllScoresByRegionList(variantListToRegionList(variantList), queryOptions);
+        List<QueryResult> queryResults = new ArrayList<>(variantList.size());
+        Iterator<QueryResult> computedIterator = computedQueryResults.iterator();
+        for(GenomicVariant variant : variantList) {
+            VariantAnnotation variantAnnotation = precomputedAnnotations.get(getPrecomputedAnnotationId(variant));
+            if(variantAnnotation != null) {
+                QueryResult queryResult = new QueryResult();
+                queryResult.setId(variant.toString());
+                queryResult.setDbTime(dbTime);
+                queryResult.setNumResults(1);
+                queryResult.setResult(Collections.singletonList(variantAnnotation));
+                queryResults.add(queryResult);
+            } else {
+                queryResults.add(computedIterator.next());
+            }
+        }
+        return queryResults;
+    }
+
+    private String getPrecomputedAnnotationId(GenomicVariant variant) {
+        return VariantAnnotationConverter.getId(variant.getChromosome(), variant.getPosition(), variant.getReference(),
+                variant.getAlternative());
+    }
+
+    private Map<String, VariantAnnotation> getPrecomputedAnnotations(List<GenomicVariant> variantList) {
+        Set<String> ids = new HashSet<>(variantList.size() * 2);
+        for(GenomicVariant variant : variantList) {
+            ids.add(getPrecomputedAnnotationId(variant));
+        }
+        Map<String, VariantAnnotation> precomputedAnnotations = new HashMap<>(ids.size() * 2);
+        DBCursor cursor = precomputedAnnotationCollection.nativeQuery().find(
+                new BasicDBObject("_id", new BasicDBObject("$in", ids)), new QueryOptions());
+        try {
+            while(cursor.hasNext()) {
+                DBObject document = cursor.next();
+                precomputedAnnotations.put((String) document.get("_id"), variantAnnotationConverter.convertToDataModel(document));
+            }
+        } finally {
+            cursor.close();
+        }
+        return precomputedAnnotations;
+    }
+
+    /**
+     * Stores the annotations not yet in the precomputed annotation collection.
+     * @return number of annotations inserted
+     */
+    @Override
+    public int insertPrecomputedAnnotations(List<VariantAnnotation> variantAnnotations) {
+        if(precomputedAnnotationCollection == null) {
+            throw new IllegalStateException("No precomputed annotation collection has been set");
+        }
+        List<DBObject> documents = new ArrayList<>(variantAnnotations.size());
+        for(VariantAnnotation variantAnnotation : variantAnnotations) {
+            documents.add(variantAnnotationConverter.convertToStorageSchema(variantAnnotation));
+        }
+
+        // Annotations already stored, e.g. by a previous run, are skipped so that the insert does not fail
+        List<String> ids = new ArrayList<>(documents.size());
+        for(DBObject document : documents) {
+            ids.add((String) document.get("_id"));
+        }
+        Set<String> storedIds = new HashSet<>();
+        DBCursor cursor = precomputedAnnotationCollection.nativeQuery().find(
+                new BasicDBObject("_id", new BasicDBObject("$in", ids)), new QueryOptions("include", "_id"));
+        try {
+            while(cursor.hasNext()) {
+                storedIds.add((String) cursor.next().get("_id"));
+            }
+        } finally {
+            cursor.close();
+        }
+        List<DBObject> newDocuments = new ArrayList<>(documents.size());
+        for(DBObject document : documents) {
+            if(storedIds.add((String) document.get("_id"))) {
+                newDocuments.add(document);
+            }
+        }
+        if(!newDocuments.isEmpty()) {
+            precomputedAnnotationCollection.insert(newDocuments, new QueryOptions());
+        }
+        return newDocuments.size();
+    }
+
+    private List<QueryResult> computeAnnotationByVariantList(final List<GenomicVariant> variantList,
+                                                             final QueryOptions queryOptions) {
+
+        long dbTimeStart = System.currentTimeMillis();
+        TimedQuery variationQuery = new TimedQuery() {
+            @Override
+            List<QueryResult> query() {
+                return variationDBAdaptor.getAllByVariantList(variantList, queryOptions);
+            }
+        };
+        TimedQuery clinicalQuery = new TimedQuery() {
+            @Override
+            List<QueryResult> query() {
+                return clinicalDBAdaptor.getAllByGenomicVariantList(variantList, queryOptions);
+            }
+        };
+        TimedQuery consequenceTypeQuery = new TimedQuery() {
+            @Override
+            List<QueryResult> query() {
+                return getAllConsequenceTypesByVariantList(variantList, queryOptions);
+            }
+        };
+        TimedQuery conservedRegionQuery = new TimedQuery() {
+            @Override
+            List<QueryResult> query() {
+                return conservedRegionDBAdaptor.getAllScoresByRegionList(variantListToRegionList(variantList), queryOptions);
+            }
+        };
+        List<List<QueryResult>> queryResultLists = runQueries(Arrays.asList(variationQuery, clinicalQuery,
+                consequenceTypeQuery, conservedRegionQuery));
+        int dbTime = Long.valueOf(System.currentTimeMillis() - dbTimeStart).intValue();
+        logger.debug("Annotation of {} variants: variation {} ms, clinical {} ms, consequence types {} ms, conservation {} ms, total {} ms",
+                variantList.size(), variationQuery.time, clinicalQuery.time, consequenceTypeQuery.time,
+                conservedRegionQuery.time, dbTime);
+
+        List<QueryResult> variationQueryResultList = queryResultLists.get(0);
+        List<QueryResult> clinicalQueryResultList = queryResultLists.get(1);
+        List<QueryResult> variationConsequenceTypeList = queryResultLists.get(2);
+        List<QueryResult> conservedRegionQueryResultList = queryResultLists.get(3);
 
         VariantAnnotation variantAnnotation;
 
@@ -1948,12 +2245,66 @@ public class  VariantAnnotationMongoDBAdaptor extends MongoDBAdaptor implements
 
             List<VariantAnnotation> value = Collections.singletonList(variantAnnotation);
             clinicalQueryResult.setResult(value);
+            // All sources are queried at once, the time of the slowest one is what every variant waited for
+            clinicalQueryResult.setDbTime(dbTime);
             i++;
         }
 
         return clinicalQueryResultList;
     }
 
+    /**
+     * Annotation source query, keeps the time it took to run.
+     */
+    private abstract static class TimedQuery implements Callable<List<QueryResult>> {
+        long time;
+
+        abstract List<QueryResult> query();
+
+        @Override
+        public List<QueryResult> call() {
+            long start = System.currentTimeMillis();
+            try {
+                return query();
+            } finally {
+                time = System.currentTimeMillis() - start;
+            }
+        }
+    }
+
+    private List<List<QueryResult>> runQueries(List<TimedQuery> queries) {
+        List<List<QueryResult>> queryResultLists = new ArrayList<>(queries.size());
+        if(executorService == null) {
+            for(TimedQuery query : queries) {
+                queryResultLists.add(query.call());
+            }
+            return queryResultLists;
+        }
+
+        List<Future<List<QueryResult>>> futures = new ArrayList<>(queries.size());
+        for(TimedQuery query : queries) {
+            futures.add(executorService.submit(query));
+        }
+        try {
+            for(Future<List<QueryResult>> future : futures) {
+                queryResultLists.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for annotation queries", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            for(Future<List<QueryResult>> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return queryResultLists;
+    }
+
     private List<Region> variantListToRegionList(List<GenomicVariant> variantList) {
 
         List<Region> regionList = new ArrayList<>(variantList.size());
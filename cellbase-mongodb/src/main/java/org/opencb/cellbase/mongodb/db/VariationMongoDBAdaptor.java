@@ -1,5 +1,6 @@
 package org.opencb.cellbase.mongodb.db;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.mongodb.*;
 import org.opencb.biodata.models.feature.Region;
 import org.opencb.biodata.models.variation.GenomicVariant;
@@ -44,6 +45,7 @@ public class VariationMongoDBAdaptor extends MongoDBAdaptor implements Variation
         super(species, assembly, mongoDataStore);
         mongoDBCollection2 = mongoDataStore.getCollection("variation");
         mongoVariationPhenotypeDBCollection2 = mongoDataStore.getCollection("variation_phenotype");
+        collectionName = "variation";
 
         logger.info("VariationMongoDBAdaptor: in 'constructor'");
     }
@@ -55,12 +57,12 @@ public class VariationMongoDBAdaptor extends MongoDBAdaptor implements Variation
 
     @Override
     public List<QueryResult> getAllByIdList(List<String> idList, QueryOptions options) {
-        List<DBObject> queries = new ArrayList<>();
-        for (String id : idList) {
-            QueryBuilder builder = QueryBuilder.start("id").is(id);
-            queries.add(builder.get());
-        }
-        return executeQueryList(idList, queries, options);
+        return executeIdQueryList(idList, "id", options, mongoDBCollection2);
+    }
+
+    @Override
+    public ListenableFuture<List<QueryResult>> getAllByIdListAsync(List<String> idList, QueryOptions options) {
+        return submitIdQuery(this, idList, options);
     }
 
     @Override
@@ -127,9 +129,7 @@ public class VariationMongoDBAdaptor extends MongoDBAdaptor implements Variation
             if(region != null && !region.equals("")) {
                 // If regions is 1 position then query can be optimize using chunks
                 if (region.getStart() == region.getEnd()) {
-                    String chunkId = getChunkIdPrefix(region.getChromosome(), region.getStart(), variationChunkSize);
-                    System.out.println(chunkId);
-                    builder = QueryBuilder.start("chunkIds").is(chunkId).and("end")
+                    builder = startChunkIdQuery(region.getChromosome(), region.getStart(), region.getStart(), variationChunkSize).and("end")
                             .greaterThanEquals(region.getStart()).and("start").lessThanEquals(region.getEnd());
                 } else {
                     builder = QueryBuilder.start("chromosome").is(region.getChromosome()).and("end")
@@ -250,9 +250,18 @@ public class VariationMongoDBAdaptor extends MongoDBAdaptor implements Variation
                 ids.add(region.toString());
             }
 
+            if (mongoDBCollection2 != null) {
+                // Variants are selected by their start only
+                return executeRegionQueryList(regions, queries, options, mongoDBCollection2, "start", "start");
+            }
             return executeQueryList(ids, queries, options);
         }
     }
+
+    @Override
+    public ListenableFuture<List<QueryResult>> getAllByRegionListAsync(List<Region> regions, QueryOptions options) {
+        return submitRegionQuery(this, regions, options);
+    }
     @Override
     public QueryResult getAllIntervalFrequencies(Region region, QueryOptions queryOptions) {
         return super.getAllIntervalFrequencies(region, queryOptions);
@@ -269,8 +278,7 @@ public class VariationMongoDBAdaptor extends MongoDBAdaptor implements Variation
         List<QueryResult> results;
 
         for (GenomicVariant variation : variations) {
-            String chunkId = getChunkIdPrefix(variation.getChromosome(), variation.getPosition(), variationChunkSize);
-            QueryBuilder builder = QueryBuilder.start("chunkIds").is(chunkId).and("chromosome").is(variation.getChromosome()).and("start").is(variation.getPosition()).and("alternate").is(variation.getAlternative());
+            QueryBuilder builder = startChunkIdQuery(variation.getChromosome(), variation.getPosition(), variation.getPosition(), variationChunkSize).and("chromosome").is(variation.getChromosome()).and("start").is(variation.getPosition()).and("alternate").is(variation.getAlternative());
             if(variation.getReference() != null){
                 builder = builder.and("reference").is(variation.getReference());
             }
@@ -303,9 +311,7 @@ public class VariationMongoDBAdaptor extends MongoDBAdaptor implements Variation
         List<QueryResult> results;
 
         for (GenomicVariant variation : variations) {
-            String chunkId = getChunkIdPrefix(variation.getChromosome(), variation.getPosition(), variationChunkSize);
-
-            QueryBuilder builder = QueryBuilder.start("chunkIds").is(chunkId).and("chromosome").is(variation.getChromosome()).and("start").is(variation.getPosition()).and("alternate").is(variation.getAlternative());
+            QueryBuilder builder = startChunkIdQuery(variation.getChromosome(), variation.getPosition(), variation.getPosition(), variationChunkSize).and("chromosome").is(variation.getChromosome()).and("start").is(variation.getPosition()).and("alternate").is(variation.getAlternative());
 
             if(variation.getReference() != null){
                 builder = builder.and("reference").is(variation.getReference());
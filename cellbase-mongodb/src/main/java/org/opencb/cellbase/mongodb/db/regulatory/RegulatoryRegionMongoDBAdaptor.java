@@ -1,5 +1,6 @@
 package org.opencb.cellbase.mongodb.db.regulatory;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.mongodb.*;
 import org.opencb.biodata.models.feature.Region;
 import org.opencb.cellbase.core.common.Position;
@@ -37,6 +38,7 @@ public class RegulatoryRegionMongoDBAdaptor extends MongoDBAdaptor implements Re
     public RegulatoryRegionMongoDBAdaptor(String species, String assembly, MongoDataStore mongoDataStore) {
         super(species, assembly, mongoDataStore);
         mongoDBCollection2 = mongoDataStore.getCollection("regulatory_region");
+        collectionName = "regulatory_region";
 
         logger.info("RegulatoryRegionMongoDBAdaptor: in 'constructor'");
     }
@@ -58,6 +60,11 @@ public class RegulatoryRegionMongoDBAdaptor extends MongoDBAdaptor implements Re
         return executeQueryList2(idList, queries, options);
     }
 
+    @Override
+    public ListenableFuture<List<QueryResult>> getAllByIdListAsync(List<String> idList, QueryOptions options) {
+        return submitIdQuery(this, idList, options);
+    }
+
     @Override
     public QueryResult getAllByPosition(Position position, QueryOptions options) {
         return getAllByPositionList(Arrays.asList(position), options).get(0);
@@ -72,10 +79,8 @@ public class RegulatoryRegionMongoDBAdaptor extends MongoDBAdaptor implements Re
 
         List<DBObject> queries = new ArrayList<>();
         for (Position position : positionList) {
-            String chunkId = position.getChromosome() + "_" + getChunkId(position.getPosition(), regulatoryRegionChunkSize)+"_"+ regulatoryRegionChunkSize /1000+"k";
-            BasicDBList chunksId = new BasicDBList();
-            chunksId.add(chunkId);
-            QueryBuilder builder = QueryBuilder.start("chunkIds").in(chunksId).and("start").is(position.getPosition());
+            QueryBuilder builder = startChunkIdQuery(position.getChromosome(), position.getPosition(), position.getPosition(),
+                    regulatoryRegionChunkSize).and("start").is(position.getPosition());
             if (featureType != null) {
                 builder.and("featureType").is(featureType);
             }
@@ -116,17 +121,7 @@ public class RegulatoryRegionMongoDBAdaptor extends MongoDBAdaptor implements Re
 
         List<DBObject> queries = new ArrayList<>();
         for (Region region : regionList) {
-            int firstChunkId = getChunkId(region.getStart(), regulatoryRegionChunkSize);
-            int lastChunkId = getChunkId(region.getEnd(), regulatoryRegionChunkSize);
-            BasicDBList chunksId = new BasicDBList();
-            for (int j = firstChunkId; j <= lastChunkId; j++) {
-                String chunkId = region.getChromosome() + "_" + j+"_"+ regulatoryRegionChunkSize /1000+"k";
-                chunksId.add(chunkId);
-            }
-
-//            logger.info(chunksId.toString());
-
-            builder = builder.start("chunkIds").in(chunksId)
+            builder = startChunkIdQuery(region.getChromosome(), region.getStart(), region.getEnd(), regulatoryRegionChunkSize)
                              .and("start").lessThanEquals(region.getEnd())
                              .and("end").greaterThanEquals(region.getStart());
 
@@ -146,7 +141,12 @@ public class RegulatoryRegionMongoDBAdaptor extends MongoDBAdaptor implements Re
         }
 //        System.out.println(">>"+regionList);
 //        System.out.println(">>"+builder.get().toString());
-        return executeQueryList2(regionList, queries, options);
+        return executeRegionQueryList(regionList, queries, options, mongoDBCollection2, "start", "end");
+    }
+
+    @Override
+    public ListenableFuture<List<QueryResult>> getAllByRegionListAsync(List<Region> regions, QueryOptions options) {
+        return submitRegionQuery(this, regions, options);
     }
 
     @Override
@@ -155,21 +155,17 @@ public class RegulatoryRegionMongoDBAdaptor extends MongoDBAdaptor implements Re
         String featureType = options.getString("featureType", null);
         String featureClass = options.getString("featureClass", null);
 
-        BasicDBList chunksId = new BasicDBList();
-        String chunkId = chromosome + "_" + getChunkId(position, regulatoryRegionChunkSize)+"_"+ regulatoryRegionChunkSize /1000+"k";
-        chunksId.add(chunkId);
-
         // TODO: Add query to find next item considering next chunk
         // db.regulatory_region.find({ "chromosome" : "19" , "start" : { "$gt" : 62005} , "featureType" : "TF_binding_site_motif"}).sort({start:1}).limit(1)
 
         QueryBuilder builder;
         if (options.getString("strand") == null || (options.getString("strand").equals("1") || options.getString("strand").equals("+"))) {
             // db.core.find({chromosome: "1", start: {$gt: 1000000}}).sort({start: 1}).limit(1)
-            builder = QueryBuilder.start("chunkIds").in(chunksId).and("chromosome").is(chromosome).and("start").greaterThan(position);
+            builder = startChunkIdQuery(chromosome, position, position, regulatoryRegionChunkSize).and("chromosome").is(chromosome).and("start").greaterThan(position);
             options.put("sort", new BasicDBObject("start", 1));
             options.put("limit", 1);
         } else {
-            builder = QueryBuilder.start("chunkIds").in(chunksId).and("chromosome").is(chromosome).and("end").lessThan(position);
+            builder = startChunkIdQuery(chromosome, position, position, regulatoryRegionChunkSize).and("chromosome").is(chromosome).and("end").lessThan(position);
             options.put("sort", new BasicDBObject("end", -1));
             options.put("limit", 1);
         }
@@ -196,14 +192,6 @@ public class RegulatoryRegionMongoDBAdaptor extends MongoDBAdaptor implements Re
     }
 
 
-    private static int getChunkId(int position, int chunksize) {
-        if (chunksize <= 0) {
-            return position / regulatoryRegionChunkSize;
-        } else {
-            return position / chunksize;
-        }
-    }
-
     private static int getChunkStart(int id, int chunksize) {
         if (chunksize <= 0) {
             return (id == 0) ? 1 : id * regulatoryRegionChunkSize;
@@ -1,13 +1,20 @@
 package org.opencb.cellbase.mongodb.loader;
 
+import com.mongodb.BasicDBObject;
 import com.mongodb.BulkWriteResult;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
+import com.mongodb.MongoException;
 import com.mongodb.util.JSON;
 import org.opencb.cellbase.core.CellBaseConfiguration;
+import org.opencb.cellbase.core.common.ChunkId;
 import org.opencb.cellbase.core.loader.CellBaseLoader;
 import org.opencb.cellbase.core.loader.LoadRunner;
 import org.opencb.cellbase.core.loader.LoaderException;
 import org.opencb.cellbase.mongodb.MongoDBCollectionConfiguration;
+import org.opencb.cellbase.mongodb.db.IntervalFrequencyPyramid;
+import org.opencb.cellbase.mongodb.db.QueryResultCache;
 import org.opencb.datastore.core.QueryOptions;
 import org.opencb.datastore.core.QueryResult;
 import org.opencb.datastore.mongodb.MongoDBCollection;
@@ -17,8 +24,13 @@ import org.opencb.datastore.mongodb.MongoDataStoreManager;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.BlockingQueue;
 
 /**
@@ -31,6 +43,9 @@ public class MongoDBCellBaseLoader extends CellBaseLoader {
     private MongoDBCollection collection;
     private MongoDataStoreManager dataStoreManager;
     private String databaseName;
+    private String collectionName;
+    // Chromosomes of the documents loaded by this loader, their interval frequency pyramid is rebuilt by postLoad
+    private final Set<String> loadedChromosomes = new HashSet<>();
 
     public MongoDBCellBaseLoader(BlockingQueue<List<String>> queue, String data, Map<String, String> params) {
         super(queue, data, params);
@@ -38,7 +53,7 @@ public class MongoDBCellBaseLoader extends CellBaseLoader {
 
     @Override
     public void init() throws LoaderException {
-        String collectionName = this.getCollectionName(data);
+        collectionName = this.getCollectionName(data);
         createConnection();
         collection = dataStore.getCollection(collectionName);
         getChunkSizes(collectionName);
@@ -138,9 +153,65 @@ public class MongoDBCellBaseLoader extends CellBaseLoader {
 
 
 
+    /**
+     * Rebuilds the interval frequency pyramid of gene and variation collections for the chromosomes loaded by any of
+     * the loaders, from all the documents of those chromosomes, so that interval frequencies are not aggregated at
+     * query time. Loads of one chromosome file do not rescan the rest of the collection.
+     */
+    @Override
+    public void postLoad(List<CellBaseLoader> loaders) throws LoaderException {
+        if (!collectionName.equals("gene") && !collectionName.equals("variation")) {
+            return;
+        }
+        Set<String> chromosomes = new TreeSet<>();
+        for (CellBaseLoader loader : loaders) {
+            if (loader instanceof MongoDBCellBaseLoader) {
+                chromosomes.addAll(((MongoDBCellBaseLoader) loader).loadedChromosomes);
+            }
+        }
+        if (chromosomes.isEmpty()) {
+            return;
+        }
+
+        IntervalFrequencyPyramid pyramid = new IntervalFrequencyPyramid(collectionName);
+        DBObject chromosomeQuery = new BasicDBObject("$in", new ArrayList<>(chromosomes));
+        try {
+            DBCursor cursor = dataStore.getDb().getCollection(collectionName).find(
+                    new BasicDBObject("chromosome", chromosomeQuery),
+                    new BasicDBObject("chromosome", 1).append("start", 1).append("_id", 0));
+            try {
+                while (cursor.hasNext()) {
+                    DBObject dbObject = cursor.next();
+                    if (dbObject.get("chromosome") != null && dbObject.get("start") instanceof Number) {
+                        pyramid.add(dbObject.get("chromosome").toString(), ((Number) dbObject.get("start")).intValue());
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+
+            List<DBObject> documents = pyramid.getDocuments();
+            DBCollection intervalFrequencyCollection = dataStore.getDb().getCollection(IntervalFrequencyPyramid.COLLECTION);
+            intervalFrequencyCollection.remove(new BasicDBObject("featureType", collectionName)
+                    .append("chromosome", chromosomeQuery));
+            if (!documents.isEmpty()) {
+                intervalFrequencyCollection.insert(documents);
+            }
+            intervalFrequencyCollection.createIndex(new BasicDBObject("featureType", 1).append("chromosome", 1)
+                    .append("binSize", 1).append("block", 1));
+            logger.info("Interval frequency pyramid of '{}' chromosomes {} stored in {} documents", collectionName,
+                    chromosomes, documents.size());
+        } catch (MongoException e) {
+            throw new LoaderException(e);
+        }
+    }
+
     @Override
     public void disconnect() {
-        dataStoreManager.close(databaseName);
+        // Loaders whose init failed have no connection
+        if (dataStoreManager != null) {
+            dataStoreManager.close(databaseName);
+        }
     }
 
     @Override
@@ -157,6 +228,9 @@ public class MongoDBCellBaseLoader extends CellBaseLoader {
                     for (String jsonLine : batch) {
                         DBObject dbObject = getDbObject(jsonLine);
                         dbObjectsBatch.add(dbObject);
+                        if (dbObject.get("chromosome") != null) {
+                            loadedChromosomes.add(dbObject.get("chromosome").toString());
+                        }
 
                     }
                     loadedObjects += load(dbObjectsBatch);
@@ -168,24 +242,89 @@ public class MongoDBCellBaseLoader extends CellBaseLoader {
             }
         }
         logger.debug("'load' finished. " + loadedObjects + " records serialized");
+        if (loadedObjects > 0) {
+            writeDataVersion(loadedObjects);
+        }
         return loadedObjects;
     }
 
+    /**
+     * Adds a document to the 'data_version' collection, servers drop their cached query results of this database when
+     * its number of documents changes.
+     */
+    private void writeDataVersion(int loadedObjects) {
+        DBObject dataVersion = new BasicDBObject("data", data)
+                .append("loadedObjects", loadedObjects)
+                .append("date", new Date());
+        try {
+            dataStore.getCollection(QueryResultCache.DATA_VERSION_COLLECTION)
+                    .insert(Collections.singletonList(dataVersion), new QueryOptions());
+        } catch (Exception e) {
+            logger.error("Error writing data version: " + e.getMessage());
+        }
+    }
+
     private DBObject getDbObject(String jsonLine) {
         DBObject dbObject = (DBObject) JSON.parse(jsonLine);
         addChunkId(dbObject);
+        if (data.equals("gene")) {
+            addSplicedSequences(dbObject);
+        }
         return dbObject;
     }
 
+    /**
+     * Stores in every transcript the spliced exon sequences, 'splicedSequence', in genomic forward strand orientation
+     * as used by the consequence type engine. Transcripts with any exon lacking its sequence are left untouched.
+     */
+    private void addSplicedSequences(DBObject gene) {
+        List transcripts = (List) gene.get("transcripts");
+        if (transcripts == null) {
+            return;
+        }
+        for (Object transcriptObject : transcripts) {
+            DBObject transcript = (DBObject) transcriptObject;
+            List exons = (List) transcript.get("exons");
+            if (exons == null || exons.isEmpty()) {
+                continue;
+            }
+            String[] exonSequences = new String[exons.size()];
+            int length = 0;
+            boolean allSequences = true;
+            for (int i = 0; i < exons.size(); i++) {
+                exonSequences[i] = (String) ((DBObject) exons.get(i)).get("sequence");
+                if (exonSequences[i] == null) {
+                    allSequences = false;
+                    break;
+                }
+                length += exonSequences[i].length();
+            }
+            if (allSequences) {
+                // Exons come in transcript order, negative strand exons are appended backwards
+                StringBuilder splicedSequence = new StringBuilder(length);
+                boolean positiveStrand = "+".equals(transcript.get("strand"));
+                for (int i = 0; i < exonSequences.length; i++) {
+                    splicedSequence.append(exonSequences[positiveStrand ? i : exonSequences.length - 1 - i]);
+                }
+                transcript.put("splicedSequence", splicedSequence.toString());
+            }
+        }
+    }
+
     private void addChunkId(DBObject dbObject) {
         if (chunkSizes != null && chunkSizes.length > 0) {
-            List<String> chunkIds = new ArrayList<>();
+            boolean numericChunkIds = ChunkId.NUMERIC_FORMAT.equals(getParam(CELLBASE_CHUNK_ID_FORMAT, ChunkId.STRING_FORMAT));
+            String chromosome = dbObject.get("chromosome").toString();
+            List<Object> chunkIds = new ArrayList<>();
             for (int chunkSize : chunkSizes) {
                 int chunkStart = (Integer) dbObject.get("start") / chunkSize;
                 int chunkEnd = (Integer) dbObject.get("end") / chunkSize;
-                String chunkIdSuffix = chunkSize / 1000 + "k";
                 for (int i = chunkStart; i <= chunkEnd; i++) {
-                    chunkIds.add(dbObject.get("chromosome") + "_" + i + "_" + chunkIdSuffix);
+                    if (numericChunkIds) {
+                        chunkIds.add(ChunkId.getNumericChunkId(chromosome, i, chunkSize));
+                    } else {
+                        chunkIds.add(ChunkId.getChunkId(chromosome, i, chunkSize));
+                    }
                 }
             }
             dbObject.put("chunkIds", chunkIds);
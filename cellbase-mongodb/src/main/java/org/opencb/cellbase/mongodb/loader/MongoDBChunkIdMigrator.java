@@ -0,0 +1,230 @@
+package org.opencb.cellbase.mongodb.loader;
+
+import com.mongodb.*;
+import org.opencb.cellbase.core.CellBaseConfiguration;
+import org.opencb.cellbase.core.common.ChunkId;
+import org.opencb.cellbase.core.loader.CellBaseLoader;
+import org.opencb.cellbase.core.loader.ChunkIdMigrator;
+import org.opencb.cellbase.core.loader.LoaderException;
+import org.opencb.cellbase.mongodb.db.QueryResultCache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites the string 'chunkIds' of every document as numeric chunk ids with bulk updates of BULK_SIZE documents.
+ * Documents whose chunk ids are already numeric are skipped, so an interrupted migration can be run again. The chunk
+ * id index is rebuilt afterwards so that its size reflects the new keys.
+ */
+public class MongoDBChunkIdMigrator extends ChunkIdMigrator {
+
+    private static final int BULK_SIZE = 1000;
+    // BSON type of strings, $type matches arrays containing any string
+    private static final DBObject STRING_CHUNK_IDS_QUERY = new BasicDBObject("chunkIds", new BasicDBObject("$type", 2));
+
+    private MongoClient mongoClient;
+    private DB db;
+
+    public MongoDBChunkIdMigrator(Map<String, String> params) {
+        super(params);
+    }
+
+    @Override
+    public void init() throws LoaderException {
+        try {
+            CellBaseConfiguration configuration = CellBaseConfiguration.load(CellBaseConfiguration.class.getClassLoader().getResourceAsStream("configuration.json"));
+            String host = getParam(CellBaseLoader.CELLBASE_HOST, configuration.getDatabase().getHost());
+            int port = Integer.parseInt(getParam(CellBaseLoader.CELLBASE_PORT, configuration.getDatabase().getPort()));
+            String user = getParam(CellBaseLoader.CELLBASE_USER, configuration.getDatabase().getUser());
+            String password = getParam(CellBaseLoader.CELLBASE_PASSWORD, configuration.getDatabase().getPassword());
+
+            mongoClient = new MongoClient(new ServerAddress(host, port));
+            db = mongoClient.getDB(getParam(CellBaseLoader.CELLBASE_DATABASE_NAME_PROPERTY, CellBaseLoader.CELLBASE_DEFAULT_DATABASE_NAME));
+            if ((user != null && !user.isEmpty()) || (password != null && !password.isEmpty())) {
+                db.authenticate(user, password.toCharArray());
+            }
+        } catch (IOException e) {
+            throw new LoaderException(e);
+        }
+    }
+
+    @Override
+    public long migrate(String collectionName, int numBenchmarkQueries) throws LoaderException {
+        DBCollection collection = db.getCollection(collectionName);
+        try {
+            List<BasicDBList> stringChunkIds = sampleChunkIds(collection, numBenchmarkQueries);
+            long indexSizeBefore = getChunkIdIndexSize(collection);
+            double queryTimeBefore = benchmark(collection, stringChunkIds);
+
+            long migratedDocuments = convertChunkIds(collection);
+            rebuildChunkIdIndex(collection);
+
+            List<BasicDBList> numericChunkIds = new ArrayList<>(stringChunkIds.size());
+            for (BasicDBList chunkIds : stringChunkIds) {
+                numericChunkIds.add(toNumericChunkIds(chunkIds));
+            }
+            long indexSizeAfter = getChunkIdIndexSize(collection);
+            double queryTimeAfter = benchmark(collection, numericChunkIds);
+
+            logger.info("'{}': {} documents migrated", collectionName, migratedDocuments);
+            logger.info("'{}': chunkIds index size {} bytes before, {} bytes after", collectionName, indexSizeBefore, indexSizeAfter);
+            logger.info("'{}': mean time of {} chunkIds $in queries {} ms before, {} ms after", collectionName,
+                    stringChunkIds.size(), String.format("%.3f", queryTimeBefore), String.format("%.3f", queryTimeAfter));
+
+            if (migratedDocuments > 0) {
+                // Servers must not keep serving results cached with the old chunk ids
+                db.getCollection(QueryResultCache.DATA_VERSION_COLLECTION).insert(new BasicDBObject("data", collectionName)
+                        .append("chunkIdFormat", ChunkId.NUMERIC_FORMAT).append("date", new Date()));
+            }
+            return migratedDocuments;
+        } catch (MongoException | IllegalArgumentException e) {
+            throw new LoaderException(e);
+        }
+    }
+
+    private long convertChunkIds(DBCollection collection) {
+        // Snapshot mode so that documents moved by their update are not returned again
+        DBCursor cursor = collection.find(STRING_CHUNK_IDS_QUERY, new BasicDBObject("chunkIds", 1)).snapshot();
+        BulkWriteOperation bulkWriteOperation = collection.initializeUnorderedBulkOperation();
+        int pendingUpdates = 0;
+        long migratedDocuments = 0;
+        try {
+            while (cursor.hasNext()) {
+                DBObject document = cursor.next();
+                Object chunkIds = document.get("chunkIds");
+                BasicDBList chunkIdList = new BasicDBList();
+                if (chunkIds instanceof List) {
+                    chunkIdList.addAll((List) chunkIds);
+                } else {
+                    chunkIdList.add(chunkIds);
+                }
+                bulkWriteOperation.find(new BasicDBObject("_id", document.get("_id")))
+                        .updateOne(new BasicDBObject("$set", new BasicDBObject("chunkIds", toNumericChunkIds(chunkIdList))));
+                if (++pendingUpdates == BULK_SIZE) {
+                    bulkWriteOperation.execute();
+                    migratedDocuments += pendingUpdates;
+                    pendingUpdates = 0;
+                    bulkWriteOperation = collection.initializeUnorderedBulkOperation();
+                    if (migratedDocuments % (100 * BULK_SIZE) == 0) {
+                        logger.info("'{}': {} documents migrated", collection.getName(), migratedDocuments);
+                    }
+                }
+            }
+            if (pendingUpdates > 0) {
+                bulkWriteOperation.execute();
+                migratedDocuments += pendingUpdates;
+            }
+        } finally {
+            cursor.close();
+        }
+        return migratedDocuments;
+    }
+
+    private BasicDBList toNumericChunkIds(BasicDBList chunkIds) {
+        BasicDBList numericChunkIds = new BasicDBList();
+        for (Object chunkId : chunkIds) {
+            numericChunkIds.add((chunkId instanceof String) ? ChunkId.getNumericChunkId((String) chunkId) : chunkId);
+        }
+        return numericChunkIds;
+    }
+
+    /**
+     * @return the chunk ids of up to numDocuments documents with string chunk ids spread over the collection
+     */
+    private List<BasicDBList> sampleChunkIds(DBCollection collection, int numDocuments) {
+        List<BasicDBList> sample = new ArrayList<>();
+        long count = collection.count(STRING_CHUNK_IDS_QUERY);
+        if (numDocuments <= 0 || count == 0) {
+            return sample;
+        }
+        long step = Math.max(1, count / numDocuments);
+        DBCursor cursor = collection.find(STRING_CHUNK_IDS_QUERY, new BasicDBObject("chunkIds", 1));
+        try {
+            for (long i = 0; cursor.hasNext() && sample.size() < numDocuments; i++) {
+                DBObject document = cursor.next();
+                if (i % step == 0) {
+                    BasicDBList chunkIds = new BasicDBList();
+                    chunkIds.addAll((document.get("chunkIds") instanceof List) ? (List) document.get("chunkIds")
+                            : Collections.singletonList(document.get("chunkIds")));
+                    sample.add(chunkIds);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return sample;
+    }
+
+    /**
+     * @return the mean time in milliseconds to fetch the ids of the documents matching each list of chunk ids
+     */
+    private double benchmark(DBCollection collection, List<BasicDBList> chunkIdQueries) {
+        if (chunkIdQueries.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        for (BasicDBList chunkIds : chunkIdQueries) {
+            DBCursor cursor = collection.find(new BasicDBObject("chunkIds", new BasicDBObject("$in", chunkIds)),
+                    new BasicDBObject("_id", 1));
+            while (cursor.hasNext()) {
+                cursor.next();
+            }
+            cursor.close();
+        }
+        return (System.nanoTime() - start) / 1000000.0 / chunkIdQueries.size();
+    }
+
+    private long getChunkIdIndexSize(DBCollection collection) {
+        DBObject indexSizes = (DBObject) collection.getStats().get("indexSizes");
+        String indexName = getChunkIdIndexName(collection);
+        if (indexSizes == null || indexName == null || !(indexSizes.get(indexName) instanceof Number)) {
+            return -1;
+        }
+        return ((Number) indexSizes.get(indexName)).longValue();
+    }
+
+    private void rebuildChunkIdIndex(DBCollection collection) {
+        String indexName = getChunkIdIndexName(collection);
+        if (indexName == null) {
+            logger.warn("'{}' has no chunkIds index", collection.getName());
+            return;
+        }
+        for (DBObject indexInfo : collection.getIndexInfo()) {
+            if (indexName.equals(indexInfo.get("name"))) {
+                collection.dropIndex(indexName);
+                collection.createIndex((DBObject) indexInfo.get("key"), new BasicDBObject("name", indexName));
+                return;
+            }
+        }
+    }
+
+    private String getChunkIdIndexName(DBCollection collection) {
+        for (DBObject indexInfo : collection.getIndexInfo()) {
+            DBObject key = (DBObject) indexInfo.get("key");
+            if (key != null && key.keySet().iterator().hasNext() && key.keySet().iterator().next().equals("chunkIds")) {
+                return (String) indexInfo.get("name");
+            }
+        }
+        return null;
+    }
+
+    private String getParam(String paramName, String defaultValue) {
+        if (params.containsKey(paramName)) {
+            return params.get(paramName);
+        } else {
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        if (mongoClient != null) {
+            mongoClient.close();
+        }
+    }
+
+}
@@ -0,0 +1,222 @@
+package org.opencb.cellbase.mongodb.model;
+
+import java.util.List;
+
+/**
+ * Compact read-only view of the projected gene documents used by the consequence type engine. Exon coordinates and
+ * phases are kept in int arrays in transcript order, and biotypes are interned and mapped to the engine biotype codes.
+ * Instances are created by AnnotationGeneConverter.
+ */
+public class AnnotationGene {
+
+    private String id;
+    private String name;
+    private String chromosome;
+    private String strand;
+    private int start;
+    private int end;
+    private Transcript[] transcripts;
+    private MiRna miRna;
+
+    public AnnotationGene(String id, String name, String chromosome, String strand, int start, int end,
+                          Transcript[] transcripts, MiRna miRna) {
+        this.id = id;
+        this.name = name;
+        this.chromosome = chromosome;
+        this.strand = strand;
+        this.start = start;
+        this.end = end;
+        this.transcripts = transcripts;
+        this.miRna = miRna;
+    }
+
+    public static class Transcript {
+
+        private String id;
+        private String strand;
+        private String biotype;
+        private int biotypeCode;
+        private int start;
+        private int end;
+        private int cdsLength;
+        private int genomicCodingStart;
+        private int genomicCodingEnd;
+        private int cdnaCodingStart;
+        private int cdnaCodingEnd;
+        private List<String> annotationFlags;
+        private int[] exonStarts;
+        private int[] exonEnds;
+        private int[] exonPhases;
+        private String[] exonSequences;
+        private String splicedSequence;
+
+        public Transcript(String id, String strand, String biotype, int biotypeCode, int start, int end, int cdsLength,
+                          int genomicCodingStart, int genomicCodingEnd, int cdnaCodingStart, int cdnaCodingEnd,
+                          List<String> annotationFlags, int[] exonStarts, int[] exonEnds, int[] exonPhases,
+                          String[] exonSequences, String splicedSequence) {
+            this.id = id;
+            this.strand = strand;
+            this.biotype = biotype;
+            this.biotypeCode = biotypeCode;
+            this.start = start;
+            this.end = end;
+            this.cdsLength = cdsLength;
+            this.genomicCodingStart = genomicCodingStart;
+            this.genomicCodingEnd = genomicCodingEnd;
+            this.cdnaCodingStart = cdnaCodingStart;
+            this.cdnaCodingEnd = cdnaCodingEnd;
+            this.annotationFlags = annotationFlags;
+            this.exonStarts = exonStarts;
+            this.exonEnds = exonEnds;
+            this.exonPhases = exonPhases;
+            this.exonSequences = exonSequences;
+            this.splicedSequence = splicedSequence;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getStrand() {
+            return strand;
+        }
+
+        public String getBiotype() {
+            return biotype;
+        }
+
+        public int getBiotypeCode() {
+            return biotypeCode;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public int getCdsLength() {
+            return cdsLength;
+        }
+
+        public int getGenomicCodingStart() {
+            return genomicCodingStart;
+        }
+
+        public int getGenomicCodingEnd() {
+            return genomicCodingEnd;
+        }
+
+        public int getCdnaCodingStart() {
+            return cdnaCodingStart;
+        }
+
+        public int getCdnaCodingEnd() {
+            return cdnaCodingEnd;
+        }
+
+        /**
+         * @return annotation flags or null if the transcript has none
+         */
+        public List<String> getAnnotationFlags() {
+            return annotationFlags;
+        }
+
+        public int getNumExons() {
+            return exonStarts.length;
+        }
+
+        public int getExonStart(int exon) {
+            return exonStarts[exon];
+        }
+
+        public int getExonEnd(int exon) {
+            return exonEnds[exon];
+        }
+
+        public int getExonPhase(int exon) {
+            return exonPhases[exon];
+        }
+
+        /**
+         * @return exon sequences in transcript order or null if they were not projected
+         */
+        public String[] getExonSequences() {
+            return exonSequences;
+        }
+
+        /**
+         * @return spliced exon sequences in genomic forward strand orientation or null if not stored
+         */
+        public String getSplicedSequence() {
+            return splicedSequence;
+        }
+    }
+
+    public static class MiRna {
+
+        private int sequenceLength;
+        private int[] matureCdnaStarts;
+        private int[] matureCdnaEnds;
+
+        public MiRna(int sequenceLength, int[] matureCdnaStarts, int[] matureCdnaEnds) {
+            this.sequenceLength = sequenceLength;
+            this.matureCdnaStarts = matureCdnaStarts;
+            this.matureCdnaEnds = matureCdnaEnds;
+        }
+
+        public int getSequenceLength() {
+            return sequenceLength;
+        }
+
+        public int getNumMatures() {
+            return matureCdnaStarts.length;
+        }
+
+        public int getMatureCdnaStart(int mature) {
+            return matureCdnaStarts[mature];
+        }
+
+        public int getMatureCdnaEnd(int mature) {
+            return matureCdnaEnds[mature];
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getChromosome() {
+        return chromosome;
+    }
+
+    public String getStrand() {
+        return strand;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public Transcript[] getTranscripts() {
+        return transcripts;
+    }
+
+    /**
+     * @return miRBase data or null if the gene has none
+     */
+    public MiRna getMiRna() {
+        return miRna;
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.opencb.cellbase.mongodb.serializer.converters;
+
+import com.mongodb.DBObject;
+import org.opencb.cellbase.mongodb.model.AnnotationGene;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes projected gene documents into AnnotationGene records for the consequence type engine. Only the fields used
+ * by the engine are read, missing integer fields are decoded as 0 and missing lists as empty arrays.
+ */
+public class AnnotationGeneConverter extends MongoDBTypeConverter<AnnotationGene, DBObject> {
+
+    private Map<String, Integer> biotypeCodes;
+    private int defaultBiotypeCode;
+
+    /**
+     * @param biotypeCodes code of every biotype known by the engine
+     * @param defaultBiotypeCode code of the biotypes not found in biotypeCodes
+     */
+    public AnnotationGeneConverter(Map<String, Integer> biotypeCodes, int defaultBiotypeCode) {
+        super();
+
+        this.biotypeCodes = biotypeCodes;
+        this.defaultBiotypeCode = defaultBiotypeCode;
+    }
+
+    @Override
+    public DBObject convertToStorageSchema(AnnotationGene annotationGene) {
+        return null;
+    }
+
+    @Override
+    public AnnotationGene convertToDataModel(DBObject dbObject) {
+        List transcriptList = (List) dbObject.get("transcripts");
+        AnnotationGene.Transcript[] transcripts = new AnnotationGene.Transcript[(transcriptList != null) ? transcriptList.size() : 0];
+        for (int i = 0; i < transcripts.length; i++) {
+            transcripts[i] = convertTranscript((DBObject) transcriptList.get(i));
+        }
+
+        DBObject miRna = (DBObject) dbObject.get("mirna");
+        return new AnnotationGene((String) dbObject.get("id"), (String) dbObject.get("name"),
+                (String) dbObject.get("chromosome"), (String) dbObject.get("strand"), getInt(dbObject, "start"),
+                getInt(dbObject, "end"), transcripts, (miRna != null) ? convertMiRna(miRna) : null);
+    }
+
+    private AnnotationGene.Transcript convertTranscript(DBObject transcript) {
+        List exonList = (List) transcript.get("exons");
+        int numExons = (exonList != null) ? exonList.size() : 0;
+        int[] exonStarts = new int[numExons];
+        int[] exonEnds = new int[numExons];
+        int[] exonPhases = new int[numExons];
+        String[] exonSequences = new String[numExons];
+        boolean allExonSequences = numExons > 0;
+        for (int i = 0; i < numExons; i++) {
+            DBObject exon = (DBObject) exonList.get(i);
+            exonStarts[i] = getInt(exon, "start");
+            exonEnds[i] = getInt(exon, "end");
+            exonPhases[i] = getInt(exon, "phase");
+            exonSequences[i] = (String) exon.get("sequence");
+            allExonSequences = allExonSequences && exonSequences[i] != null;
+        }
+        if (!allExonSequences) {
+            exonSequences = null;
+        }
+
+        String biotype = (String) transcript.get("biotype");
+        Integer biotypeCode = (biotype != null) ? biotypeCodes.get(biotype) : null;
+        return new AnnotationGene.Transcript((String) transcript.get("id"), intern((String) transcript.get("strand")),
+                intern(biotype), (biotypeCode != null) ? biotypeCode : defaultBiotypeCode, getInt(transcript, "start"),
+                getInt(transcript, "end"), getInt(transcript, "cdsLength"), getInt(transcript, "genomicCodingStart"),
+                getInt(transcript, "genomicCodingEnd"), getInt(transcript, "cdnaCodingStart"),
+                getInt(transcript, "cdnaCodingEnd"), (List<String>) transcript.get("annotationFlags"), exonStarts,
+                exonEnds, exonPhases, exonSequences, (String) transcript.get("splicedSequence"));
+    }
+
+    private AnnotationGene.MiRna convertMiRna(DBObject miRna) {
+        List matureList = (List) miRna.get("matures");
+        int numMatures = (matureList != null) ? matureList.size() : 0;
+        int[] matureCdnaStarts = new int[numMatures];
+        int[] matureCdnaEnds = new int[numMatures];
+        for (int i = 0; i < numMatures; i++) {
+            matureCdnaStarts[i] = getInt((DBObject) matureList.get(i), "cdnaStart");
+            matureCdnaEnds[i] = getInt((DBObject) matureList.get(i), "cdnaEnd");
+        }
+        String sequence = (String) miRna.get("sequence");
+        return new AnnotationGene.MiRna((sequence != null) ? sequence.length() : 0, matureCdnaStarts, matureCdnaEnds);
+    }
+
+    private static int getInt(DBObject dbObject, String key) {
+        Object value = dbObject.get(key);
+        return (value != null) ? ((Number) value).intValue() : 0;
+    }
+
+    private static String intern(String value) {
+        return (value != null) ? value.intern() : null;
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.opencb.cellbase.mongodb.serializer.converters;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.opencb.biodata.models.variant.annotation.VariantAnnotation;
+
+import java.io.IOException;
+
+/**
+ * Converts the full annotations computed by VariantAnnotationMongoDBAdaptor to and from the documents of the
+ * precomputed 'variant_annotation' collection. Documents are keyed by chromosome:position:reference:alternate and
+ * keep the annotation as a JSON string, which is parsed much faster than a nested document when it is served.
+ */
+public class VariantAnnotationConverter extends MongoDBTypeConverter<VariantAnnotation, DBObject> {
+
+    private ObjectReader jsonObjectReader;
+
+    public VariantAnnotationConverter() {
+        super();
+
+        jsonObjectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        jsonObjectReader = jsonObjectMapper.reader(VariantAnnotation.class);
+    }
+
+    public static String getId(String chromosome, int position, String reference, String alternate) {
+        return chromosome + ":" + position + ":" + reference + ":" + alternate;
+    }
+
+    @Override
+    public DBObject convertToStorageSchema(VariantAnnotation variantAnnotation) {
+        try {
+            return new BasicDBObject("_id", getId(variantAnnotation.getChromosome(), variantAnnotation.getStart(),
+                    variantAnnotation.getReferenceAllele(), variantAnnotation.getAlternativeAllele()))
+                    .append("chromosome", variantAnnotation.getChromosome())
+                    .append("start", variantAnnotation.getStart())
+                    .append("annotation", jsonObjectWriter.writeValueAsString(variantAnnotation));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Variant annotation cannot be serialized: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public VariantAnnotation convertToDataModel(DBObject dbObject) {
+        try {
+            return jsonObjectReader.readValue((String) dbObject.get("annotation"));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Precomputed variant annotation " + dbObject.get("_id")
+                    + " cannot be parsed: " + e.getMessage(), e);
+        }
+    }
+
+}
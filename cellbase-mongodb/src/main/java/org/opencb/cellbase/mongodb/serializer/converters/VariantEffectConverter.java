@@ -7,6 +7,7 @@ import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBObject;
 import org.opencb.biodata.models.variant.annotation.*;
+import org.opencb.cellbase.core.common.DNASequenceUtils;
 import org.opencb.cellbase.core.serializer.CellBaseTypeConverter;
 
 import java.util.*;
@@ -120,13 +121,7 @@ public class VariantEffectConverter implements CellBaseTypeConverter<VariantAnno
                                     String s = consequenceType.getHgvsc().replace(">"+key, ">*");
                                     consequenceType.setHgvsc(s);
                                 }else {
-                                    String complement = "";
-                                    switch (key) {
-                                        case "A": complement = "T"; break;
-                                        case "T": complement = "A"; break;
-                                        case "C": complement = "G"; break;
-                                        case "G": complement = "C"; break;
-                                    }
+                                    String complement = DNASequenceUtils.reverseComplement(key);
                                     String s = consequenceType.getHgvsc().replace(">"+complement, ">*");
                                     consequenceType.setHgvsc(s);
                                 }
@@ -0,0 +1,144 @@
+package org.opencb.cellbase.mongodb.db;
+
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.biodata.models.feature.Region;
+import org.opencb.cellbase.core.common.GenomeSequenceFeature;
+import org.opencb.cellbase.core.common.IndexedFastaReader;
+import org.opencb.cellbase.core.common.core.CellbaseConfiguration;
+import org.opencb.cellbase.core.lib.api.core.GenomeSequenceDBAdaptor;
+import org.opencb.datastore.core.QueryOptions;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FastaGenomeSequenceDBAdaptorTest {
+
+    private static final String SEQUENCE = "ACGTACGTACNNNNNNNNNNacgtacgtacGGGGGCCCCCTTTTTAAAAR";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writeRegion() throws IOException {
+        Path fastaPath = temporaryFolder.getRoot().toPath().resolve("genome.fa");
+        Files.write(fastaPath, (">1\n" + SEQUENCE.substring(0, 30) + "\n" + SEQUENCE.substring(30) + "\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        Files.write(Paths.get(fastaPath + ".fai"), "1\t50\t3\t30\t31\n".getBytes(StandardCharsets.US_ASCII));
+
+        try (IndexedFastaReader indexedFastaReader = new IndexedFastaReader(fastaPath)) {
+            FastaGenomeSequenceDBAdaptor dbAdaptor = new FastaGenomeSequenceDBAdaptor(indexedFastaReader, "GRCh37");
+            Region region = new Region("1", 5, 48);
+            StringWriter writer = new StringWriter();
+            assertEquals(44, dbAdaptor.writeRegion(region, 1, writer));
+            assertEquals(SEQUENCE.substring(4, 48), writer.toString());
+            assertEquals(writer.toString(), getSequence(dbAdaptor, region));
+
+            writer = new StringWriter();
+            dbAdaptor.writeRegion(region, -1, writer);
+            assertEquals(dbAdaptor.getRevComp(SEQUENCE.substring(4, 48)), writer.toString());
+            QueryOptions options = new QueryOptions();
+            options.put("strand", "-1");
+            assertEquals(writer.toString(), ((GenomeSequenceFeature) dbAdaptor.getAllByRegionList(
+                    Collections.singletonList(region), options).get(0).getResult().get(0)).getSequence());
+
+            // Truncated at the end of the sequence
+            writer = new StringWriter();
+            assertEquals(10, dbAdaptor.writeRegion(new Region("1", 41, 100), 1, writer));
+            assertEquals(SEQUENCE.substring(40), writer.toString());
+        }
+    }
+
+    @Test
+    public void refreshReopensFastaFile() throws IOException {
+        Path fastaPath = temporaryFolder.getRoot().toPath().resolve("genome.fa");
+        Files.write(fastaPath, ">1\nACGTACGTAC\n".getBytes(StandardCharsets.US_ASCII));
+        Files.write(Paths.get(fastaPath + ".fai"), "1\t10\t3\t10\t11\n".getBytes(StandardCharsets.US_ASCII));
+        MongoDBAdaptorFactory factory = getFactory(fastaPath.toString());
+        try {
+            Region region = new Region("1", 1, 4);
+            assertEquals("ACGT", getSequence(factory.getGenomeSequenceDBAdaptor("hsapiens", "GRCh37"), region));
+
+            // The file replaced at the same path is mapped again after the refresh
+            factory.refresh("hsapiens", "GRCh37");
+            Path newFastaPath = temporaryFolder.getRoot().toPath().resolve("new.fa");
+            Files.write(newFastaPath, ">1\nTTTTACGTAC\n".getBytes(StandardCharsets.US_ASCII));
+            Files.move(newFastaPath, fastaPath, StandardCopyOption.REPLACE_EXISTING);
+            assertEquals("TTTT", getSequence(factory.getGenomeSequenceDBAdaptor("hsapiens", "GRCh37"), region));
+        } finally {
+            factory.close();
+        }
+    }
+
+    private static MongoDBAdaptorFactory getFactory(String fastaFile) {
+        CellbaseConfiguration config = new CellbaseConfiguration();
+        config.addSpeciesAlias("hsapiens", "hsapiens");
+        config.addSpeciesConnection("hsapiens", "GRCh37", "localhost", "cellbase_hsapiens_grch37_v3", 27017, "mongodb",
+                "", "", 10, 10000);
+        if (fastaFile != null) {
+            config.addGenomeSequenceFasta("hsapiens", "GRCh37", fastaFile);
+        }
+        return new MongoDBAdaptorFactory(config);
+    }
+
+    /**
+     * Compares the time taken to fetch 1bp, 1kb and 1Mb regions of chromosome 1 from the 'genome_sequence' collection
+     * and from a local FASTA file, given with -Dcellbase.fasta=/path/to/genome.fa. Needs a local database and the
+     * FASTA file of the same assembly, not run by default
+     */
+    @Ignore
+    @Test
+    public void benchmarkRegionQueries() {
+        GenomeSequenceDBAdaptor mongoDBAdaptor = getFactory(null).getGenomeSequenceDBAdaptor("hsapiens", "GRCh37");
+        GenomeSequenceDBAdaptor fastaDBAdaptor = getFactory(System.getProperty("cellbase.fasta"))
+                .getGenomeSequenceDBAdaptor("hsapiens", "GRCh37");
+        assertTrue(fastaDBAdaptor instanceof FastaGenomeSequenceDBAdaptor);
+
+        int[] lengths = {1, 1000, 1000000};
+        int[] iterations = {2000, 2000, 20};
+        for (int l = 0; l < lengths.length; l++) {
+            // Both adaptors must return the same sequences
+            Region region = new Region("1", 10000000, 10000000 + lengths[l] - 1);
+            assertEquals(getSequence(mongoDBAdaptor, region), getSequence(fastaDBAdaptor, region));
+
+            for (int round = 0; round < 3; round++) {
+                // The first round is a warm up
+                double mongoTime = benchmark(mongoDBAdaptor, lengths[l], iterations[l]);
+                double fastaTime = benchmark(fastaDBAdaptor, lengths[l], iterations[l]);
+                System.out.println(lengths[l] + "bp, round " + round + ": genome_sequence " + mongoTime
+                        + "ms per query, FASTA file " + fastaTime + "ms per query");
+            }
+        }
+    }
+
+    private static String getSequence(GenomeSequenceDBAdaptor genomeSequenceDBAdaptor, Region region) {
+        return ((GenomeSequenceFeature) genomeSequenceDBAdaptor.getAllByRegionList(Collections.singletonList(region),
+                new QueryOptions()).get(0).getResult().get(0)).getSequence();
+    }
+
+    /**
+     * @return mean time in ms of the queries, with random positions of chromosome 1 repeated on every run
+     */
+    private static double benchmark(GenomeSequenceDBAdaptor genomeSequenceDBAdaptor, int length, int iterations) {
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            int position = 1 + random.nextInt(240000000 - length);
+            genomeSequenceDBAdaptor.getAllByRegionList(Collections.singletonList(new Region("1", position,
+                    position + length - 1)), new QueryOptions());
+        }
+        return (System.nanoTime() - start) / 1e6 / iterations;
+    }
+
+}
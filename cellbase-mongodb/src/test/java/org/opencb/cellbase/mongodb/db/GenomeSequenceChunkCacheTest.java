@@ -0,0 +1,80 @@
+package org.opencb.cellbase.mongodb.db;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.junit.Test;
+import org.opencb.cellbase.core.common.core.PackedGenomeSequenceChunk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GenomeSequenceChunkCacheTest {
+
+    private static DBObject createChunk(String chunkId, int start, String sequence) {
+        return new BasicDBObject("chunkId", chunkId).append("start", start).append("sequence", sequence);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        String sequence = new String(new char[2000]).replace('\0', 'A');
+        long chunkSize = GenomeSequenceChunkCache.getEstimatedSize("1_0_2k", createChunk("1_0_2k", 1, sequence));
+        GenomeSequenceChunkCache cache = new GenomeSequenceChunkCache(2 * chunkSize);
+        cache.put("1_0_2k", createChunk("1_0_2k", 1, sequence));
+        cache.put("1_1_2k", createChunk("1_1_2k", 2000, sequence));
+        assertEquals(2, cache.getAll(Arrays.asList("1_0_2k")).size() + cache.getAll(Arrays.asList("1_1_2k")).size());
+
+        // 1_0_2k is the least recently used one
+        cache.getAll(Arrays.asList("1_1_2k"));
+        cache.put("1_2_2k", createChunk("1_2_2k", 4000, sequence));
+        Map<String, DBObject> chunks = cache.getAll(Arrays.asList("1_0_2k", "1_1_2k", "1_2_2k"));
+        assertEquals(2, chunks.size());
+        assertFalse(chunks.containsKey("1_0_2k"));
+        assertEquals(2000, chunks.get("1_1_2k").get("start"));
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals(5, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getNumChunks());
+        assertEquals(2 * chunkSize, cache.getEstimatedSize());
+    }
+
+    @Test
+    public void decodesPackedChunks() {
+        PackedGenomeSequenceChunk packedChunk = new PackedGenomeSequenceChunk("1", "1_0_2k", 1, 8, "chromosome",
+                "GRCh37", "ACGTNNac");
+        DBObject chunk = new BasicDBObject("chunkId", "1_0_2k").append("start", 1)
+                .append("encoding", packedChunk.getEncoding()).append("length", packedChunk.getLength())
+                .append("packed", packedChunk.getPacked()).append("baseRuns", toList(packedChunk.getBaseRuns()))
+                .append("maskRuns", toList(packedChunk.getMaskRuns()));
+
+        GenomeSequenceChunkCache cache = new GenomeSequenceChunkCache(1 << 20);
+        DBObject cachedChunk = cache.put("1_0_2k", chunk);
+        assertTrue(cachedChunk.get("packed") instanceof byte[]);
+        assertSame(cachedChunk, cache.getAll(Arrays.asList("1_0_2k")).get("1_0_2k"));
+
+        StringBuilder sb = new StringBuilder();
+        GenomeSequenceMongoDBAdaptor.appendChunkSequence(sb, cachedChunk, 3, 8);
+        assertEquals("GTNNac", sb.toString());
+    }
+
+    private static List<Integer> toList(int[] array) {
+        List<Integer> list = new ArrayList<>(array.length);
+        for (int value : array) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    @Test
+    public void chunksBiggerThanTheCacheAreNotKept() {
+        GenomeSequenceChunkCache cache = new GenomeSequenceChunkCache(100);
+        cache.put("1_0_2k", createChunk("1_0_2k", 1, "ACGT"));
+        assertEquals(0, cache.getNumChunks());
+        assertTrue(cache.getAll(Arrays.asList("1_0_2k")).isEmpty());
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.opencb.cellbase.mongodb.db;
+
+import com.google.common.io.BaseEncoding;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.junit.Test;
+import org.opencb.cellbase.core.common.PackedSequence;
+
+import static org.junit.Assert.*;
+
+public class GenomeSequenceMongoDBAdaptorTest {
+
+    private static DBObject getPackedChunk(int start, String sequence) {
+        PackedSequence packedSequence = PackedSequence.encode(sequence);
+        BasicDBList baseRuns = new BasicDBList();
+        for (int value : packedSequence.getBaseRuns()) {
+            baseRuns.add(value);
+        }
+        return new BasicDBObject("start", start).append("encoding", PackedSequence.ENCODING)
+                .append("length", packedSequence.getLength())
+                .append("packed", BaseEncoding.base64().encode(packedSequence.getPacked()))
+                .append("baseRuns", baseRuns);
+    }
+
+    @Test
+    public void appendChunkSequence() {
+        DBObject plainChunk = new BasicDBObject("start", 2000).append("sequence", "ACGTACGTAC");
+        DBObject packedChunk = getPackedChunk(2010, "NNGGCCTTAA");
+
+        StringBuilder sb = new StringBuilder();
+        GenomeSequenceMongoDBAdaptor.appendChunkSequence(sb, plainChunk, 2005, 2013);
+        GenomeSequenceMongoDBAdaptor.appendChunkSequence(sb, packedChunk, 2005, 2013);
+        assertEquals("CGTACNNGG", sb.toString());
+
+        // Chunks not overlapping the region add nothing
+        GenomeSequenceMongoDBAdaptor.appendChunkSequence(sb, packedChunk, 1, 100);
+        assertEquals(9, sb.length());
+    }
+
+}
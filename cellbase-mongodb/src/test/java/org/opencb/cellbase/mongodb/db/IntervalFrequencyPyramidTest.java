@@ -0,0 +1,58 @@
+package org.opencb.cellbase.mongodb.db;
+
+import com.mongodb.DBObject;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IntervalFrequencyPyramidTest {
+
+    @Test
+    public void getDocuments() {
+        IntervalFrequencyPyramid pyramid = new IntervalFrequencyPyramid("gene");
+        pyramid.add("1", 500);
+        pyramid.add("1", 999);
+        pyramid.add("1", 1500);
+        pyramid.add("1", 2500000);
+
+        DBObject finestFirstBlock = null;
+        DBObject coarsestFirstBlock = null;
+        int finestBlocks = 0;
+        List<DBObject> documents = pyramid.getDocuments();
+        for (DBObject document : documents) {
+            assertEquals("gene", document.get("featureType"));
+            assertEquals("1", document.get("chromosome"));
+            if ((int) document.get("binSize") == 1000) {
+                finestBlocks++;
+                if ((int) document.get("block") == 0) {
+                    finestFirstBlock = document;
+                }
+            } else if ((int) document.get("binSize") == 1000000 && (int) document.get("block") == 0) {
+                coarsestFirstBlock = document;
+            }
+        }
+
+        // 1kb bins of the features at 2.5Mb are in block 2, blocks in between are empty and not stored
+        assertEquals(2, finestBlocks);
+        List<?> counts = (List<?>) finestFirstBlock.get("counts");
+        assertEquals(2, counts.get(0));
+        assertEquals(1, counts.get(1));
+        counts = (List<?>) coarsestFirstBlock.get("counts");
+        assertEquals(3, counts.get(0));
+        assertEquals(0, counts.get(1));
+        assertEquals(1, counts.get(2));
+    }
+
+    @Test
+    public void getBinSize() {
+        assertEquals(1000000, IntervalFrequencyPyramid.getBinSize(5000000));
+        assertEquals(100000, IntervalFrequencyPyramid.getBinSize(200000));
+        assertEquals(1000, IntervalFrequencyPyramid.getBinSize(3000));
+        assertEquals(10000, IntervalFrequencyPyramid.getBinSize(123456));
+        assertEquals(-1, IntervalFrequencyPyramid.getBinSize(500));
+        assertEquals(-1, IntervalFrequencyPyramid.getBinSize(1500));
+    }
+
+}
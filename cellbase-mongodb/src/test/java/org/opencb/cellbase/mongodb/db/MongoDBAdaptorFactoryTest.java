@@ -0,0 +1,62 @@
+package org.opencb.cellbase.mongodb.db;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.opencb.cellbase.core.common.core.CellbaseConfiguration;
+import org.opencb.cellbase.core.lib.api.variation.VariantAnnotationDBAdaptor;
+
+import static org.junit.Assert.*;
+
+public class MongoDBAdaptorFactoryTest {
+
+    private static MongoDBAdaptorFactory getFactory() {
+        CellbaseConfiguration config = new CellbaseConfiguration();
+        config.addSpeciesAlias("hsapiens", "hsapiens");
+        config.addSpeciesConnection("hsapiens", "GRCh37", "localhost", "cellbase_hsapiens_grch37_v3", 27017, "mongodb",
+                "", "", 10, 10000);
+        return new MongoDBAdaptorFactory(config);
+    }
+
+    @Ignore
+    @Test
+    public void cachedAdaptors() {
+        MongoDBAdaptorFactory dbAdaptorFactory = getFactory();
+        VariantAnnotationDBAdaptor variantAnnotationDBAdaptor = dbAdaptorFactory.getVariantAnnotationDBAdaptor("hsapiens", "GRCh37");
+        assertSame(variantAnnotationDBAdaptor, dbAdaptorFactory.getVariantAnnotationDBAdaptor("hsapiens", "GRCh37"));
+        assertSame(dbAdaptorFactory.getGeneDBAdaptor("hsapiens", "GRCh37"), dbAdaptorFactory.getGeneDBAdaptor("hsapiens", "GRCh37"));
+
+        dbAdaptorFactory.refresh("hsapiens", "GRCh37");
+        assertNotSame(variantAnnotationDBAdaptor, dbAdaptorFactory.getVariantAnnotationDBAdaptor("hsapiens", "GRCh37"));
+    }
+
+    /**
+     * Rough comparison of the time taken to get the variant annotation adaptor, and all its sub-adaptors, on each
+     * request when adaptors are created every time and when they are cached. Needs a local database, not run by default
+     */
+    @Ignore
+    @Test
+    public void benchmarkRequestPath() {
+        MongoDBAdaptorFactory dbAdaptorFactory = getFactory();
+        int iterations = 10000;
+        // Database connections are opened once before timing
+        dbAdaptorFactory.getVariantAnnotationDBAdaptor("hsapiens", "GRCh37");
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                dbAdaptorFactory.refresh();
+                dbAdaptorFactory.getVariantAnnotationDBAdaptor("hsapiens", "GRCh37");
+            }
+            long uncachedTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                dbAdaptorFactory.getVariantAnnotationDBAdaptor("hsapiens", "GRCh37");
+            }
+            long cachedTime = System.nanoTime() - start;
+
+            System.out.println("Created: " + uncachedTime / iterations + " ns/request, cached: " + cachedTime / iterations
+                    + " ns/request");
+        }
+    }
+
+}
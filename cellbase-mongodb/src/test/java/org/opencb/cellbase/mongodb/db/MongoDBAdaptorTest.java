@@ -0,0 +1,137 @@
+package org.opencb.cellbase.mongodb.db;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBObject;
+import org.junit.Test;
+import org.opencb.biodata.models.feature.Region;
+import org.opencb.datastore.core.QueryOptions;
+import org.opencb.datastore.core.QueryResult;
+import org.opencb.datastore.mongodb.MongoDataStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class MongoDBAdaptorTest {
+
+    private static DBObject getFeature(String chromosome, int start, int end) {
+        return new BasicDBObject("chromosome", chromosome).append("start", start).append("end", end);
+    }
+
+    @Test
+    public void splitByRegion() {
+        List<Region> regions = Arrays.asList(new Region("1", 100, 200), new Region("1", 150, 300), new Region("2", 100, 200));
+        DBObject overlappingBoth = getFeature("1", 180, 400);
+        DBObject firstOnly = getFeature("1", 50, 120);
+        DBObject otherChromosome = getFeature("2", 200, 250);
+        DBObject noOverlap = getFeature("1", 301, 500);
+        List<List<DBObject>> regionResults = MongoDBAdaptor.splitByRegion(regions,
+                Arrays.asList(overlappingBoth, firstOnly, otherChromosome, noOverlap, new BasicDBObject("chromosome", "1")),
+                "start", "end");
+
+        assertEquals(3, regionResults.size());
+        assertEquals(Arrays.asList(overlappingBoth, firstOnly), regionResults.get(0));
+        assertEquals(Arrays.asList(overlappingBoth), regionResults.get(1));
+        assertEquals(Arrays.asList(otherChromosome), regionResults.get(2));
+    }
+
+    @Test
+    public void splitByRegionStartOnly() {
+        List<Region> regions = Arrays.asList(new Region("1", 100, 200));
+        List<List<DBObject>> regionResults = MongoDBAdaptor.splitByRegion(regions,
+                Arrays.asList(getFeature("1", 90, 150), getFeature("1", 150, 150)), "start", "start");
+        assertEquals(1, regionResults.get(0).size());
+        assertEquals(150, regionResults.get(0).get(0).get("start"));
+    }
+
+    @Test
+    public void splitById() {
+        BasicDBList xrefs = new BasicDBList();
+        xrefs.add(new BasicDBObject("id", "BRCA2"));
+        xrefs.add(new BasicDBObject("id", "ENSG00000139618"));
+        BasicDBList transcripts = new BasicDBList();
+        transcripts.add(new BasicDBObject("xrefs", xrefs));
+        DBObject brca2 = new BasicDBObject("id", "ENSG00000139618").append("transcripts", transcripts);
+
+        List<List<DBObject>> idResults = MongoDBAdaptor.splitById(Arrays.asList("BRCA2", "TP53", "ENSG00000139618", "BRCA2"),
+                Arrays.asList(brca2), "transcripts.xrefs.id");
+        assertEquals(4, idResults.size());
+        assertEquals(Arrays.asList(brca2), idResults.get(0));
+        assertTrue(idResults.get(1).isEmpty());
+        assertEquals(Arrays.asList(brca2), idResults.get(2));
+        assertEquals(Arrays.asList(brca2), idResults.get(3));
+    }
+
+    @Test
+    public void notIncludedPath() {
+        assertNull(MongoDBAdaptor.getNotIncludedPath("id", Arrays.<Object>asList("id", "name")));
+        assertNull(MongoDBAdaptor.getNotIncludedPath("transcripts.xrefs.id", Arrays.<Object>asList("transcripts")));
+        assertEquals("transcripts", MongoDBAdaptor.getNotIncludedPath("transcripts.xrefs.id", Arrays.<Object>asList("id")));
+        assertEquals("transcripts.xrefs", MongoDBAdaptor.getNotIncludedPath("transcripts.xrefs.id",
+                Arrays.<Object>asList("transcripts.id")));
+    }
+
+    @Test
+    public void asyncQueries() throws Exception {
+        GeneMongoDBAdaptor geneDBAdaptor = new GeneMongoDBAdaptor((DB) null) {
+            @Override
+            public List<QueryResult> getAllByRegionList(List<Region> regions, QueryOptions options) {
+                List<QueryResult> queryResults = new ArrayList<>(regions.size());
+                for (Region region : regions) {
+                    QueryResult queryResult = new QueryResult();
+                    queryResult.setId(region.toString());
+                    queryResult.setResult(Arrays.asList(Thread.currentThread().getName()));
+                    queryResults.add(queryResult);
+                }
+                return queryResults;
+            }
+        };
+        List<Region> regions = Arrays.asList(new Region("1", 100, 200), new Region("2", 100, 200));
+
+        // Without executor queries run in the calling thread
+        QueryResult queryResult = geneDBAdaptor.getAllByRegionListAsync(regions, new QueryOptions()).get().get(1);
+        assertEquals(regions.get(1).toString(), queryResult.getId());
+        assertEquals(Thread.currentThread().getName(), queryResult.getResult().get(0));
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            geneDBAdaptor.setQueryExecutorService(executorService);
+            queryResult = geneDBAdaptor.getAllByRegionListAsync(regions, new QueryOptions()).get().get(0);
+            assertEquals(regions.get(0).toString(), queryResult.getId());
+            assertNotEquals(Thread.currentThread().getName(), queryResult.getResult().get(0));
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void projectionProfiles() {
+        MongoDBAdaptor mongoDBAdaptor = new MongoDBAdaptor((MongoDataStore) null);
+        mongoDBAdaptor.collectionName = "gene";
+
+        QueryOptions options = new QueryOptions();
+        options.put("profile", ProjectionProfiles.COORDINATES);
+        options.put("include", Arrays.asList("id", "biotype"));
+        QueryOptions profileOptions = mongoDBAdaptor.applyProjectionProfile(options, null);
+        assertEquals(Arrays.asList("id", "biotype", "name", "chromosome", "start", "end", "strand"), profileOptions.getList("include"));
+        assertFalse(profileOptions.containsKey("profile"));
+        assertTrue(options.containsKey("profile"));
+
+        // Whole documents
+        options = new QueryOptions();
+        options.put("profile", ProjectionProfiles.FULL);
+        assertNull(mongoDBAdaptor.applyProjectionProfile(options, null).get("include"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownProjectionProfile() {
+        ProjectionProfiles.getInclude("gene", "transcripts");
+    }
+
+}
@@ -0,0 +1,53 @@
+package org.opencb.cellbase.mongodb.db;
+
+import com.mongodb.BasicDBObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProteinSubstitutionScoreCacheTest {
+
+    private static BasicDBObject getPrediction(String transcriptId, int aaPosition) {
+        BasicDBObject substitution = new BasicDBObject("ss", 0.05).append("se", 1).append("ps", 0.998).append("pe", 0);
+        BasicDBObject position = new BasicDBObject("W", substitution);
+        return new BasicDBObject("transcriptId", transcriptId)
+                .append("aaPositions", new BasicDBObject(Integer.toString(aaPosition), position));
+    }
+
+    @Test
+    public void parse() {
+        ProteinSubstitutionScoreCache.TranscriptScores scores =
+                ProteinSubstitutionScoreCache.TranscriptScores.parse(getPrediction("ENST00000001", 12));
+        assertEquals(0.05f, scores.getSiftScore(12, "TRP"), 0);
+        assertEquals(1, scores.getSiftEffect(12, "W"));
+        assertEquals(0.998f, scores.getPolyphenScore(12, "TRP"), 0);
+        assertEquals(0, scores.getPolyphenEffect(12, "TRP"));
+        assertTrue(Float.isNaN(scores.getSiftScore(12, "ALA")));
+        assertTrue(Float.isNaN(scores.getSiftScore(13, "TRP")));
+        assertTrue(Float.isNaN(scores.getSiftScore(12, "STOP")));
+
+        ProteinSubstitutionScoreCache.TranscriptScores emptyScores = ProteinSubstitutionScoreCache.TranscriptScores.parse(null);
+        assertTrue(Float.isNaN(emptyScores.getPolyphenScore(1, "TRP")));
+    }
+
+    @Test
+    public void leastRecentlyUsedEviction() {
+        ProteinSubstitutionScoreCache.TranscriptScores scores =
+                ProteinSubstitutionScoreCache.TranscriptScores.parse(getPrediction("ENST00000001", 100));
+        ProteinSubstitutionScoreCache cache = new ProteinSubstitutionScoreCache(3 * scores.getEstimatedSize() + 100);
+        cache.put("ENST00000001", scores);
+        cache.put("ENST00000002", scores);
+        cache.put("ENST00000003", scores);
+        assertNotNull(cache.get("ENST00000001"));
+        cache.put("ENST00000004", scores);
+
+        assertEquals(3, cache.getNumTranscripts());
+        assertNull(cache.get("ENST00000002"));
+        assertNotNull(cache.get("ENST00000001"));
+        assertNotNull(cache.get("ENST00000004"));
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertTrue(cache.getEstimatedSize() <= 3 * scores.getEstimatedSize() + 100);
+    }
+
+}
@@ -0,0 +1,36 @@
+package org.opencb.cellbase.mongodb.db;
+
+import com.mongodb.BasicDBObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QueryCountCacheTest {
+
+    @Test
+    public void getAndEvict() {
+        Object collection = new Object();
+        QueryCountCache cache = new QueryCountCache(2, 60000);
+        cache.put(collection, new BasicDBObject("chromosome", "1"), 10);
+        cache.put(collection, new BasicDBObject("chromosome", "2"), 20);
+        assertEquals(10, cache.get(collection, new BasicDBObject("chromosome", "1")));
+        assertEquals(-1, cache.get(new Object(), new BasicDBObject("chromosome", "1")));
+
+        // chromosome 2 is the least recently used
+        cache.put(collection, new BasicDBObject("chromosome", "3"), 30);
+        assertEquals(2, cache.size());
+        assertEquals(-1, cache.get(collection, new BasicDBObject("chromosome", "2")));
+        assertEquals(30, cache.get(collection, new BasicDBObject("chromosome", "3")));
+    }
+
+    @Test
+    public void expiration() throws InterruptedException {
+        Object collection = new Object();
+        QueryCountCache cache = new QueryCountCache(10, 1);
+        cache.put(collection, new BasicDBObject("chromosome", "1"), 10);
+        Thread.sleep(10);
+        assertEquals(-1, cache.get(collection, new BasicDBObject("chromosome", "1")));
+        assertEquals(0, cache.size());
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.opencb.cellbase.mongodb.db;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.junit.Test;
+import org.opencb.datastore.core.QueryOptions;
+import org.opencb.datastore.core.QueryResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QueryResultCacheTest {
+
+    private static QueryResult createQueryResult(String id, int numResults) {
+        List<DBObject> results = new ArrayList<>();
+        for (int i = 0; i < numResults; i++) {
+            results.add(new BasicDBObject("id", id + i).append("start", i));
+        }
+        QueryResult queryResult = new QueryResult();
+        queryResult.setId(id);
+        queryResult.setNumResults(numResults);
+        queryResult.setNumTotalResults(numResults);
+        queryResult.setResult(results);
+        return queryResult;
+    }
+
+    @Test
+    public void getKey() {
+        QueryOptions options = new QueryOptions();
+        options.put("limit", 10);
+        options.put("skip", 0);
+        QueryOptions reorderedOptions = new QueryOptions();
+        reorderedOptions.put("skip", 0);
+        reorderedOptions.put("limit", 10);
+        reorderedOptions.put("cache", true);
+        assertEquals(QueryResultCache.getKey("hsapiens_grch37", "GeneMongoDBAdaptor", "gene", new BasicDBObject("id", "BRCA2"), options),
+                QueryResultCache.getKey("hsapiens_grch37", "GeneMongoDBAdaptor", "gene", new BasicDBObject("id", "BRCA2"), reorderedOptions));
+        // Queries of the same adaptor on different collections do not share results
+        assertNotEquals(QueryResultCache.getKey("hsapiens_grch37", "VariationMongoDBAdaptor", "variation", new BasicDBObject("id", "rs1"), options),
+                QueryResultCache.getKey("hsapiens_grch37", "VariationMongoDBAdaptor", "variation_phenotype", new BasicDBObject("id", "rs1"), options));
+    }
+
+    @Test
+    public void getCopiesResults() {
+        QueryResultCache cache = new QueryResultCache(1 << 20, 60000);
+        cache.put("hsapiens_grch37|gene", createQueryResult("gene", 2));
+        assertNull(cache.get("hsapiens_grch37|transcript"));
+
+        QueryResult queryResult = cache.get("hsapiens_grch37|gene");
+        assertEquals(2, queryResult.getNumResults());
+        ((DBObject) queryResult.getResult().get(0)).removeField("start");
+        assertEquals(0, ((DBObject) cache.get("hsapiens_grch37|gene").getResult().get(0)).get("start"));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void evictAndInvalidate() {
+        QueryResultCache cache = new QueryResultCache(1000, 60000);
+        cache.put("hsapiens_grch37|a", createQueryResult("a", 5));
+        cache.put("mmusculus_grcm38|b", createQueryResult("b", 5));
+        assertTrue(cache.getEstimatedSize() <= 1000);
+
+        // Bigger than the whole cache, not kept
+        cache.put("hsapiens_grch37|c", createQueryResult("c", 100));
+        assertNull(cache.get("hsapiens_grch37|c"));
+
+        cache.invalidate("hsapiens_grch37");
+        assertNull(cache.get("hsapiens_grch37|a"));
+        assertNotNull(cache.get("mmusculus_grcm38|b"));
+    }
+
+}
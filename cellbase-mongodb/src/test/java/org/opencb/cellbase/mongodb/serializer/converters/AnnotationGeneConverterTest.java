@@ -0,0 +1,123 @@
+package org.opencb.cellbase.mongodb.serializer.converters;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.opencb.cellbase.mongodb.model.AnnotationGene;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AnnotationGeneConverterTest {
+
+    private static AnnotationGeneConverter getConverter() {
+        Map<String, Integer> biotypes = new HashMap<>();
+        biotypes.put("protein_coding", 23);
+        return new AnnotationGeneConverter(biotypes, 45);
+    }
+
+    private static BasicDBObject getGene(int numTranscripts, int numExons) {
+        BasicDBList transcripts = new BasicDBList();
+        for (int i = 0; i < numTranscripts; i++) {
+            BasicDBList exons = new BasicDBList();
+            for (int j = 0; j < numExons; j++) {
+                exons.add(new BasicDBObject("start", 1000 + j * 200).append("end", 1100 + j * 200).append("phase", j % 3));
+            }
+            BasicDBList annotationFlags = new BasicDBList();
+            annotationFlags.add("basic");
+            transcripts.add(new BasicDBObject("id", "ENST0000000" + i).append("start", 1000)
+                    .append("end", 1100 + (numExons - 1) * 200).append("strand", "+").append("cdsLength", 300)
+                    .append("annotationFlags", annotationFlags).append("biotype", (i == 0) ? "protein_coding" : "lincRNA")
+                    .append("genomicCodingStart", 1010).append("genomicCodingEnd", 1090).append("cdnaCodingStart", 11)
+                    .append("cdnaCodingEnd", 91).append("exons", exons));
+        }
+        return new BasicDBObject("id", "ENSG00000001").append("name", "GENE1").append("chromosome", "1")
+                .append("start", 1000).append("end", 1100 + (numExons - 1) * 200).append("transcripts", transcripts);
+    }
+
+    @Test
+    public void convertToDataModel() {
+        AnnotationGene gene = getConverter().convertToDataModel(getGene(2, 3));
+        assertEquals("ENSG00000001", gene.getId());
+        assertEquals("GENE1", gene.getName());
+        assertEquals(1500, gene.getEnd());
+        assertNull(gene.getMiRna());
+        assertEquals(2, gene.getTranscripts().length);
+
+        AnnotationGene.Transcript transcript = gene.getTranscripts()[0];
+        assertEquals(23, transcript.getBiotypeCode());
+        assertEquals(45, gene.getTranscripts()[1].getBiotypeCode());
+        assertEquals("lincRNA", gene.getTranscripts()[1].getBiotype());
+        assertEquals(3, transcript.getNumExons());
+        assertEquals(1400, transcript.getExonStart(2));
+        assertEquals(1300, transcript.getExonEnd(1));
+        assertEquals(2, transcript.getExonPhase(2));
+        assertEquals(91, transcript.getCdnaCodingEnd());
+        assertTrue(transcript.getAnnotationFlags().contains("basic"));
+        assertNull(transcript.getExonSequences());
+        assertNull(transcript.getSplicedSequence());
+    }
+
+    @Test
+    public void convertMiRna() {
+        BasicDBList matures = new BasicDBList();
+        matures.add(new BasicDBObject("cdnaStart", 5).append("cdnaEnd", 26));
+        BasicDBObject geneInfo = getGene(1, 1).append("mirna", new BasicDBObject("sequence", "ACGTACGTAC").append("matures", matures));
+        AnnotationGene.MiRna miRna = getConverter().convertToDataModel(geneInfo).getMiRna();
+        assertEquals(10, miRna.getSequenceLength());
+        assertEquals(1, miRna.getNumMatures());
+        assertEquals(5, miRna.getMatureCdnaStart(0));
+        assertEquals(26, miRna.getMatureCdnaEnd(0));
+    }
+
+    /**
+     * Rough comparison of the exon walk done by the engine over the documents and over the decoded records, not run
+     * by default
+     */
+    @Ignore
+    @Test
+    public void benchmarkExonWalk() {
+        AnnotationGeneConverter converter = getConverter();
+        BasicDBObject geneInfo = getGene(10, 12);
+        AnnotationGene gene = converter.convertToDataModel(geneInfo);
+        int iterations = 1000000;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            long sum = 0;
+            for (int i = 0; i < iterations; i++) {
+                for (Object transcriptInfo : (BasicDBList) geneInfo.get("transcripts")) {
+                    BasicDBList exonInfoList = (BasicDBList) ((BasicDBObject) transcriptInfo).get("exons");
+                    for (Object exonInfo : exonInfoList) {
+                        sum += (Integer) ((BasicDBObject) exonInfo).get("start") + (Integer) ((BasicDBObject) exonInfo).get("end");
+                    }
+                }
+            }
+            long documentTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long sum2 = 0;
+            for (int i = 0; i < iterations; i++) {
+                for (AnnotationGene.Transcript transcript : gene.getTranscripts()) {
+                    for (int j = 0; j < transcript.getNumExons(); j++) {
+                        sum2 += transcript.getExonStart(j) + transcript.getExonEnd(j);
+                    }
+                }
+            }
+            long recordTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations / 10; i++) {
+                converter.convertToDataModel(geneInfo);
+            }
+            long conversionTime = System.nanoTime() - start;
+
+            assertEquals(sum, sum2);
+            System.out.println("Documents: " + documentTime / iterations + " ns/gene, records: " + recordTime / iterations
+                    + " ns/gene, conversion: " + conversionTime / (iterations / 10) + " ns/gene");
+        }
+    }
+
+}
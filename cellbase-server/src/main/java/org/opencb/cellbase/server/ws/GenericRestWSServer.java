@@ -10,7 +10,10 @@ import org.opencb.cellbase.core.common.Species;
 import org.opencb.cellbase.core.common.core.CellbaseConfiguration;
 import org.opencb.cellbase.core.lib.DBAdaptorFactory;
 import org.opencb.cellbase.core.lib.api.core.ChromosomeDBAdaptor;
+import org.opencb.cellbase.mongodb.db.GenomeSequenceChunkCache;
 import org.opencb.cellbase.mongodb.db.MongoDBAdaptorFactory;
+import org.opencb.cellbase.mongodb.db.ProjectionProfiles;
+import org.opencb.cellbase.mongodb.db.QueryResultCache;
 import org.opencb.cellbase.server.exception.SpeciesException;
 import org.opencb.cellbase.server.exception.VersionException;
 import org.opencb.datastore.core.QueryOptions;
@@ -90,9 +93,21 @@ public class GenericRestWSServer implements IWSServer {
             defaultValue = "false", allowableValues = "false,true")
     protected String count;
 
+    @DefaultValue("")
+    @QueryParam("countPolicy")
+    @ApiParam(name = "countPolicy", value = "How the total number of results is calculated when a limit is set. When estimated or skipped it is flagged in the warning message. Server default when empty.",
+            allowableValues = "exact,cached,estimated,skip")
+    protected String countPolicy;
+
+    @DefaultValue("")
+    @QueryParam("profile")
+    @ApiParam(name = "profile", value = "Named set of fields returned for gene, variation and regulatory data, added to the included ones. Whole documents when empty.",
+            allowableValues = "coordinates,summary,annotation,full")
+    protected String profile;
+
     @DefaultValue("json")
     @QueryParam("of")
-    @ApiParam(name = "Output format", value = "Output format, Protobuf is not yet implemented", defaultValue = "json", allowableValues = "json,pb (Not implemented yet)")
+    @ApiParam(name = "Output format", value = "Output format, Protobuf is not yet implemented. fasta is only available for region sequences", defaultValue = "json", allowableValues = "json,fasta,pb (Not implemented yet)")
     protected String outputFormat;
 
     protected static ObjectMapper jsonObjectMapper;
@@ -129,7 +144,27 @@ public class GenericRestWSServer implements IWSServer {
                 config.setCoreChunkSize(Integer.parseInt(properties.getProperty("CORE_CHUNK_SIZE", "5000")));
                 config.setVariationChunkSize(Integer.parseInt(properties.getProperty("VARIATION_CHUNK_SIZE", "1000")));
                 config.setGenomeSequenceChunkSize(Integer.parseInt(properties.getProperty("CELLBASE.GENOME_SEQUENCE.CHUNK_SIZE", "2000")));
+                config.setGenomeSequenceChunkCacheMaxMemory(Long.parseLong(properties.getProperty("CELLBASE.GENOME_SEQUENCE.CHUNK_CACHE.MAX_MEMORY", "0").trim()));
+                config.setSequenceStreamingMinLength(Long.parseLong(properties.getProperty("CELLBASE.GENOME_SEQUENCE.STREAMING.MIN_LENGTH", "1000000").trim()));
+                config.setSequenceStreamingMaxConcurrent(Integer.parseInt(properties.getProperty("CELLBASE.GENOME_SEQUENCE.STREAMING.MAX_CONCURRENT", "4").trim()));
                 config.setConservedRegionChunkSize(Integer.parseInt(properties.getProperty("CELLBASE.CONSERVED_REGION.CHUNK_SIZE", "2000")));
+                config.setGeneIntervalIndexMaxMemory(Long.parseLong(properties.getProperty("CELLBASE.ANNOTATION.GENE_INDEX.MAX_MEMORY", "0")));
+                config.setAnnotationThreads(Integer.parseInt(properties.getProperty("CELLBASE.ANNOTATION.THREADS", "4")));
+                config.setProteinSubstitutionScoreCacheMaxMemory(Long.parseLong(properties.getProperty("CELLBASE.ANNOTATION.PROTEIN_SCORE_CACHE.MAX_MEMORY", "0")));
+                config.setPrecomputedAnnotation(Boolean.parseBoolean(properties.getProperty("CELLBASE.ANNOTATION.PRECOMPUTED", "false").trim()));
+                config.setQueryThreads(Integer.parseInt(properties.getProperty("CELLBASE.QUERY.THREADS", "0").trim()));
+                config.setQueryTimeout(Long.parseLong(properties.getProperty("CELLBASE.QUERY.TIMEOUT", "0").trim()));
+                config.setQueryPartialResults(Boolean.parseBoolean(properties.getProperty("CELLBASE.QUERY.PARTIAL_RESULTS", "false").trim()));
+                config.setQueryCountPolicy(properties.getProperty("CELLBASE.QUERY.COUNT_POLICY", "exact").trim());
+                config.setQueryCountCacheMaxEntries(Integer.parseInt(properties.getProperty("CELLBASE.QUERY.COUNT_CACHE.MAX_ENTRIES", "10000").trim()));
+                config.setQueryCountCacheTimeToLive(Long.parseLong(properties.getProperty("CELLBASE.QUERY.COUNT_CACHE.TTL", "3600000").trim()));
+                config.setRegionQueryBatchSize(Integer.parseInt(properties.getProperty("CELLBASE.QUERY.REGION_BATCH_SIZE", "100").trim()));
+                config.setIdQueryBatchSize(Integer.parseInt(properties.getProperty("CELLBASE.QUERY.ID_BATCH_SIZE", "200").trim()));
+                config.setChunkIdFormat(properties.getProperty("CELLBASE.QUERY.CHUNK_ID_FORMAT", "string").trim());
+                config.setQueryResultCacheMaxMemory(Long.parseLong(properties.getProperty("CELLBASE.QUERY.RESULT_CACHE.MAX_MEMORY", "0").trim()));
+                config.setDataVersionCheckInterval(Long.parseLong(properties.getProperty("CELLBASE.QUERY.RESULT_CACHE.DATA_VERSION_CHECK_INTERVAL", "60000").trim()));
+                config.setQueryResultCacheEndpoints(Splitter.on(",").omitEmptyStrings().trimResults()
+                        .splitToList(properties.getProperty("CELLBASE.QUERY.RESULT_CACHE.ENDPOINTS", "")));
                 config.setVersion(properties.getProperty("CELLBASE.VERSION"));
 
                 if(properties.containsKey("CELLBASE.AVAILABLE.SPECIES")) {
@@ -159,6 +194,9 @@ public class GenericRestWSServer implements IWSServer {
                                         Integer.parseInt(properties.getProperty(dbConfigurationId + ".MAX_POOL_SIZE", "10")),
                                         Integer.parseInt(properties.getProperty(dbConfigurationId + ".TIMEOUT")));
                                 config.addSpeciesInfo(species, assembly, properties.getProperty(species + ".TAXONOMY"));
+                                if(properties.containsKey(assemblyPrefix + ".GENOME_SEQUENCE.FASTA")) {
+                                    config.addGenomeSequenceFasta(species, assembly, properties.getProperty(assemblyPrefix + ".GENOME_SEQUENCE.FASTA").trim());
+                                }
                             }
                         } else {
                             dbConfigurationId = properties.getProperty(species + ".DB");
@@ -172,6 +210,9 @@ public class GenericRestWSServer implements IWSServer {
                                     Integer.parseInt(properties.getProperty(dbConfigurationId + ".MAX_POOL_SIZE", "10")),
                                     Integer.parseInt(properties.getProperty(dbConfigurationId + ".TIMEOUT")));
                             config.addSpeciesInfo(species, properties.getProperty(species + ".TAXONOMY"));
+                            if(properties.containsKey(species + ".GENOME_SEQUENCE.FASTA")) {
+                                config.addGenomeSequenceFasta(species, properties.getProperty(species + ".GENOME_SEQUENCE.FASTA").trim());
+                            }
                         }
                         alias = properties.getProperty(species + ".ALIAS").split(",");
                         for (String al : alias) {
@@ -277,16 +318,85 @@ public class GenericRestWSServer implements IWSServer {
         queryOptions.put("limit", (limit > 0) ? limit : -1);
         queryOptions.put("skip", (skip > 0) ? skip : -1);
         queryOptions.put("count", (count != null && !count.equals("")) ? Boolean.parseBoolean(count) : false);
+        if (countPolicy != null && !countPolicy.equals("")) {
+            queryOptions.put("countPolicy", countPolicy);
+        }
+        if (profile != null && !profile.equals("")) {
+            if (!ProjectionProfiles.isProfile(profile)) {
+                throw new BadRequestException("Unknown profile '" + profile + "'");
+            }
+            queryOptions.put("profile", profile);
+        }
+        queryOptions.put("cache", isResultCacheEnabled(uriInfo));
 
         outputFormat = (outputFormat != null && !outputFormat.equals("")) ? outputFormat : "json";
         filename = (multivaluedMap.get("filename") != null) ? multivaluedMap.get("filename").get(0) : "result";
     }
 
+    /**
+     * Results are cached for the category/subcategory endpoints listed in CELLBASE.QUERY.RESULT_CACHE.ENDPOINTS, paths
+     * are /{version}/{species}/{category}/{subcategory}/...
+     */
+    private boolean isResultCacheEnabled(UriInfo uriInfo) {
+        List<String> endpoints = config.getQueryResultCacheEndpoints();
+        if (MongoDBAdaptorFactory.getQueryResultCache() == null || endpoints == null || endpoints.isEmpty()) {
+            return false;
+        }
+        if (endpoints.contains("*")) {
+            return true;
+        }
+        List<PathSegment> pathSegments = uriInfo.getPathSegments();
+        return pathSegments.size() > 3
+                && endpoints.contains(pathSegments.get(2).getPath() + "/" + pathSegments.get(3).getPath());
+    }
+
     @Override
     public String stats() {
         return null;
     }
 
+    @GET
+    @Path("/cachestats")
+    public Response getCacheStats() {
+        QueryResultCache queryResultCache = MongoDBAdaptorFactory.getQueryResultCache();
+        Map<String, GenomeSequenceChunkCache> genomeSequenceChunkCaches = MongoDBAdaptorFactory.getGenomeSequenceChunkCaches();
+        if (queryResultCache == null && genomeSequenceChunkCaches.isEmpty()) {
+            return createOkResponse("Query result and genome sequence chunk caches are disabled");
+        }
+        Map<String, Object> cacheStats = new LinkedHashMap<>();
+        if (queryResultCache != null) {
+            cacheStats.put("hits", queryResultCache.getHits());
+            cacheStats.put("misses", queryResultCache.getMisses());
+            cacheStats.put("hitRate", queryResultCache.getHitRate());
+            cacheStats.put("evictions", queryResultCache.getEvictions());
+            cacheStats.put("numResults", queryResultCache.getNumResults());
+            cacheStats.put("estimatedSize", queryResultCache.getEstimatedSize());
+            cacheStats.put("maxMemory", queryResultCache.getMaxMemory());
+        }
+        // Chunk caches are created with the genome sequence adaptor of each species and assembly
+        Map<String, Object> chunkCacheStats = new TreeMap<>();
+        for (Map.Entry<String, GenomeSequenceChunkCache> entry : genomeSequenceChunkCaches.entrySet()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("hits", entry.getValue().getHits());
+            stats.put("misses", entry.getValue().getMisses());
+            stats.put("hitRate", entry.getValue().getHitRate());
+            stats.put("evictions", entry.getValue().getEvictions());
+            stats.put("numChunks", entry.getValue().getNumChunks());
+            stats.put("estimatedSize", entry.getValue().getEstimatedSize());
+            stats.put("maxMemory", entry.getValue().getMaxMemory());
+            chunkCacheStats.put(entry.getKey(), stats);
+        }
+        if (!chunkCacheStats.isEmpty()) {
+            cacheStats.put("genomeSequenceChunkCaches", chunkCacheStats);
+        }
+        QueryResult queryResult = new QueryResult();
+        queryResult.setId("cachestats");
+        queryResult.setNumResults(1);
+        queryResult.setNumTotalResults(1);
+        queryResult.setResult(Arrays.asList(cacheStats));
+        return createOkResponse(queryResult);
+    }
+
     @GET
     @Path("/help")
     public Response help() {
@@ -1,5 +1,6 @@
 package org.opencb.cellbase.server.ws.genomic;
 
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.common.base.Splitter;
 import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
@@ -21,10 +22,12 @@ import org.opencb.datastore.core.QueryResult;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Semaphore;
 
 //import org.opencb.cellbase.core.common.regulatory.MirnaTarget;
 //import org.opencb.cellbase.core.common.variation.StructuralVariation;
@@ -35,6 +38,9 @@ public class RegionWSServer extends GenericRestWSServer {
     // private int histogramIntervalSize = 1000000;
     private int histogramIntervalSize = 200000;
 
+    private static final int FASTA_LINE_LENGTH = 60;
+    private static final Semaphore sequenceStreamingPermits = new Semaphore(Math.max(config.getSequenceStreamingMaxConcurrent(), 1));
+
 //    private List<String> exclude = new ArrayList<>();
 
     public RegionWSServer(@PathParam("version") String version, @PathParam("species") String species,
@@ -374,6 +380,9 @@ public class RegionWSServer extends GenericRestWSServer {
             checkParams();
             List<Region> regions = Region.parseRegions(chregionId);
             GenomeSequenceDBAdaptor genomeSequenceDBAdaptor = dbAdaptorFactory.getGenomeSequenceDBAdaptor(this.species,	this.assembly);
+            if (outputFormat.equalsIgnoreCase("fasta") || getTotalLength(regions) > config.getSequenceStreamingMinLength()) {
+                return createSequenceStreamingResponse(genomeSequenceDBAdaptor, regions, strandParam.trim().equals("-1") ? -1 : 1);
+            }
             queryOptions.put("strand", strandParam);
             return createOkResponse(genomeSequenceDBAdaptor.getAllByRegionList(regions, queryOptions));
         } catch (Exception e) {
@@ -386,15 +395,166 @@ public class RegionWSServer extends GenericRestWSServer {
     @Path("/{chrRegionId}/reverse")
     @Deprecated
     public Response getReverseSequenceByRegion(@PathParam("chrRegionId") String chregionId) {
+        return getSequenceByRegion(chregionId, "-1", "");
+    }
+
+    private static long getTotalLength(List<Region> regions) {
+        long length = 0;
+        for (Region region : regions) {
+            length += Math.max(region.getEnd() - region.getStart() + 1, 0);
+        }
+        return length;
+    }
+
+    /**
+     * Sequences are written to the response as they are read from the database, as FASTA when of=fasta and as JSON
+     * otherwise, so that memory does not grow with the size of the regions.
+     */
+    private Response createSequenceStreamingResponse(GenomeSequenceDBAdaptor genomeSequenceDBAdaptor,
+                                                     List<Region> regions, int strand) {
+        boolean fasta = outputFormat.equalsIgnoreCase("fasta");
+        queryOptions.put("strand", strand);
+        String jsonHeader;
         try {
-            checkParams();
-            List<Region> regions = Region.parseRegions(chregionId);
-            GenomeSequenceDBAdaptor dbAdaptor = dbAdaptorFactory.getGenomeSequenceDBAdaptor(this.species, this.assembly);
-            queryOptions.put("strand", -1);
-            return createOkResponse(dbAdaptor.getAllByRegionList(regions, queryOptions));
-        } catch (Exception e) {
-            e.printStackTrace();
-            return createErrorResponse("getReverseSequenceByRegion", e.toString());
+            jsonHeader = "{\"apiVersion\":" + jsonObjectWriter.writeValueAsString(version)
+                    + ",\"queryOptions\":" + jsonObjectWriter.writeValueAsString(queryOptions) + ",\"response\":[";
+        } catch (IOException e) {
+            return createErrorResponse("getSequenceByRegion", e.toString());
+        }
+        return createOkResponse(new SequenceStreamingOutput(genomeSequenceDBAdaptor, regions, strand, fasta ? null : jsonHeader,
+                jsonObjectWriter, sequenceStreamingPermits), fasta ? MediaType.TEXT_PLAIN_TYPE : MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    /**
+     * Each streamed response holds a database cursor and a servlet thread, at most
+     * CELLBASE.GENOME_SEQUENCE.STREAMING.MAX_CONCURRENT of them are written at a time. The permit is taken and released
+     * while writing, so responses never written, e.g. to HEAD requests, do not hold one.
+     */
+    static class SequenceStreamingOutput implements StreamingOutput {
+
+        private final GenomeSequenceDBAdaptor genomeSequenceDBAdaptor;
+        private final List<Region> regions;
+        private final int strand;
+        // Start of the JSON response up to its 'response' array, null for FASTA
+        private final String jsonHeader;
+        private final ObjectWriter jsonObjectWriter;
+        private final Semaphore permits;
+
+        SequenceStreamingOutput(GenomeSequenceDBAdaptor genomeSequenceDBAdaptor, List<Region> regions, int strand,
+                                String jsonHeader, ObjectWriter jsonObjectWriter, Semaphore permits) {
+            this.genomeSequenceDBAdaptor = genomeSequenceDBAdaptor;
+            this.regions = regions;
+            this.strand = strand;
+            this.jsonHeader = jsonHeader;
+            this.jsonObjectWriter = jsonObjectWriter;
+            this.permits = permits;
+        }
+
+        @Override
+        public void write(OutputStream outputStream) throws IOException {
+            if (!permits.tryAcquire()) {
+                throw new WebApplicationException(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                        .entity("Too many large sequence requests running, try again later").type(MediaType.TEXT_PLAIN_TYPE).build());
+            }
+            try {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.US_ASCII), 1 << 16);
+                if (jsonHeader == null) {
+                    for (Region region : regions) {
+                        writer.write(">" + region + ((strand == -1) ? " reverse complement" : "") + "\n");
+                        FastaLineWriter fastaLineWriter = new FastaLineWriter(writer, FASTA_LINE_LENGTH);
+                        genomeSequenceDBAdaptor.writeRegion(region, strand, fastaLineWriter);
+                        fastaLineWriter.endLine();
+                    }
+                } else {
+                    writer.write(jsonHeader);
+                    for (int i = 0; i < regions.size(); i++) {
+                        Region region = regions.get(i);
+                        writer.write(((i > 0) ? "," : "") + "{\"id\":" + jsonObjectWriter.writeValueAsString(region.toString())
+                                + ",\"numResults\":1,\"numTotalResults\":1,\"result\":[{\"sequenceName\":"
+                                + jsonObjectWriter.writeValueAsString(region.getChromosome())
+                                + ",\"strand\":" + strand + ",\"sequence\":\"");
+                        // Bases are letters, they need no JSON escaping
+                        long numBases = genomeSequenceDBAdaptor.writeRegion(region, strand, writer);
+                        // start and end go after the sequence so that they match the bases written, the start
+                        // clamped to 1 and the end truncated at the end of the sequence
+                        int start = Math.max(region.getStart(), 1);
+                        writer.write("\",\"start\":" + start + ",\"end\":" + (start + numBases - 1) + "}]}");
+                    }
+                    writer.write("]}");
+                }
+                writer.flush();
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Breaks the bases written into lines of lineLength bases.
+     */
+    private static class FastaLineWriter extends FilterWriter {
+
+        private final int lineLength;
+        private int lineBases;
+
+        FastaLineWriter(Writer writer, int lineLength) {
+            super(writer);
+            this.lineLength = lineLength;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            if (++lineBases == lineLength) {
+                out.write('\n');
+                lineBases = 0;
+            }
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, lineLength - lineBases);
+                out.write(cbuf, off, n);
+                off += n;
+                len -= n;
+                lineBases += n;
+                if (lineBases == lineLength) {
+                    out.write('\n');
+                    lineBases = 0;
+                }
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, lineLength - lineBases);
+                out.write(str, off, n);
+                off += n;
+                len -= n;
+                lineBases += n;
+                if (lineBases == lineLength) {
+                    out.write('\n');
+                    lineBases = 0;
+                }
+            }
+        }
+
+        /**
+         * Ends the last line if it is not complete, the underlying writer is not closed.
+         */
+        void endLine() throws IOException {
+            if (lineBases > 0) {
+                out.write('\n');
+                lineBases = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            endLine();
+            flush();
         }
     }
 
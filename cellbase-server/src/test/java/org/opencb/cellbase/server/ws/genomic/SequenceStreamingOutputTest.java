@@ -0,0 +1,109 @@
+package org.opencb.cellbase.server.ws.genomic;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.Test;
+import org.opencb.biodata.models.feature.Region;
+import org.opencb.cellbase.core.lib.api.core.GenomeSequenceDBAdaptor;
+import org.opencb.datastore.core.QueryOptions;
+import org.opencb.datastore.core.QueryResult;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.Assert.*;
+
+public class SequenceStreamingOutputTest {
+
+    /**
+     * Writes 'A' for every base of the region, failing on regions of chromosome 'error'
+     */
+    private static class StubGenomeSequenceDBAdaptor implements GenomeSequenceDBAdaptor {
+
+        @Override
+        public QueryResult getByRegion(String chromosome, int start, int end, QueryOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<QueryResult> getAllByRegionList(List<Region> regions, QueryOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ListenableFuture<List<QueryResult>> getAllByRegionListAsync(List<Region> regions, QueryOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getRevComp(String sequence) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long writeRegion(Region region, int strand, Writer writer) throws IOException {
+            if (region.getChromosome().equals("error")) {
+                throw new IOException("Database error");
+            }
+            long numBases = region.getEnd() - Math.max(region.getStart(), 1) + 1;
+            for (long i = 0; i < numBases; i++) {
+                writer.write('A');
+            }
+            return numBases;
+        }
+    }
+
+    private static RegionWSServer.SequenceStreamingOutput getOutput(String chromosome, Semaphore permits) {
+        return new RegionWSServer.SequenceStreamingOutput(new StubGenomeSequenceDBAdaptor(),
+                Collections.singletonList(new Region(chromosome, 1, 70)), 1, null, new ObjectMapper().writer(), permits);
+    }
+
+    @Test
+    public void responseNotWrittenKeepsPermit() {
+        Semaphore permits = new Semaphore(1);
+        Response response = Response.ok(getOutput("1", permits)).build();
+        assertNotNull(response.getEntity());
+        assertEquals(1, permits.availablePermits());
+    }
+
+    @Test
+    public void writeReleasesPermit() throws IOException {
+        Semaphore permits = new Semaphore(1);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        getOutput("1", permits).write(outputStream);
+        assertEquals(">" + new Region("1", 1, 70) + "\n" + new String(new char[60]).replace('\0', 'A') + "\nAAAAAAAAAA\n",
+                new String(outputStream.toByteArray(), StandardCharsets.US_ASCII));
+        assertEquals(1, permits.availablePermits());
+    }
+
+    @Test
+    public void failedWriteReleasesPermit() {
+        Semaphore permits = new Semaphore(1);
+        try {
+            getOutput("error", permits).write(new ByteArrayOutputStream());
+            fail();
+        } catch (IOException e) {
+            assertEquals(1, permits.availablePermits());
+        }
+    }
+
+    @Test
+    public void writeWithoutPermitIsUnavailable() throws IOException {
+        Semaphore permits = new Semaphore(0);
+        try {
+            getOutput("1", permits).write(new ByteArrayOutputStream());
+            fail();
+        } catch (WebApplicationException e) {
+            assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), e.getResponse().getStatus());
+        }
+        assertEquals(0, permits.availablePermits());
+    }
+
+}